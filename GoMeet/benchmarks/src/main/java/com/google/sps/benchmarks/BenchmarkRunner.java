@@ -0,0 +1,26 @@
+package com.google.sps.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, writing the results as JSON so that they can be compared
+ * between releases. Accepts the usual JMH command line options (e.g. a regular 
+ * expression to select benchmarks, or -rff to choose the results file).
+ */
+public class BenchmarkRunner {
+  private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    Options options = new OptionsBuilder()
+        .parent(commandLine)
+        .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+        .result(commandLine.getResult().orElse(DEFAULT_RESULT_FILE))
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,94 @@
+package com.google.sps.benchmarks;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.TimePeriod;
+import com.google.sps.data.MeetingEventFields;
+import com.google.sps.data.ServletUtil;
+import com.google.sps.servlets.GoogleCalendarTimesServlet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import main.java.com.google.sps.data.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the JSON serialisation done by the servlets, on payloads shaped 
+ * like the ones they send.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+  private static final long HOUR_MS = 60 * 60 * 1000L;
+
+  // The number of items in each payload: locations, guests and proposed times.
+  @Param({"5", "100"})
+  public int size;
+
+  private List<Location> locations;
+  private HashMap<String, Object> meetingEvent;
+  private List<TimePeriod> freeTimes;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    this.locations = new ArrayList<Location>();
+    ArrayList<String> guestList = new ArrayList<String>();
+    ArrayList<String> meetingTimeIds = new ArrayList<String>();
+    this.freeTimes = new ArrayList<TimePeriod>();
+    TimeZone timeZone = TimeZone.getTimeZone("AET");
+    long start = 1612915200000L; // 2021-02-10 00:00 UTC.
+    for (int i = 0; i < this.size; i++) {
+      this.locations.add(new Location("Location " + i, -33.8688 + i * 0.001, 
+          151.2093 - i * 0.001, "Meet at the entrance, near the " + i + "th pillar.", i, 
+          "ahBzfmdvLW1lZXQtMjAyMXIVCxIITG9jYXRpb24YgICAgICAgAoM" + i));
+      guestList.add("guest" + i + "@example.com");
+      meetingTimeIds.add("ahBzfmdvLW1lZXQtMjAyMXIYCxILTWVldGluZ1RpbWUYgICAgICAgAoM" + i);
+      this.freeTimes.add(new TimePeriod()
+          .setStart(new DateTime(new java.util.Date(start + 2 * i * HOUR_MS), timeZone))
+          .setEnd(new DateTime(new java.util.Date(start + (2 * i + 1) * HOUR_MS), timeZone)));
+    }
+
+    this.meetingEvent = new HashMap<String, Object>();
+    this.meetingEvent.put(MeetingEventFields.MEETING_NAME, "Team offsite planning");
+    this.meetingEvent.put(MeetingEventFields.DURATION_MINS, 30);
+    this.meetingEvent.put(MeetingEventFields.DURATION_HOURS, 1);
+    this.meetingEvent.put(MeetingEventFields.TIME_FIND_METHOD, "manual");
+    this.meetingEvent.put(MeetingEventFields.GUEST_LIST, guestList);
+    this.meetingEvent.put(MeetingEventFields.MEETING_TIME_IDS, meetingTimeIds);
+    this.meetingEvent.put(MeetingEventFields.MEETING_LOCATION_IDS, new ArrayList<String>());
+  }
+
+  /** The list of locations, as sent by LocationServlet. */
+  @Benchmark
+  public String convertToJson() {
+    return ServletUtil.convertToJson(this.locations);
+  }
+
+  /** A meeting event, as sent by MeetingEventServlet. */
+  @Benchmark
+  public String convertMapToJson() {
+    return ServletUtil.convertMapToJson(this.meetingEvent);
+  }
+
+  /** The proposed meeting times, as sent by GoogleCalendarTimesServlet. */
+  @Benchmark
+  public String timePeriodListToJson() {
+    return GoogleCalendarTimesServlet.timePeriodListToJson(this.freeTimes);
+  }
+}
@@ -0,0 +1,102 @@
+package com.google.sps.benchmarks;
+
+import com.google.sps.data.RequestMetrics;
+import com.google.sps.servlets.MetricsFilter;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRegistration;
+import javax.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * Benchmarks the cost MetricsFilter adds to each request, against a servlet that does
+ * nothing, so that the filter can be left on in production.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsFilterBenchmark {
+  private static final String ROUTE = "/location-data";
+
+  private final FilterChain servlet = (request, response) ->
+      ((HttpServletResponse) response).setStatus(HttpServletResponse.SC_OK);
+  private MetricsFilter filter;
+  private MockHttpServletRequest request;
+  private MockHttpServletRequest staticFileRequest;
+  private MockHttpServletResponse response;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    // The mock context has no servlets, so one is registered at the route.
+    ServletRegistration registration = (ServletRegistration) Proxy.newProxyInstance(
+        ServletRegistration.class.getClassLoader(), new Class<?>[] {ServletRegistration.class},
+        (proxy, method, args) -> method.getName().equals("getMappings")
+            ? Arrays.asList(ROUTE)
+            : null);
+    MockServletContext context = new MockServletContext() {
+      @Override
+      public Map<String, ? extends ServletRegistration> getServletRegistrations() {
+        return Collections.singletonMap("location", registration);
+      }
+    };
+    this.filter = new MetricsFilter(new RequestMetrics());
+    this.filter.init(new MockFilterConfig(context));
+
+    this.request = new MockHttpServletRequest("GET", ROUTE);
+    this.request.setServletPath(ROUTE);
+    this.staticFileRequest = new MockHttpServletRequest("GET", "/js/interactive-map.js");
+    this.staticFileRequest.setServletPath("/js/interactive-map.js");
+    this.response = new MockHttpServletResponse();
+  }
+
+  /** The request without the filter, for comparison. */
+  @Benchmark
+  public MockHttpServletResponse unfiltered() throws Exception {
+    servlet.doFilter(request, response);
+    return response;
+  }
+
+  /** A request to a servlet, which is timed and counted. */
+  @Benchmark
+  public MockHttpServletResponse filtered() throws Exception {
+    filter.doFilter(request, response, servlet);
+    return response;
+  }
+
+  /** A request to a servlet from many threads at once, contending on the same counters. */
+  @Benchmark
+  @Threads(4)
+  public MockHttpServletResponse filteredContended() throws Exception {
+    filter.doFilter(request, response, servlet);
+    return response;
+  }
+
+  /** A request for a static file, which the filter passes on without recording. */
+  @Benchmark
+  public MockHttpServletResponse staticFile() throws Exception {
+    filter.doFilter(staticFileRequest, response, servlet);
+    return response;
+  }
+}
@@ -0,0 +1,118 @@
+package com.google.sps.benchmarks;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.TimePeriod;
+import com.google.sps.data.AutoProposeTimes;
+import com.google.sps.data.IntervalSweep;
+import com.google.sps.data.SchedulingConfig;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the free time computation of AutoProposeTimes on synthetic busy
+ * calendars, with the Google Calendar API stubbed out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProposeTimesBenchmark {
+  private static final String TIMEZONE = "AET";
+  private static final long MINUTE_MS = 60 * 1000L;
+  private static final long WINDOW_MS = 28 * 24 * 60 * MINUTE_MS; // 4 weeks.
+  private static final int MEETING_DURATION_MS = (int) (30 * MINUTE_MS);
+
+  // The number of guests whose calendars are queried.
+  @Param({"1", "10", "100", "500"})
+  public int guests;
+
+  // The total number of busy intervals, spread evenly over the guests.
+  @Param({"10", "1000", "100000"})
+  public int intervals;
+
+  private AutoProposeTimes proposer;
+  private long[] packedBusy;
+  private long windowStart;
+
+  /** An AutoProposeTimes that returns canned busy periods instead of calling the API. */
+  private static class StubbedProposeTimes extends AutoProposeTimes {
+    private final Map<String, List<TimePeriod>> busyByCalendar;
+
+    StubbedProposeTimes(ArrayList<String> calIds, Date start, Date end, 
+        Map<String, List<TimePeriod>> busyByCalendar) {
+      super(null, calIds, new SchedulingConfig(TIMEZONE, "")
+          .withWindow(start, end, MEETING_DURATION_MS));
+      this.busyByCalendar = busyByCalendar;
+    }
+
+    @Override
+    public List<TimePeriod> freebusyRequest(String calId) {
+      return this.busyByCalendar.get(calId);
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    TimeZone timeZone = TimeZone.getTimeZone(TIMEZONE);
+    Random random = new Random(42);
+    this.windowStart = 1612915200000L; // 2021-02-10 00:00 UTC.
+
+    ArrayList<String> calIds = new ArrayList<String>();
+    Map<String, List<TimePeriod>> busyByCalendar = new HashMap<String, List<TimePeriod>>();
+    for (int i = 0; i < this.guests; i++) {
+      String calId = "guest" + i + "@example.com";
+      calIds.add(calId);
+      busyByCalendar.put(calId, new ArrayList<TimePeriod>());
+    }
+
+    this.packedBusy = new long[2 * this.intervals];
+    for (int i = 0; i < this.intervals; i++) {
+      // Busy periods of 15 minutes to 2 hours, starting on a quarter hour.
+      long start = this.windowStart 
+          + (random.nextLong() & Long.MAX_VALUE) % (WINDOW_MS / (15 * MINUTE_MS)) * 15 * MINUTE_MS;
+      long end = start + (1 + random.nextInt(8)) * 15 * MINUTE_MS;
+      this.packedBusy[2 * i] = start;
+      this.packedBusy[2 * i + 1] = end;
+      busyByCalendar.get(calIds.get(i % this.guests)).add(new TimePeriod()
+          .setStart(new DateTime(new Date(start), timeZone))
+          .setEnd(new DateTime(new Date(end), timeZone)));
+    }
+
+    this.proposer = new StubbedProposeTimes(calIds, new Date(this.windowStart), 
+        new Date(this.windowStart + WINDOW_MS), busyByCalendar);
+  }
+
+  /** The whole proposal: gathering the busy periods, sweeping, and building TimePeriods. */
+  @Benchmark
+  public List<TimePeriod> proposeTimes() throws Exception {
+    return this.proposer.proposeTimes();
+  }
+
+  /** The sweep alone, on busy periods that are already packed as primitives. */
+  @Benchmark
+  public long[] intervalSweep() {
+    IntervalSweep sweep = new IntervalSweep(this.intervals);
+    sweep.addAll(this.packedBusy);
+    return sweep.freeSlots(this.windowStart, this.windowStart + WINDOW_MS, MEETING_DURATION_MS);
+  }
+}
@@ -0,0 +1,262 @@
+package main.java.com.google.sps.dao;
+
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import main.java.com.google.sps.exceptions.MaxEntitiesReachedException;
+import main.java.com.google.sps.exceptions.SimilarEntityExistsException;
+
+/**
+ * A Dao that caches the reads of another Dao in the memory of this instance: single
+ * objects by key string, and the lists of each parent, e.g. the locations of a meeting.
+ *
+ * Writes go to the wrapped Dao first and are then applied to the cache. A saved object
+ * is cached and added to the cached getAll list of its parent, and an object voted for
+ * is read again and replaced in it. A deleted object is removed from them. The other
+ * lists of the parent cached by subclasses, e.g. its most popular objects, are dropped
+ * on every write, as they cannot be updated without reading them again.
+ *
+ * Writes made by other instances are only seen once the cached reads expire, after the
+ * TTL. Once more than the maximum number of reads are cached, the least recently used
+ * one is evicted. Cached objects are shared, so callers must not change them.
+ * All times are in milliseconds. This class is thread-safe.
+ */
+public class CachingDao<T> implements Dao<T> {
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  public static final long DEFAULT_TTL_MS = 30 * 1000; // 30 seconds.
+  // The reads cached are keyed by their kind and then their key string, e.g.
+  // "get:<location key string>" or "all:<meeting key string>".
+  private static final String GET = "get:";
+  private static final String ALL = "all:";
+
+  /** Tells the cache the key strings of the objects of a Dao. */
+  public interface Keys<T> {
+    /** Returns the key string of an object, or null if it was never saved. */
+    String getKeyString(T t);
+
+    /** Returns a copy of an object with the key string it was saved with. */
+    T withKeyString(T t, String keyString);
+
+    /** Returns the key string of the parent of the object with a key string, or null. */
+    default String getParentKeyString(String keyString) {
+      Key parent = KeyFactory.stringToKey(keyString).getParent();
+      return parent == null ? null : KeyFactory.keyToString(parent);
+    }
+  }
+
+  /** A cached read, and when it expires. */
+  private static class Cached {
+    final Object value;
+    final long expiresAt;
+
+    Cached(Object value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final Dao<T> dao;
+  private final Keys<T> keys;
+  private final long ttlMs;
+  private final LongSupplier clock;
+  private final LinkedHashMap<String, Cached> entries;
+  // Incremented by every write, so that a read that raced with a write is not cached.
+  private long writeCount;
+
+  /** Constructor, for a cache with the default size and TTL. */
+  public CachingDao(Dao<T> dao, Keys<T> keys) {
+    this(dao, keys, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS, System::currentTimeMillis);
+  }
+
+  /**
+   * Constructor.
+   * @param dao The Dao whose reads are cached, and which writes go to.
+   * @param keys Gives the key strings of the objects of the Dao.
+   * @param maxEntries The maximum number of reads to cache, each an object or a list.
+   * @param ttlMs How long a read is served from the cache, in milliseconds.
+   * @param clock The source of the current time in milliseconds, to allow for
+   * easier testing.
+   */
+  public CachingDao(Dao<T> dao, Keys<T> keys, int maxEntries, long ttlMs,
+      LongSupplier clock) {
+    this.dao = dao;
+    this.keys = keys;
+    this.ttlMs = ttlMs;
+    this.clock = clock;
+    // An access ordered map, so that the eldest entry is the least recently used.
+    this.entries = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  @Override
+  public Optional<T> get(String keyString) {
+    return read(GET + keyString, () -> dao.get(keyString));
+  }
+
+  @Override
+  public List<T> getAll(String parentKeyString) {
+    return new ArrayList<>(read(ALL + parentKeyString, () -> dao.getAll(parentKeyString)));
+  }
+
+  @Override
+  public String save(String parentKeyString, T t)
+      throws MaxEntitiesReachedException, SimilarEntityExistsException {
+    String keyString = dao.save(parentKeyString, t);
+    T saved = keys.withKeyString(t, keyString);
+    synchronized (this) {
+      writeCount++;
+      dropLists(parentKeyString);
+      entries.put(GET + keyString, new Cached(Optional.of(saved), expiry()));
+      putInAll(parentKeyString, keyString, saved, entries.get(ALL + parentKeyString));
+    }
+    return keyString;
+  }
+
+  /** Records the vote, and then reads the object again to cache its new vote count. */
+  @Override
+  public void updateVote(String keyString) throws EntityNotFoundException {
+    String parentKeyString = keys.getParentKeyString(keyString);
+    Cached all;
+    long voteWriteCount;
+    try {
+      dao.updateVote(keyString);
+    } finally {
+      // The vote may have been committed even if it failed, so the object is not served
+      // from the cache until it is read again.
+      synchronized (this) {
+        all = entries.remove(ALL + parentKeyString);
+        writeCount++;
+        entries.remove(GET + keyString);
+        dropLists(parentKeyString);
+        voteWriteCount = writeCount;
+      }
+    }
+    Optional<T> updated = dao.get(keyString);
+    synchronized (this) {
+      // Another write since the vote may have made the object read out of date.
+      if (writeCount == voteWriteCount) {
+        entries.put(GET + keyString, new Cached(updated, expiry()));
+        putInAll(parentKeyString, keyString, updated.orElse(null), all);
+      }
+    }
+  }
+
+  @Override
+  public void delete(String keyString) {
+    try {
+      dao.delete(keyString);
+    } finally {
+      String parentKeyString = keys.getParentKeyString(keyString);
+      synchronized (this) {
+        writeCount++;
+        entries.remove(GET + keyString);
+        dropLists(parentKeyString);
+        putInAll(parentKeyString, keyString, null, entries.get(ALL + parentKeyString));
+      }
+    }
+  }
+
+  /** Removes all the cached reads. */
+  public synchronized void clear() {
+    writeCount++;
+    entries.clear();
+  }
+
+  /** Returns the number of reads cached, including expired ones not yet removed. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns a cached read, or reads it from the wrapped Dao and caches it. The read
+   * is done without holding the lock, so that other reads are not blocked by it.
+   * @param cacheKey The kind of read and the key string it is of, e.g. "popular:" and
+   * the key string of a parent, whose lists are dropped on every write to it.
+   */
+  protected <V> V read(String cacheKey, Supplier<V> loader) {
+    long loadWriteCount;
+    synchronized (this) {
+      V cached = live(cacheKey);
+      if (cached != null) {
+        return cached;
+      }
+      loadWriteCount = writeCount;
+    }
+    V value = loader.get();
+    synchronized (this) {
+      // A read that raced with a write may be out of date, so it is not cached.
+      if (writeCount == loadWriteCount) {
+        entries.put(cacheKey, new Cached(value, expiry()));
+      }
+    }
+    return value;
+  }
+
+  /** Returns a cached read if it has not expired, removing it if it has. */
+  @SuppressWarnings("unchecked")
+  private <V> V live(String cacheKey) {
+    Cached cached = entries.get(cacheKey);
+    if (cached == null) {
+      return null;
+    }
+    if (clock.getAsLong() >= cached.expiresAt) {
+      entries.remove(cacheKey);
+      return null;
+    }
+    return (V) cached.value;
+  }
+
+  /**
+   * Caches a getAll list of a parent with an object written, replacing the object with
+   * the same key string or adding it, or removing it if the object is null. The list is
+   * kept until it would have expired.
+   * @param all The list cached before the write, or null if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  private void putInAll(String parentKeyString, String keyString, T t, Cached all) {
+    if (all == null || clock.getAsLong() >= all.expiresAt) {
+      entries.remove(ALL + parentKeyString);
+      return;
+    }
+    List<T> updated = new ArrayList<>();
+    boolean replaced = false;
+    for (T cached : (List<T>) all.value) {
+      if (!keyString.equals(keys.getKeyString(cached))) {
+        updated.add(cached);
+      } else if (t != null && !replaced) {
+        updated.add(t);
+        replaced = true;
+      }
+    }
+    if (t != null && !replaced) {
+      updated.add(t);
+    }
+    entries.put(ALL + parentKeyString, new Cached(updated, all.expiresAt));
+  }
+
+  /** Removes the cached lists of a parent, other than its getAll list. */
+  private void dropLists(String parentKeyString) {
+    entries.keySet().removeIf(cacheKey -> !cacheKey.startsWith(GET)
+        && !cacheKey.startsWith(ALL) && cacheKey.endsWith(":" + parentKeyString));
+  }
+
+  private long expiry() {
+    return clock.getAsLong() + ttlMs;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("CachingDao{entries=%d, dao=%s}", entries.size(), dao);
+  }
+}
@@ -0,0 +1,56 @@
+package main.java.com.google.sps.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import main.java.com.google.sps.data.Location;
+
+/**
+ * A CachingDao of locations, which also caches the most popular locations of each
+ * meeting. They are dropped on every write to the meeting's locations, like the other
+ * cached lists of a parent. The reads of areas and distances are not cached, as each
+ * map view or point differs. This class is thread-safe.
+ */
+public class CachingLocationDao extends CachingDao<Location> implements LocationQueries {
+  private static final String POPULAR = "popular:";
+
+  private final LocationQueries dao;
+
+  /** Constructor, for a cache with the default size and TTL. */
+  public CachingLocationDao(LocationQueries dao, Keys<Location> keys) {
+    this(dao, keys, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS, System::currentTimeMillis);
+  }
+
+  /**
+   * Constructor.
+   * @param dao The Dao whose reads are cached, and which writes go to.
+   * @param keys Gives the key strings of the locations.
+   * @param maxEntries The maximum number of reads to cache, each a location or a list.
+   * @param ttlMs How long a read is served from the cache, in milliseconds.
+   * @param clock The source of the current time in milliseconds, to allow for
+   * easier testing.
+   */
+  public CachingLocationDao(LocationQueries dao, Keys<Location> keys, int maxEntries,
+      long ttlMs, LongSupplier clock) {
+    super(dao, keys, maxEntries, ttlMs, clock);
+    this.dao = dao;
+  }
+
+  @Override
+  public List<Location> getWithin(String parentKeyString, double south, double west,
+      double north, double east) {
+    return dao.getWithin(parentKeyString, south, west, north, east);
+  }
+
+  @Override
+  public List<Location> getNear(String parentKeyString, double lat, double lng,
+      double radiusMeters) {
+    return dao.getNear(parentKeyString, lat, lng, radiusMeters);
+  }
+
+  @Override
+  public List<Location> getPopular(String parentKeyString) {
+    return new ArrayList<>(
+        read(POPULAR + parentKeyString, () -> dao.getPopular(parentKeyString)));
+  }
+}
@@ -11,9 +11,10 @@ public interface Dao<T> {
 
   Optional<T> get(String keyString);
 
-  List<T> getAll();
+  List<T> getAll(String parentKeyString);
 
-  String save(T t) throws MaxEntitiesReachedException, SimilarEntityExistsException;
+  String save(String parentKeyString, T t) 
+      throws MaxEntitiesReachedException, SimilarEntityExistsException;
 
   void updateVote(String keyString) throws EntityNotFoundException;
 
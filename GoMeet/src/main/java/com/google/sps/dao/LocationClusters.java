@@ -0,0 +1,467 @@
+package main.java.com.google.sps.dao;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.EmbeddedEntity;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.sps.data.InstrumentedDatastoreService;
+import com.google.sps.data.LocalEntityCache;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import main.java.com.google.sps.data.LocationCluster;
+
+/**
+ * Keeps the clusters of a meeting's locations at each zoom level of the map. The map is
+ * split into the 256px Web Mercator tiles Google Maps uses, and each tile into a grid of
+ * cells. The locations in a cell are one cluster.
+ *
+ * Each tile holding locations of a meeting has a LocationTile entity, a child of the
+ * meeting's MeetingEvent entity, with a summary of each of its cells: the number of
+ * locations, the sums of their coordinates and the location with the most votes. The
+ * summaries are updated in the transaction that adds a location, or after a vote is
+ * counted, rather than rebuilt, so reading the clusters of a tile is a single get.
+ *
+ * Each summary also records the vote count the most voted location had when it became
+ * the top. Votes only add up, so a location with no more votes than that cannot take
+ * its place, and the top's current count is only read when one might.
+ */
+public class LocationClusters {
+  // The highest zoom level with clusters. Cells at zoom 16 are about 150m wide, and
+  // beyond it the locations are shown on their own.
+  public static final int MAX_ZOOM = 16;
+  // The number of cells along each side of a tile, so that each cell is 64px wide.
+  public static final int CELLS_PER_SIDE = 4;
+  // The most tiles read by one request.
+  public static final int MAX_TILES = 64;
+  // Tiles are updated by other instances too, so they are cached for less time than
+  // other entities.
+  public static final long TILE_TTL_MS = 60 * 1000;
+  public static final LocalEntityCache TILE_CACHE = new LocalEntityCache(
+      LocalEntityCache.DEFAULT_MAX_ENTITIES, TILE_TTL_MS,
+      LocalEntityCache.DEFAULT_NOT_FOUND_TTL_MS, System::currentTimeMillis,
+      key -> InstrumentedDatastoreService.getDatastoreService().get(null, key));
+  private static final String TILE_KIND = "LocationTile";
+  // The latitude at which the Web Mercator projection is cut off, making the map square.
+  private static final double MAX_LAT = 85.05112878;
+
+  private final DatastoreService ds;
+  private final Function<List<Entity>, Map<String, Long>> voteCounts;
+
+  /**
+   * Constructor.
+   * @param voteCounts Returns the vote count of each of some locations, by key string.
+   */
+  LocationClusters(DatastoreService ds, Function<List<Entity>, Map<String, Long>> voteCounts) {
+    this.ds = ds;
+    this.voteCounts = voteCounts;
+  }
+
+  /** Returns the key of the LocationTile entity of a tile of a meeting. */
+  static Key tileKey(Key meetingEventKey, int zoom, long x, long y) {
+    return KeyFactory.createKey(meetingEventKey, TILE_KIND, zoom + "/" + x + "/" + y);
+  }
+
+  /**
+   * Returns the key of the tile showing the whole map at zoom 0. Every meeting whose
+   * clusters are kept has it, so once it exists a missing tile has no locations.
+   */
+  static Key rootKey(Key meetingEventKey) {
+    return tileKey(meetingEventKey, 0, 0, 0);
+  }
+
+  /**
+   * Returns the keys of the tiles of a meeting covering a bounding box at a zoom level.
+   * @param west the west edge of the box. If it is greater than east, the box crosses
+   * the antimeridian.
+   * @throws IllegalArgumentException if the zoom level has no clusters, or the box
+   * covers more than MAX_TILES tiles.
+   */
+  public static List<Key> tileKeys(Key meetingEventKey, int zoom, double south, double west,
+      double north, double east) {
+    if (zoom < 0 || zoom > MAX_ZOOM) {
+      throw new IllegalArgumentException("Invalid zoom level: " + zoom);
+    }
+    long[] northWest = cellOf(north, west, zoom);
+    long[] southEast = cellOf(south, east, zoom);
+    long tileCount = 1L << zoom;
+    long westTile = northWest[0] / CELLS_PER_SIDE;
+    long eastTile = southEast[0] / CELLS_PER_SIDE;
+    long northTile = northWest[1] / CELLS_PER_SIDE;
+    long southTile = southEast[1] / CELLS_PER_SIDE;
+    // Boxes crossing the antimeridian wrap around to the first column of tiles.
+    long columns = west <= east
+        ? eastTile - westTile + 1
+        : Math.min(tileCount, tileCount - westTile + eastTile + 1);
+    if (columns * (southTile - northTile + 1) > MAX_TILES) {
+      throw new IllegalArgumentException("Too many tiles at zoom level " + zoom);
+    }
+
+    List<Key> keys = new ArrayList<>();
+    for (long column = 0; column < columns; column++) {
+      for (long y = northTile; y <= southTile; y++) {
+        keys.add(tileKey(meetingEventKey, zoom, (westTile + column) % tileCount, y));
+      }
+    }
+    return keys;
+  }
+
+  /** Returns the clusters of the cells of a LocationTile entity. */
+  public static List<LocationCluster> toClusters(Entity tile) {
+    List<LocationCluster> clusters = new ArrayList<>();
+    for (Object value : getCells(tile).getProperties().values()) {
+      EmbeddedEntity cell = (EmbeddedEntity) value;
+      long count = (Long) cell.getProperty("count");
+      clusters.add(new LocationCluster(
+          (double) cell.getProperty("latSum") / count,
+          (double) cell.getProperty("lngSum") / count,
+          (int) count,
+          (String) cell.getProperty("topTitle"),
+          (String) cell.getProperty("topKeyString")));
+    }
+    return clusters;
+  }
+
+  /**
+   * Adds a new location to the clusters of its meeting. If the meeting has no tiles
+   * yet, e.g. because its other locations were saved before they were kept, they are
+   * built first.
+   * @param voteCount the vote count of the new location.
+   * @return the tiles changed, to be put in the same transaction.
+   */
+  Collection<Entity> add(Transaction txn, Key meetingEventKey, Entity location,
+      long voteCount) {
+    Map<Key, Entity> tiles = getTiles(txn, meetingEventKey, location);
+    if (!tiles.containsKey(rootKey(meetingEventKey))) {
+      tiles = build(txn, meetingEventKey, location.getKey());
+    }
+    Map<String, Long> topCounts = getTopCounts(txn, meetingEventKey, tiles, location, voteCount);
+    for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+      long[] cell = cellOf(location, zoom);
+      Key key = tileKey(meetingEventKey, zoom, cell[0] / CELLS_PER_SIDE,
+          cell[1] / CELLS_PER_SIDE);
+      Entity tile = tiles.computeIfAbsent(key, Entity::new);
+      addToCell(tile, cellName(cell), location, voteCount, topCounts);
+    }
+    return tiles.values();
+  }
+
+  /**
+   * Returns the keys of the tiles whose clusters a location becomes the most voted of,
+   * after a vote. The tiles are compared as cached in TILE_CACHE, or as read outside of
+   * any transaction if they are not, so that a vote that changes no cluster's top does
+   * not read or write the tiles in a transaction. Nothing is returned if the meeting has
+   * no tiles yet, as they are built when first read.
+   * @param voteCount the vote count of the location, including the new vote.
+   */
+  List<Key> getVotedTileKeys(Key meetingEventKey, Entity location, long voteCount) {
+    Map<Key, Entity> tiles = new LinkedHashMap<>();
+    List<Key> missing = new ArrayList<>();
+    for (Key key : getTileKeys(meetingEventKey, location)) {
+      Entity tile = TILE_CACHE.getIfPresent(key);
+      if (tile == null) {
+        missing.add(key);
+      } else {
+        tiles.put(key, tile);
+      }
+    }
+    if (!missing.isEmpty()) {
+      tiles.putAll(ds.get(null, missing));
+    }
+    List<Key> keys = new ArrayList<>();
+    if (tiles.containsKey(rootKey(meetingEventKey))) {
+      // The tiles are copies, so changing them here leaves the cache as it is.
+      for (Entity tile : vote(null, meetingEventKey, location, voteCount, tiles)) {
+        keys.add(tile.getKey());
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Records a new vote for a location in some of the tiles it is in, e.g. those returned
+   * by getVotedTileKeys. The location becomes the most voted of the clusters it is in if
+   * it now has more votes than their current one.
+   * @param voteCount the vote count of the location, including the new vote.
+   * @param tileKeys the keys of the tiles to update.
+   * @return the tiles changed, to be put in the same transaction.
+   */
+  Collection<Entity> vote(Transaction txn, Key meetingEventKey, Entity location,
+      long voteCount, List<Key> tileKeys) {
+    return vote(txn, meetingEventKey, location, voteCount, ds.get(txn, tileKeys));
+  }
+
+  /** Records a new vote for a location in the tiles given, returning those changed. */
+  private Collection<Entity> vote(Transaction txn, Key meetingEventKey, Entity location,
+      long voteCount, Map<Key, Entity> tiles) {
+    Map<String, Long> topCounts = getTopCounts(txn, meetingEventKey, tiles, location, voteCount);
+    List<Entity> changed = new ArrayList<>();
+    for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+      long[] cell = cellOf(location, zoom);
+      Entity tile = tiles.get(
+          tileKey(meetingEventKey, zoom, cell[0] / CELLS_PER_SIDE, cell[1] / CELLS_PER_SIDE));
+      EmbeddedEntity summary =
+          tile == null ? null : (EmbeddedEntity) getCells(tile).getProperty(cellName(cell));
+      if (summary != null && isNewTop(summary, location, voteCount, topCounts)) {
+        setTop(summary, location, voteCount);
+        setCell(tile, cellName(cell), summary);
+        changed.add(tile);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Removes a location from the clusters of its meeting. It is taken out of the count
+   * and sums of each cell it was in, and a cell whose most voted location it was is
+   * given the most voted of its remaining locations. Nothing is changed if the meeting
+   * has no tiles yet, as they are built from its remaining locations when first read.
+   * @return the tiles changed, to be put in the same transaction, or deleted if isEmpty.
+   */
+  Collection<Entity> remove(Transaction txn, Key meetingEventKey, Entity location) {
+    Map<Key, Entity> tiles = getTiles(txn, meetingEventKey, location);
+    if (!tiles.containsKey(rootKey(meetingEventKey))) {
+      return new ArrayList<>();
+    }
+    String keyString = KeyFactory.keyToString(location.getKey());
+    List<Entity> others = null;
+    Map<String, Long> otherCounts = null;
+    List<Entity> changed = new ArrayList<>();
+    for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+      long[] cell = cellOf(location, zoom);
+      Entity tile = tiles.get(
+          tileKey(meetingEventKey, zoom, cell[0] / CELLS_PER_SIDE, cell[1] / CELLS_PER_SIDE));
+      EmbeddedEntity summary =
+          tile == null ? null : (EmbeddedEntity) getCells(tile).getProperty(cellName(cell));
+      if (summary == null) {
+        continue;
+      }
+      long count = (Long) summary.getProperty("count") - 1;
+      if (count <= 0) {
+        EmbeddedEntity cells = getCells(tile);
+        cells.removeProperty(cellName(cell));
+        tile.setUnindexedProperty("cells", cells);
+        changed.add(tile);
+        continue;
+      }
+      summary.setUnindexedProperty("count", count);
+      summary.setUnindexedProperty("latSum",
+          (double) summary.getProperty("latSum") - (double) location.getProperty("lat"));
+      summary.setUnindexedProperty("lngSum",
+          (double) summary.getProperty("lngSum") - (double) location.getProperty("lng"));
+      if (keyString.equals(summary.getProperty("topKeyString"))) {
+        if (others == null) {
+          // The meeting's other locations are only read if a new top has to be found.
+          Query query = new Query("Location").setAncestor(meetingEventKey);
+          others = ds.prepare(txn, query).asList(FetchOptions.Builder.withDefaults());
+          otherCounts = voteCounts.apply(others);
+        }
+        Entity top = null;
+        for (Entity other : others) {
+          if (!other.getKey().equals(location.getKey())
+              && Arrays.equals(cellOf(other, zoom), cell)
+              && (top == null || getVoteCount(otherCounts, other)
+                  > getVoteCount(otherCounts, top))) {
+            top = other;
+          }
+        }
+        if (top != null) {
+          setTop(summary, top, getVoteCount(otherCounts, top));
+        }
+      }
+      setCell(tile, cellName(cell), summary);
+      changed.add(tile);
+    }
+    return changed;
+  }
+
+  /**
+   * Returns true if a tile has no locations left and can be deleted. The root tile is
+   * never empty, as it marks a meeting whose clusters are kept.
+   */
+  static boolean isEmpty(Entity tile) {
+    return getCells(tile).getProperties().isEmpty()
+        && !tile.getKey().equals(rootKey(tile.getParent()));
+  }
+
+  /**
+   * Builds the tiles of a meeting from its locations, without saving them.
+   * @param except the key of a location to leave out, or null.
+   */
+  Map<Key, Entity> build(Transaction txn, Key meetingEventKey, Key except) {
+    Map<Key, Entity> tiles = new LinkedHashMap<>();
+    Query query = new Query("Location").setAncestor(meetingEventKey);
+    List<Entity> locations = new ArrayList<>();
+    for (Entity location : ds.prepare(txn, query).asIterable(FetchOptions.Builder.withDefaults())) {
+      if (!location.getKey().equals(except)) {
+        locations.add(location);
+      }
+    }
+    // The counts of every location are known, so no top has to be read.
+    Map<String, Long> counts = voteCounts.apply(locations);
+    for (Entity location : locations) {
+      for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+        long[] cell = cellOf(location, zoom);
+        Key key = tileKey(meetingEventKey, zoom, cell[0] / CELLS_PER_SIDE,
+            cell[1] / CELLS_PER_SIDE);
+        addToCell(tiles.computeIfAbsent(key, Entity::new), cellName(cell), location,
+            getVoteCount(counts, location), counts);
+      }
+    }
+    return tiles;
+  }
+
+  /** Returns the existing tiles a location is in, at every zoom level, by key. */
+  private Map<Key, Entity> getTiles(Transaction txn, Key meetingEventKey, Entity location) {
+    return new LinkedHashMap<>(ds.get(txn, getTileKeys(meetingEventKey, location)));
+  }
+
+  /** Returns the keys of the tiles a location is in, from zoom level 0 to MAX_ZOOM. */
+  private static List<Key> getTileKeys(Key meetingEventKey, Entity location) {
+    List<Key> keys = new ArrayList<>();
+    for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+      long[] cell = cellOf(location, zoom);
+      keys.add(tileKey(meetingEventKey, zoom, cell[0] / CELLS_PER_SIDE,
+          cell[1] / CELLS_PER_SIDE));
+    }
+    return keys;
+  }
+
+  /**
+   * Returns the current vote counts of the most voted locations of the cells a location
+   * is in, by key string, for the cells it might now lead. Those are the cells whose top
+   * had fewer votes, when it became the top, than the location has now.
+   * @param tiles the tiles the location is in, by key.
+   * @param voteCount the vote count of the location.
+   */
+  private Map<String, Long> getTopCounts(Transaction txn, Key meetingEventKey,
+      Map<Key, Entity> tiles, Entity location, long voteCount) {
+    String keyString = KeyFactory.keyToString(location.getKey());
+    List<Key> topKeys = new ArrayList<>();
+    for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+      long[] cell = cellOf(location, zoom);
+      Entity tile = tiles.get(
+          tileKey(meetingEventKey, zoom, cell[0] / CELLS_PER_SIDE, cell[1] / CELLS_PER_SIDE));
+      EmbeddedEntity summary =
+          tile == null ? null : (EmbeddedEntity) getCells(tile).getProperty(cellName(cell));
+      String topKeyString = summary == null ? null : (String) summary.getProperty("topKeyString");
+      if (topKeyString != null && !topKeyString.equals(keyString)
+          && voteCount > getTopVoteCount(summary)) {
+        Key topKey = KeyFactory.stringToKey(topKeyString);
+        if (!topKeys.contains(topKey)) {
+          topKeys.add(topKey);
+        }
+      }
+    }
+    if (topKeys.isEmpty()) {
+      return new HashMap<>();
+    }
+    // The tops are read together. A top that was deleted has no votes.
+    return voteCounts.apply(new ArrayList<>(ds.get(txn, topKeys).values()));
+  }
+
+  /** Adds a location to the summary of a cell of a tile. */
+  private static void addToCell(Entity tile, String cellName, Entity location,
+      long voteCount, Map<String, Long> topCounts) {
+    EmbeddedEntity summary = (EmbeddedEntity) getCells(tile).getProperty(cellName);
+    if (summary == null) {
+      summary = new EmbeddedEntity();
+      summary.setUnindexedProperty("count", 0L);
+      summary.setUnindexedProperty("latSum", 0.0);
+      summary.setUnindexedProperty("lngSum", 0.0);
+    }
+    summary.setUnindexedProperty("count", (Long) summary.getProperty("count") + 1);
+    summary.setUnindexedProperty("latSum",
+        (double) summary.getProperty("latSum") + (double) location.getProperty("lat"));
+    summary.setUnindexedProperty("lngSum",
+        (double) summary.getProperty("lngSum") + (double) location.getProperty("lng"));
+    if (summary.getProperty("topKeyString") == null
+        || isNewTop(summary, location, voteCount, topCounts)) {
+      setTop(summary, location, voteCount);
+    }
+    setCell(tile, cellName, summary);
+  }
+
+  /**
+   * Returns true if a location has more votes than the most voted location of a cell.
+   * Ties are kept by the location that reached the count first.
+   * @param voteCount the vote count of the location.
+   * @param topCounts the current vote counts of the tops the location might replace, by
+   * key string, as returned by getTopCounts.
+   */
+  private static boolean isNewTop(EmbeddedEntity summary, Entity location, long voteCount,
+      Map<String, Long> topCounts) {
+    String keyString = KeyFactory.keyToString(location.getKey());
+    String topKeyString = (String) summary.getProperty("topKeyString");
+    if (keyString.equals(topKeyString) || voteCount <= getTopVoteCount(summary)) {
+      return false;
+    }
+    Long topCount = topCounts.get(topKeyString);
+    return topCount == null || voteCount > topCount;
+  }
+
+  /** Returns the vote count the top of a cell had when it became the top, or 0 if unknown. */
+  private static long getTopVoteCount(EmbeddedEntity summary) {
+    Long topVoteCount = (Long) summary.getProperty("topVoteCount");
+    return topVoteCount == null ? 0 : topVoteCount;
+  }
+
+  private static long getVoteCount(Map<String, Long> voteCounts, Entity location) {
+    Long voteCount = voteCounts.get(KeyFactory.keyToString(location.getKey()));
+    return voteCount == null ? 0 : voteCount;
+  }
+
+  private static void setTop(EmbeddedEntity summary, Entity location, long voteCount) {
+    summary.setUnindexedProperty("topKeyString", KeyFactory.keyToString(location.getKey()));
+    summary.setUnindexedProperty("topTitle", location.getProperty("title"));
+    summary.setUnindexedProperty("topVoteCount", voteCount);
+  }
+
+  private static EmbeddedEntity getCells(Entity tile) {
+    EmbeddedEntity cells = (EmbeddedEntity) tile.getProperty("cells");
+    return cells == null ? new EmbeddedEntity() : cells;
+  }
+
+  private static void setCell(Entity tile, String cellName, EmbeddedEntity summary) {
+    EmbeddedEntity cells = getCells(tile);
+    cells.setUnindexedProperty(cellName, summary);
+    tile.setUnindexedProperty("cells", cells);
+  }
+
+  /** Returns the name of a cell within its tile, e.g. "2,3". */
+  private static String cellName(long[] cell) {
+    return (cell[0] % CELLS_PER_SIDE) + "," + (cell[1] % CELLS_PER_SIDE);
+  }
+
+  private static long[] cellOf(Entity location, int zoom) {
+    return cellOf((double) location.getProperty("lat"), (double) location.getProperty("lng"),
+        zoom);
+  }
+
+  /**
+   * Returns the column and row of the cell a point is in at a zoom level, counted from
+   * the north west corner of the map. Points beyond the edges of the map are in the
+   * cells at its edges.
+   */
+  private static long[] cellOf(double lat, double lng, int zoom) {
+    long cells = (1L << zoom) * CELLS_PER_SIDE;
+    double latRadians = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat)));
+    double x = (lng + 180) / 360;
+    double y = (1 - Math.log(Math.tan(latRadians) + 1 / Math.cos(latRadians)) / Math.PI) / 2;
+    return new long[] {clamp((long) Math.floor(x * cells), cells),
+        clamp((long) Math.floor(y * cells), cells)};
+  }
+
+  private static long clamp(long index, long cells) {
+    return Math.max(0, Math.min(cells - 1, index));
+  }
+}
@@ -1,54 +1,173 @@
 package main.java.com.google.sps.dao;
 
 import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.EmbeddedEntity;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
-import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.datastore.Query.FilterOperator;
 import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.sps.data.InstrumentedDatastoreService;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import main.java.com.google.sps.data.GeoHash;
 import main.java.com.google.sps.data.Location;
+import main.java.com.google.sps.data.LocationCluster;
 import main.java.com.google.sps.exceptions.MaxEntitiesReachedException;
 import main.java.com.google.sps.exceptions.SimilarEntityExistsException;
 
 /** Provides functionality for fetching, adding, updating and deleting Location entities. */
-public class LocationDao implements Dao<Location> {
+public class LocationDao implements LocationQueries {
   // Maximum number of locations per meeting.
   private static final int MAX_LOCATIONS = 5;
+  // Number of times a vote is retried when the meeting was updated concurrently.
+  private static final int MAX_RETRIES = 3;
+  // Each meeting has a LocationLeaders entity, a child of its MeetingEvent entity, holding
+  // the highest vote count and the locations that have it. It is in the same entity group
+  // as the locations, so that it is updated in the same transaction as them. A vote only
+  // writes it if the location voted for reaches the highest vote count.
+  private static final String LEADERS_KIND = "LocationLeaders";
+  private static final String LEADERS_NAME = "leaders";
+  // Counts the votes of each location, named by the key string of the location.
+  private static final ShardedCounter VOTE_COUNTER = new ShardedCounter();
+  // Holds every prefix of the location's geohash, so that the locations in a cell of any
+  // size are found by an equality filter on it.
+  private static final String GEOHASHES_PROPERTY = "geohashes";
+  // Gives CachingDao the key strings of locations.
+  public static final CachingDao.Keys<Location> KEYS = new CachingDao.Keys<Location>() {
+    @Override
+    public String getKeyString(Location location) {
+      return location.getKeyString();
+    }
+
+    @Override
+    public Location withKeyString(Location location, String keyString) {
+      return new Location(location.getTitle(), location.getLat(), location.getLng(),
+          location.getNote(), location.getVoteCount(), keyString);
+    }
+  };
+  // The locations read and written by the servlets. It is shared by them, so that a
+  // write through one servlet is read back by the others.
+  public static final CachingLocationDao CACHED = new CachingLocationDao(new LocationDao(), KEYS);
   private DatastoreService ds;
+  private LocationClusters clusters;
 
   public LocationDao() {
-    this.ds = DatastoreServiceFactory.getDatastoreService();
+    this.ds = InstrumentedDatastoreService.getDatastoreService();
+    this.clusters = new LocationClusters(ds, this::getVoteCounts);
   }
 
+  /** 
+   * Returns the location with the given key string, with its vote count.
+   * 
+   * @param keyString the key string of the location's entity.
+   * @return the location, or an empty Optional if there is no location with that key.
+   */
   @Override 
   public Optional<Location> get(String keyString) {
-    // TODO:
-    return Optional.empty();
+    Key key = KeyFactory.stringToKey(keyString);
+    if (!key.getKind().equals("Location")) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(toLocations(Collections.singletonList(ds.get(key))).get(0));
+    } catch (EntityNotFoundException e) {
+      return Optional.empty();
+    }
   }
 
-  /** Returns a list of the location entites on the database. */
+  /** 
+   * Returns a list of the locations of a meeting.
+   * 
+   * @param meetingEventKeyString the key string of the meeting's MeetingEvent entity.
+   */
   @Override
-  public List<Location> getAll() {
+  public List<Location> getAll(String meetingEventKeyString) {
+    // Locations are children of their meeting, so only the meeting's own locations are read.
+    Query query = new Query("Location").setAncestor(KeyFactory.stringToKey(meetingEventKeyString));
+    return toLocations(ds.prepare(query).asList(FetchOptions.Builder.withDefaults()));
+  }
+
+  /** 
+   * Returns the locations of a meeting in a bounding box, e.g. the part of the map shown.
+   * Only the locations in the geohash cells covering the box are read, and those outside
+   * the box itself are then left out.
+   * 
+   * @param meetingEventKeyString the key string of the meeting's MeetingEvent entity.
+   * @param west the west edge of the box. If it is greater than east, the box crosses
+   * the antimeridian.
+   */
+  @Override
+  public List<Location> getWithin(String meetingEventKeyString, double south, double west,
+      double north, double east) {
+    List<Entity> results = new ArrayList<>();
+    for (Entity entity : getInCells(meetingEventKeyString,
+        GeoHash.cover(south, west, north, east))) {
+      if (GeoHash.contains(south, west, north, east,
+          (double) entity.getProperty("lat"), (double) entity.getProperty("lng"))) {
+        results.add(entity);
+      }
+    }
+    return toLocations(results);
+  }
+
+  /** 
+   * Returns the locations of a meeting within a distance of a point. Only the locations
+   * in the geohash cells covering the circle's bounding box are read, and their
+   * distance from the point is then checked.
+   * 
+   * @param meetingEventKeyString the key string of the meeting's MeetingEvent entity.
+   */
+  @Override
+  public List<Location> getNear(String meetingEventKeyString, double lat, double lng,
+      double radiusMeters) {
+    double[] box = GeoHash.boundingBox(lat, lng, radiusMeters);
+    List<Entity> results = new ArrayList<>();
+    for (Entity entity : getInCells(meetingEventKeyString,
+        GeoHash.cover(box[0], box[1], box[2], box[3]))) {
+      double distance = GeoHash.distanceMeters(lat, lng,
+          (double) entity.getProperty("lat"), (double) entity.getProperty("lng"));
+      if (distance <= radiusMeters) {
+        results.add(entity);
+      }
+    }
+    return toLocations(results);
+  }
+
+  /** 
+   * Returns the location entities of a meeting in some geohash cells, or all of them if
+   * cells is null. Locations saved before their geohashes were stored are only found
+   * when cells is null.
+   */
+  private List<Entity> getInCells(String meetingEventKeyString, List<String> cells) {
+    Query query = new Query("Location").setAncestor(KeyFactory.stringToKey(meetingEventKeyString));
+    if (cells != null) {
+      query.setFilter(new FilterPredicate(GEOHASHES_PROPERTY, FilterOperator.IN, cells));
+    }
+    return ds.prepare(query).asList(FetchOptions.Builder.withDefaults());
+  }
 
+  /** Returns the locations of some location entities, with their vote counts. */
+  private List<Location> toLocations(List<Entity> results) {
     List<Location> locations = new ArrayList<>();
-    
-    Query query = new Query("Location");
-    PreparedQuery results = ds.prepare(query);
+    Map<String, Long> votes = getVoteCounts(results);
 
-    for (Entity entity : results.asIterable()) {
+    for (Entity entity : results) {
       double lat = (double) entity.getProperty("lat");
       double lng = (double) entity.getProperty("lng");
       String title = (String) entity.getProperty("title");
       String note = (String) entity.getProperty("note");
-      int voteCount = ((Long) entity.getProperty("voteCount")).intValue();
       String keyString = KeyFactory.keyToString(entity.getKey()); 
+      int voteCount = votes.get(keyString).intValue();
       // TODO: Handle situation when one of these properties is missing
 
       Location location = new Location(title, lat, lng, note, voteCount, keyString);
@@ -58,8 +177,66 @@ public class LocationDao implements Dao<Location> {
   }
 
   /** 
-   * Stores a new location on datastore.
+   * Returns a list of the locations of a meeting with the highest vote count.
+   * There can be multiple locations in the meeting with the highest vote count.
+   * All of these would be returned in the list. They are read from the meeting's
+   * LocationLeaders entity, which is built if the meeting does not have one yet.
    * 
+   * @param meetingEventKeyString the key string of the meeting's MeetingEvent entity.
+   */
+  @Override
+  public List<Location> getPopular(String meetingEventKeyString) {
+    Key meetingEventKey = KeyFactory.stringToKey(meetingEventKeyString);
+    Entity leaders;
+    try {
+      leaders = ds.get(leadersKey(meetingEventKey));
+    } catch (EntityNotFoundException e) {
+      leaders = rebuildPopular(meetingEventKeyString);
+    }
+
+    List<Location> popularLocations = new ArrayList<>();
+    int maxVoteCount = ((Long) leaders.getProperty("maxVoteCount")).intValue();
+    for (EmbeddedEntity leader : getLeaderList(leaders)) {
+      popularLocations.add(new Location(
+          (String) leader.getProperty("title"),
+          (double) leader.getProperty("lat"),
+          (double) leader.getProperty("lng"),
+          (String) leader.getProperty("note"),
+          maxVoteCount,
+          (String) leader.getProperty("keyString")));
+    }
+    return popularLocations;
+  }
+
+  /** 
+   * Recomputes the LocationLeaders entity of a meeting from its locations and their votes.
+   * 
+   * @param meetingEventKeyString the key string of the meeting's MeetingEvent entity.
+   * @return the new LocationLeaders entity.
+   */
+  public Entity rebuildPopular(String meetingEventKeyString) {
+    Key meetingEventKey = KeyFactory.stringToKey(meetingEventKeyString);
+    Transaction txn = ds.beginTransaction();
+    try {
+      Entity leaders = buildLeaders(txn, meetingEventKey, null);
+      ds.put(txn, leaders);
+      txn.commit();
+      return leaders;
+    } finally {
+      if (txn.isActive()) {
+        txn.rollback();
+      }
+    }
+  }
+
+  /** 
+   * Stores a new location on datastore, as a child of its meeting's MeetingEvent entity.
+   * The checks and the write are done in one transaction, so that two locations 
+   * added at the same time cannot both pass the checks.
+   * 
+   * The meeting's LocationLeaders entity is updated in the same transaction.
+   * 
+   * @param meetingEventKeyString the key string of the meeting's MeetingEvent entity.
    * @param location the new location to save to the database.
    * @return the key string of the new entity.
    * @throws MaxEntitiesReachException if the maximum number of entities for a 
@@ -68,45 +245,258 @@ public class LocationDao implements Dao<Location> {
    * meeting with the same title.
    */
   @Override
-  public String save(Location location) throws MaxEntitiesReachedException,
-      SimilarEntityExistsException {
-    if (!validTitle(location.getTitle())) {
-      throw new SimilarEntityExistsException();
-    }
+  public String save(String meetingEventKeyString, Location location) 
+      throws MaxEntitiesReachedException, SimilarEntityExistsException {
+    Key meetingEventKey = KeyFactory.stringToKey(meetingEventKeyString);
+    Transaction txn = ds.beginTransaction();
+    try {
+      if (!validTitle(txn, meetingEventKey, location.getTitle())) {
+        throw new SimilarEntityExistsException();
+      }
 
-    if (maxLocationsReached()) {
-      throw new MaxEntitiesReachedException();
-    }
+      if (maxLocationsReached(txn, meetingEventKey)) {
+        throw new MaxEntitiesReachedException();
+      }
 
-    // If we reach here, then the new location is valid and we can add it to the database.
-    Entity entity = new Entity("Location");
-    entity.setProperty("title", location.getTitle());
-    entity.setProperty("lat", location.getLat());
-    entity.setProperty("lng", location.getLng());
-    entity.setProperty("note", location.getNote());
-    entity.setProperty("voteCount", location.getVoteCount());
-    ds.put(entity);
+      // If we reach here, then the new location is valid and we can add it to the database.
+      Entity leaders = getLeaders(txn, meetingEventKey);
+      Entity entity = new Entity("Location", meetingEventKey);
+      entity.setProperty("title", location.getTitle());
+      entity.setProperty("lat", location.getLat());
+      entity.setProperty("lng", location.getLng());
+      entity.setProperty("note", location.getNote());
+      entity.setProperty("voteCount", location.getVoteCount());
+      entity.setProperty(
+          GEOHASHES_PROPERTY, GeoHash.prefixes(location.getLat(), location.getLng()));
+      ds.put(txn, entity);
 
-    return KeyFactory.keyToString(entity.getKey());
+      setLeader(leaders, entity, location.getVoteCount());
+      ds.put(txn, leaders);
+      Collection<Entity> tiles =
+          clusters.add(txn, meetingEventKey, entity, location.getVoteCount());
+      ds.put(txn, tiles);
+      txn.commit();
+      cacheTiles(tiles);
+
+      return KeyFactory.keyToString(entity.getKey());
+    } finally {
+      if (txn.isActive()) {
+        txn.rollback();
+      }
+    }
   }
 
   /** 
    * Increments the vote count of the location entity with the give keyString.
+   * The vote is added to a sharded counter rather than to the entity, in a transaction
+   * of its own. The meeting's LocationLeaders entity and clusters are then updated with
+   * the location's new vote count, if it leads them.
    * 
    * @param keyString the key string of the entity to update.
+   * @throws EntityNotFoundException if there is no location with that key.
+   * @throws ConcurrentModificationException if the counter or the leaders were updated
+   * concurrently on every retry.
    */
   @Override 
   public void updateVote(String keyString) throws EntityNotFoundException {
     Key entityKey = KeyFactory.stringToKey(keyString);
-    Entity entity = ds.get(entityKey);
-    int currentCount = ((Long) entity.getProperty("voteCount")).intValue();
-    entity.setProperty("voteCount", currentCount + 1);
-    ds.put(entity);
+    Key meetingEventKey = entityKey.getParent();
+    Entity location = ds.get(entityKey);
+    // The counter adds shards only when its own shards contend, not when the meeting's
+    // entity group does.
+    VOTE_COUNTER.increment(keyString, null);
+    if (meetingEventKey == null) {
+      return;
+    }
+    long voteCount = getVoteCounts(Collections.singletonList(location)).get(keyString);
+    updateLeaders(meetingEventKey, location, voteCount);
+    updateClusters(meetingEventKey, location, voteCount);
+  }
+
+  /** 
+   * Adds a location to the leaders of its meeting if its new vote count reaches the
+   * highest one. Most votes do not, so the leaders are checked before a transaction.
+   */
+  private void updateLeaders(Key meetingEventKey, Entity location, long voteCount) {
+    try {
+      if (!setLeader(ds.get(leadersKey(meetingEventKey)), location, voteCount)) {
+        return;
+      }
+    } catch (EntityNotFoundException e) {
+      // The leaders are built in the transaction.
+    }
+    for (int attempt = 0; ; attempt++) {
+      Transaction txn = ds.beginTransaction();
+      try {
+        try {
+          Entity leaders = ds.get(txn, leadersKey(meetingEventKey));
+          if (setLeader(leaders, location, voteCount)) {
+            ds.put(txn, leaders);
+          }
+        } catch (EntityNotFoundException e) {
+          ds.put(txn, buildLeaders(txn, meetingEventKey, null));
+        }
+        txn.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt >= MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if (txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+  }
+
+  /** 
+   * Makes a location the top of the clusters it now has the most votes in. The clusters
+   * are a view of the votes, so this is done once the vote is counted, and only the
+   * tiles whose top changes are read and written in a transaction. If they keep being
+   * updated concurrently they are left as they are, until a later vote or rebuildClusters.
+   */
+  private void updateClusters(Key meetingEventKey, Entity location, long voteCount) {
+    List<Key> tileKeys = clusters.getVotedTileKeys(meetingEventKey, location, voteCount);
+    if (tileKeys.isEmpty()) {
+      return;
+    }
+    for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+      Transaction txn = ds.beginTransaction();
+      try {
+        Collection<Entity> tiles =
+            clusters.vote(txn, meetingEventKey, location, voteCount, tileKeys);
+        if (!tiles.isEmpty()) {
+          ds.put(txn, tiles);
+        }
+        txn.commit();
+        cacheTiles(tiles);
+        return;
+      } catch (ConcurrentModificationException e) {
+        // Retried, with the tiles read again.
+      } finally {
+        if (txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+  }
+
+  /** 
+   * Returns the clusters of a meeting's locations in a bounding box, at a zoom level of
+   * the map. The tiles are read through LocationClusters.TILE_CACHE, and are built first
+   * if the meeting has locations saved before its clusters were kept.
+   * 
+   * @param meetingEventKeyString the key string of the meeting's MeetingEvent entity.
+   * @param west the west edge of the box. If it is greater than east, the box crosses
+   * the antimeridian.
+   * @throws IllegalArgumentException if the zoom level has no clusters, or the box
+   * covers more than LocationClusters.MAX_TILES tiles.
+   */
+  public List<LocationCluster> getClusters(String meetingEventKeyString, int zoom,
+      double south, double west, double north, double east) {
+    Key meetingEventKey = KeyFactory.stringToKey(meetingEventKeyString);
+    List<Key> tileKeys =
+        LocationClusters.tileKeys(meetingEventKey, zoom, south, west, north, east);
+    try {
+      LocationClusters.TILE_CACHE.get(LocationClusters.rootKey(meetingEventKey));
+    } catch (EntityNotFoundException e) {
+      Query query = new Query("Location").setAncestor(meetingEventKey).setKeysOnly();
+      if (ds.prepare(query).asList(FetchOptions.Builder.withLimit(1)).isEmpty()) {
+        return new ArrayList<>();
+      }
+      try {
+        rebuildClusters(meetingEventKeyString);
+      } catch (ConcurrentModificationException concurrentBuild) {
+        // Another request built the clusters at the same time.
+      }
+    }
+
+    List<LocationCluster> locationClusters = new ArrayList<>();
+    for (Key tileKey : tileKeys) {
+      try {
+        locationClusters.addAll(
+            LocationClusters.toClusters(LocationClusters.TILE_CACHE.get(tileKey)));
+      } catch (EntityNotFoundException e) {
+        // None of the meeting's locations are in the tile.
+      }
+    }
+    return locationClusters;
+  }
+
+  /** 
+   * Rebuilds the LocationTile entities of a meeting from its locations and their votes.
+   * 
+   * @param meetingEventKeyString the key string of the meeting's MeetingEvent entity.
+   */
+  public void rebuildClusters(String meetingEventKeyString) {
+    Key meetingEventKey = KeyFactory.stringToKey(meetingEventKeyString);
+    Transaction txn = ds.beginTransaction();
+    try {
+      Collection<Entity> tiles = clusters.build(txn, meetingEventKey, null).values();
+      ds.put(txn, tiles);
+      txn.commit();
+      cacheTiles(tiles);
+    } finally {
+      if (txn.isActive()) {
+        txn.rollback();
+      }
+    }
   }
 
+  /** 
+   * Deletes the location with the given key string, if there is one. The meeting's
+   * LocationLeaders entity and the tiles of its clusters are updated in the same
+   * transaction. The votes counted in VOTE_COUNTER are left, as the key of a deleted
+   * location is not reused.
+   * 
+   * @param keyString the key string of the location's entity.
+   */
   @Override
   public void delete(String keyString) {
-    //TODO:
+    Key entityKey = KeyFactory.stringToKey(keyString);
+    if (!entityKey.getKind().equals("Location")) {
+      return;
+    }
+    Key meetingEventKey = entityKey.getParent();
+    Transaction txn = ds.beginTransaction();
+    try {
+      Entity location;
+      try {
+        location = ds.get(txn, entityKey);
+      } catch (EntityNotFoundException e) {
+        return;
+      }
+      ds.delete(txn, entityKey);
+
+      List<Entity> changedTiles = new ArrayList<>();
+      List<Key> emptyTiles = new ArrayList<>();
+      if (meetingEventKey != null) {
+        Entity leaders = getLeaders(txn, meetingEventKey);
+        if (removeLeader(leaders, location)) {
+          leaders = buildLeaders(txn, meetingEventKey, entityKey);
+        }
+        ds.put(txn, leaders);
+        for (Entity tile : clusters.remove(txn, meetingEventKey, location)) {
+          if (LocationClusters.isEmpty(tile)) {
+            emptyTiles.add(tile.getKey());
+          } else {
+            changedTiles.add(tile);
+          }
+        }
+        ds.put(txn, changedTiles);
+        ds.delete(txn, emptyTiles);
+      }
+      txn.commit();
+      cacheTiles(changedTiles);
+      for (Key tileKey : emptyTiles) {
+        LocationClusters.TILE_CACHE.invalidate(tileKey);
+      }
+    } finally {
+      if (txn.isActive()) {
+        txn.rollback();
+      }
+    }
   }
 
  /** 
@@ -114,23 +504,145 @@ public class LocationDao implements Dao<Location> {
    * meeting with the same title.
    * 
    * @return true if there is no other location with the same title.
-   * TODO: Update to use MeetingID.
    */
-  private boolean validTitle(String targetTitle) {
-    Query q = new Query("Location").setFilter(new FilterPredicate("title", FilterOperator.EQUAL,
-        targetTitle));
-    int numOfSameEntities = ds.prepare(q).countEntities();
-    return (numOfSameEntities == 0);
+  private boolean validTitle(Transaction txn, Key meetingEventKey, String targetTitle) {
+    Query q = new Query("Location")
+        .setAncestor(meetingEventKey)
+        .setFilter(new FilterPredicate("title", FilterOperator.EQUAL, targetTitle))
+        .setKeysOnly();
+    return ds.prepare(txn, q).asList(FetchOptions.Builder.withLimit(1)).isEmpty();
+  }
+
+  /** 
+   * Returns the total vote count of each location, by key string. The count stored on
+   * the entity holds the votes from before they were sharded, the rest are in VOTE_COUNTER.
+   * The counts of several locations are read together.
+   */
+  private Map<String, Long> getVoteCounts(List<Entity> locations) {
+    List<String> keyStrings = new ArrayList<>();
+    for (Entity location : locations) {
+      keyStrings.add(KeyFactory.keyToString(location.getKey()));
+    }
+    Map<String, Long> votes = VOTE_COUNTER.getCounts(keyStrings);
+    for (Entity location : locations) {
+      String keyString = KeyFactory.keyToString(location.getKey());
+      votes.put(keyString, (Long) location.getProperty("voteCount") + votes.get(keyString));
+    }
+    return votes;
+  }
+
+  /** Caches the tiles written by a transaction that was committed. */
+  private static void cacheTiles(Collection<Entity> tiles) {
+    for (Entity tile : tiles) {
+      LocationClusters.TILE_CACHE.put(tile);
+    }
+  }
+
+  private static Key leadersKey(Key meetingEventKey) {
+    return KeyFactory.createKey(meetingEventKey, LEADERS_KIND, LEADERS_NAME);
+  }
+
+  /** Returns the LocationLeaders entity of the meeting, building it if there is none yet. */
+  private Entity getLeaders(Transaction txn, Key meetingEventKey) {
+    try {
+      return ds.get(txn, leadersKey(meetingEventKey));
+    } catch (EntityNotFoundException e) {
+      return buildLeaders(txn, meetingEventKey, null);
+    }
+  }
+
+  /** 
+   * Computes the LocationLeaders entity of the meeting from its locations and their
+   * votes, without saving it.
+   * 
+   * @param except the key of a location to leave out, e.g. one being deleted, or null.
+   */
+  private Entity buildLeaders(Transaction txn, Key meetingEventKey, Key except) {
+    Entity leaders = new Entity(leadersKey(meetingEventKey));
+    leaders.setUnindexedProperty("maxVoteCount", 0L);
+
+    Query query = new Query("Location").setAncestor(meetingEventKey);
+    List<Entity> locations = new ArrayList<>();
+    for (Entity location : ds.prepare(txn, query).asList(FetchOptions.Builder.withDefaults())) {
+      if (!location.getKey().equals(except)) {
+        locations.add(location);
+      }
+    }
+    Map<String, Long> votes = getVoteCounts(locations);
+    for (Entity location : locations) {
+      setLeader(leaders, location, votes.get(KeyFactory.keyToString(location.getKey())));
+    }
+    return leaders;
+  }
+
+  /** 
+   * Records the vote count of a location in the LocationLeaders entity. Vote counts
+   * only go up, so the location either joins the leaders, replaces them or is left out.
+   * 
+   * @return true if the LocationLeaders entity was changed.
+   */
+  private static boolean setLeader(Entity leaders, Entity location, long voteCount) {
+    long maxVoteCount = (Long) leaders.getProperty("maxVoteCount");
+    if (voteCount < maxVoteCount) {
+      return false;
+    }
+    String keyString = KeyFactory.keyToString(location.getKey());
+    List<EmbeddedEntity> leaderList = getLeaderList(leaders);
+    if (voteCount > maxVoteCount) {
+      leaderList.clear();
+      maxVoteCount = voteCount;
+    } else if (leaderList.stream().anyMatch(
+        leader -> keyString.equals(leader.getProperty("keyString")))) {
+      return false; // The location already leads with the same count.
+    }
+    leaderList.add(toLeader(location));
+    leaders.setUnindexedProperty("maxVoteCount", maxVoteCount);
+    leaders.setUnindexedProperty("leaders", leaderList);
+    return true;
+  }
+
+  /** 
+   * Removes a location from the leaders of a LocationLeaders entity.
+   * 
+   * @return true if it was the only leader, so the leaders have to be built again from
+   * the remaining locations.
+   */
+  private static boolean removeLeader(Entity leaders, Entity location) {
+    String keyString = KeyFactory.keyToString(location.getKey());
+    List<EmbeddedEntity> leaderList = getLeaderList(leaders);
+    if (!leaderList.removeIf(leader -> keyString.equals(leader.getProperty("keyString")))) {
+      return false;
+    }
+    leaders.setUnindexedProperty("leaders", leaderList);
+    return leaderList.isEmpty();
+  }
+
+  /** Returns a copy of the list of leading locations. */
+  private static List<EmbeddedEntity> getLeaderList(Entity leaders) {
+    List<EmbeddedEntity> leaderList = (List<EmbeddedEntity>) leaders.getProperty("leaders");
+    // An empty list is read back from datastore as null.
+    return leaderList == null ? new ArrayList<>() : new ArrayList<>(leaderList);
+  }
+
+  /** Returns the copy of a location kept in the LocationLeaders entity. */
+  private static EmbeddedEntity toLeader(Entity location) {
+    EmbeddedEntity leader = new EmbeddedEntity();
+    leader.setUnindexedProperty("title", location.getProperty("title"));
+    leader.setUnindexedProperty("lat", location.getProperty("lat"));
+    leader.setUnindexedProperty("lng", location.getProperty("lng"));
+    leader.setUnindexedProperty("note", location.getProperty("note"));
+    leader.setUnindexedProperty("keyString", KeyFactory.keyToString(location.getKey()));
+    return leader;
   }
 
   /** 
    * Returns true if there are already five locations entities stored on
    * the database for that meeting.
-   * TODO: Update to use MeetingID.
    */
-  private boolean maxLocationsReached() {
-    Query q = new Query("Location");
-    int numOfEntities = ds.prepare(q).countEntities();
+  private boolean maxLocationsReached(Transaction txn, Key meetingEventKey) {
+    Query q = new Query("Location").setAncestor(meetingEventKey).setKeysOnly();
+    int numOfEntities = 
+        ds.prepare(txn, q).asList(FetchOptions.Builder.withLimit(MAX_LOCATIONS)).size();
     return (numOfEntities >= MAX_LOCATIONS);
   }
 }
@@ -0,0 +1,14 @@
+package main.java.com.google.sps.dao;
+
+import java.util.List;
+import main.java.com.google.sps.data.Location;
+
+/** The reads of a meeting's locations beyond those of a Dao, by area and by votes. */
+public interface LocationQueries extends Dao<Location> {
+  List<Location> getWithin(String parentKeyString, double south, double west, double north,
+      double east);
+
+  List<Location> getNear(String parentKeyString, double lat, double lng, double radiusMeters);
+
+  List<Location> getPopular(String parentKeyString);
+}
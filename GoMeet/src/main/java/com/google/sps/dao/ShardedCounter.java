@@ -0,0 +1,282 @@
+package main.java.com.google.sps.dao;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.sps.data.InstrumentedDatastoreService;
+import com.google.sps.data.LocalEntityCache;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A counter that can be incremented by many requests at once, e.g. the votes of a
+ * location or meeting time. Rather than one entity, the count is spread over several
+ * shard entities, each in its own entity group, and an increment only updates one of
+ * them. Reading the count sums the shards, and the total is cached in memcache.
+ * The cached total is dropped once an increment is committed, and is not cached again
+ * for a moment, so that a read that summed the shards before the commit cannot cache
+ * the old total.
+ * The number of shards of a counter grows when increments contend with each other.
+ * Increments read it from a cache in the memory of this instance, as it only ever grows:
+ * a shard picked from an old number is still one that reads sum.
+ */
+public class ShardedCounter {
+  static final String SHARD_KIND = "CounterShard";
+  static final String CONFIG_KIND = "CounterConfig";
+  static final String COUNT_PROPERTY = "count";
+  static final String SHARDS_PROPERTY = "shards";
+
+  // Number of shards a new counter starts with, and the most it can grow to.
+  static final int INITIAL_SHARDS = 4;
+  static final int MAX_SHARDS = 128;
+  // Number of times an increment is retried when its shard was updated concurrently.
+  private static final int MAX_RETRIES = 5;
+  // How long a cached total is kept. It bounds how stale a total can be, if a
+  // read races with an increment.
+  private static final int CACHE_EXPIRATION_SECONDS = 60;
+  // How long a total is not cached after it is dropped. It must be longer than a read
+  // takes to sum the shards, so that the read cannot cache a total from before the drop.
+  private static final long CACHE_HOLD_OFF_MILLIS = 2000;
+  private static final String CACHE_PREFIX = "counter:";
+
+  private final DatastoreService ds;
+  private final MemcacheService cache;
+  // The CounterConfig entities read by increments. Reads of the count do not use it, as
+  // they have to sum every shard the counter has, even if it grew on another instance.
+  private final LocalEntityCache configCache;
+  private final Random random = new Random();
+
+  public ShardedCounter() {
+    this.ds = InstrumentedDatastoreService.getDatastoreService();
+    this.cache = MemcacheServiceFactory.getMemcacheService();
+    this.configCache = new LocalEntityCache(LocalEntityCache.DEFAULT_MAX_ENTITIES,
+        LocalEntityCache.DEFAULT_TTL_MS, LocalEntityCache.DEFAULT_TTL_MS,
+        System::currentTimeMillis, key -> ds.get(null, key));
+  }
+
+  /**
+   * Adds one to the counter, in a transaction of its own. If the shard was updated
+   * concurrently, the increment is retried on another shard and the counter is
+   * given more shards.
+   *
+   * @param name the name of the counter, e.g. the key string of the entity counted.
+   * @param hint used to pick the shard, e.g. the voter. If null, a random shard is used.
+   * @throws ConcurrentModificationException if the increment failed on every retry.
+   */
+  public void increment(String name, String hint) {
+    for (int attempt = 0; ; attempt++) {
+      Transaction txn = ds.beginTransaction();
+      try {
+        // Retries go to a random shard, since the hinted one is busy.
+        incrementShard(txn, name, attempt == 0 ? hint : null);
+        txn.commit();
+        invalidate(name);
+        return;
+      } catch (ConcurrentModificationException e) {
+        addShards(name);
+        if (attempt >= MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if (txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds one to the counter as part of the caller's transaction, which must allow
+   * cross-group writes if it updates other entity groups. The caller commits the
+   * transaction, should call invalidate() once it has committed, and should call
+   * addShards() if it fails from contention.
+   *
+   * @param txn the transaction to increment the counter in.
+   * @param name the name of the counter, e.g. the key string of the entity counted.
+   * @param hint used to pick the shard, e.g. the voter. If null, a random shard is used.
+   */
+  public void increment(Transaction txn, String name, String hint) {
+    incrementShard(txn, name, hint);
+  }
+
+  /**
+   * Drops the cached total of the counter, so that the next read sums the shards.
+   * Called once a transaction that incremented the counter has committed: dropping it
+   * before the commit would let a read cache the total from before the increment.
+   *
+   * @param name the name of the counter.
+   */
+  public void invalidate(String name) {
+    // Totals added during the hold-off are rejected, as they may predate the commit.
+    cache.delete(cacheKey(name), CACHE_HOLD_OFF_MILLIS);
+  }
+
+  /**
+   * Returns the value of the counter.
+   *
+   * @param name the name of the counter.
+   */
+  public long getCount(String name) {
+    List<String> names = new ArrayList<>();
+    names.add(name);
+    return getCounts(names).get(name);
+  }
+
+  /**
+   * Returns the values of several counters, reading the shards of the counters
+   * that are not cached in a single batch.
+   *
+   * @param names the names of the counters.
+   * @return the map of counter name to value.
+   */
+  public Map<String, Long> getCounts(List<String> names) {
+    Map<String, Long> counts = new HashMap<>();
+    List<String> cacheKeys = new ArrayList<>();
+    for (String name : names) {
+      cacheKeys.add(cacheKey(name));
+    }
+    Map<String, Object> cached = cache.getAll(cacheKeys);
+
+    List<String> missing = new ArrayList<>();
+    for (String name : names) {
+      Object value = cached.get(cacheKey(name));
+      if (value instanceof Long) {
+        counts.put(name, (Long) value);
+      } else {
+        missing.add(name);
+      }
+    }
+    if (missing.isEmpty()) {
+      return counts;
+    }
+
+    Map<String, Integer> shardCounts = getShardCounts(missing);
+    List<Key> shardKeys = new ArrayList<>();
+    for (String name : missing) {
+      for (int i = 0; i < shardCounts.get(name); i++) {
+        shardKeys.add(shardKey(name, i));
+      }
+    }
+    // Read outside of any transaction the caller has open.
+    Map<Key, Entity> shards = ds.get(null, shardKeys);
+
+    Map<String, Object> totals = new HashMap<>();
+    for (String name : missing) {
+      long total = 0;
+      for (int i = 0; i < shardCounts.get(name); i++) {
+        Entity shard = shards.get(shardKey(name, i));
+        if (shard != null) {
+          total += (Long) shard.getProperty(COUNT_PROPERTY);
+        }
+      }
+      counts.put(name, total);
+      totals.put(cacheKey(name), total);
+    }
+    // A total dropped by an increment since the shards were read is not cached.
+    cache.putAll(totals, Expiration.byDeltaSeconds(CACHE_EXPIRATION_SECONDS),
+        MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+    return counts;
+  }
+
+  /**
+   * Doubles the number of shards of the counter, up to MAX_SHARDS. Called when
+   * increments of the counter contend with each other.
+   *
+   * @param name the name of the counter.
+   */
+  public void addShards(String name) {
+    Key configKey = KeyFactory.createKey(CONFIG_KIND, name);
+    Transaction txn = ds.beginTransaction();
+    try {
+      Entity config;
+      try {
+        config = ds.get(txn, configKey);
+      } catch (EntityNotFoundException e) {
+        config = new Entity(configKey);
+        config.setProperty(SHARDS_PROPERTY, (long) INITIAL_SHARDS);
+      }
+      long shards = (Long) config.getProperty(SHARDS_PROPERTY);
+      if (shards < MAX_SHARDS) {
+        config.setProperty(SHARDS_PROPERTY, Math.min(shards * 2, MAX_SHARDS));
+        ds.put(txn, config);
+        txn.commit();
+      }
+      // The next increments use the shards just added, or those another instance added.
+      configCache.put(config);
+    } catch (ConcurrentModificationException e) {
+      // Another request grew the counter at the same time, so it is read again.
+      configCache.invalidate(configKey);
+    } finally {
+      if (txn.isActive()) {
+        txn.rollback();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of shards of the counter to increment, from the cache. It may be
+   * lower than the number of shards if another instance added some since it was read.
+   */
+  int getShardCount(String name) {
+    try {
+      return ((Long) configCache.get(KeyFactory.createKey(CONFIG_KIND, name))
+          .getProperty(SHARDS_PROPERTY)).intValue();
+    } catch (EntityNotFoundException e) {
+      return INITIAL_SHARDS;
+    }
+  }
+
+  /** Adds one to a shard of the counter in the transaction. */
+  private void incrementShard(Transaction txn, String name, String hint) {
+    int shards = getShardCount(name);
+    int index = hint == null ? random.nextInt(shards) : Math.floorMod(hint.hashCode(), shards);
+    Key key = shardKey(name, index);
+
+    Entity shard;
+    try {
+      shard = ds.get(txn, key);
+    } catch (EntityNotFoundException e) {
+      shard = new Entity(key);
+      shard.setProperty(COUNT_PROPERTY, 0L);
+    }
+    shard.setProperty(COUNT_PROPERTY, (Long) shard.getProperty(COUNT_PROPERTY) + 1);
+    ds.put(txn, shard);
+  }
+
+  /** Returns the number of shards of each counter, reading their configs in one batch. */
+  private Map<String, Integer> getShardCounts(List<String> names) {
+    List<Key> configKeys = new ArrayList<>();
+    for (String name : names) {
+      configKeys.add(KeyFactory.createKey(CONFIG_KIND, name));
+    }
+    // Read outside of any transaction the caller has open, so that the config is not part of it.
+    Map<Key, Entity> configs = ds.get(null, configKeys);
+
+    Map<String, Integer> shardCounts = new HashMap<>();
+    for (String name : names) {
+      Entity config = configs.get(KeyFactory.createKey(CONFIG_KIND, name));
+      shardCounts.put(name,
+          config == null ? INITIAL_SHARDS : ((Long) config.getProperty(SHARDS_PROPERTY)).intValue());
+    }
+    return shardCounts;
+  }
+
+  /** Returns the key of a shard. Shards are root entities, so they don't share a group. */
+  private static Key shardKey(String name, int index) {
+    return KeyFactory.createKey(SHARD_KIND, name + "#" + index);
+  }
+
+  private static String cacheKey(String name) {
+    return CACHE_PREFIX + name;
+  }
+}
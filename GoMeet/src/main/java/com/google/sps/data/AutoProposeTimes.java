@@ -12,29 +12,81 @@ import com.google.api.services.calendar.model.FreeBusyRequestItem;
 import com.google.api.services.calendar.model.FreeBusyResponse;
 import com.google.api.services.calendar.model.TimePeriod;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.security.GeneralSecurityException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AutoProposeTimes {
   private final String RFC3339_FORMAT = "yyyy-MM-dd'T'HH:mm:ssXXX";
-  private static String TIMEZONE = "AET"; // Australian Eastern Time
+
+  // The maximum number of calendars the Freebusy API accepts in a single query.
+  public static final int MAX_ITEMS_PER_REQUEST = 50;
+  // The maximum number of Freebusy queries in flight at once, shared by all proposers.
+  private static final int MAX_CONCURRENT_REQUESTS = 4;
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+  private static final ExecutorService FREEBUSY_EXECUTOR = 
+      Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS, runnable -> {
+        Thread thread = new Thread(runnable, "freebusy-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  // The maximum number of days of a proposal by day that are computed at once. Days
+  // run on their own executor, as each day may itself query FREEBUSY_EXECUTOR.
+  private static final int MAX_CONCURRENT_DAYS = 4;
+  private static final ExecutorService DAY_EXECUTOR = 
+      Executors.newFixedThreadPool(MAX_CONCURRENT_DAYS, runnable -> {
+        Thread thread = new Thread(runnable, "propose-day-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /** Receives the free periods of each day of proposeTimesByDay(), in day order. */
+  public interface DayListener {
+    /**
+     * Called once the free periods of a day are known, and those of every day before it.
+     * @param dayStart The start of the day, or of the period on its first day.
+     * @param dayEnd The end of the day, or of the period on its last day.
+     * @param freePeriods The free periods of the day, in chronological order.
+     * @throws IOException to stop the proposal, e.g. if the client has gone away.
+     */
+    void onDay(Date dayStart, Date dayEnd, List<TimePeriod> freePeriods) throws IOException;
+  }
 
   Calendar service;
   String apiKey; 
+  String timezone; // The timezone that times are read and returned in.
   ArrayList<String> calendarId; // The List of Calendar IDs to generate meeting times for
   DateTime startTime; // The start time of the period to look for possible meeting times
   DateTime endTime; // The end time of the period to look for possible meeting times
   int meetingDuration; // The meetingDuration in milliseconds.
+  int topK; // The number of ranked meeting starts to propose, or 0 for each free period.
+  long stepMs; // The time between the ranked meeting starts considered, in milliseconds.
+  boolean batchRequests = false; // Whether to query many calendars per Freebusy request.
+  FreeBusyCache cache = null; // The cache of busy periods, if any.
+  // The error reasons reported by the API for each calendar that could not be read.
+  Map<String, List<String>> calendarErrors = 
+      Collections.synchronizedMap(new LinkedHashMap<String, List<String>>());
 
    /**
-    * Constructor.
+    * Constructor, for times in the default timezone, SchedulingConfig.DEFAULT_TIMEZONE.
     * NOTE: Calendar service is dependency injected to allow for easier testing.
     * @param service The com.google.api.services.calendar.Calendar service to use to 
     * call APIs from.
@@ -47,24 +99,29 @@ public class AutoProposeTimes {
     */
   public AutoProposeTimes(Calendar service, String apiKey, ArrayList<String> calId, 
       Date startTime, Date endTime, int duration) {
-    this.service = service;
-    this.apiKey = apiKey;
-    this.calendarId = calId;
-    this.startTime = new DateTime(startTime, TimeZone.getTimeZone(TIMEZONE));
-    this.endTime = new DateTime(endTime, TimeZone.getTimeZone(TIMEZONE));
-    this.meetingDuration = duration;
+    this(service, calId, new SchedulingConfig(SchedulingConfig.DEFAULT_TIMEZONE, apiKey)
+        .withWindow(startTime, endTime, duration));
   }
 
   /**
-   * Used for sorting TimePeriods from earliest start time
-   * to latest start time.
+   * Constructor.
+   * @param service The com.google.api.services.calendar.Calendar service to use to 
+   * call APIs from.
+   * @param calId This list of calendar IDs of calendars to automatically generate
+   * meeting times from.
+   * @param config The API key, the timezone the window is in and all auto generated
+   * times will be returned in, and the window and meeting duration to search for.
    */
-  static class TimePeriodComparator implements Comparator<TimePeriod> {
-    public int compare(TimePeriod a, TimePeriod b) { 
-      // Compare the number of milliseconds since the Unix epoch of 
-      // the TimePeriod starts.
-      return (int) (a.getStart().getValue() - b.getStart().getValue()); 
-    } 
+  public AutoProposeTimes(Calendar service, ArrayList<String> calId, SchedulingConfig config) {
+    this.service = service;
+    this.apiKey = config.getApiKey();
+    this.timezone = config.getTimezone();
+    this.calendarId = calId;
+    this.startTime = new DateTime(config.getPeriodStart(), config.getTimeZone());
+    this.endTime = new DateTime(config.getPeriodEnd(), config.getTimeZone());
+    this.meetingDuration = config.getDurationMs();
+    this.topK = config.getTopK();
+    this.stepMs = config.getStepMs();
   }
 
   /**
@@ -75,68 +132,416 @@ public class AutoProposeTimes {
    */
   public List<TimePeriod> proposeTimes() 
       throws IOException, GoogleJsonResponseException, GeneralSecurityException {
-    // Gather freebusy information for each of the calendars.
-    List<TimePeriod> busyPeriods = new ArrayList<TimePeriod>();
     List<TimePeriod> freePeriods = new ArrayList<TimePeriod>();
-    for (int i = 0; i < calendarId.size(); i++) {
-      busyPeriods.addAll(freebusyRequest(calendarId.get(i)));
+    long[] slots = freeSlots();
+    for (int i = 0; i < slots.length; i += 2) {
+      freePeriods.add(newTimePeriod(toDateTime(slots[i]), toDateTime(slots[i + 1])));
     }
+    return freePeriods;
+  }
 
-    // If there are no busyPeriods, add a free time that is the whole period, and return
-    if (busyPeriods.size() == 0) {
-      freePeriods.add(newTimePeriod(this.startTime, this.endTime));
-      return freePeriods;
+  /**
+   * Generates the best 'topK' meeting times, as set in the SchedulingConfig, rather 
+   * than one per free period. Meeting starts are considered every 'stepMs' within each 
+   * free period, and ranked by SlotRanker.
+   * @return A List of TimePeriod of 'meetingDuration', best first. If the config
+   * does not set 'topK', the free periods as returned by proposeTimes().
+   */
+  public List<TimePeriod> proposeRankedTimes() 
+      throws IOException, GoogleJsonResponseException, GeneralSecurityException {
+    if (this.topK <= 0) {
+      return proposeTimes();
     }
+    long windowStart = this.startTime.getValue();
+    long windowEnd = this.endTime.getValue();
+    SlotRanker ranker = new SlotRanker(TimeZone.getTimeZone(this.timezone), this.stepMs);
+    long[] starts = ranker.topK(freeSlots(), windowStart, windowEnd, this.meetingDuration, 
+        this.topK);
 
-    // Sort all the busy periods by start time: O(Nlog(N))
-    Collections.sort(busyPeriods, new TimePeriodComparator());
+    List<TimePeriod> times = new ArrayList<TimePeriod>(starts.length);
+    for (long start : starts) {
+      times.add(newTimePeriod(toDateTime(start), toDateTime(start + this.meetingDuration)));
+    }
+    return times;
+  }
+
+  /**
+   * Generates the free periods of 'meetingDuration' one day at a time, with the days 
+   * split at midnight in the timezone of the algorithm. Up to MAX_CONCURRENT_DAYS days
+   * are fetched and merged at once, and each day is passed to the listener as soon as it
+   * and the days before it are done, so that the first days can be shown while the
+   * later ones are still being fetched.
+   * The times outside the working hours of each guest, in their own timezone, are
+   * treated as busy.
+   * @param workingHours The working hours of the guests.
+   * @param guestTimeZones The timezone of each guest. Guests that are not in it are
+   * in the timezone of the algorithm.
+   * @param listener Receives the free periods of each day, in day order.
+   * @throws IOException if a day could not be fetched, or the listener threw it. The
+   * days after it are cancelled.
+   */
+  public void proposeTimesByDay(WorkingHours workingHours, Map<String, TimeZone> guestTimeZones, 
+      DayListener listener) throws IOException, GeneralSecurityException {
+    this.calendarErrors.clear();
+    TimeZone timeZone = TimeZone.getTimeZone(this.timezone);
+    List<Long> bounds = dayBounds(this.startTime.getValue(), this.endTime.getValue(), timeZone);
 
-    long durationStartOfDay;
-    // Add the free time block from startTime to first busy period, if any.
-    DateTime firstBusyPeriod = busyPeriods.get(0).getStart();
-    durationStartOfDay = firstBusyPeriod.getValue() - this.startTime.getValue();
-    if (durationStartOfDay >= this.meetingDuration) {
-      freePeriods.add(newTimePeriod(this.startTime, firstBusyPeriod));
+    List<Future<List<TimePeriod>>> futures = new ArrayList<Future<List<TimePeriod>>>();
+    for (int i = 0; i + 1 < bounds.size(); i++) {
+      long dayStart = bounds.get(i);
+      long dayEnd = bounds.get(i + 1);
+      futures.add(DAY_EXECUTOR.submit(
+          () -> proposeDay(dayStart, dayEnd, workingHours, guestTimeZones, timeZone)));
     }
 
-    // Generate the free periods: O(N)
-    int i = 0;
-    TimePeriod current = busyPeriods.get(i);
-    DateTime lastBusyPeriodEnd = current.getEnd();
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        List<TimePeriod> freePeriods = await(futures.get(i));
+        listener.onDay(new Date(bounds.get(i)), new Date(bounds.get(i + 1)), freePeriods);
+      }
+    } finally {
+      // Stop the remaining days if one of them failed, or the listener did.
+      for (Future<List<TimePeriod>> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
 
-    while (i < busyPeriods.size()) {
-      int j = i + 1;
-      while (j < busyPeriods.size() 
-          && current.getEnd().getValue() > 
-              busyPeriods.get(j).getStart().getValue()) {
-        // While the end of the current event overlaps over the start of the next event
-        j++;
+  /** Returns the free periods between dayStart and dayEnd, within working hours. */
+  private List<TimePeriod> proposeDay(long dayStart, long dayEnd, WorkingHours workingHours,
+      Map<String, TimeZone> guestTimeZones, TimeZone timeZone) 
+      throws IOException, GeneralSecurityException {
+    IntervalSweep sweep = new IntervalSweep();
+    for (List<TimePeriod> busyPeriods : fetchBusyPeriods(dayStart, dayEnd).values()) {
+      for (TimePeriod busy : busyPeriods) {
+        sweep.add(busy.getStart().getValue(), busy.getEnd().getValue());
       }
-      if (j == busyPeriods.size()) {
+    }
+    for (String calId : new LinkedHashSet<String>(this.calendarId)) {
+      workingHours.addNonWorkingPeriods(sweep, 
+          guestTimeZones.getOrDefault(calId, timeZone), dayStart, dayEnd);
+    }
+
+    long[] slots = sweep.freeSlots(dayStart, dayEnd, this.meetingDuration);
+    List<TimePeriod> freePeriods = new ArrayList<TimePeriod>(slots.length / 2);
+    for (int i = 0; i < slots.length; i += 2) {
+      freePeriods.add(newTimePeriod(toDateTime(slots[i]), toDateTime(slots[i + 1])));
+    }
+    return freePeriods;
+  }
+
+  /**
+   * Splits the period from start to end at each midnight in the timezone.
+   * @return The start, the midnights in between, and the end.
+   */
+  private static List<Long> dayBounds(long start, long end, TimeZone timeZone) {
+    List<Long> bounds = new ArrayList<Long>();
+    bounds.add(start);
+    java.util.Calendar day = java.util.Calendar.getInstance(timeZone);
+    day.setTimeInMillis(start);
+    day.set(java.util.Calendar.HOUR_OF_DAY, 0);
+    day.set(java.util.Calendar.MINUTE, 0);
+    day.set(java.util.Calendar.SECOND, 0);
+    day.set(java.util.Calendar.MILLISECOND, 0);
+    while (true) {
+      day.add(java.util.Calendar.DATE, 1);
+      if (day.getTimeInMillis() >= end) {
         break;
       }
-      // Check that the duration of the free period is at least
-      // of 'meetingDuration' length.
-      DateTime periodStart = current.getEnd(); 
-      DateTime periodEnd = busyPeriods.get(j).getStart();
-      long duration = periodEnd.getValue() - periodStart.getValue();
-      if (duration >= this.meetingDuration) {
-        freePeriods.add(newTimePeriod(periodStart, periodEnd));
+      bounds.add(day.getTimeInMillis());
+    }
+    if (end > start) {
+      bounds.add(end);
+    }
+    return bounds;
+  }
+
+  /**
+   * Generates the periods where at least 'quorum' of the required guests are free, for
+   * meetings that not every guest has to attend. Calendars that could not be read are
+   * left out, as in proposeTimes(), and count neither as free nor as busy.
+   * @param quorum The number of required guests that must be free, at least 1.
+   * @param optionalGuests The calendar IDs of the guests that are reported when they
+   * are busy, but do not count towards the quorum.
+   * @return The maximal periods of at least 'meetingDuration' where the quorum is free,
+   * in chronological order, each with the guests that are busy during it.
+   */
+  public List<QuorumSweep.Slot> proposeQuorumTimes(int quorum, Collection<String> optionalGuests) 
+      throws IOException, GoogleJsonResponseException, GeneralSecurityException {
+    this.calendarErrors.clear();
+    Map<String, List<TimePeriod>> busyByCalendar = 
+        fetchBusyPeriods(this.startTime.getValue(), this.endTime.getValue());
+    List<String> guests = new ArrayList<String>(busyByCalendar.keySet());
+    QuorumSweep sweep = new QuorumSweep(guests, optionalGuests);
+    for (int i = 0; i < guests.size(); i++) {
+      for (TimePeriod busy : busyByCalendar.get(guests.get(i))) {
+        sweep.add(i, busy.getStart().getValue(), busy.getEnd().getValue());
+      }
+    }
+    return sweep.slots(this.startTime.getValue(), this.endTime.getValue(), quorum, 
+        this.meetingDuration);
+  }
+
+  /**
+   * Fetches the busy periods of the calendars, and returns the free periods with a 
+   * duration of at least 'meetingDuration', packed as start and end pairs.
+   * If there are no busy periods, the whole period is free.
+   */
+  private long[] freeSlots() throws IOException, GeneralSecurityException {
+    // Gather freebusy information for each of the calendars.
+    this.calendarErrors.clear();
+    IntervalSweep sweep = new IntervalSweep();
+    long start = this.startTime.getValue();
+    long end = this.endTime.getValue();
+    for (List<TimePeriod> busyPeriods : fetchBusyPeriods(start, end).values()) {
+      for (TimePeriod busy : busyPeriods) {
+        sweep.add(busy.getStart().getValue(), busy.getEnd().getValue());
       }
-      // Start from the last TimePeriod we passed in inner loop.
-      i = j;
-      current = busyPeriods.get(i);
-      lastBusyPeriodEnd = current.getEnd();
     }
 
-    // Add the free time block from end of lastest busy period to endTime, if any.
-    long durationEndOfDay;
-    durationEndOfDay = this.endTime.getValue() - lastBusyPeriodEnd.getValue();
-    if (durationEndOfDay >= this.meetingDuration) {
-      freePeriods.add(newTimePeriod(lastBusyPeriodEnd, this.endTime));
+    if (sweep.size() == 0) {
+      return new long[] {this.startTime.getValue(), this.endTime.getValue()};
     }
 
-    return freePeriods;
+    // Find the gaps between the busy periods: O(Nlog(N))
+    return sweep.freeSlots(
+        this.startTime.getValue(), this.endTime.getValue(), this.meetingDuration);
+  }
+
+  /**
+   * Gathers the busy periods of every calendar in 'calendarId' between start and end,
+   * in calendar order.
+   * If a cache is set, only the parts of the period that are not cached are fetched.
+   * In batch mode the calendars are packed into chunks of at most
+   * MAX_ITEMS_PER_REQUEST items, and the chunks are queried concurrently.
+   * Calendars the API reports errors for are skipped, and their errors are
+   * recorded in 'calendarErrors'.
+   * @return The busy periods of each calendar that could be read, in calendar order.
+   */
+  private Map<String, List<TimePeriod>> fetchBusyPeriods(long start, long end) 
+      throws IOException, GeneralSecurityException {
+    Map<String, List<TimePeriod>> busyByCalendar = new HashMap<String, List<TimePeriod>>();
+
+    // Group the calendars by the range that has to be fetched for them, so that 
+    // calendars missing the same range can be queried together.
+    Map<List<Long>, List<String>> rangesToFetch = new LinkedHashMap<List<Long>, List<String>>();
+    for (String calId : new LinkedHashSet<String>(calendarId)) {
+      if (this.cache == null) {
+        rangesToFetch.computeIfAbsent(Arrays.asList(start, end), 
+            range -> new ArrayList<String>()).add(calId);
+        continue;
+      }
+      FreeBusyCache.Lookup lookup = this.cache.lookup(calId, start, end);
+      busyByCalendar.put(calId, toTimePeriods(lookup.getBusy()));
+      for (long[] missing : lookup.getMissingRanges()) {
+        rangesToFetch.computeIfAbsent(Arrays.asList(missing[0], missing[1]), 
+            range -> new ArrayList<String>()).add(calId);
+      }
+    }
+
+    List<FetchTask> tasks = new ArrayList<FetchTask>();
+    for (Map.Entry<List<Long>, List<String>> entry : rangesToFetch.entrySet()) {
+      long rangeStart = entry.getKey().get(0);
+      long rangeEnd = entry.getKey().get(1);
+      List<String> calIds = entry.getValue();
+      int chunkSize = this.batchRequests ? MAX_ITEMS_PER_REQUEST : 1;
+      for (int i = 0; i < calIds.size(); i += chunkSize) {
+        tasks.add(new FetchTask(
+            calIds.subList(i, Math.min(i + chunkSize, calIds.size())), rangeStart, rangeEnd));
+      }
+    }
+
+    List<Map<String, List<TimePeriod>>> responses;
+    if (this.batchRequests && tasks.size() > 1) {
+      responses = fetchConcurrently(tasks);
+    } else {
+      responses = new ArrayList<Map<String, List<TimePeriod>>>();
+      for (FetchTask task : tasks) {
+        responses.add(task.call());
+      }
+    }
+
+    for (int i = 0; i < tasks.size(); i++) {
+      FetchTask task = tasks.get(i);
+      for (Map.Entry<String, List<TimePeriod>> fetched : responses.get(i).entrySet()) {
+        busyByCalendar.computeIfAbsent(fetched.getKey(), calId -> new ArrayList<TimePeriod>())
+            .addAll(fetched.getValue());
+        if (this.cache != null && !this.calendarErrors.containsKey(fetched.getKey())) {
+          this.cache.put(fetched.getKey(), task.start, task.end, toMillis(fetched.getValue()));
+        }
+      }
+    }
+
+    // Order the calendars as given, so that the result is the same as querying the
+    // calendars one at a time.
+    Map<String, List<TimePeriod>> busyPeriods = new LinkedHashMap<String, List<TimePeriod>>();
+    for (String calId : calendarId) {
+      if (!this.calendarErrors.containsKey(calId) && busyByCalendar.containsKey(calId)) {
+        busyPeriods.put(calId, busyByCalendar.get(calId));
+      }
+    }
+    return busyPeriods;
+  }
+
+  /** A Freebusy query for the busy periods of some calendars over one time range. */
+  private class FetchTask implements Callable<Map<String, List<TimePeriod>>> {
+    final List<String> calIds;
+    final long start;
+    final long end;
+
+    FetchTask(List<String> calIds, long start, long end) {
+      this.calIds = calIds;
+      this.start = start;
+      this.end = end;
+    }
+
+    /** Returns the busy periods of each of the calendars queried. */
+    @Override
+    public Map<String, List<TimePeriod>> call() throws IOException, GeneralSecurityException {
+      boolean wholePeriod = 
+          this.start == startTime.getValue() && this.end == endTime.getValue();
+      Map<String, List<TimePeriod>> busy = new LinkedHashMap<String, List<TimePeriod>>();
+      if (!batchRequests) {
+        for (String calId : this.calIds) {
+          busy.put(calId, wholePeriod 
+              ? freebusyRequest(calId) 
+              : freebusyRequest(calId, toDateTime(this.start), toDateTime(this.end)));
+        }
+        return busy;
+      }
+
+      Map<String, FreeBusyCalendar> calendars = wholePeriod 
+          ? batchFreebusyRequest(this.calIds)
+          : batchFreebusyRequest(this.calIds, toDateTime(this.start), toDateTime(this.end));
+      for (String calId : this.calIds) {
+        busy.put(calId, busyPeriodsOf(calId, calendars.get(calId)));
+      }
+      return busy;
+    }
+  }
+
+  /**
+   * Submits the queries to the shared executor, and waits for all of them to complete.
+   * @param tasks The queries to run.
+   * @return The results of the queries, in the same order as 'tasks'.
+   * @throws IOException if any of the queries failed.
+   */
+  private List<Map<String, List<TimePeriod>>> fetchConcurrently(List<FetchTask> tasks) 
+      throws IOException, GeneralSecurityException {
+    List<Future<Map<String, List<TimePeriod>>>> futures = 
+        new ArrayList<Future<Map<String, List<TimePeriod>>>>();
+    for (FetchTask task : tasks) {
+      futures.add(FREEBUSY_EXECUTOR.submit(task));
+    }
+
+    List<Map<String, List<TimePeriod>>> responses = new ArrayList<Map<String, List<TimePeriod>>>();
+    try {
+      for (Future<Map<String, List<TimePeriod>>> future : futures) {
+        responses.add(await(future));
+      }
+    } finally {
+      // Stop the remaining queries if one of them failed.
+      for (Future<Map<String, List<TimePeriod>>> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return responses;
+  }
+
+  /**
+   * Waits for a task submitted to an executor, and returns its result.
+   * @throws IOException if the task threw it, or the wait was interrupted.
+   * @throws GeneralSecurityException if the task threw it.
+   */
+  private static <T> T await(Future<T> future) throws IOException, GeneralSecurityException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for Freebusy responses");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Returns the busy periods of a calendar in a Freebusy response. If the API
+   * reported errors for the calendar (e.g. it is not found or not shared), or the
+   * calendar is missing from the response, the errors are recorded in 
+   * 'calendarErrors' and no busy periods are returned for it.
+   * @param calId The identifier of the calendar.
+   * @param calendar The FreeBusy information of the calendar, or null if missing.
+   * @return The busy periods of the calendar.
+   */
+  private List<TimePeriod> busyPeriodsOf(String calId, FreeBusyCalendar calendar) {
+    if (calendar == null) {
+      this.calendarErrors.put(calId, Arrays.asList("notFound"));
+      return Collections.emptyList();
+    }
+    if (calendar.getErrors() != null && !calendar.getErrors().isEmpty()) {
+      List<String> reasons = new ArrayList<String>();
+      for (com.google.api.services.calendar.model.Error error : calendar.getErrors()) {
+        reasons.add(error.getReason());
+      }
+      this.calendarErrors.put(calId, reasons);
+      return Collections.emptyList();
+    }
+    if (calendar.getBusy() == null) {
+      return Collections.emptyList();
+    }
+    return calendar.getBusy();
+  }
+
+  /**
+   * Makes a single request to the Freebusy library of the Google Calendar API 
+   * for all the calendars in 'calIds', between the startTime and endTime that 
+   * this instance was initialised with.
+   * @param calIds The identifiers of the calendars to query. Must not contain 
+   * more than MAX_ITEMS_PER_REQUEST calendars.
+   * @return The map of calendar identifier to the FreeBusy information of that
+   * calendar, as returned by the API.
+   * @throws IOException
+   */
+  public Map<String, FreeBusyCalendar> batchFreebusyRequest(List<String> calIds) 
+      throws IOException {
+    return batchFreebusyRequest(calIds, this.startTime, this.endTime);
+  }
+
+  /**
+   * Makes a single request to the Freebusy library of the Google Calendar API 
+   * for all the calendars in 'calIds', between timeMin and timeMax.
+   * @param calIds The identifiers of the calendars to query. Must not contain 
+   * more than MAX_ITEMS_PER_REQUEST calendars.
+   * @param timeMin The start of the range to query.
+   * @param timeMax The end of the range to query.
+   * @return The map of calendar identifier to the FreeBusy information of that
+   * calendar, as returned by the API.
+   * @throws IOException
+   */
+  public Map<String, FreeBusyCalendar> batchFreebusyRequest(List<String> calIds, 
+      DateTime timeMin, DateTime timeMax) throws IOException {
+    List<FreeBusyRequestItem> items = new ArrayList<FreeBusyRequestItem>();
+    for (String calId : calIds) {
+      items.add(new FreeBusyRequestItem().setId(calId));
+    }
+    FreeBusyRequest req = new FreeBusyRequest()
+        .setTimeMin(timeMin)
+        .setTimeMax(timeMax)
+        .setItems(items)
+        .setTimeZone(this.timezone); // The timezone that the times returned will be in.
+    FreeBusyResponse resp = this.service.freebusy().query(req).setKey(this.apiKey).execute();
+    if (resp.getCalendars() == null) {
+      return Collections.emptyMap();
+    }
+    return resp.getCalendars();
   }
 
   /**
@@ -153,31 +558,66 @@ public class AutoProposeTimes {
    */
   public List<TimePeriod> freebusyRequest(String calId) 
       throws IOException, GeneralSecurityException {
+    return freebusyRequest(calId, this.startTime, this.endTime);
+  }
+
+  /**
+   * Makes a request to the Freebusy library of the Google Calendar API,
+   * and returns the List of TimePeriods representing busy times of the
+   * user between timeMin and timeMax.
+   * @param calId The calendar identifier of the calendar to retireve busy
+   * data from.
+   * @param timeMin The start of the range to query.
+   * @param timeMax The end of the range to query.
+   * @return The List of TimePeriods representing busy times in the calendar
+   * identified by the calId.
+   * @throws IOException
+   * @throws GeneralSecurityException
+   */
+  public List<TimePeriod> freebusyRequest(String calId, DateTime timeMin, DateTime timeMax) 
+      throws IOException, GeneralSecurityException {
     FreeBusyRequestItem currentCalItem = new FreeBusyRequestItem().setId(calId);
     FreeBusyRequest req = new FreeBusyRequest()
-        .setTimeMin(this.startTime)
-        .setTimeMax(this.endTime)
+        .setTimeMin(timeMin)
+        .setTimeMax(timeMax)
         .setItems(Arrays.asList(currentCalItem))
-        .setTimeZone(TIMEZONE); // The timezone that the times returned will be in.
+        .setTimeZone(this.timezone); // The timezone that the times returned will be in.
     Freebusy freebusy = this.service.freebusy();
     Query query = freebusy.query(req).setKey(this.apiKey);
     FreeBusyResponse resp = query.execute();
     // Variable 'currentCal' will store the FreeBusy info of the calendar
     // with calId as its identifier.
     FreeBusyCalendar currentCal = resp.getCalendars().get(calId); 
-    return currentCal.getBusy();
+    return busyPeriodsOf(calId, currentCal);
+  }
+
+  /**
+   * Sets whether the calendars are queried in batches of up to MAX_ITEMS_PER_REQUEST
+   * calendars, with the batches sent concurrently, rather than one calendar at a time.
+   * The proposed times are the same in both modes.
+   * @param batchRequests true to batch the Freebusy queries.
+   */
+  public void setBatchRequests(boolean batchRequests) {
+    this.batchRequests = batchRequests;
   }
 
   /**
-   * Sets the timezone that the algorithm will be applying to times.
-   * Timezone is AET (Australian Eastern Time) by default.
-   * startTime and endTime provided to constructor will be assumed to be
-   * this timezone, all auto generated times will be returned in this timezone.
-   * @param timezoneString The string that represents the timezone.
-   * Must be one of the timezones as returned by TimeZone.getAvailableIDs()
+   * Sets the cache to serve busy periods from. Only the parts of the period that 
+   * are not in the cache are fetched from the API, and are then added to it.
+   * @param cache The cache to use, or null to always fetch from the API.
    */
-  public static void setTimezone(String timezone) {
-    TIMEZONE = timezone;
+  public void setCache(FreeBusyCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Returns the calendars that could not be read by the last call to proposeTimes(),
+   * mapped to the error reasons reported by the API. These calendars are left out
+   * of the proposed times instead of failing the whole proposal.
+   * @return The map of calendar identifier to error reasons.
+   */
+  public Map<String, List<String>> getCalendarErrors() {
+    return new LinkedHashMap<String, List<String>>(this.calendarErrors);
   }
 
   /**
@@ -192,4 +632,37 @@ public class AutoProposeTimes {
         .setEnd(end);
     return time;
   }
+
+  /**
+   * Creates a DateTime in the timezone of the algorithm.
+   * @param millis The number of milliseconds since the Unix epoch.
+   * @return The new DateTime.
+   */
+  private DateTime toDateTime(long millis) {
+    return new DateTime(new Date(millis), TimeZone.getTimeZone(this.timezone));
+  }
+
+  /**
+   * Converts busy periods packed as start and end pairs of milliseconds since the
+   * Unix epoch to TimePeriods.
+   */
+  private List<TimePeriod> toTimePeriods(long[] packed) {
+    List<TimePeriod> periods = new ArrayList<TimePeriod>(packed.length / 2);
+    for (int i = 0; i < packed.length; i += 2) {
+      periods.add(newTimePeriod(toDateTime(packed[i]), toDateTime(packed[i + 1])));
+    }
+    return periods;
+  }
+
+  /**
+   * Converts TimePeriods to start and end pairs of milliseconds since the Unix epoch.
+   */
+  private static long[] toMillis(List<TimePeriod> periods) {
+    long[] packed = new long[periods.size() * 2];
+    for (int i = 0; i < periods.size(); i++) {
+      packed[2 * i] = periods.get(i).getStart().getValue();
+      packed[2 * i + 1] = periods.get(i).getEnd().getValue();
+    }
+    return packed;
+  }
 }
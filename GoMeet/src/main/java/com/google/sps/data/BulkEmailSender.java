@@ -0,0 +1,165 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.ThreadManager;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Sends a message to each of many recipients. The recipients are spread across a
+ * bounded number of workers, run in parallel, and each worker opens a single Transport
+ * and sends all of its messages over it, rather than connecting once per message.
+ * The workers are request threads, created by ThreadManager for each send, as App Engine
+ * APIs such as Mail can only be called from threads of the request. So send() must be
+ * called while handling a request, and the workers are stopped before it returns.
+ */
+public class BulkEmailSender {
+  // The maximum number of workers sending at once, for each send.
+  private static final int MAX_CONCURRENT_WORKERS = 8;
+
+  /** Builds the message to send to a recipient. */
+  public interface MessageBuilder {
+    MimeMessage build(Session session, String recipient) throws MessagingException;
+  }
+
+  private final Session session;
+  private final int workers;
+
+  /**
+   * Constructor.
+   * @param session The mail session to send with. If it sets mail.transport.protocol,
+   * that transport is used, otherwise the transport for internet addresses.
+   * @param workers The number of workers to spread the recipients across, each with
+   * its own Transport.
+   */
+  public BulkEmailSender(Session session, int workers) {
+    this.session = session;
+    this.workers = Math.max(1, Math.min(workers, MAX_CONCURRENT_WORKERS));
+  }
+
+  /**
+   * Sends a message to each recipient.
+   * @param recipients The email addresses to send to.
+   * @param builder Builds the message for each recipient.
+   * @return The map of recipient to whether their message was sent, in the order
+   * of 'recipients'.
+   * @throws InterruptedIOException if interrupted while waiting for the workers.
+   */
+  public Map<String, Boolean> send(List<String> recipients, MessageBuilder builder)
+      throws InterruptedIOException {
+    Map<String, Boolean> status = new LinkedHashMap<String, Boolean>();
+    if (recipients.isEmpty()) {
+      return status;
+    }
+    // Split the recipients into one contiguous chunk per worker.
+    int chunkSize = (recipients.size() + this.workers - 1) / this.workers;
+    List<List<String>> chunks = new ArrayList<List<String>>();
+    for (int i = 0; i < recipients.size(); i += chunkSize) {
+      chunks.add(recipients.subList(i, Math.min(i + chunkSize, recipients.size())));
+    }
+
+    ExecutorService executor = 
+        Executors.newFixedThreadPool(chunks.size(), ThreadManager.currentRequestThreadFactory());
+    List<Future<Map<String, Boolean>>> futures = new ArrayList<Future<Map<String, Boolean>>>();
+    try {
+      for (List<String> chunk : chunks) {
+        futures.add(executor.submit(new SendTask(chunk, builder)));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          status.putAll(futures.get(i).get());
+        } catch (ExecutionException e) {
+          // The worker failed unexpectedly, so none of its messages are known to be sent.
+          System.err.println("Failed to send emails to " + chunks.get(i).size() 
+              + " recipients: " + e.getCause());
+          for (String recipient : chunks.get(i)) {
+            status.putIfAbsent(recipient, false);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while sending emails");
+    } finally {
+      // Request threads must not outlive the request.
+      executor.shutdownNow();
+    }
+    return status;
+  }
+
+  /** Opens a transport of the session. */
+  private Transport getTransport() throws MessagingException {
+    if (this.session.getProperty("mail.transport.protocol") != null) {
+      return this.session.getTransport();
+    }
+    // The transport for internet addresses (i.e. "rfc822"), as used by Transport.send.
+    return this.session.getTransport(new InternetAddress());
+  }
+
+  /** Sends the messages of one worker over a single transport. */
+  private class SendTask implements Callable<Map<String, Boolean>> {
+    private final List<String> recipients;
+    private final MessageBuilder builder;
+
+    SendTask(List<String> recipients, MessageBuilder builder) {
+      this.recipients = recipients;
+      this.builder = builder;
+    }
+
+    @Override
+    public Map<String, Boolean> call() {
+      Map<String, Boolean> status = new LinkedHashMap<String, Boolean>();
+      Transport transport = null;
+      try {
+        transport = getTransport();
+        transport.connect();
+        for (String recipient : this.recipients) {
+          status.put(recipient, sendOne(transport, recipient));
+        }
+      } catch (MessagingException e) {
+        System.err.println("Could not connect to the mail transport");
+      } finally {
+        if (transport != null) {
+          try {
+            transport.close();
+          } catch (MessagingException e) {
+            // The messages were already sent or failed.
+          }
+        }
+      }
+      // Recipients not reached because the transport failed were not sent to.
+      for (String recipient : this.recipients) {
+        status.putIfAbsent(recipient, false);
+      }
+      return status;
+    }
+
+    private boolean sendOne(Transport transport, String recipient) throws MessagingException {
+      try {
+        MimeMessage message = this.builder.build(session, recipient);
+        message.saveChanges();
+        transport.sendMessage(message, message.getAllRecipients());
+        return true;
+      } catch (MessagingException e) {
+        System.err.println("Messaging exception");
+        if (!transport.isConnected()) {
+          // Reconnect so that the failure does not affect the remaining recipients.
+          transport.connect();
+        }
+        return false;
+      }
+    }
+  }
+}
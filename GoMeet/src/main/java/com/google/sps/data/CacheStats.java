@@ -0,0 +1,41 @@
+package com.google.sps.data;
+
+/**
+ * The statistics of a cache held in the memory of this instance, so that they can be
+ * published by RequestMetrics and the cache tuned from them.
+ */
+public interface CacheStats {
+  /** Returns the number of reads that were served from the cache. */
+  long getHitCount();
+
+  /** Returns the number of reads that were served partly from the cache. */
+  default long getPartialHitCount() {
+    return 0;
+  }
+
+  /** Returns the number of reads that could not use the cache at all. */
+  long getMissCount();
+
+  /** Returns the number of entries evicted to keep the cache within its size. */
+  long getEvictionCount();
+
+  /** Returns the number of entries currently cached. */
+  int size();
+
+  /** Returns the number of times the cache loaded a value itself, on a miss. */
+  default long getLoadCount() {
+    return 0;
+  }
+
+  /** Returns the time taken by the loads of the cache, in nanoseconds. */
+  default long getTotalLoadNanos() {
+    return 0;
+  }
+
+  /** Returns the fraction of reads that were served entirely from the cache, or 0 if none. */
+  default double getHitRatio() {
+    long hits = getHitCount();
+    long reads = hits + getPartialHitCount() + getMissCount();
+    return reads == 0 ? 0 : (double) hits / reads;
+  }
+}
@@ -0,0 +1,161 @@
+package com.google.sps.data;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The Datastore RPCs issued by one request, counted by InstrumentedDatastoreService
+ * while the request is being handled. A recording is started on the thread handling the
+ * request, and RPCs issued from other threads are not counted in it.
+ * <p>Tests can use it to pin the number of RPCs a servlet issues:
+ * <pre>
+ *   DatastoreRpcs rpcs = DatastoreRpcs.start();
+ *   servlet.doPost(request, response);
+ *   rpcs.stop();
+ *   rpcs.expectAtMost(DatastoreRpcs.Operation.GET, 1);
+ * </pre>
+ * This class is not thread-safe, as it is only recorded to by one thread.
+ */
+public class DatastoreRpcs {
+  private static final ThreadLocal<DatastoreRpcs> CURRENT = new ThreadLocal<>();
+
+  /** The kinds of Datastore RPCs. */
+  public enum Operation {
+    GET, PUT, DELETE, QUERY, BEGIN_TRANSACTION, ALLOCATE_IDS
+  }
+
+  /** The totals of the RPCs of one operation. */
+  public static class Totals {
+    private int rpcCount;
+    private int entityCount;
+    private long bytes;
+    private long nanos;
+
+    public int getRpcCount() {
+      return rpcCount;
+    }
+
+    /** Returns the number of entities, or keys, read or written. */
+    public int getEntityCount() {
+      return entityCount;
+    }
+
+    /** Returns the serialized size of the entities read or written. */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /** Returns the time taken by the RPCs, in nanoseconds. */
+    public long getNanos() {
+      return nanos;
+    }
+  }
+
+  private final Map<Operation, Totals> totals = new EnumMap<>(Operation.class);
+  // Gets of one key, which could have been batched if a request issues several.
+  private int singleGetCount;
+
+  /**
+   * Starts recording the RPCs issued by the current thread, replacing any recording
+   * already started on it.
+   */
+  public static DatastoreRpcs start() {
+    DatastoreRpcs rpcs = new DatastoreRpcs();
+    CURRENT.set(rpcs);
+    return rpcs;
+  }
+
+  /** Returns the recording of the current thread, or null if none was started. */
+  public static DatastoreRpcs current() {
+    return CURRENT.get();
+  }
+
+  /** Stops recording on the current thread, if this is its recording. */
+  public void stop() {
+    if (CURRENT.get() == this) {
+      CURRENT.remove();
+    }
+  }
+
+  /**
+   * Records an RPC.
+   * @param operation The kind of RPC.
+   * @param entityCount The number of entities, or keys, read or written.
+   * @param bytes The serialized size of the entities read or written.
+   * @param nanos The time taken by the RPC, in nanoseconds.
+   */
+  public void record(Operation operation, int entityCount, long bytes, long nanos) {
+    totals.computeIfAbsent(operation, op -> new Totals()).rpcCount++;
+    recordEntities(operation, entityCount, bytes, nanos);
+  }
+
+  /**
+   * Records entities read by an RPC that was already recorded, e.g. the entities of a
+   * query as they are iterated over.
+   */
+  public void recordEntities(Operation operation, int entityCount, long bytes, long nanos) {
+    Totals operationTotals = totals.computeIfAbsent(operation, op -> new Totals());
+    operationTotals.entityCount += entityCount;
+    operationTotals.bytes += bytes;
+    operationTotals.nanos += nanos;
+  }
+
+  /** Records a get of one key, as well as its RPC. */
+  public void recordSingleGet(long bytes, long nanos) {
+    singleGetCount++;
+    record(Operation.GET, 1, bytes, nanos);
+  }
+
+  /** Returns the totals of the RPCs of an operation, which are zero if there were none. */
+  public Totals getTotals(Operation operation) {
+    return totals.getOrDefault(operation, new Totals());
+  }
+
+  /** Returns the number of RPCs of all operations. */
+  public int getRpcCount() {
+    int rpcCount = 0;
+    for (Totals operationTotals : totals.values()) {
+      rpcCount += operationTotals.rpcCount;
+    }
+    return rpcCount;
+  }
+
+  public int getRpcCount(Operation operation) {
+    return getTotals(operation).rpcCount;
+  }
+
+  public int getSingleGetCount() {
+    return singleGetCount;
+  }
+
+  /**
+   * Throws an AssertionError if more RPCs were issued than the budget, so that a test
+   * fails when a change adds RPCs to a request.
+   */
+  public void expectAtMost(int maxRpcs) {
+    if (getRpcCount() > maxRpcs) {
+      throw new AssertionError("Expected at most " + maxRpcs + " Datastore RPCs but was "
+          + getRpcCount() + ": " + this);
+    }
+  }
+
+  /** Throws an AssertionError if more RPCs of an operation were issued than the budget. */
+  public void expectAtMost(Operation operation, int maxRpcs) {
+    if (getRpcCount(operation) > maxRpcs) {
+      throw new AssertionError("Expected at most " + maxRpcs + " Datastore " + operation
+          + " RPCs but was " + getRpcCount(operation) + ": " + this);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("DatastoreRpcs{");
+    for (Map.Entry<Operation, Totals> entry : totals.entrySet()) {
+      Totals operationTotals = entry.getValue();
+      builder.append(String.format("%s=%d rpcs/%d entities/%d bytes/%dus, ", entry.getKey(),
+          operationTotals.rpcCount, operationTotals.entityCount, operationTotals.bytes,
+          operationTotals.nanos / 1000));
+    }
+    return builder.append("singleGets=").append(singleGetCount).append("}").toString();
+  }
+}
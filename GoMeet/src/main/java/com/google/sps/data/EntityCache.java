@@ -0,0 +1,37 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+
+/**
+ * A read-through cache of Datastore entities, keyed by Key. On a miss the entity is
+ * loaded by the cache's Loader, which may itself be another EntityCache, e.g. a memcache
+ * tier shared by all instances behind a cache local to each instance.
+ * Implementations must be thread-safe.
+ */
+public interface EntityCache {
+  /** Loads an entity on a cache miss. */
+  interface Loader {
+    Entity load(Key key) throws EntityNotFoundException;
+  }
+
+  /**
+   * Returns the entity with the key, loading it if it is not cached.
+   * The entity returned is a copy, so changes to it do not affect the cache.
+   * @throws EntityNotFoundException if there is no entity with the key.
+   */
+  Entity get(Key key) throws EntityNotFoundException;
+
+  /** Returns a copy of the cached entity with the key, or null if it is not cached. */
+  Entity getIfPresent(Key key);
+
+  /**
+   * Caches an entity that was just written, replacing any cached copy. Its properties
+   * must have the types Datastore returns, e.g. long rather than int.
+   */
+  void put(Entity entity);
+
+  /** Removes the entity with the key from the cache, e.g. after it was deleted. */
+  void invalidate(Key key);
+}
@@ -0,0 +1,157 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.SetPolicy;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import java.io.Serializable;
+import java.util.Date;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The version of an entity, used to answer conditional GET requests with 304 Not Modified.
+ * An entity stores a version number, incremented each time it is written, and the time
+ * it was last written. The version is also cached in memcache, so that a client whose copy
+ * is still current can be answered without reading the entity from Datastore.
+ */
+public class EntityVersion implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final String VERSION = "version";
+  public static final String LAST_MODIFIED = "lastModified";
+
+  private static final String CACHE_PREFIX = "version:";
+  // Writers update the cached version, so the expiration only bounds how long a version
+  // is kept if the cache is not updated, e.g. the request failed after writing.
+  private static final int CACHE_EXPIRATION_SECONDS = 60 * 60;
+
+  private final String tag;
+  // The time the entity was last written, in milliseconds, or 0 if not known.
+  private final long lastModified;
+
+  private EntityVersion(String tag, long lastModified) {
+    this.tag = tag;
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Increments the version of an entity and sets its last modified time to now.
+   * To be called each time the entity is changed, before it is put.
+   */
+  public static void touch(Entity entity) {
+    Long version = (Long) entity.getProperty(VERSION);
+    entity.setProperty(VERSION, version == null ? 1L : version + 1);
+    entity.setProperty(LAST_MODIFIED, new Date());
+  }
+
+  /**
+   * Returns the version of an entity. Entities written before versions were stored
+   * have version 0, and no last modified time.
+   */
+  public static EntityVersion of(Entity entity) {
+    Long version = (Long) entity.getProperty(VERSION);
+    Date lastModified = (Date) entity.getProperty(LAST_MODIFIED);
+    return new EntityVersion(String.valueOf(version == null ? 0 : version),
+        lastModified == null ? 0 : lastModified.getTime());
+  }
+
+  /** Returns the cached version of the entity with the key, or null if it is not cached. */
+  public static EntityVersion getCached(Key key) {
+    return (EntityVersion) MemcacheServiceFactory.getMemcacheService().get(cacheKey(key));
+  }
+
+  /**
+   * Caches the version of an entity that was read. A version cached since, by a writer,
+   * is not replaced.
+   */
+  public void cache(Key key) {
+    cache(key, SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+  }
+
+  /** Caches the version of an entity that was written, once it has been committed. */
+  public void cacheWritten(Key key) {
+    cache(key, SetPolicy.SET_ALWAYS);
+  }
+
+  private void cache(Key key, SetPolicy policy) {
+    MemcacheService cache = MemcacheServiceFactory.getMemcacheService();
+    cache.put(cacheKey(key), this,
+        Expiration.byDeltaSeconds(CACHE_EXPIRATION_SECONDS), policy);
+  }
+
+  /**
+   * Returns the version combined with a count kept apart from the entity, e.g. its votes
+   * in a sharded counter. As the count changes without the entity being written, the
+   * last modified time is not known.
+   */
+  public EntityVersion withCount(long count) {
+    return new EntityVersion(this.tag + "." + count, 0);
+  }
+
+  /**
+   * Returns the ETag of a response built from this version.
+   * @param variant the request parameters the response depends on, if any, e.g. the page.
+   */
+  public String getETag(String... variant) {
+    if (variant.length == 0) {
+      return "\"" + this.tag + "\"";
+    }
+    return "\"" + this.tag + "-" + Integer.toHexString(String.join("\n", variant).hashCode())
+        + "\"";
+  }
+
+  /** Returns true if the request has an If-None-Match or If-Modified-Since header. */
+  public static boolean isConditional(HttpServletRequest request) {
+    return request.getHeader("If-None-Match") != null
+        || request.getHeader("If-Modified-Since") != null;
+  }
+
+  /**
+   * Returns true if the client's copy of the response, as given by the If-None-Match or,
+   * failing that, the If-Modified-Since header of the request, is still current.
+   */
+  public boolean isNotModified(HttpServletRequest request, String eTag) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String match : ifNoneMatch.split(",")) {
+        match = match.trim();
+        // Weak ETags compare the same as strong ones for GET requests.
+        if (match.startsWith("W/")) {
+          match = match.substring(2);
+        }
+        if (match.equals("*") || match.equals(eTag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+    // The header has a resolution of seconds.
+    return ifModifiedSince > 0 && this.lastModified > 0
+        && this.lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /** Sets the ETag, and Last-Modified if known, headers of a response. */
+  public void setHeaders(HttpServletResponse response, String eTag) {
+    response.setHeader("ETag", eTag);
+    if (this.lastModified > 0) {
+      response.setDateHeader("Last-Modified", this.lastModified);
+    }
+    // The response may be cached, but must be revalidated before it is reused.
+    response.setHeader("Cache-Control", "no-cache");
+  }
+
+  /** Sends a 304 Not Modified response, without a body. */
+  public void sendNotModified(HttpServletResponse response, String eTag) {
+    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    setHeaders(response, eTag);
+  }
+
+  private static String cacheKey(Key key) {
+    return CACHE_PREFIX + KeyFactory.keyToString(key);
+  }
+}
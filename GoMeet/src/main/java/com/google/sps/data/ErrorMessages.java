@@ -26,4 +26,16 @@ public class ErrorMessages {
       "Please provide a meething event ID to the request"; 
   public static final String SECURITY_ERROR = 
       "Security error.";
+  public static final String TOO_MANY_IDS_ERROR =
+      "Too many IDs requested at once";
+  public static final String INVALID_CURSOR_ERROR =
+      "Invalid cursor or page size";
+  public static final String CONTENTION_ERROR =
+      "Too many updates at once, please try again";
+  public static final String INVALID_MAP_AREA_ERROR =
+      "A valid zoom level and map bounds must be provided";
+  public static final String LOGIN_REQUIRED_ERROR =
+      "Please log in to view the meeting event";
+  public static final String STREAMING_UNAVAILABLE_ERROR =
+      "Votes are not streamed by this deployment, please poll for them";
 }
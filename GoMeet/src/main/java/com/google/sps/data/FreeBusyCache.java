@@ -0,0 +1,255 @@
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the busy periods of Google Calendars, keyed by calendar ID.
+ * For each calendar the cache remembers which time ranges have been fetched
+ * from the Freebusy API, so a request for a period inside an already fetched
+ * range can be answered from memory, and a request that only partly overlaps
+ * needs to fetch just the missing ranges.
+ * Each fetched range expires after the TTL, and once more than the maximum
+ * number of calendars are cached, the least recently used calendar is evicted.
+ * All times are in milliseconds since the Unix epoch. This class is thread-safe.
+ */
+public class FreeBusyCache implements CacheStats {
+  public static final int DEFAULT_MAX_CALENDARS = 1000;
+  public static final long DEFAULT_TTL_MS = 5 * 60 * 1000; // 5 minutes.
+  // The maximum number of fetched ranges kept per calendar.
+  private static final int MAX_RANGES_PER_CALENDAR = 16;
+
+  private final long ttlMs;
+  private final LongSupplier clock;
+  private final LinkedHashMap<String, List<Range>> calendars;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong partialHitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /** A time range of a calendar that was fetched, and the busy periods inside it. */
+  private static class Range {
+    final long start;
+    final long end;
+    final long fetchedAt;
+    final long[] busy; // Packed start and end pairs of the busy periods.
+
+    Range(long start, long end, long fetchedAt, long[] busy) {
+      this.start = start;
+      this.end = end;
+      this.fetchedAt = fetchedAt;
+      this.busy = busy;
+    }
+  }
+
+  /** The result of looking up a period of a calendar in the cache. */
+  public static class Lookup {
+    private final long[] busy;
+    private final List<long[]> missingRanges;
+
+    Lookup(long[] busy, List<long[]> missingRanges) {
+      this.busy = busy;
+      this.missingRanges = missingRanges;
+    }
+
+    /**
+     * Returns the cached busy periods that overlap the period looked up, packed as
+     * start and end pairs (i.e. [start0, end0, start1, end1, ...]).
+     */
+    public long[] getBusy() {
+      return busy;
+    }
+
+    /**
+     * Returns the parts of the period looked up that are not cached, each as a
+     * {start, end} pair, in chronological order. Empty if the whole period is cached.
+     */
+    public List<long[]> getMissingRanges() {
+      return missingRanges;
+    }
+  }
+
+  public FreeBusyCache() {
+    this(DEFAULT_MAX_CALENDARS, DEFAULT_TTL_MS, System::currentTimeMillis);
+  }
+
+  /**
+   * Constructor.
+   * @param maxCalendars The maximum number of calendars to cache.
+   * @param ttlMs How long a fetched range is served from the cache, in milliseconds.
+   * @param clock The source of the current time in milliseconds, to allow for
+   * easier testing.
+   */
+  public FreeBusyCache(int maxCalendars, long ttlMs, LongSupplier clock) {
+    this.ttlMs = ttlMs;
+    this.clock = clock;
+    // An access ordered map, so that the eldest entry is the least recently used.
+    this.calendars = new LinkedHashMap<String, List<Range>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, List<Range>> eldest) {
+        if (size() > maxCalendars) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Looks up the busy periods of a calendar between start and end.
+   * @param calId The identifier of the calendar.
+   * @param start The start of the period.
+   * @param end The end of the period.
+   * @return The cached busy periods of the period, and the ranges that still
+   * need to be fetched.
+   */
+  public synchronized Lookup lookup(String calId, long start, long end) {
+    List<Range> ranges = liveRanges(calId);
+    List<long[]> missing = new ArrayList<long[]>();
+    List<Range> overlapping = new ArrayList<Range>();
+
+    // The ranges are sorted by start time, so sweep the period from left to right.
+    long covered = start;
+    for (Range range : ranges) {
+      if (range.end <= covered || range.start >= end) {
+        continue;
+      }
+      if (range.start > covered) {
+        missing.add(new long[] {covered, range.start});
+      }
+      overlapping.add(range);
+      covered = Math.max(covered, range.end);
+      if (covered >= end) {
+        break;
+      }
+    }
+    if (covered < end) {
+      missing.add(new long[] {covered, end});
+    }
+
+    if (overlapping.isEmpty()) {
+      missCount.incrementAndGet();
+    } else if (missing.isEmpty()) {
+      hitCount.incrementAndGet();
+    } else {
+      partialHitCount.incrementAndGet();
+    }
+    return new Lookup(busyBetween(overlapping, start, end), missing);
+  }
+
+  /**
+   * Stores the busy periods of a calendar for a range that was just fetched.
+   * @param calId The identifier of the calendar.
+   * @param start The start of the fetched range.
+   * @param end The end of the fetched range.
+   * @param busy The busy periods in the range, packed as start and end pairs.
+   */
+  public synchronized void put(String calId, long start, long end, long[] busy) {
+    List<Range> ranges = liveRanges(calId);
+    // Ranges fully covered by the new one are superseded by it.
+    ranges.removeIf(range -> range.start >= start && range.end <= end);
+
+    int index = 0;
+    while (index < ranges.size() && ranges.get(index).start < start) {
+      index++;
+    }
+    ranges.add(index, new Range(start, end, clock.getAsLong(), busy.clone()));
+
+    if (ranges.size() > MAX_RANGES_PER_CALENDAR) {
+      removeOldest(ranges);
+    }
+    calendars.put(calId, ranges);
+  }
+
+  /** Removes all the cached calendars. */
+  public synchronized void clear() {
+    calendars.clear();
+  }
+
+  /** Returns the number of lookups that were served entirely from the cache. */
+  @Override
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of lookups that were served partly from the cache. */
+  @Override
+  public long getPartialHitCount() {
+    return partialHitCount.get();
+  }
+
+  /** Returns the number of lookups that could not use the cache at all. */
+  @Override
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of calendars evicted to keep the cache within its size. */
+  @Override
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /** Returns the number of calendars currently cached. */
+  @Override
+  public synchronized int size() {
+    return calendars.size();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("FreeBusyCache{size=%d, hits=%d, partialHits=%d, misses=%d, evictions=%d}",
+        size(), getHitCount(), getPartialHitCount(), getMissCount(), getEvictionCount());
+  }
+
+  /**
+   * Returns the fetched ranges of a calendar that have not expired, sorted by start
+   * time, dropping the expired ones. Marks the calendar as recently used.
+   */
+  private List<Range> liveRanges(String calId) {
+    List<Range> ranges = calendars.get(calId);
+    if (ranges == null) {
+      return new ArrayList<Range>();
+    }
+    long now = clock.getAsLong();
+    ranges.removeIf(range -> now - range.fetchedAt >= ttlMs);
+    return ranges;
+  }
+
+  /** Removes the range that was fetched the longest time ago. */
+  private static void removeOldest(List<Range> ranges) {
+    Range oldest = ranges.get(0);
+    for (Range range : ranges) {
+      if (range.fetchedAt < oldest.fetchedAt) {
+        oldest = range;
+      }
+    }
+    ranges.remove(oldest);
+  }
+
+  /** Returns the busy periods of the ranges that overlap the period from start to end. */
+  private static long[] busyBetween(List<Range> ranges, long start, long end) {
+    int length = 0;
+    for (Range range : ranges) {
+      length += range.busy.length;
+    }
+    long[] busy = new long[length];
+    int size = 0;
+    for (Range range : ranges) {
+      for (int i = 0; i < range.busy.length; i += 2) {
+        if (range.busy[i] < end && range.busy[i + 1] > start) {
+          busy[size++] = range.busy[i];
+          busy[size++] = range.busy[i + 1];
+        }
+      }
+    }
+    return size == length ? busy : Arrays.copyOf(busy, size);
+  }
+}
@@ -0,0 +1,155 @@
+package main.java.com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes coordinates as geohashes, and finds the geohash cells covering an area of
+ * the map. A geohash splits the world into a grid whose cells are named by a string,
+ * where each character splits its cell into 32 smaller ones. Places in the same cell
+ * share a prefix, so locations stored with every prefix of their geohash can be
+ * queried by cell.
+ */
+public final class GeoHash {
+  // The length of the geohashes stored, cells of about 38m by 19m.
+  public static final int MAX_PRECISION = 8;
+  // The most cells a query is split into, as datastore runs one query per value of
+  // an IN filter and allows at most 30 of them.
+  public static final int MAX_CELLS = 30;
+  public static final double EARTH_RADIUS_METERS = 6371008.8;
+  private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+  private static final int BITS_PER_CHAR = 5;
+
+  private GeoHash() {}
+
+  /**
+   * Returns the geohash of a point. Latitudes outside [-90, 90] are clamped to it,
+   * and longitudes outside [-180, 180] are wrapped into it.
+   * @param precision The length of the geohash, between 1 and MAX_PRECISION.
+   */
+  public static String encode(double lat, double lng, int precision) {
+    return fromIndices(column(lng, precision), row(lat, precision), precision);
+  }
+
+  /** Returns the geohashes of a point of length 1 to MAX_PRECISION, shortest first. */
+  public static List<String> prefixes(double lat, double lng) {
+    String geohash = encode(lat, lng, MAX_PRECISION);
+    List<String> prefixes = new ArrayList<>();
+    for (int length = 1; length <= MAX_PRECISION; length++) {
+      prefixes.add(geohash.substring(0, length));
+    }
+    return prefixes;
+  }
+
+  /**
+   * Returns the smallest geohash cells, all of the same length, that cover a bounding
+   * box, or null if it needs more than MAX_CELLS cells of any length, e.g. when the
+   * whole world is shown. A box with west greater than east crosses the antimeridian.
+   */
+  public static List<String> cover(double south, double west, double north, double east) {
+    double[][] boxes = west <= east
+        ? new double[][] {{south, west, north, east}}
+        : new double[][] {{south, west, north, 180}, {south, -180, north, east}};
+    for (int precision = MAX_PRECISION; precision >= 1; precision--) {
+      long cellCount = 0;
+      for (double[] box : boxes) {
+        cellCount += (column(box[3], precision) - column(box[1], precision) + 1)
+            * (row(box[2], precision) - row(box[0], precision) + 1);
+      }
+      if (cellCount <= MAX_CELLS) {
+        List<String> cells = new ArrayList<>();
+        for (double[] box : boxes) {
+          for (long col = column(box[1], precision); col <= column(box[3], precision); col++) {
+            for (long row = row(box[0], precision); row <= row(box[2], precision); row++) {
+              cells.add(fromIndices(col, row, precision));
+            }
+          }
+        }
+        return cells;
+      }
+    }
+    return null;
+  }
+
+  /** Returns true if a point is in a bounding box, which may cross the antimeridian. */
+  public static boolean contains(double south, double west, double north, double east,
+      double lat, double lng) {
+    if (lat < south || lat > north) {
+      return false;
+    }
+    return west <= east ? lng >= west && lng <= east : lng >= west || lng <= east;
+  }
+
+  /** Returns the great-circle distance between two points, in meters. */
+  public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLng = Math.toRadians(lng2 - lng1);
+    double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+        + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+        * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+    return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  /**
+   * Returns the bounding box around a circle, as {south, west, north, east}. It spans
+   * every longitude if the circle reaches a pole.
+   */
+  public static double[] boundingBox(double lat, double lng, double radiusMeters) {
+    double dLat = Math.toDegrees(radiusMeters / EARTH_RADIUS_METERS);
+    double south = lat - dLat;
+    double north = lat + dLat;
+    if (south <= -90 || north >= 90) {
+      return new double[] {Math.max(south, -90), -180, Math.min(north, 90), 180};
+    }
+    // Degrees of longitude get shorter away from the equator.
+    double dLng = Math.toDegrees(Math.asin(
+        Math.min(1, Math.sin(radiusMeters / EARTH_RADIUS_METERS) / Math.cos(Math.toRadians(lat)))));
+    return new double[] {south, wrap(lng - dLng), north, wrap(lng + dLng)};
+  }
+
+  /** Returns the column of the cell a longitude is in, at a precision. */
+  private static long column(double lng, int precision) {
+    return index((wrap(lng) + 180) / 360, (BITS_PER_CHAR * precision + 1) / 2);
+  }
+
+  /** Returns the row of the cell a latitude is in, at a precision. */
+  private static long row(double lat, int precision) {
+    return index((Math.max(-90, Math.min(90, lat)) + 90) / 180, BITS_PER_CHAR * precision / 2);
+  }
+
+  /** Returns the index of a fraction of the way across 2^bits cells. */
+  private static long index(double fraction, int bits) {
+    long cells = 1L << bits;
+    return Math.min(cells - 1, (long) Math.floor(fraction * cells));
+  }
+
+  /**
+   * Returns the geohash of a cell, by interleaving the bits of its column and row,
+   * starting with the column.
+   */
+  private static String fromIndices(long col, long row, int precision) {
+    int lngBits = (BITS_PER_CHAR * precision + 1) / 2;
+    int latBits = BITS_PER_CHAR * precision / 2;
+    StringBuilder geohash = new StringBuilder();
+    int value = 0;
+    for (int bit = 0; bit < BITS_PER_CHAR * precision; bit++) {
+      long bitValue = bit % 2 == 0
+          ? (col >> (--lngBits)) & 1
+          : (row >> (--latBits)) & 1;
+      value = (value << 1) | (int) bitValue;
+      if (bit % BITS_PER_CHAR == BITS_PER_CHAR - 1) {
+        geohash.append(BASE32.charAt(value));
+        value = 0;
+      }
+    }
+    return geohash.toString();
+  }
+
+  /** Wraps a longitude into [-180, 180], leaving 180 itself as the east edge. */
+  private static double wrap(double lng) {
+    if (lng >= -180 && lng <= 180) {
+      return lng;
+    }
+    return ((lng + 180) % 360 + 360) % 360 - 180;
+  }
+}
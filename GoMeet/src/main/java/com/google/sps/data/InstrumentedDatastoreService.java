@@ -0,0 +1,403 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreAttributes;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.EntityTranslator;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Index;
+import com.google.appengine.api.datastore.Index.IndexState;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyRange;
+import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultIterable;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import com.google.sps.data.DatastoreRpcs.Operation;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A DatastoreService that records each RPC it issues in the DatastoreRpcs of the current
+ * thread, with the number and serialized size of the entities read or written and the
+ * time taken. When no recording was started, calls are passed straight through.
+ * <p>Transactions are committed and rolled back on the Transaction itself, so only
+ * beginning them is recorded. The results of a query are counted as they are read, and
+ * those read through a QueryResultIterator or QueryResultIterable are not counted.
+ */
+public class InstrumentedDatastoreService implements DatastoreService {
+  private final DatastoreService ds;
+
+  /** Returns the Datastore service of this application, instrumented. */
+  public static DatastoreService getDatastoreService() {
+    return new InstrumentedDatastoreService(DatastoreServiceFactory.getDatastoreService());
+  }
+
+  public InstrumentedDatastoreService(DatastoreService ds) {
+    this.ds = ds;
+  }
+
+  /**
+   * Returns the transaction a call made without one uses, as the Datastore service
+   * does: the current transaction of the thread, if any.
+   */
+  private Transaction currentTransaction() {
+    return ds.getCurrentTransaction(null);
+  }
+
+  /** Returns the serialized size of an entity, in bytes. */
+  private static long sizeOf(Entity entity) {
+    return entity == null ? 0 : EntityTranslator.convertToPb(entity).getSerializedSize();
+  }
+
+  private static long sizeOf(Iterable<Entity> entities) {
+    long bytes = 0;
+    for (Entity entity : entities) {
+      bytes += sizeOf(entity);
+    }
+    return bytes;
+  }
+
+  private static int countOf(Iterable<?> items) {
+    if (items instanceof Collection) {
+      return ((Collection<?>) items).size();
+    }
+    int count = 0;
+    for (Object item : items) {
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public Entity get(Key key) throws EntityNotFoundException {
+    return get(currentTransaction(), key);
+  }
+
+  @Override
+  public Entity get(Transaction txn, Key key) throws EntityNotFoundException {
+    DatastoreRpcs rpcs = DatastoreRpcs.current();
+    if (rpcs == null) {
+      return ds.get(txn, key);
+    }
+    long start = System.nanoTime();
+    Entity entity = null;
+    try {
+      entity = ds.get(txn, key);
+      return entity;
+    } finally {
+      rpcs.recordSingleGet(sizeOf(entity), System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public Map<Key, Entity> get(Iterable<Key> keys) {
+    return get(currentTransaction(), keys);
+  }
+
+  @Override
+  public Map<Key, Entity> get(Transaction txn, Iterable<Key> keys) {
+    DatastoreRpcs rpcs = DatastoreRpcs.current();
+    if (rpcs == null) {
+      return ds.get(txn, keys);
+    }
+    long start = System.nanoTime();
+    Map<Key, Entity> entities = ds.get(txn, keys);
+    long nanos = System.nanoTime() - start;
+    rpcs.record(Operation.GET, entities.size(), sizeOf(entities.values()), nanos);
+    return entities;
+  }
+
+  @Override
+  public Key put(Entity entity) {
+    return put(currentTransaction(), entity);
+  }
+
+  @Override
+  public Key put(Transaction txn, Entity entity) {
+    DatastoreRpcs rpcs = DatastoreRpcs.current();
+    if (rpcs == null) {
+      return ds.put(txn, entity);
+    }
+    long start = System.nanoTime();
+    Key key = ds.put(txn, entity);
+    long nanos = System.nanoTime() - start;
+    rpcs.record(Operation.PUT, 1, sizeOf(entity), nanos);
+    return key;
+  }
+
+  @Override
+  public List<Key> put(Iterable<Entity> entities) {
+    return put(currentTransaction(), entities);
+  }
+
+  @Override
+  public List<Key> put(Transaction txn, Iterable<Entity> entities) {
+    DatastoreRpcs rpcs = DatastoreRpcs.current();
+    if (rpcs == null) {
+      return ds.put(txn, entities);
+    }
+    long start = System.nanoTime();
+    List<Key> keys = ds.put(txn, entities);
+    long nanos = System.nanoTime() - start;
+    rpcs.record(Operation.PUT, keys.size(), sizeOf(entities), nanos);
+    return keys;
+  }
+
+  @Override
+  public void delete(Key... keys) {
+    delete(currentTransaction(), Arrays.asList(keys));
+  }
+
+  @Override
+  public void delete(Transaction txn, Key... keys) {
+    delete(txn, Arrays.asList(keys));
+  }
+
+  @Override
+  public void delete(Iterable<Key> keys) {
+    delete(currentTransaction(), keys);
+  }
+
+  @Override
+  public void delete(Transaction txn, Iterable<Key> keys) {
+    DatastoreRpcs rpcs = DatastoreRpcs.current();
+    if (rpcs == null) {
+      ds.delete(txn, keys);
+      return;
+    }
+    long start = System.nanoTime();
+    ds.delete(txn, keys);
+    rpcs.record(Operation.DELETE, countOf(keys), 0, System.nanoTime() - start);
+  }
+
+  @Override
+  public PreparedQuery prepare(Query query) {
+    return new InstrumentedPreparedQuery(ds.prepare(query));
+  }
+
+  @Override
+  public PreparedQuery prepare(Transaction txn, Query query) {
+    return new InstrumentedPreparedQuery(ds.prepare(txn, query));
+  }
+
+  @Override
+  public Transaction beginTransaction() {
+    return beginTransaction(TransactionOptions.Builder.withDefaults());
+  }
+
+  @Override
+  public Transaction beginTransaction(TransactionOptions options) {
+    DatastoreRpcs rpcs = DatastoreRpcs.current();
+    if (rpcs == null) {
+      return ds.beginTransaction(options);
+    }
+    long start = System.nanoTime();
+    Transaction txn = ds.beginTransaction(options);
+    rpcs.record(Operation.BEGIN_TRANSACTION, 0, 0, System.nanoTime() - start);
+    return txn;
+  }
+
+  @Override
+  public KeyRange allocateIds(String kind, long num) {
+    return allocateIds(null, kind, num);
+  }
+
+  @Override
+  public KeyRange allocateIds(Key parent, String kind, long num) {
+    DatastoreRpcs rpcs = DatastoreRpcs.current();
+    if (rpcs == null) {
+      return ds.allocateIds(parent, kind, num);
+    }
+    long start = System.nanoTime();
+    KeyRange range = ds.allocateIds(parent, kind, num);
+    rpcs.record(Operation.ALLOCATE_IDS, 0, 0, System.nanoTime() - start);
+    return range;
+  }
+
+  @Override
+  public KeyRangeState allocateIdRange(KeyRange range) {
+    return ds.allocateIdRange(range);
+  }
+
+  @Override
+  public DatastoreAttributes getDatastoreAttributes() {
+    return ds.getDatastoreAttributes();
+  }
+
+  @Override
+  public Map<Index, IndexState> getIndexes() {
+    return ds.getIndexes();
+  }
+
+  @Override
+  public Transaction getCurrentTransaction() {
+    return ds.getCurrentTransaction();
+  }
+
+  @Override
+  public Transaction getCurrentTransaction(Transaction returnedIfNoTxn) {
+    return ds.getCurrentTransaction(returnedIfNoTxn);
+  }
+
+  @Override
+  public Collection<Transaction> getActiveTransactions() {
+    return ds.getActiveTransactions();
+  }
+
+  /**
+   * A PreparedQuery that records each time it is run as a query RPC. Lists are counted
+   * as soon as they are returned, and iterators as they are read.
+   */
+  private static class InstrumentedPreparedQuery implements PreparedQuery {
+    private final PreparedQuery query;
+
+    InstrumentedPreparedQuery(PreparedQuery query) {
+      this.query = query;
+    }
+
+    /** Records the query, counting the entities it returned. */
+    private static <T extends List<Entity>> T recordList(DatastoreRpcs rpcs, long start,
+        T entities) {
+      rpcs.record(Operation.QUERY, entities.size(), sizeOf(entities),
+          System.nanoTime() - start);
+      return entities;
+    }
+
+    @Override
+    public List<Entity> asList(FetchOptions options) {
+      DatastoreRpcs rpcs = DatastoreRpcs.current();
+      if (rpcs == null) {
+        return query.asList(options);
+      }
+      return recordList(rpcs, System.nanoTime(), query.asList(options));
+    }
+
+    @Override
+    public QueryResultList<Entity> asQueryResultList(FetchOptions options) {
+      DatastoreRpcs rpcs = DatastoreRpcs.current();
+      if (rpcs == null) {
+        return query.asQueryResultList(options);
+      }
+      return recordList(rpcs, System.nanoTime(), query.asQueryResultList(options));
+    }
+
+    @Override
+    public Iterable<Entity> asIterable(FetchOptions options) {
+      return () -> asIterator(options);
+    }
+
+    @Override
+    public Iterable<Entity> asIterable() {
+      return () -> asIterator();
+    }
+
+    @Override
+    public Iterator<Entity> asIterator(FetchOptions options) {
+      return record(query.asIterator(options));
+    }
+
+    @Override
+    public Iterator<Entity> asIterator() {
+      return record(query.asIterator());
+    }
+
+    /** Records the query, and then the entities read from the iterator. */
+    private static Iterator<Entity> record(Iterator<Entity> entities) {
+      DatastoreRpcs rpcs = DatastoreRpcs.current();
+      if (rpcs == null) {
+        return entities;
+      }
+      rpcs.record(Operation.QUERY, 0, 0, 0);
+      return new Iterator<Entity>() {
+        @Override
+        public boolean hasNext() {
+          long start = System.nanoTime();
+          boolean hasNext = entities.hasNext();
+          rpcs.recordEntities(Operation.QUERY, 0, 0, System.nanoTime() - start);
+          return hasNext;
+        }
+
+        @Override
+        public Entity next() {
+          long start = System.nanoTime();
+          Entity entity = entities.next();
+          rpcs.recordEntities(Operation.QUERY, 1, sizeOf(entity), System.nanoTime() - start);
+          return entity;
+        }
+      };
+    }
+
+    @Override
+    public QueryResultIterable<Entity> asQueryResultIterable(FetchOptions options) {
+      recordUncounted();
+      return query.asQueryResultIterable(options);
+    }
+
+    @Override
+    public QueryResultIterable<Entity> asQueryResultIterable() {
+      recordUncounted();
+      return query.asQueryResultIterable();
+    }
+
+    @Override
+    public QueryResultIterator<Entity> asQueryResultIterator(FetchOptions options) {
+      recordUncounted();
+      return query.asQueryResultIterator(options);
+    }
+
+    @Override
+    public QueryResultIterator<Entity> asQueryResultIterator() {
+      recordUncounted();
+      return query.asQueryResultIterator();
+    }
+
+    @Override
+    public Entity asSingleEntity() throws TooManyResultsException {
+      DatastoreRpcs rpcs = DatastoreRpcs.current();
+      if (rpcs == null) {
+        return query.asSingleEntity();
+      }
+      long start = System.nanoTime();
+      Entity entity = query.asSingleEntity();
+      rpcs.record(Operation.QUERY, entity == null ? 0 : 1, sizeOf(entity),
+          System.nanoTime() - start);
+      return entity;
+    }
+
+    @Override
+    public int countEntities(FetchOptions options) {
+      DatastoreRpcs rpcs = DatastoreRpcs.current();
+      if (rpcs == null) {
+        return query.countEntities(options);
+      }
+      long start = System.nanoTime();
+      int count = query.countEntities(options);
+      rpcs.record(Operation.QUERY, 0, 0, System.nanoTime() - start);
+      return count;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public int countEntities() {
+      recordUncounted();
+      return query.countEntities();
+    }
+
+    /** Records a query whose results are not counted. */
+    private static void recordUncounted() {
+      DatastoreRpcs rpcs = DatastoreRpcs.current();
+      if (rpcs != null) {
+        rpcs.record(Operation.QUERY, 0, 0, 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package com.google.sps.data;
+
+import java.util.Arrays;
+
+/**
+ * Finds the free slots in a window of time, given a set of busy intervals.
+ * Intervals are kept as primitive start and end arrays of milliseconds since
+ * the Unix epoch, so that large numbers of them can be processed without
+ * creating an object per interval.
+ * This class is not thread-safe.
+ */
+public class IntervalSweep {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private long[] starts;
+  private long[] ends;
+  private int size = 0;
+
+  public IntervalSweep() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor.
+   * @param capacity The number of intervals expected, to avoid growing the arrays.
+   */
+  public IntervalSweep(int capacity) {
+    capacity = Math.max(capacity, 1);
+    this.starts = new long[capacity];
+    this.ends = new long[capacity];
+  }
+
+  /**
+   * Adds a busy interval. Empty intervals (end not after start) are ignored.
+   * @param start The start of the interval, inclusive.
+   * @param end The end of the interval, exclusive.
+   */
+  public void add(long start, long end) {
+    if (end <= start) {
+      return;
+    }
+    if (this.size == this.starts.length) {
+      int capacity = this.size * 2;
+      this.starts = Arrays.copyOf(this.starts, capacity);
+      this.ends = Arrays.copyOf(this.ends, capacity);
+    }
+    this.starts[this.size] = start;
+    this.ends[this.size] = end;
+    this.size++;
+  }
+
+  /**
+   * Adds busy intervals packed as start and end pairs
+   * (i.e. [start0, end0, start1, end1, ...]).
+   */
+  public void addAll(long[] packed) {
+    for (int i = 0; i + 1 < packed.length; i += 2) {
+      add(packed[i], packed[i + 1]);
+    }
+  }
+
+  /** Returns the number of busy intervals added. */
+  public int size() {
+    return this.size;
+  }
+
+  /** Removes all the busy intervals, keeping the allocated arrays. */
+  public void clear() {
+    this.size = 0;
+  }
+
+  /**
+   * Computes the free slots between windowStart and windowEnd that are at least
+   * minDuration long, i.e. the gaps in the union of the busy intervals.
+   * The starts and ends are sorted independently: at any instant, the number of
+   * busy intervals covering it is the number of starts minus the number of ends
+   * before it, so a single pass over both arrays finds where that count is zero.
+   * @param windowStart The start of the window to search in.
+   * @param windowEnd The end of the window to search in.
+   * @param minDuration The minimum length of a free slot, in milliseconds.
+   * @return The free slots in chronological order, packed as start and end pairs.
+   */
+  public long[] freeSlots(long windowStart, long windowEnd, long minDuration) {
+    Arrays.sort(this.starts, 0, this.size);
+    Arrays.sort(this.ends, 0, this.size);
+
+    // There can be at most one more free slot than there are busy intervals.
+    long[] slots = new long[2 * (this.size + 1)];
+    int slotCount = 0;
+    long freeFrom = windowStart;
+    int busyCount = 0;
+    int i = 0;
+    int j = 0;
+    while (i < this.size) {
+      // Take starts before ends at the same instant, so that touching
+      // intervals do not leave an empty gap between them.
+      if (this.starts[i] <= this.ends[j]) {
+        if (busyCount == 0) {
+          slotCount = addSlot(slots, slotCount, freeFrom, this.starts[i],
+              windowStart, windowEnd, minDuration);
+        }
+        busyCount++;
+        i++;
+      } else {
+        busyCount--;
+        if (busyCount == 0) {
+          freeFrom = this.ends[j];
+        }
+        j++;
+      }
+    }
+    // Every interval has started, so the rest is free after the latest end.
+    if (this.size > 0) {
+      freeFrom = this.ends[this.size - 1];
+    }
+    slotCount = addSlot(slots, slotCount, freeFrom, windowEnd,
+        windowStart, windowEnd, minDuration);
+
+    return slotCount == slots.length ? slots : Arrays.copyOf(slots, slotCount);
+  }
+
+  /**
+   * Adds the slot from start to end, clamped to the window, if it is long enough.
+   * @return The new number of values in 'slots'.
+   */
+  private static int addSlot(long[] slots, int slotCount, long start, long end,
+      long windowStart, long windowEnd, long minDuration) {
+    start = Math.max(start, windowStart);
+    end = Math.min(end, windowEnd);
+    if (end > start && end - start >= minDuration) {
+      slots[slotCount++] = start;
+      slots[slotCount++] = end;
+    }
+    return slotCount;
+  }
+}
@@ -0,0 +1,117 @@
+package com.google.sps.data;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies, in microseconds, that can be recorded to from many threads
+ * without locking. As in HdrHistogram, each power of two is split into SUB_BUCKETS
+ * buckets of equal width, so every latency is counted in a bucket within 1/SUB_BUCKETS
+ * of its value, from 1 microsecond to over 19 hours, in a few hundred counters.
+ * This class is thread-safe.
+ */
+public class LatencyHistogram {
+  // The number of buckets each power of two is split into, as a power of two.
+  private static final int SUB_BUCKET_BITS = 3;
+  public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Latencies longer than this are counted as this.
+  public static final long MAX_MICROS = 1L << 36;
+  private static final int BUCKET_COUNT = bucketIndex(MAX_MICROS) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder sumMicros = new LongAdder();
+
+  /** Records a latency, in nanoseconds. */
+  public void record(long nanos) {
+    long micros = Math.max(0, Math.min(MAX_MICROS, nanos / 1000));
+    counts.incrementAndGet(bucketIndex(micros));
+    sumMicros.add(micros);
+  }
+
+  /** Returns the number of latencies recorded. */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /** Returns the sum of the latencies recorded, in microseconds. */
+  public long getSumMicros() {
+    return sumMicros.sum();
+  }
+
+  /**
+   * Returns the number of latencies recorded up to and including a bound, as counted by
+   * a Prometheus "le" bucket. It is exact when the bound is the largest latency of a
+   * bucket, e.g. one less than a power of two, and otherwise includes the latencies in
+   * the bucket the bound is in.
+   * @param micros The bound, in microseconds.
+   */
+  public long getCountAtMost(long micros) {
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT && bucketStart(i) <= micros; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the latency, in microseconds, that the given percentage of latencies
+   * recorded are at most, to within the width of its bucket, or 0 if none were recorded.
+   * @param percentile The percentage, between 0 and 100.
+   */
+  public long getValueAtPercentile(double percentile) {
+    long[] snapshot = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        // The largest value in the bucket.
+        return Math.min(MAX_MICROS, bucketStart(i + 1) - 1);
+      }
+    }
+    return MAX_MICROS;
+  }
+
+  /**
+   * Returns the bucket of a latency. Latencies below SUB_BUCKETS each have a bucket of
+   * their own, and larger ones are placed by their highest bit and the SUB_BUCKET_BITS
+   * bits below it.
+   */
+  private static int bucketIndex(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+    int subBucket = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the smallest latency, in microseconds, counted in a bucket. */
+  private static long bucketStart(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = index % SUB_BUCKETS;
+    return (SUB_BUCKETS + subBucket) << (magnitude - SUB_BUCKET_BITS);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("LatencyHistogram{count=%d, p50=%dus, p99=%dus, max=%dus}",
+        getCount(), getValueAtPercentile(50), getValueAtPercentile(99),
+        getValueAtPercentile(100));
+  }
+}
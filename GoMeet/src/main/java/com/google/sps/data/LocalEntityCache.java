@@ -0,0 +1,213 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * An EntityCache held in the memory of this instance.
+ * Each entity expires after the TTL, and once more than the maximum number of entities
+ * are cached, the least recently used one is evicted. Keys that were not found can
+ * also be cached, for a TTL of their own, so that repeated requests for a missing
+ * entity do not each read Datastore.
+ * All times are in milliseconds. This class is thread-safe.
+ */
+public class LocalEntityCache implements EntityCache, CacheStats {
+  public static final int DEFAULT_MAX_ENTITIES = 1000;
+  public static final long DEFAULT_TTL_MS = 5 * 60 * 1000; // 5 minutes.
+  public static final long DEFAULT_NOT_FOUND_TTL_MS = 30 * 1000; // 30 seconds.
+
+  private final long ttlMs;
+  private final long notFoundTtlMs;
+  private final LongSupplier clock;
+  private final Loader loader;
+  private final LinkedHashMap<Key, Cached> entities;
+  // Incremented by every write, so that a load that raced with a write is not cached.
+  private long writeCount;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong loadCount = new AtomicLong();
+  private final AtomicLong totalLoadNanos = new AtomicLong();
+
+  /** A cached entity, or a key that was not found if the entity is null. */
+  private static class Cached {
+    final Entity entity;
+    final long expiresAt;
+
+    Cached(Entity entity, long expiresAt) {
+      this.entity = entity;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /** Constructor, for a cache that loads entities from Datastore. */
+  public LocalEntityCache() {
+    this(DEFAULT_MAX_ENTITIES, DEFAULT_TTL_MS, DEFAULT_NOT_FOUND_TTL_MS,
+        System::currentTimeMillis,
+        key -> InstrumentedDatastoreService.getDatastoreService().get(null, key));
+  }
+
+  /**
+   * Constructor.
+   * @param maxEntities The maximum number of entities, and keys not found, to cache.
+   * @param ttlMs How long an entity is served from the cache, in milliseconds.
+   * @param notFoundTtlMs How long a key that was not found is remembered, in
+   * milliseconds, or 0 to not cache keys that were not found.
+   * @param clock The source of the current time in milliseconds, to allow for
+   * easier testing.
+   * @param loader Loads the entities that are not cached.
+   */
+  public LocalEntityCache(int maxEntities, long ttlMs, long notFoundTtlMs,
+      LongSupplier clock, Loader loader) {
+    this.ttlMs = ttlMs;
+    this.notFoundTtlMs = notFoundTtlMs;
+    this.clock = clock;
+    this.loader = loader;
+    // An access ordered map, so that the eldest entry is the least recently used.
+    this.entities = new LinkedHashMap<Key, Cached>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+        if (size() > maxEntities) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  @Override
+  public Entity get(Key key) throws EntityNotFoundException {
+    long loadWriteCount;
+    synchronized (this) {
+      Cached cached = live(key);
+      if (cached != null) {
+        hitCount.incrementAndGet();
+        if (cached.entity == null) {
+          throw new EntityNotFoundException(key);
+        }
+        return cached.entity.clone();
+      }
+      loadWriteCount = writeCount;
+    }
+    missCount.incrementAndGet();
+
+    // The entity is loaded without holding the lock, so that other keys can be read.
+    long start = System.nanoTime();
+    Entity entity;
+    try {
+      entity = loader.load(key);
+    } catch (EntityNotFoundException e) {
+      recordLoad(start);
+      if (notFoundTtlMs > 0) {
+        cacheLoaded(key, null, notFoundTtlMs, loadWriteCount);
+      }
+      throw e;
+    }
+    recordLoad(start);
+    cacheLoaded(key, entity.clone(), ttlMs, loadWriteCount);
+    return entity;
+  }
+
+  @Override
+  public synchronized Entity getIfPresent(Key key) {
+    Cached cached = live(key);
+    if (cached == null || cached.entity == null) {
+      return null;
+    }
+    hitCount.incrementAndGet();
+    return cached.entity.clone();
+  }
+
+  @Override
+  public synchronized void put(Entity entity) {
+    writeCount++;
+    entities.put(entity.getKey(), new Cached(entity.clone(), clock.getAsLong() + ttlMs));
+  }
+
+  @Override
+  public synchronized void invalidate(Key key) {
+    writeCount++;
+    entities.remove(key);
+  }
+
+  /** Removes all the cached entities. */
+  public synchronized void clear() {
+    writeCount++;
+    entities.clear();
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of reads that had to load the entity. */
+  @Override
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the average time taken to load an entity on a miss, in milliseconds. */
+  public double getAverageLoadMillis() {
+    long loads = getLoadCount();
+    return loads == 0 ? 0 : getTotalLoadNanos() / 1e6 / loads;
+  }
+
+  @Override
+  public long getLoadCount() {
+    return loadCount.get();
+  }
+
+  @Override
+  public long getTotalLoadNanos() {
+    return totalLoadNanos.get();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /** Returns the number of entities, and keys not found, currently cached. */
+  @Override
+  public synchronized int size() {
+    return entities.size();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "LocalEntityCache{size=%d, hits=%d, misses=%d, hitRatio=%.3f, avgLoadMs=%.3f, evictions=%d}",
+        size(), getHitCount(), getMissCount(), getHitRatio(), getAverageLoadMillis(),
+        getEvictionCount());
+  }
+
+  /** Returns the cached entry of a key if it has not expired, dropping it if it has. */
+  private Cached live(Key key) {
+    Cached cached = entities.get(key);
+    if (cached != null && clock.getAsLong() >= cached.expiresAt) {
+      entities.remove(key);
+      return null;
+    }
+    return cached;
+  }
+
+  /** Caches a loaded entity, unless the cache was written since the load started. */
+  private synchronized void cacheLoaded(Key key, Entity entity, long ttl, long loadWriteCount) {
+    if (writeCount == loadWriteCount) {
+      entities.put(key, new Cached(entity, clock.getAsLong() + ttl));
+    }
+  }
+
+  private void recordLoad(long startNanos) {
+    loadCount.incrementAndGet();
+    totalLoadNanos.addAndGet(System.nanoTime() - startNanos);
+  }
+}
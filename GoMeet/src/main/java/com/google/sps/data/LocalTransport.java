@@ -0,0 +1,104 @@
+package com.google.sps.data;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Provider;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+
+/**
+ * A mail Transport that records the messages sent instead of delivering them. It is a
+ * local stand-in for a mail server, used by the tests and the email benchmark.
+ * Connecting and sending can be slowed down to simulate the round trips to a server,
+ * and messages to FAILING_DOMAIN are rejected.
+ */
+public class LocalTransport extends Transport {
+  public static final String PROTOCOL = "local";
+  public static final String FAILING_DOMAIN = "fail.invalid";
+  // Session properties for the delays, in milliseconds.
+  public static final String CONNECT_DELAY_PROPERTY = "mail.local.connectdelay";
+  public static final String SEND_DELAY_PROPERTY = "mail.local.senddelay";
+
+  private static final AtomicInteger CONNECTIONS = new AtomicInteger();
+  private static final List<String> RECIPIENTS = new CopyOnWriteArrayList<String>();
+
+  public LocalTransport(Session session, URLName urlName) {
+    super(session, urlName);
+  }
+
+  /**
+   * Returns a session that sends with LocalTransport.
+   * @param connectDelayMs How long connecting takes, in milliseconds.
+   * @param sendDelayMs How long sending each message takes, in milliseconds.
+   */
+  public static Session newSession(long connectDelayMs, long sendDelayMs) {
+    Properties properties = new Properties();
+    properties.setProperty("mail.transport.protocol", PROTOCOL);
+    properties.setProperty(CONNECT_DELAY_PROPERTY, Long.toString(connectDelayMs));
+    properties.setProperty(SEND_DELAY_PROPERTY, Long.toString(sendDelayMs));
+    Session session = Session.getInstance(properties);
+    session.addProvider(new Provider(
+        Provider.Type.TRANSPORT, PROTOCOL, LocalTransport.class.getName(), "GoMeet", "1"));
+    return session;
+  }
+
+  /** Returns the number of connections opened since the last reset. */
+  public static int getConnectionCount() {
+    return CONNECTIONS.get();
+  }
+
+  /** Returns the recipients of the messages sent since the last reset. */
+  public static List<String> getRecipients() {
+    return RECIPIENTS;
+  }
+
+  /** Forgets the connections and messages recorded so far. */
+  public static void reset() {
+    CONNECTIONS.set(0);
+    RECIPIENTS.clear();
+  }
+
+  @Override
+  protected boolean protocolConnect(String host, int port, String user, String password)
+      throws MessagingException {
+    pause(CONNECT_DELAY_PROPERTY);
+    CONNECTIONS.incrementAndGet();
+    return true;
+  }
+
+  @Override
+  public void sendMessage(Message message, Address[] addresses) throws MessagingException {
+    if (!isConnected()) {
+      throw new MessagingException("Not connected");
+    }
+    pause(SEND_DELAY_PROPERTY);
+    for (Address address : addresses) {
+      if (address.toString().endsWith("@" + FAILING_DOMAIN)) {
+        throw new SendFailedException("Rejected recipient: " + address);
+      }
+    }
+    for (Address address : addresses) {
+      RECIPIENTS.add(address.toString());
+    }
+  }
+
+  private void pause(String delayProperty) throws MessagingException {
+    long delayMs = Long.parseLong(session.getProperty(delayProperty));
+    if (delayMs <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(delayMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MessagingException("Interrupted");
+    }
+  }
+}
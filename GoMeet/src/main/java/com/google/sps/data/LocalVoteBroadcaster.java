@@ -0,0 +1,148 @@
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A VoteBroadcaster that delivers votes to the subscribers of this instance only.
+ * The first vote published to a topic schedules a message for the end of the coalescing
+ * window, and the votes published to the topic until then are added to that message.
+ * Votes published to a topic without subscribers are dropped. This class is thread-safe.
+ */
+public class LocalVoteBroadcaster implements VoteBroadcaster {
+  public static final long DEFAULT_COALESCE_MS = 250;
+  private static final AtomicLong THREAD_COUNT = new AtomicLong();
+
+  private final long coalesceMs;
+  private final ScheduledExecutorService scheduler;
+  private final Map<String, Set<Listener>> listeners = new HashMap<>();
+  // The votes not yet delivered: by topic, then by kind, then by entity.
+  private final Map<String, Map<String, Map<String, Long>>> pending = new HashMap<>();
+
+  private final AtomicLong publishCount = new AtomicLong();
+  private final AtomicLong messageCount = new AtomicLong();
+
+  /** Constructor, for a broadcaster that coalesces votes for DEFAULT_COALESCE_MS. */
+  public LocalVoteBroadcaster() {
+    this(DEFAULT_COALESCE_MS, Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "vote-broadcaster-" + THREAD_COUNT.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }));
+  }
+
+  /**
+   * Constructor.
+   * @param coalesceMs How long the votes published to a topic are collected before they
+   * are delivered, in milliseconds, or 0 to deliver each vote as it is published.
+   * @param scheduler Delivers the messages, once their window has passed.
+   */
+  public LocalVoteBroadcaster(long coalesceMs, ScheduledExecutorService scheduler) {
+    this.coalesceMs = coalesceMs;
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public void publish(String topic, String kind, String id, long delta) {
+    publishCount.incrementAndGet();
+    boolean first;
+    synchronized (this) {
+      if (!listeners.containsKey(topic)) {
+        return;
+      }
+      first = !pending.containsKey(topic);
+      pending.computeIfAbsent(topic, t -> new LinkedHashMap<>())
+          .computeIfAbsent(kind, k -> new LinkedHashMap<>())
+          .merge(id, delta, Long::sum);
+    }
+    if (!first) {
+      return; // The message of the topic is already scheduled.
+    }
+    if (coalesceMs <= 0) {
+      deliver(topic);
+    } else {
+      scheduler.schedule(() -> deliver(topic), coalesceMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public Subscription subscribe(Collection<String> topics, Listener listener) {
+    Set<String> subscribed = new LinkedHashSet<>(topics);
+    synchronized (this) {
+      for (String topic : subscribed) {
+        listeners.computeIfAbsent(topic, t -> new CopyOnWriteArraySet<>()).add(listener);
+      }
+    }
+    return () -> {
+      synchronized (this) {
+        for (String topic : subscribed) {
+          Set<Listener> topicListeners = listeners.get(topic);
+          if (topicListeners != null && topicListeners.remove(listener)
+              && topicListeners.isEmpty()) {
+            listeners.remove(topic);
+            pending.remove(topic);
+          }
+        }
+      }
+    };
+  }
+
+  /** Delivers the votes pending for every topic now, e.g. before shutting down. */
+  public void flush() {
+    List<String> topics;
+    synchronized (this) {
+      topics = new ArrayList<>(pending.keySet());
+    }
+    for (String topic : topics) {
+      deliver(topic);
+    }
+  }
+
+  /** Returns the number of topics with subscribers. */
+  public synchronized int getTopicCount() {
+    return listeners.size();
+  }
+
+  /** Returns the number of votes published, including those without subscribers. */
+  public long getPublishCount() {
+    return publishCount.get();
+  }
+
+  /** Returns the number of messages delivered to subscribers. */
+  public long getMessageCount() {
+    return messageCount.get();
+  }
+
+  /** Delivers the votes pending for a topic to its subscribers, outside of the lock. */
+  private void deliver(String topic) {
+    Map<String, Map<String, Long>> deltas;
+    Set<Listener> topicListeners;
+    synchronized (this) {
+      deltas = pending.remove(topic);
+      topicListeners = listeners.get(topic);
+    }
+    if (deltas == null || topicListeners == null) {
+      return;
+    }
+    for (Listener listener : topicListeners) {
+      try {
+        listener.onVotes(topic, deltas);
+        messageCount.incrementAndGet();
+      } catch (RuntimeException e) {
+        // One failing subscriber must not stop the others from receiving the votes.
+        System.err.println("Could not deliver votes of " + topic);
+      }
+    }
+  }
+}
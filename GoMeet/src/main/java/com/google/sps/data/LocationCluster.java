@@ -0,0 +1,55 @@
+package main.java.com.google.sps.data;
+
+/**
+ * A group of nearby locations of a meeting, shown as one marker at a zoom level of the
+ * map. It is at the centroid of its locations, and is named after the most voted one.
+ */
+public class LocationCluster {
+  private final double lat;
+  private final double lng;
+  private final int count;
+  private final String title;
+  private final String keyString;
+
+  /**
+   * Constructor.
+   * @param lat The latitude of the centroid of the locations.
+   * @param lng The longitude of the centroid of the locations.
+   * @param count The number of locations in the cluster.
+   * @param title The title of the location with the most votes.
+   * @param keyString The key string of the location with the most votes.
+   */
+  public LocationCluster(double lat, double lng, int count, String title, String keyString) {
+    this.lat = lat;
+    this.lng = lng;
+    this.count = count;
+    this.title = title;
+    this.keyString = keyString;
+  }
+
+  public double getLat() {
+    return lat;
+  }
+
+  public double getLng() {
+    return lng;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public String getKeyString() {
+    return keyString;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("LocationCluster{%.4f,%.4f, count=%d, title=%s}", lat, lng, count,
+        title);
+  }
+}
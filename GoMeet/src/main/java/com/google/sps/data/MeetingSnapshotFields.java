@@ -0,0 +1,10 @@
+package com.google.sps.data;
+
+/** Names of the fields of a meeting snapshot, the data shown on the meeting event page */
+public class MeetingSnapshotFields {
+  public static final String USER_STATUS = "userStatus";
+  public static final String MEETING_EVENT = "meetingEvent";
+  public static final String MEETING_TIMES = "meetingTimes";
+  public static final String LOCATIONS = "locations";
+  public static final String POPULAR_LOCATIONS = "popularLocations";
+}
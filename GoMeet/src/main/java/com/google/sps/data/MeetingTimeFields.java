@@ -17,7 +17,15 @@ package com.google.sps.data;
 /** Names of fields of data in the Datastore MeetingTime entity */
 public class MeetingTimeFields {
   public static final String MEETING_TIME_ID = "meetingTimeId";
+  // Request field for fetching several MeetingTimes at once.
+  public static final String MEETING_TIME_IDS = "meetingTimeIds";
   public static final String DATETIME = "datetime";
   public static final String VOTE_COUNT = "voteCount";
   public static final String VOTERS = "voters";
+  // Request and response fields for paging through the voters of a MeetingTime.
+  public static final String VOTERS_CURSOR = "votersCursor";
+  public static final String VOTERS_LIMIT = "votersLimit";
+  // Request and response fields for checking whether someone has voted.
+  public static final String VOTER = "voter";
+  public static final String HAS_VOTED = "hasVoted";
 }
@@ -0,0 +1,221 @@
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the intervals in a window of time where at least a quorum of the required
+ * guests are free, given the busy intervals of each guest.
+ * The busy intervals are turned into start and end edges, which are sorted and swept
+ * once, counting how many guests are busy at each instant: O(N log N) for N intervals.
+ * Overlapping intervals of the same guest count that guest once. Optional guests are
+ * reported when they are busy, but do not count towards the quorum.
+ * Like IntervalSweep, edges are kept in primitive arrays, and this class is not
+ * thread-safe.
+ */
+public class QuorumSweep {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final List<String> guests;
+  private final boolean[] optional;
+  private final int requiredCount;
+
+  // Each edge is packed into its time and, separately, its guest and direction:
+  // 2 * guest for a start, 2 * guest + 1 for an end.
+  private long[] times;
+  private int[] kinds;
+  private int size = 0;
+
+  /**
+   * Constructor.
+   * @param guests The guests, in the order that busy guests are reported in.
+   * @param optionalGuests The guests that do not count towards the quorum.
+   */
+  public QuorumSweep(List<String> guests, Collection<String> optionalGuests) {
+    this.guests = new ArrayList<String>(guests);
+    this.optional = new boolean[guests.size()];
+    int required = 0;
+    for (int i = 0; i < guests.size(); i++) {
+      this.optional[i] = optionalGuests.contains(guests.get(i));
+      if (!this.optional[i]) {
+        required++;
+      }
+    }
+    this.requiredCount = required;
+    this.times = new long[DEFAULT_CAPACITY];
+    this.kinds = new int[DEFAULT_CAPACITY];
+  }
+
+  /** Returns the number of guests that count towards the quorum. */
+  public int getRequiredCount() {
+    return this.requiredCount;
+  }
+
+  /**
+   * Adds a busy interval of a guest. Empty intervals (end not after start) are ignored.
+   * @param guest The index of the guest, in the list given to the constructor.
+   * @param start The start of the interval, inclusive.
+   * @param end The end of the interval, exclusive.
+   */
+  public void add(int guest, long start, long end) {
+    if (guest < 0 || guest >= this.guests.size()) {
+      throw new IndexOutOfBoundsException("Unknown guest: " + guest);
+    }
+    if (end <= start) {
+      return;
+    }
+    if (this.size + 2 > this.times.length) {
+      int capacity = this.times.length * 2;
+      this.times = Arrays.copyOf(this.times, capacity);
+      this.kinds = Arrays.copyOf(this.kinds, capacity);
+    }
+    this.times[this.size] = start;
+    this.kinds[this.size++] = 2 * guest;
+    this.times[this.size] = end;
+    this.kinds[this.size++] = 2 * guest + 1;
+  }
+
+  /**
+   * Computes the maximal intervals between windowStart and windowEnd where at least
+   * 'quorum' of the required guests are free.
+   * @param windowStart The start of the window to search in.
+   * @param windowEnd The end of the window to search in.
+   * @param quorum The number of required guests that must be free.
+   * @param minDuration The minimum length of an interval, in milliseconds.
+   * @return The intervals in chronological order, each with the guests that are busy
+   * at some point during it.
+   */
+  public List<Slot> slots(long windowStart, long windowEnd, int quorum, long minDuration) {
+    if (quorum > this.requiredCount || windowEnd <= windowStart) {
+      return Collections.emptyList();
+    }
+    Integer[] order = sortedEdges();
+
+    List<Slot> slots = new ArrayList<Slot>();
+    int[] depth = new int[this.guests.size()]; // The busy intervals covering each guest.
+    int[] busyInSlot = new int[this.guests.size()]; // The last slot each guest was busy in.
+    int requiredBusy = 0;
+    int slotNumber = 1;
+    List<Integer> slotBusy = new ArrayList<Integer>();
+    boolean open = true; // Every guest is free before the first edge.
+    long openedAt = windowStart;
+
+    List<Integer> started = new ArrayList<Integer>(); // The guests that became busy.
+    int i = 0;
+    while (i < this.size) {
+      long time = clamp(this.times[order[i]], windowStart, windowEnd);
+      // Apply every edge at the same instant before checking the quorum, so that one
+      // guest becoming free as another becomes busy does not split the interval.
+      started.clear();
+      while (i < this.size && clamp(this.times[order[i]], windowStart, windowEnd) == time) {
+        int kind = this.kinds[order[i++]];
+        int guest = kind / 2;
+        if (kind % 2 == 0) {
+          if (++depth[guest] == 1) {
+            requiredBusy += this.optional[guest] ? 0 : 1;
+            started.add(guest);
+          }
+        } else if (--depth[guest] == 0) {
+          requiredBusy -= this.optional[guest] ? 0 : 1;
+        }
+      }
+
+      boolean enough = this.requiredCount - requiredBusy >= quorum;
+      if (open && !enough) {
+        addSlot(slots, openedAt, time, slotBusy, minDuration);
+        open = false;
+      } else if (open && time < windowEnd) {
+        // Guests that become busy as the slot ends are not busy during it.
+        for (int guest : started) {
+          if (depth[guest] > 0 && busyInSlot[guest] != slotNumber) {
+            busyInSlot[guest] = slotNumber;
+            slotBusy.add(guest);
+          }
+        }
+      } else if (!open && enough && time < windowEnd) {
+        open = true;
+        openedAt = time;
+        slotNumber++;
+        slotBusy = new ArrayList<Integer>();
+        for (int guest = 0; guest < depth.length; guest++) {
+          if (depth[guest] > 0) {
+            busyInSlot[guest] = slotNumber;
+            slotBusy.add(guest);
+          }
+        }
+      }
+    }
+    if (open) {
+      addSlot(slots, openedAt, windowEnd, slotBusy, minDuration);
+    }
+    return slots;
+  }
+
+  private static long clamp(long time, long windowStart, long windowEnd) {
+    return Math.max(windowStart, Math.min(windowEnd, time));
+  }
+
+  /** Returns the indices of the edges, sorted by time. */
+  private Integer[] sortedEdges() {
+    Integer[] order = new Integer[this.size];
+    for (int i = 0; i < this.size; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(this.times[a], this.times[b]));
+    return order;
+  }
+
+  /** Adds the slot from start to end, if it is long enough. */
+  private void addSlot(List<Slot> slots, long start, long end, List<Integer> busy,
+      long minDuration) {
+    if (end <= start || end - start < minDuration) {
+      return;
+    }
+    Collections.sort(busy);
+    List<String> busyGuests = new ArrayList<String>(busy.size());
+    for (int guest : busy) {
+      busyGuests.add(this.guests.get(guest));
+    }
+    slots.add(new Slot(start, end, busyGuests));
+  }
+
+  /** An interval where a quorum of the required guests are free. */
+  public static class Slot {
+    private final long start;
+    private final long end;
+    private final List<String> busyGuests;
+
+    public Slot(long start, long end, List<String> busyGuests) {
+      this.start = start;
+      this.end = end;
+      this.busyGuests = Collections.unmodifiableList(busyGuests);
+    }
+
+    /** Returns the start, in milliseconds since the Unix epoch. */
+    public long getStart() {
+      return this.start;
+    }
+
+    /** Returns the end, in milliseconds since the Unix epoch. */
+    public long getEnd() {
+      return this.end;
+    }
+
+    public long getDurationMs() {
+      return this.end - this.start;
+    }
+
+    /** Returns the guests busy at some point during the interval, in guest order. */
+    public List<String> getBusyGuests() {
+      return this.busyGuests;
+    }
+
+    @Override
+    public String toString() {
+      return "Slot{" + this.start + "-" + this.end + ", busy=" + this.busyGuests + "}";
+    }
+  }
+}
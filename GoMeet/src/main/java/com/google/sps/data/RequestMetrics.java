@@ -0,0 +1,268 @@
+package com.google.sps.data;
+
+import com.google.sps.data.DatastoreRpcs.Operation;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Counts the requests to each route by status code, and records their latencies and the
+ * Datastore RPCs they issued. The statistics of the caches registered are published too.
+ * Recording takes no locks once a route and status code have been seen, so that it can
+ * be left on for every request. The metrics are published in the Prometheus text format.
+ * This class is thread-safe.
+ */
+public class RequestMetrics {
+  public static final String REQUESTS_METRIC = "gomeet_http_requests_total";
+  public static final String LATENCY_METRIC = "gomeet_http_request_duration_seconds";
+  public static final String DATASTORE_RPCS_METRIC = "gomeet_datastore_rpcs_total";
+  public static final String DATASTORE_ENTITIES_METRIC = "gomeet_datastore_entities_total";
+  public static final String DATASTORE_BYTES_METRIC = "gomeet_datastore_bytes_total";
+  public static final String DATASTORE_SECONDS_METRIC = "gomeet_datastore_rpc_seconds_total";
+  public static final String CACHE_READS_METRIC = "gomeet_cache_reads_total";
+  public static final String CACHE_HIT_RATIO_METRIC = "gomeet_cache_hit_ratio";
+  public static final String CACHE_ENTRIES_METRIC = "gomeet_cache_entries";
+  public static final String CACHE_EVICTIONS_METRIC = "gomeet_cache_evictions_total";
+  public static final String CACHE_LOADS_METRIC = "gomeet_cache_loads_total";
+  public static final String CACHE_LOAD_SECONDS_METRIC = "gomeet_cache_load_seconds_total";
+  // The upper bounds of the latency buckets published, in microseconds. They are one less
+  // than powers of two, from 127us to about 34s, so the counts up to them are exact.
+  private static final int MIN_BOUND_BITS = 7;
+  private static final int MAX_BOUND_BITS = 25;
+
+  private final ConcurrentHashMap<String, Route> routes = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, CacheStats> caches = new ConcurrentHashMap<>();
+
+  /** The metrics of one route. */
+  private static class Route {
+    final ConcurrentHashMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    final LatencyHistogram latency = new LatencyHistogram();
+    // The totals of the Datastore RPCs of each operation, by its ordinal.
+    final DatastoreCounts[] datastore = new DatastoreCounts[Operation.values().length];
+
+    Route() {
+      for (int i = 0; i < datastore.length; i++) {
+        datastore[i] = new DatastoreCounts();
+      }
+    }
+  }
+
+  /** The totals of the Datastore RPCs of one operation. */
+  private static class DatastoreCounts {
+    final LongAdder rpcCount = new LongAdder();
+    final LongAdder entityCount = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final LongAdder micros = new LongAdder();
+  }
+
+  /**
+   * Records a request.
+   * @param route The path of the servlet that handled the request.
+   * @param status The status code of the response.
+   * @param nanos The time taken to handle the request, in nanoseconds.
+   */
+  public void record(String route, int status, long nanos) {
+    Route metrics = getRoute(route);
+    LongAdder statusCount = metrics.statusCounts.get(status);
+    if (statusCount == null) {
+      statusCount = metrics.statusCounts.computeIfAbsent(status, code -> new LongAdder());
+    }
+    statusCount.increment();
+    metrics.latency.record(nanos);
+  }
+
+  /**
+   * Records the Datastore RPCs issued by a request.
+   * @param route The path of the servlet that handled the request.
+   * @param rpcs The RPCs recorded while the request was handled.
+   */
+  public void recordDatastore(String route, DatastoreRpcs rpcs) {
+    Route metrics = getRoute(route);
+    for (Operation operation : Operation.values()) {
+      DatastoreRpcs.Totals totals = rpcs.getTotals(operation);
+      if (totals.getRpcCount() > 0) {
+        DatastoreCounts counts = metrics.datastore[operation.ordinal()];
+        counts.rpcCount.add(totals.getRpcCount());
+        counts.entityCount.add(totals.getEntityCount());
+        counts.bytes.add(totals.getBytes());
+        counts.micros.add(totals.getNanos() / 1000);
+      }
+    }
+  }
+
+  private Route getRoute(String route) {
+    // Looked up before computeIfAbsent, which locks even when the key is present.
+    Route metrics = routes.get(route);
+    if (metrics == null) {
+      metrics = routes.computeIfAbsent(route, name -> new Route());
+    }
+    return metrics;
+  }
+
+  /** Returns the number of requests to a route with a status code. */
+  public long getCount(String route, int status) {
+    Route metrics = routes.get(route);
+    LongAdder statusCount = metrics == null ? null : metrics.statusCounts.get(status);
+    return statusCount == null ? 0 : statusCount.sum();
+  }
+
+  /** Returns the latencies of the requests to a route, or null if it had none. */
+  public LatencyHistogram getLatency(String route) {
+    Route metrics = routes.get(route);
+    return metrics == null ? null : metrics.latency;
+  }
+
+  /** Returns the number of Datastore RPCs of an operation issued by requests to a route. */
+  public long getDatastoreRpcCount(String route, Operation operation) {
+    Route metrics = routes.get(route);
+    return metrics == null ? 0 : metrics.datastore[operation.ordinal()].rpcCount.sum();
+  }
+
+  /**
+   * Publishes the statistics of a cache with the metrics, replacing any cache
+   * registered with the same name.
+   * @param name The name of the cache, e.g. "meeting_event".
+   */
+  public void registerCache(String name, CacheStats cache) {
+    caches.put(name, cache);
+  }
+
+  /** Forgets every request recorded. The caches registered are kept. */
+  public void clear() {
+    routes.clear();
+  }
+
+  /**
+   * Writes the metrics in the Prometheus text exposition format: a counter of requests
+   * by route and status code, a histogram of latencies by route, and counters of the
+   * Datastore RPCs by route and operation. The caches registered are published as
+   * counters of their reads by result, evictions and loads, and gauges of their hit
+   * ratio and size. Routes and caches are sorted, so that the output is stable between
+   * scrapes.
+   */
+  public void writePrometheus(PrintWriter out) {
+    Map<String, Route> sortedRoutes = new TreeMap<>(routes);
+
+    out.println("# HELP " + REQUESTS_METRIC + " Requests handled, by route and status code.");
+    out.println("# TYPE " + REQUESTS_METRIC + " counter");
+    for (Map.Entry<String, Route> route : sortedRoutes.entrySet()) {
+      Map<Integer, LongAdder> statusCounts = new TreeMap<>(route.getValue().statusCounts);
+      for (Map.Entry<Integer, LongAdder> statusCount : statusCounts.entrySet()) {
+        out.println(REQUESTS_METRIC + "{route=\"" + escape(route.getKey()) + "\",status=\""
+            + statusCount.getKey() + "\"} " + statusCount.getValue().sum());
+      }
+    }
+
+    out.println("# HELP " + LATENCY_METRIC + " Time taken to handle requests, by route.");
+    out.println("# TYPE " + LATENCY_METRIC + " histogram");
+    for (Map.Entry<String, Route> route : sortedRoutes.entrySet()) {
+      String label = "route=\"" + escape(route.getKey()) + "\"";
+      LatencyHistogram latency = route.getValue().latency;
+      // The count is read first, so that no bucket is larger than it.
+      long count = latency.getCount();
+      for (int bits = MIN_BOUND_BITS; bits <= MAX_BOUND_BITS; bits++) {
+        long bound = (1L << bits) - 1;
+        out.println(LATENCY_METRIC + "_bucket{" + label + ",le=\"" + seconds(bound) + "\"} "
+            + Math.min(count, latency.getCountAtMost(bound)));
+      }
+      out.println(LATENCY_METRIC + "_bucket{" + label + ",le=\"+Inf\"} " + count);
+      out.println(LATENCY_METRIC + "_sum{" + label + "} " + seconds(latency.getSumMicros()));
+      out.println(LATENCY_METRIC + "_count{" + label + "} " + count);
+    }
+
+    writeDatastoreCounter(out, sortedRoutes, DATASTORE_RPCS_METRIC,
+        "Datastore RPCs issued, by route and operation.", counts -> counts.rpcCount.sum());
+    writeDatastoreCounter(out, sortedRoutes, DATASTORE_ENTITIES_METRIC,
+        "Entities read or written by Datastore RPCs, by route and operation.",
+        counts -> counts.entityCount.sum());
+    writeDatastoreCounter(out, sortedRoutes, DATASTORE_BYTES_METRIC,
+        "Serialized size of the entities read or written, by route and operation.",
+        counts -> counts.bytes.sum());
+    writeDatastoreCounter(out, sortedRoutes, DATASTORE_SECONDS_METRIC,
+        "Time taken by Datastore RPCs, by route and operation.",
+        counts -> seconds(counts.micros.sum()));
+
+    writeCaches(out);
+  }
+
+  /** Writes the statistics of the caches registered. */
+  private void writeCaches(PrintWriter out) {
+    Map<String, CacheStats> sortedCaches = new TreeMap<>(caches);
+
+    out.println("# HELP " + CACHE_READS_METRIC + " Reads of in-memory caches, by cache and "
+        + "whether they were served from it: a hit, partly (partial) or not at all (miss).");
+    out.println("# TYPE " + CACHE_READS_METRIC + " counter");
+    for (Map.Entry<String, CacheStats> cache : sortedCaches.entrySet()) {
+      String label = "cache=\"" + escape(cache.getKey()) + "\"";
+      CacheStats stats = cache.getValue();
+      out.println(CACHE_READS_METRIC + "{" + label + ",result=\"hit\"} " + stats.getHitCount());
+      // Only some caches serve reads partly.
+      if (stats.getPartialHitCount() > 0) {
+        out.println(CACHE_READS_METRIC + "{" + label + ",result=\"partial\"} "
+            + stats.getPartialHitCount());
+      }
+      out.println(CACHE_READS_METRIC + "{" + label + ",result=\"miss\"} " + stats.getMissCount());
+    }
+
+    writeCacheMetric(out, sortedCaches, CACHE_HIT_RATIO_METRIC, "gauge",
+        "Fraction of the reads of a cache served entirely from it, since it was created.",
+        CacheStats::getHitRatio);
+    writeCacheMetric(out, sortedCaches, CACHE_ENTRIES_METRIC, "gauge",
+        "Entries held by a cache.", CacheStats::size);
+    writeCacheMetric(out, sortedCaches, CACHE_EVICTIONS_METRIC, "counter",
+        "Entries evicted to keep a cache within its size.", CacheStats::getEvictionCount);
+
+    // Only the caches that load their own misses time them.
+    Map<String, CacheStats> loadingCaches = new TreeMap<>();
+    for (Map.Entry<String, CacheStats> cache : sortedCaches.entrySet()) {
+      if (cache.getValue().getLoadCount() > 0) {
+        loadingCaches.put(cache.getKey(), cache.getValue());
+      }
+    }
+    writeCacheMetric(out, loadingCaches, CACHE_LOADS_METRIC, "counter",
+        "Values loaded by a cache on a miss.", CacheStats::getLoadCount);
+    writeCacheMetric(out, loadingCaches, CACHE_LOAD_SECONDS_METRIC, "counter",
+        "Time taken to load the values of a cache on a miss.",
+        stats -> seconds(stats.getTotalLoadNanos() / 1000));
+  }
+
+  /** Writes a metric with a value for each cache. */
+  private static void writeCacheMetric(PrintWriter out, Map<String, CacheStats> sortedCaches,
+      String metric, String type, String help, Function<CacheStats, Object> value) {
+    out.println("# HELP " + metric + " " + help);
+    out.println("# TYPE " + metric + " " + type);
+    for (Map.Entry<String, CacheStats> cache : sortedCaches.entrySet()) {
+      out.println(metric + "{cache=\"" + escape(cache.getKey()) + "\"} "
+          + value.apply(cache.getValue()));
+    }
+  }
+
+  /** Writes a counter of the Datastore RPCs, skipping the operations never issued. */
+  private static void writeDatastoreCounter(PrintWriter out, Map<String, Route> sortedRoutes,
+      String metric, String help, Function<DatastoreCounts, Object> value) {
+    out.println("# HELP " + metric + " " + help);
+    out.println("# TYPE " + metric + " counter");
+    for (Map.Entry<String, Route> route : sortedRoutes.entrySet()) {
+      for (Operation operation : Operation.values()) {
+        DatastoreCounts counts = route.getValue().datastore[operation.ordinal()];
+        if (counts.rpcCount.sum() > 0) {
+          out.println(metric + "{route=\"" + escape(route.getKey()) + "\",operation=\""
+              + operation.name().toLowerCase() + "\"} " + value.apply(counts));
+        }
+      }
+    }
+  }
+
+  private static String seconds(long micros) {
+    return BigDecimal.valueOf(micros).movePointLeft(6).stripTrailingZeros().toPlainString();
+  }
+
+  /** Escapes a label value, as the Prometheus text format requires. */
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
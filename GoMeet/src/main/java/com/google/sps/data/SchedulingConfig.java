@@ -0,0 +1,162 @@
+package com.google.sps.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * The configuration that meeting times are proposed with: the timezone the times are
+ * read and written in, the Google Calendar API key, the window to search, and how many
+ * ranked meeting starts to propose, if any.
+ * Instances are immutable, so one can be shared by concurrent requests, and each
+ * request derives its own with the with*() methods rather than changing shared state.
+ */
+public final class SchedulingConfig {
+  public static final String DEFAULT_TIMEZONE = "AET"; // Australian Eastern Time
+  private static final Set<String> TIMEZONE_IDS =
+      Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(TimeZone.getAvailableIDs())));
+
+  private final String timezone;
+  private final String apiKey;
+  private final long periodStartMs;
+  private final long periodEndMs;
+  private final int durationMs;
+  private final int topK;
+  private final long stepMs;
+
+  /**
+   * Constructor, for a configuration without a window to search.
+   * @param timezone The timezone of the times. Must be one of the timezones as
+   * returned by TimeZone.getAvailableIDs()
+   * @param apiKey The API Key to use the Google Calendar API.
+   * @throws IllegalArgumentException if the timezone is not known.
+   */
+  public SchedulingConfig(String timezone, String apiKey) {
+    this(timezone, apiKey, 0, 0, 0, 0, SlotRanker.DEFAULT_STEP_MS);
+  }
+
+  private SchedulingConfig(String timezone, String apiKey, long periodStartMs,
+      long periodEndMs, int durationMs, int topK, long stepMs) {
+    if (!isValidTimezone(timezone)) {
+      throw new IllegalArgumentException("Unknown timezone: " + timezone);
+    }
+    this.timezone = timezone;
+    this.apiKey = apiKey == null ? "" : apiKey;
+    this.periodStartMs = periodStartMs;
+    this.periodEndMs = periodEndMs;
+    this.durationMs = durationMs;
+    this.topK = topK;
+    this.stepMs = stepMs;
+  }
+
+  /** Returns whether the timezone is one of those returned by TimeZone.getAvailableIDs() */
+  public static boolean isValidTimezone(String timezone) {
+    return timezone != null && TIMEZONE_IDS.contains(timezone);
+  }
+
+  /** Returns a copy of this configuration in another timezone. */
+  public SchedulingConfig withTimezone(String timezone) {
+    return new SchedulingConfig(timezone, this.apiKey, this.periodStartMs, this.periodEndMs,
+        this.durationMs, this.topK, this.stepMs);
+  }
+
+  /** Returns a copy of this configuration with another API key. */
+  public SchedulingConfig withApiKey(String apiKey) {
+    return new SchedulingConfig(this.timezone, apiKey, this.periodStartMs, this.periodEndMs,
+        this.durationMs, this.topK, this.stepMs);
+  }
+
+  /**
+   * Returns a copy of this configuration that searches a window.
+   * @param periodStart The start of the period in which to search for meeting times.
+   * @param periodEnd The end of the period in which search for meeting times.
+   * @param durationMs The duration of the meeting, in milliseconds.
+   */
+  public SchedulingConfig withWindow(Date periodStart, Date periodEnd, int durationMs) {
+    return new SchedulingConfig(this.timezone, this.apiKey, periodStart.getTime(),
+        periodEnd.getTime(), durationMs, this.topK, this.stepMs);
+  }
+
+  /**
+   * Returns a copy of this configuration that proposes the best meeting starts, rather
+   * than the start of each free period.
+   * @param topK The number of meeting starts to propose, or 0 to propose the start
+   * of each free period.
+   * @param stepMs The time between the meeting starts considered, in milliseconds.
+   */
+  public SchedulingConfig withRanking(int topK, long stepMs) {
+    if (topK < 0 || stepMs <= 0) {
+      throw new IllegalArgumentException("Invalid ranking: " + topK + ", " + stepMs);
+    }
+    return new SchedulingConfig(this.timezone, this.apiKey, this.periodStartMs,
+        this.periodEndMs, this.durationMs, topK, stepMs);
+  }
+
+  public String getTimezone() {
+    return this.timezone;
+  }
+
+  public TimeZone getTimeZone() {
+    return TimeZone.getTimeZone(this.timezone);
+  }
+
+  public String getApiKey() {
+    return this.apiKey;
+  }
+
+  public Date getPeriodStart() {
+    return new Date(this.periodStartMs);
+  }
+
+  public Date getPeriodEnd() {
+    return new Date(this.periodEndMs);
+  }
+
+  public int getDurationMs() {
+    return this.durationMs;
+  }
+
+  /** Returns the number of meeting starts to propose, or 0 to propose each free period. */
+  public int getTopK() {
+    return this.topK;
+  }
+
+  public long getStepMs() {
+    return this.stepMs;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof SchedulingConfig)) {
+      return false;
+    }
+    SchedulingConfig config = (SchedulingConfig) other;
+    return this.timezone.equals(config.timezone) && this.apiKey.equals(config.apiKey)
+        && this.periodStartMs == config.periodStartMs && this.periodEndMs == config.periodEndMs
+        && this.durationMs == config.durationMs && this.topK == config.topK
+        && this.stepMs == config.stepMs;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.timezone, this.apiKey, this.periodStartMs, this.periodEndMs,
+        this.durationMs, this.topK, this.stepMs);
+  }
+
+  /** Describes the configuration, without the API key. */
+  @Override
+  public String toString() {
+    return String.format(
+        "SchedulingConfig{timezone=%s, periodStart=%d, periodEnd=%d, durationMs=%d, "
+            + "topK=%d, stepMs=%d}",
+        this.timezone, this.periodStartMs, this.periodEndMs, this.durationMs, this.topK,
+        this.stepMs);
+  }
+}
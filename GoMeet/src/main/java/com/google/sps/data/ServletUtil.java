@@ -1,23 +1,47 @@
 package com.google.sps.data;
 
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
 import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.json.simple.JSONObject;
+import main.java.com.google.sps.data.Location;
 
 /** Class of utility functions shared by the servlets and their tests */
 public class ServletUtil {
+  // Gson is thread-safe and caches the type adapter of each type it has serialized,
+  // so a single instance is shared by all requests.
+  private static final Gson GSON = new Gson();
+  private static final TypeAdapter<Location> LOCATION_ADAPTER = 
+      GSON.getAdapter(Location.class);
+  private static final TypeAdapter<List<Location>> LOCATION_LIST_ADAPTER = 
+      GSON.getAdapter(new TypeToken<List<Location>>() {});
+  private static final TypeAdapter<MeetingEvent> MEETING_EVENT_ADAPTER = 
+      GSON.getAdapter(MeetingEvent.class);
+  /**
+   * Writes maps, including the anonymous HashMap subclasses built by the servlets, as
+   * JSON objects, and reads JSON objects back into maps.
+   */
+  public static final TypeAdapter<Map<String, Object>> MAP_ADAPTER = new JsonMapAdapter();
+
   /**
    * Convert Object to JSON string using the Gson library.
    * @param obj the object to be converted to JSON
    * @return a JSON String with the object contents.
    */
   public static String convertToJson(Object object) {
-    Gson gson = new Gson();
-    String json = gson.toJson(object);
-    return json;
+    return GSON.toJson(object);
   }
 
   /**
@@ -26,10 +50,108 @@ public class ServletUtil {
    * @return a JSON string
    */
   public static String convertMapToJson(HashMap<String, Object> hashMap) {
-    JSONObject json = new JSONObject();
-    json.putAll(hashMap);
+    StringWriter json = new StringWriter();
+    try {
+      writeJson(json, hashMap);
+    } catch (IOException e) {
+      // A StringWriter does not throw IOExceptions.
+      throw new IllegalStateException(e);
+    }
+    return json.toString();
+  }
+
+  /**
+   * Writes the JSON of a value to the response as it is serialized, without building 
+   * the JSON as a String first. Maps are written as JSON objects, including their null
+   * values, and other objects as Gson would write them.
+   * @param response the servlet response
+   * @param value the value to be written as JSON
+   */
+  public static void writeJson(HttpServletResponse response, Object value) throws IOException {
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    Writer writer = response.getWriter();
+    writeJson(writer, value);
+    writer.write('\n');
+    writer.flush();
+  }
+
+  /**
+   * Writes the JSON of a small value to the response, with the content length set.
+   * The JSON is built as a String first, so this is meant for small responses such as
+   * status and error messages.
+   * @param response the servlet response
+   * @param value the value to be written as JSON
+   */
+  public static void writeSmallJson(HttpServletResponse response, Object value) 
+      throws IOException {
+    StringWriter json = new StringWriter();
+    writeJson(json, value);
+    json.write('\n');
     String jsonString = json.toString();
-    return jsonString; 
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    response.setContentLength(jsonString.getBytes(StandardCharsets.UTF_8).length);
+    response.getWriter().write(jsonString);
+  }
+
+  /** Writes the JSON of a value to the writer, using the cached type adapters. */
+  @SuppressWarnings("unchecked")
+  private static void writeJson(Writer writer, Object value) throws IOException {
+    JsonWriter out = new JsonWriter(writer);
+    // Like json-simple, null values of maps are written, while Gson leaves out null fields.
+    out.setSerializeNulls(value instanceof Map);
+    if (value instanceof Map) {
+      MAP_ADAPTER.write(out, (Map<String, Object>) value);
+    } else if (value instanceof Location) {
+      LOCATION_ADAPTER.write(out, (Location) value);
+    } else if (value instanceof MeetingEvent) {
+      MEETING_EVENT_ADAPTER.write(out, (MeetingEvent) value);
+    } else if (value instanceof List && isLocationList((List<?>) value)) {
+      LOCATION_LIST_ADAPTER.write(out, (List<Location>) value);
+    } else if (value == null) {
+      out.nullValue();
+    } else {
+      ((TypeAdapter<Object>) GSON.getAdapter(value.getClass())).write(out, value);
+    }
+    out.flush();
+  }
+
+  private static boolean isLocationList(List<?> list) {
+    return !list.isEmpty() && list.get(0) instanceof Location;
+  }
+
+  /**
+   * Writes maps, and the maps nested in them, as JSON objects. Gson's own map adapter
+   * would write the anonymous HashMap subclasses built by the servlets as null, but it
+   * reads JSON objects correctly, so reading is left to it.
+   */
+  private static class JsonMapAdapter extends TypeAdapter<Map<String, Object>> {
+    private final TypeAdapter<Map<String, Object>> readAdapter =
+        GSON.getAdapter(new TypeToken<Map<String, Object>>() {});
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(JsonWriter out, Map<String, Object> map) throws IOException {
+      out.beginObject();
+      for (Map.Entry<String, Object> entry : map.entrySet()) {
+        out.name(String.valueOf(entry.getKey()));
+        Object value = entry.getValue();
+        if (value instanceof Map) {
+          write(out, (Map<String, Object>) value);
+        } else if (value == null) {
+          out.nullValue();
+        } else {
+          ((TypeAdapter<Object>) GSON.getAdapter(value.getClass())).write(out, value);
+        }
+      }
+      out.endObject();
+    }
+
+    @Override
+    public Map<String, Object> read(JsonReader in) throws IOException {
+      return readAdapter.read(in);
+    }
   }
 
   /** Send an error response JSON to the client code containing the status code and message 
@@ -45,10 +167,63 @@ public class ServletUtil {
       put("message", message);
     }};
     response.setStatus(status);
-    String error = ServletUtil.convertMapToJson(errorResponse);
-    response.setContentType("application/json");
-    response.getWriter().println(error);
-    return;
+    writeSmallJson(response, errorResponse);
+  }
+
+  /**
+   * Reads the meetingEventId parameter of the request. If it is missing, or is not
+   * the key string of a MeetingEvent entity, an error response is sent.
+   * @param request the servlet request
+   * @param response the servlet response, to send the error response on
+   * @return the meetingEventId, or null if an error response was sent
+   */
+  public static String getMeetingEventId(HttpServletRequest request, 
+      HttpServletResponse response) throws IOException {
+    String meetingEventId = request.getParameter(MeetingEventFields.MEETING_EVENT_ID);
+    if (meetingEventId == null) {
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
+          ErrorMessages.BAD_GET_REQUEST_ERROR);
+      return null;
+    }
+
+    Key key;
+    try {
+      key = KeyFactory.stringToKey(meetingEventId);
+    } catch (IllegalArgumentException e) {
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
+          ErrorMessages.INVALID_KEY_ERROR);
+      return null;
+    }
+    if (!key.getKind().equals("MeetingEvent")) {
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, 
+          ErrorMessages.INVALID_KEY_ERROR);
+      return null;
+    }
+    return meetingEventId;
+  }
+
+  /** 
+   * Parses map bounds in the format 'south,west,north,east' of LatLngBounds.toUrlValue().
+   * @return the bounds as {south, west, north, east}, or null if the string is not in
+   * that format or the coordinates are out of range. West is greater than east when the
+   * bounds cross the antimeridian.
+   */
+  public static double[] parseBounds(String boundsStr) {
+    String[] parts = boundsStr.split(",");
+    if (parts.length != 4) {
+      return null;
+    }
+    double[] bounds = new double[4];
+    try {
+      for (int i = 0; i < 4; i++) {
+        bounds[i] = Double.parseDouble(parts[i].trim());
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    boolean validLats = bounds[0] >= -90 && bounds[0] <= bounds[2] && bounds[2] <= 90;
+    boolean validLngs = Math.abs(bounds[1]) <= 180 && Math.abs(bounds[3]) <= 180;
+    return validLats && validLngs ? bounds : null;
   }
 
   /**
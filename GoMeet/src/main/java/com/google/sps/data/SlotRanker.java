@@ -0,0 +1,177 @@
+package com.google.sps.data;
+
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+
+/**
+ * Ranks the possible starts of a meeting inside free slots, and keeps the best K.
+ * Candidate starts are enumerated at a fixed step, aligned to the clock in the timezone
+ * (e.g. on the quarter hour), and each is scored as it is enumerated, so that only the K
+ * best are held at once however long the window is.
+ * A candidate scores higher for being within the preferred hours of the day, for leaving
+ * a buffer to the busy blocks around it, and for being earlier in the window.
+ * All times are in milliseconds since the Unix epoch. This class is thread-safe.
+ */
+public class SlotRanker {
+  public static final long DEFAULT_STEP_MS = 15 * 60 * 1000; // 15 minutes.
+  public static final int DEFAULT_PREFERRED_START_MINS = 9 * 60; // 9am.
+  public static final int DEFAULT_PREFERRED_END_MINS = 17 * 60; // 5pm.
+  public static final long DEFAULT_BUFFER_MS = 30 * 60 * 1000; // 30 minutes.
+
+  // The weights of the parts of the score, which add up to 1.
+  private static final double TIME_OF_DAY_WEIGHT = 0.5;
+  private static final double BUFFER_WEIGHT = 0.3;
+  private static final double EARLINESS_WEIGHT = 0.2;
+
+  private static final long MINUTE_MS = 60 * 1000;
+  private static final long DAY_MS = 24 * 60 * MINUTE_MS;
+
+  private final TimeZone timeZone;
+  private final long stepMs;
+  private final int preferredStartMins;
+  private final int preferredEndMins;
+  private final long bufferMs;
+
+  /**
+   * Constructor, preferring meetings between DEFAULT_PREFERRED_START_MINS and
+   * DEFAULT_PREFERRED_END_MINS, with DEFAULT_BUFFER_MS to the busy blocks around them.
+   * @param timeZone The timezone of the hours of the day.
+   * @param stepMs The time between candidate starts.
+   */
+  public SlotRanker(TimeZone timeZone, long stepMs) {
+    this(timeZone, stepMs, DEFAULT_PREFERRED_START_MINS, DEFAULT_PREFERRED_END_MINS,
+        DEFAULT_BUFFER_MS);
+  }
+
+  /**
+   * Constructor.
+   * @param timeZone The timezone of the hours of the day.
+   * @param stepMs The time between candidate starts.
+   * @param preferredStartMins The start of the preferred hours, in minutes after midnight.
+   * @param preferredEndMins The end of the preferred hours, in minutes after midnight.
+   * @param bufferMs The time to leave between a meeting and the busy blocks around it.
+   * Candidates with a larger buffer score no higher.
+   */
+  public SlotRanker(TimeZone timeZone, long stepMs, int preferredStartMins,
+      int preferredEndMins, long bufferMs) {
+    if (stepMs <= 0) {
+      throw new IllegalArgumentException("The step must be positive");
+    }
+    this.timeZone = timeZone;
+    this.stepMs = stepMs;
+    this.preferredStartMins = preferredStartMins;
+    this.preferredEndMins = preferredEndMins;
+    this.bufferMs = bufferMs;
+  }
+
+  /**
+   * Returns the K best starts of a meeting inside the free slots.
+   * @param freeSlots The free slots, packed as start and end pairs in increasing order,
+   * as returned by IntervalSweep.freeSlots.
+   * @param windowStart The start of the window searched. A slot that starts here is
+   * not after a busy block.
+   * @param windowEnd The end of the window searched. A slot that ends here is not
+   * before a busy block.
+   * @param durationMs The duration of the meeting.
+   * @param k The number of starts to return.
+   * @return At most k starts, best first. Starts with the same score are ordered
+   * earliest first.
+   */
+  public long[] topK(long[] freeSlots, long windowStart, long windowEnd, long durationMs,
+      int k) {
+    if (k <= 0) {
+      return new long[0];
+    }
+    // The worst of the candidates kept is at the head, to be replaced by a better one.
+    PriorityQueue<Candidate> best = new PriorityQueue<Candidate>(k + 1);
+    for (int i = 0; i + 1 < freeSlots.length; i += 2) {
+      long slotStart = freeSlots[i];
+      long slotEnd = freeSlots[i + 1];
+      // The slot's own start is a candidate, as it may be the only one that fits.
+      long start = slotStart;
+      while (start + durationMs <= slotEnd) {
+        double score =
+            score(start, durationMs, slotStart, slotEnd, windowStart, windowEnd);
+        if (best.size() < k) {
+          best.add(new Candidate(start, score));
+        } else if (best.peek().isWorseThan(start, score)) {
+          best.poll();
+          best.add(new Candidate(start, score));
+        }
+        start = nextStart(start);
+      }
+    }
+
+    long[] starts = new long[best.size()];
+    for (int i = starts.length - 1; i >= 0; i--) {
+      starts[i] = best.poll().start;
+    }
+    return starts;
+  }
+
+  /**
+   * Returns the score of a meeting start, between 0 and 1.
+   * @param start The start of the meeting.
+   * @param durationMs The duration of the meeting.
+   * @param slotStart The start of the free slot the meeting is in.
+   * @param slotEnd The end of the free slot the meeting is in.
+   * @param windowStart The start of the window searched.
+   * @param windowEnd The end of the window searched.
+   */
+  public double score(long start, long durationMs, long slotStart, long slotEnd,
+      long windowStart, long windowEnd) {
+    // Time of day: 1 within the preferred hours, less the further outside them.
+    long startMins = Math.floorMod(start + timeZone.getOffset(start), DAY_MS) / MINUTE_MS;
+    long endMins = startMins + (durationMs + MINUTE_MS - 1) / MINUTE_MS;
+    long outsideMins = Math.max(0,
+        Math.max(preferredStartMins - startMins, endMins - preferredEndMins));
+    double timeOfDay = 1.0 / (1.0 + outsideMins / 60.0);
+
+    // Buffer: the time to the nearest busy block, up to bufferMs. The edges of the
+    // window are not busy blocks.
+    double buffer = 1;
+    if (bufferMs > 0) {
+      long before = slotStart > windowStart ? start - slotStart : bufferMs;
+      long after = slotEnd < windowEnd ? slotEnd - (start + durationMs) : bufferMs;
+      buffer = (double) Math.min(bufferMs, Math.min(before, after)) / bufferMs;
+    }
+
+    // Earliness: 1 at the start of the window, 0 at its end.
+    double earliness = windowEnd > windowStart
+        ? 1 - (double) (start - windowStart) / (windowEnd - windowStart)
+        : 1;
+
+    return TIME_OF_DAY_WEIGHT * timeOfDay + BUFFER_WEIGHT * buffer
+        + EARLINESS_WEIGHT * earliness;
+  }
+
+  /** Returns the first start after 'start' that is aligned to the step on the local clock. */
+  private long nextStart(long start) {
+    long local = start + timeZone.getOffset(start);
+    return start + stepMs - Math.floorMod(local, stepMs);
+  }
+
+  /** A candidate start kept, ordered worst first. */
+  private static class Candidate implements Comparable<Candidate> {
+    final long start;
+    final double score;
+
+    Candidate(long start, double score) {
+      this.start = start;
+      this.score = score;
+    }
+
+    /** Returns whether this is worse than another candidate: a lower score, or later. */
+    boolean isWorseThan(long otherStart, double otherScore) {
+      return score < otherScore || (score == otherScore && start > otherStart);
+    }
+
+    @Override
+    public int compareTo(Candidate other) {
+      if (isWorseThan(other.start, other.score)) {
+        return -1;
+      }
+      return other.isWorseThan(start, score) ? 1 : 0;
+    }
+  }
+}
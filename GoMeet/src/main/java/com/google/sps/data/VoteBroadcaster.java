@@ -0,0 +1,46 @@
+package com.google.sps.data;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Publishes the votes recorded for meeting times and locations to the clients that
+ * are subscribed to them, e.g. the vote streams of the meeting event pages.
+ * Votes are published to a topic, the key string of the entity group they are recorded
+ * for: the MeetingTime for a meeting time, or the MeetingEvent for a location.
+ * Votes published to a topic within a short window are coalesced, so that a burst of
+ * votes is delivered to each subscriber as one message.
+ * Implementations must be thread-safe. Only the topics and the deltas cross this
+ * interface, so an implementation may deliver them through a pub/sub backend, to the
+ * subscribers of every instance.
+ */
+public interface VoteBroadcaster {
+  /** Receives the votes published to the topics subscribed to. */
+  interface Listener {
+    /**
+     * Called with the votes published to a topic since its last message.
+     * Must not block, as other subscribers may be waiting for it.
+     * @param topic The topic the votes were published to.
+     * @param deltas The number of votes each entity gained, by the kind of the entities,
+     * named as in MeetingSnapshotFields, then by the key string of the entity.
+     */
+    void onVotes(String topic, Map<String, Map<String, Long>> deltas);
+  }
+
+  /** A subscription to some topics, that receives messages until cancelled. */
+  interface Subscription {
+    void cancel();
+  }
+
+  /**
+   * Publishes votes recorded for an entity.
+   * @param topic The key string of the entity group the votes were recorded for.
+   * @param kind The kind of the entity, named as in MeetingSnapshotFields.
+   * @param id The key string of the entity.
+   * @param delta The number of votes recorded.
+   */
+  void publish(String topic, String kind, String id, long delta);
+
+  /** Subscribes a listener to the votes published to the topics. */
+  Subscription subscribe(Collection<String> topics, Listener listener);
+}
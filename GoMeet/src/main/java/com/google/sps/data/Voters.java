@@ -0,0 +1,127 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Transaction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The voters of a MeetingTime. Each voter is stored as a small Voter entity, keyed by a
+ * hash of the MeetingTime and the voter. Whether someone has voted is then a single key
+ * lookup, and a vote costs the same however many people have voted.
+ * Voter entities are root entities, each in its own entity group, so that votes for the
+ * same MeetingTime do not contend with each other. The voters of a MeetingTime are found
+ * by their MEETING_TIME property, which is eventually consistent.
+ */
+public class Voters {
+  public static final String KIND = "Voter";
+  public static final String NAME = "name";
+  public static final String MEETING_TIME = "meetingTime";
+
+  /**
+   * Returns the key of the Voter entity of a voter.
+   * @param meetingTimeKey the key of the MeetingTime voted for.
+   * @param voter the name or identifier of the voter.
+   */
+  public static Key voterKey(Key meetingTimeKey, String voter) {
+    // A key string has no newlines, so the MeetingTime and voter cannot run together.
+    return KeyFactory.createKey(
+        KIND, sha256(KeyFactory.keyToString(meetingTimeKey) + "\n" + voter));
+  }
+
+  /**
+   * Returns the query for the Voter entities of a MeetingTime.
+   * @param meetingTimeKey the key of the MeetingTime.
+   */
+  public static Query query(Key meetingTimeKey) {
+    return new Query(KIND).setFilter(
+        new FilterPredicate(MEETING_TIME, FilterOperator.EQUAL, meetingTimeKey));
+  }
+
+  /**
+   * Returns true if the voter has voted for the MeetingTime.
+   * Voters stored in the VOTERS list of the MeetingTime, before voters were stored as
+   * Voter entities, are also checked.
+   * @param datastore the datastore to read from.
+   * @param txn the transaction to read in, or null.
+   * @param meetingTime the MeetingTime entity.
+   * @param voter the name or identifier of the voter.
+   */
+  public static boolean hasVoted(
+      DatastoreService datastore, Transaction txn, Entity meetingTime, String voter) {
+    List<String> legacyVoters = (List<String>) meetingTime.getProperty(MeetingTimeFields.VOTERS);
+    if (legacyVoters != null && legacyVoters.contains(voter)) {
+      return true;
+    }
+    try {
+      datastore.get(txn, voterKey(meetingTime.getKey(), voter));
+      return true;
+    } catch (EntityNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns whether the voter has voted for each of the MeetingTimes, reading their
+   * Voter entities in one batch.
+   * @param datastore the datastore to read from.
+   * @param meetingTimes the MeetingTime entities.
+   * @param voter the name or identifier of the voter.
+   * @return the map of MeetingTime key to whether the voter has voted for it.
+   */
+  public static Map<Key, Boolean> hasVoted(
+      DatastoreService datastore, Collection<Entity> meetingTimes, String voter) {
+    List<Key> voterKeys = new ArrayList<>();
+    for (Entity meetingTime : meetingTimes) {
+      voterKeys.add(voterKey(meetingTime.getKey(), voter));
+    }
+    Map<Key, Entity> voterEntities = datastore.get(null, voterKeys);
+
+    Map<Key, Boolean> hasVoted = new HashMap<>();
+    for (Entity meetingTime : meetingTimes) {
+      List<String> legacyVoters = 
+          (List<String>) meetingTime.getProperty(MeetingTimeFields.VOTERS);
+      hasVoted.put(meetingTime.getKey(), 
+          (legacyVoters != null && legacyVoters.contains(voter))
+          || voterEntities.containsKey(voterKey(meetingTime.getKey(), voter)));
+    }
+    return hasVoted;
+  }
+
+  /** Returns a new Voter entity for the voter, to be put by the caller. */
+  public static Entity newVoter(Key meetingTimeKey, String voter) {
+    Entity entity = new Entity(voterKey(meetingTimeKey, voter));
+    entity.setProperty(NAME, voter);
+    entity.setProperty(MEETING_TIME, meetingTimeKey);
+    return entity;
+  }
+
+  private static String sha256(String value) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+    byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+    StringBuilder hex = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+}
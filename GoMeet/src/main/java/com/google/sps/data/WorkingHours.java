@@ -0,0 +1,124 @@
+package com.google.sps.data;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The hours of the day that a guest can meet in, e.g. 09:00 to 17:00 in their own
+ * timezone. Times outside them are treated as busy, so that times at 2am are not
+ * proposed to anyone. Instances are immutable.
+ */
+public final class WorkingHours {
+  public static final WorkingHours DEFAULT = new WorkingHours(9 * 60, 17 * 60);
+  private static final Pattern FORMAT = Pattern.compile("(\\d{2}):(\\d{2})-(\\d{2}):(\\d{2})");
+  private static final int MINUTES_PER_DAY = 24 * 60;
+
+  private final int startMins;
+  private final int endMins;
+
+  /**
+   * Constructor.
+   * @param startMins The start of the working hours, in minutes after midnight.
+   * @param endMins The end of the working hours, in minutes after midnight, after
+   * startMins and at most 24:00.
+   * @throws IllegalArgumentException if the hours are not in that range.
+   */
+  public WorkingHours(int startMins, int endMins) {
+    if (startMins < 0 || endMins <= startMins || endMins > MINUTES_PER_DAY) {
+      throw new IllegalArgumentException("Invalid working hours: " + startMins + "-" + endMins);
+    }
+    this.startMins = startMins;
+    this.endMins = endMins;
+  }
+
+  /**
+   * Parses working hours in the format 'HH:mm-HH:mm', e.g. '09:00-17:00'.
+   * @throws IllegalArgumentException if the string is not in that format.
+   */
+  public static WorkingHours parse(String hours) {
+    Matcher matcher = FORMAT.matcher(hours);
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException("Invalid working hours: " + hours);
+    }
+    int start = Integer.parseInt(matcher.group(1)) * 60 + Integer.parseInt(matcher.group(2));
+    int end = Integer.parseInt(matcher.group(3)) * 60 + Integer.parseInt(matcher.group(4));
+    return new WorkingHours(start, end);
+  }
+
+  public int getStartMins() {
+    return this.startMins;
+  }
+
+  public int getEndMins() {
+    return this.endMins;
+  }
+
+  /**
+   * Adds the times between start and end that are outside the working hours, in the
+   * given timezone, to a sweep as busy intervals.
+   * @param sweep The sweep to add the intervals to.
+   * @param timeZone The timezone of the guest the working hours are for.
+   * @param start The start of the period, in milliseconds since the Unix epoch.
+   * @param end The end of the period, in milliseconds since the Unix epoch.
+   */
+  public void addNonWorkingPeriods(IntervalSweep sweep, TimeZone timeZone, long start,
+      long end) {
+    // Start from the local midnight before 'start', as the evening before it may reach
+    // into the period.
+    Calendar day = Calendar.getInstance(timeZone);
+    day.setTimeInMillis(start);
+    day.set(Calendar.HOUR_OF_DAY, 0);
+    day.set(Calendar.MINUTE, 0);
+    day.set(Calendar.SECOND, 0);
+    day.set(Calendar.MILLISECOND, 0);
+    day.add(Calendar.DATE, -1);
+
+    long previousEnd = day.getTimeInMillis();
+    while (previousEnd < end) {
+      long workStart = localTime(day, this.startMins);
+      long workEnd = localTime(day, this.endMins);
+      addClamped(sweep, previousEnd, workStart, start, end);
+      previousEnd = workEnd;
+      day.add(Calendar.DATE, 1);
+    }
+  }
+
+  /**
+   * Returns the time on the clock of a day, so that the working hours of days when
+   * daylight saving time starts or ends are still at the same local times.
+   */
+  private static long localTime(Calendar day, int mins) {
+    Calendar time = (Calendar) day.clone();
+    time.add(Calendar.DATE, mins / MINUTES_PER_DAY);
+    time.set(Calendar.HOUR_OF_DAY, (mins % MINUTES_PER_DAY) / 60);
+    time.set(Calendar.MINUTE, mins % 60);
+    return time.getTimeInMillis();
+  }
+
+  private static void addClamped(IntervalSweep sweep, long busyStart, long busyEnd,
+      long start, long end) {
+    sweep.add(Math.max(busyStart, start), Math.min(busyEnd, end));
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof WorkingHours)) {
+      return false;
+    }
+    WorkingHours hours = (WorkingHours) other;
+    return this.startMins == hours.startMins && this.endMins == hours.endMins;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * this.startMins + this.endMins;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%02d:%02d-%02d:%02d", this.startMins / 60, this.startMins % 60,
+        this.endMins / 60, this.endMins % 60);
+  }
+}
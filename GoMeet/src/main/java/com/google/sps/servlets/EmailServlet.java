@@ -1,8 +1,10 @@
 package com.google.sps.servlets;
 
+import com.google.sps.data.BulkEmailSender;
 import com.google.sps.data.ErrorMessages;
 import com.google.sps.data.ServletUtil;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Properties;
 import javax.mail.internet.AddressException;
@@ -19,6 +21,13 @@ import javax.servlet.http.HttpServletResponse;
 
 @WebServlet("/email")
 public class EmailServlet extends HttpServlet {
+  // Guest lists at least this long are sent in bulk, over a few reused connections.
+  private static final int BULK_THRESHOLD = 10;
+  // Number of parallel workers for a bulk send.
+  private static final int BULK_WORKERS = 4;
+
+  private BulkEmailSender bulkSender = 
+      new BulkEmailSender(Session.getDefaultInstance(new Properties(), null), BULK_WORKERS);
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -37,13 +46,17 @@ public class EmailServlet extends HttpServlet {
 
     String guestList = ServletUtil.decodeUri(guestListUri); 
     String[] guestListSplit = guestList.split(",");
-    for (int i = 0; i < guestListSplit.length; i++) {
-      boolean sent = sendEmail(guestListSplit[i], meetingEventId);
-      emailStatus.put(guestListSplit[i], sent);
+    if (guestListSplit.length >= BULK_THRESHOLD) {
+      emailStatus.putAll(bulkSender.send(Arrays.asList(guestListSplit), 
+          (session, guest) -> buildInvitation(session, guest, meetingEventId)));
+    } else {
+      for (int i = 0; i < guestListSplit.length; i++) {
+        boolean sent = sendEmail(guestListSplit[i], meetingEventId);
+        emailStatus.put(guestListSplit[i], sent);
+      }
     }
 
-    response.setContentType("application/json");
-    response.getWriter().println(ServletUtil.convertMapToJson(emailStatus));
+    ServletUtil.writeJson(response, emailStatus);
   }
 
   /**
@@ -57,11 +70,7 @@ public class EmailServlet extends HttpServlet {
     Session session = Session.getDefaultInstance(properties, null);
 
     try {
-      Message msg = new MimeMessage(session);
-      msg.setFrom(new InternetAddress("interns@go-meet.appspotmail.com"));
-      msg.addRecipient(Message.RecipientType.TO, new InternetAddress(emailAddress));
-      msg.setSubject("You have been invited to a GoMeet event!");
-      msg.setText("The meeting event ID is: " + meetingEventId); //TO DO: Find out what the meeting link should be
+      Message msg = buildInvitation(session, emailAddress, meetingEventId);
       Transport.send(msg);
     } catch (AddressException e) {
       System.err.println("Address exception"); 
@@ -72,4 +81,24 @@ public class EmailServlet extends HttpServlet {
     }
     return true;
   }
+
+  /**
+   * Builds the invitation email to a meeting event.
+   * @param {Session} session the mail session to build the message in
+   * @param {String} emailAddress the email address to send the message to
+   * @param {String} meetingEventId the unique ID to be included in the email link
+   */
+  public static MimeMessage buildInvitation(Session session, String emailAddress, 
+      String meetingEventId) throws MessagingException {
+    MimeMessage msg = new MimeMessage(session);
+    msg.setFrom(new InternetAddress("interns@go-meet.appspotmail.com"));
+    msg.addRecipient(Message.RecipientType.TO, new InternetAddress(emailAddress));
+    msg.setSubject("You have been invited to a GoMeet event!");
+    msg.setText("The meeting event ID is: " + meetingEventId); //TO DO: Find out what the meeting link should be
+    return msg;
+  }
+
+  public void setBulkSender(BulkEmailSender bulkSender) {
+    this.bulkSender = bulkSender;
+  }
 }
@@ -1,17 +1,24 @@
 package com.google.sps.servlets;
 
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.googleapis.GoogleUtils;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.DateTime;
+import com.google.api.client.util.SslUtils;
 import com.google.api.services.calendar.Calendar;
 import com.google.api.services.calendar.model.TimePeriod;
-import com.google.gson.Gson;
 import com.google.sps.data.AutoProposeTimes;
 import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.FreeBusyCache;
 import com.google.sps.data.MeetingEventFields;
+import com.google.sps.data.QuorumSweep;
+import com.google.sps.data.SchedulingConfig;
 import com.google.sps.data.ServletUtil;
+import com.google.sps.data.SlotRanker;
+import com.google.sps.data.WorkingHours;
 import java.io.IOException;
+import java.io.Writer;
 import java.security.GeneralSecurityException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -19,20 +26,43 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 
 @WebServlet("/gcal-find-times")
 public class GoogleCalendarTimesServlet extends HttpServlet {
-  // The timezone that the servlet will treat PERIOD_START and PERIOD_END in
-  private static String TIMEZONE = "AET"; // Australian Eastern Time by default
+  /**
+   * Busy periods fetched for earlier requests, shared so that guests who are
+   * queried again soon after are served without another round trip.
+   */
+  public static final FreeBusyCache FREEBUSY_CACHE = new FreeBusyCache();
+
+  // Defaults for the HTTP client, used when the init parameters are not set.
+  private static final int DEFAULT_MAX_CONNECTIONS = 20;
+  private static final int DEFAULT_CONNECT_TIMEOUT_MS = 5 * 1000;
+  private static final int DEFAULT_READ_TIMEOUT_MS = 10 * 1000;
+  private static final int DEFAULT_IDLE_CONNECTION_TIMEOUT_MS = 60 * 1000;
+
+  // The HTTP transport and Calendar client shared by all requests to this servlet.
+  // Both are thread-safe, and are built in init() and shut down in destroy().
+  private ApacheHttpTransport transport;
+  private volatile Calendar calendarService;
 
-  // TODO: Load the API_KEY from a file.
-  private static String API_KEY = "";
+  // The timezone and API key of requests that do not set their own timezone. It is
+  // immutable, and only replaced by init() before any request is handled.
+  private volatile SchedulingConfig defaultConfig;
   
   /** Field names used for accessing pairs in the query string 
     * sent to this servlet */
@@ -42,6 +72,207 @@ public class GoogleCalendarTimesServlet extends HttpServlet {
     public static final String DURATION_HOURS = "duration-hours";
     public static final String PERIOD_START = "period-start";
     public static final String PERIOD_END = "period-end";
+    // Optional. The timezone of PERIOD_START and PERIOD_END, and of the times returned.
+    public static final String TIMEZONE = "timezone";
+    // Optional. The number of ranked meeting starts to return, rather than the start of
+    // each free period, at most MAX_TOP_K.
+    public static final String TOP_K = "top-k";
+    // Optional. The minutes between the ranked meeting starts considered.
+    public static final String STEP_MINS = "step-mins";
+    // Optional. The number of the guests in GUEST_LIST that must be free, rather than all
+    // of them. The periods where they are free are returned, with the guests busy in each.
+    public static final String QUORUM = "quorum";
+    // Optional, with QUORUM. The guests that are not counted towards the quorum.
+    public static final String OPTIONAL_GUESTS = "optional-guests";
+    // Optional. NDJSON_FORMAT to stream the free times one day at a time, as each day
+    // is computed, with the times outside the guests' working hours left out.
+    public static final String FORMAT = "format";
+    // Optional, with FORMAT. The working hours of the guests, as 'HH:mm-HH:mm'.
+    public static final String WORKING_HOURS = "working-hours";
+    // Optional, with FORMAT. The timezone of each guest in GUEST_LIST, in the same order.
+    public static final String GUEST_TIMEZONES = "guest-timezones";
+  }
+
+  // The FORMAT of a response streamed one day at a time, as a JSON object per line.
+  public static final String NDJSON_FORMAT = "ndjson";
+  public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+  /** Field names of the lines of a response in NDJSON_FORMAT. */
+  public static class DayFieldNames {
+    public static final String DAY = "day"; // The date, as 'yyyy-MM-dd'.
+    public static final String TIMES = "times"; // The start of each free period.
+    public static final String ERROR = "error"; // Sent instead of a day, if it failed.
+  }
+
+  /** Field names of the periods returned in quorum mode. */
+  public static class QuorumTimeFieldNames {
+    public static final String START = "start";
+    public static final String END = "end";
+    public static final String DURATION_MINS = "durationMins";
+    public static final String BUSY_GUESTS = "busyGuests";
+  }
+
+  // The maximum number of ranked meeting starts a request may ask for.
+  public static final int MAX_TOP_K = 100;
+
+  /** 
+   * Names of the init parameters (or system properties, if the init parameter
+   * is not set) used to configure the HTTP client and the defaults of this servlet. 
+   */
+  public static class InitParameterNames {
+    public static final String MAX_CONNECTIONS = "gcal.max-connections";
+    public static final String CONNECT_TIMEOUT_MS = "gcal.connect-timeout-ms";
+    public static final String READ_TIMEOUT_MS = "gcal.read-timeout-ms";
+    public static final String IDLE_CONNECTION_TIMEOUT_MS = "gcal.idle-connection-timeout-ms";
+    public static final String TIMEZONE = "gcal.timezone";
+    public static final String API_KEY = "gcal.api-key";
+  }
+
+  /** Constructor, for times in SchedulingConfig.DEFAULT_TIMEZONE and no API key. */
+  public GoogleCalendarTimesServlet() {
+    this(new SchedulingConfig(SchedulingConfig.DEFAULT_TIMEZONE, ""));
+  }
+
+  /**
+   * Constructor.
+   * @param defaultConfig The timezone and API key of requests that do not set 
+   * their own timezone. The init parameters override it, if they are set.
+   */
+  public GoogleCalendarTimesServlet(SchedulingConfig defaultConfig) {
+    this.defaultConfig = defaultConfig;
+  }
+
+  /**
+   * Builds the HTTP transport and Calendar client once, so that requests reuse
+   * them (and their pooled connections) rather than loading the trusted
+   * certificates and opening new connections every time.
+   */
+  @Override
+  public void init() throws ServletException {
+    SchedulingConfig config = this.defaultConfig;
+    String timezone = getStringParameter(InitParameterNames.TIMEZONE);
+    if (timezone != null) {
+      if (!SchedulingConfig.isValidTimezone(timezone)) {
+        throw new ServletException("Unknown timezone: " + timezone);
+      }
+      config = config.withTimezone(timezone);
+    }
+    String apiKey = getStringParameter(InitParameterNames.API_KEY);
+    if (apiKey != null) {
+      config = config.withApiKey(apiKey);
+    }
+    this.defaultConfig = config;
+
+    try {
+      getCalendarService();
+    } catch (GeneralSecurityException | IOException e) {
+      throw new ServletException("Could not create the Google Calendar client", e);
+    }
+  }
+
+  /** Closes the pooled connections of the shared HTTP transport. */
+  @Override
+  public void destroy() {
+    synchronized (this) {
+      if (this.transport != null) {
+        try {
+          this.transport.shutdown();
+        } catch (IOException e) {
+          // The servlet is being taken out of service anyway.
+        }
+      }
+      this.transport = null;
+      this.calendarService = null;
+    }
+  }
+
+  /**
+   * Returns the Calendar client shared by all the requests to this servlet,
+   * creating it if init() has not done so yet.
+   * @return The shared Calendar client.
+   * @throws GeneralSecurityException if the trusted certificates cannot be loaded.
+   * @throws IOException
+   */
+  public Calendar getCalendarService() throws GeneralSecurityException, IOException {
+    Calendar service = this.calendarService;
+    if (service != null) {
+      return service;
+    }
+    synchronized (this) {
+      if (this.calendarService == null) {
+        this.transport = newPooledTransport(
+            getIntParameter(InitParameterNames.MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS),
+            getIntParameter(InitParameterNames.IDLE_CONNECTION_TIMEOUT_MS, 
+                DEFAULT_IDLE_CONNECTION_TIMEOUT_MS));
+        int connectTimeoutMs = 
+            getIntParameter(InitParameterNames.CONNECT_TIMEOUT_MS, DEFAULT_CONNECT_TIMEOUT_MS);
+        int readTimeoutMs = 
+            getIntParameter(InitParameterNames.READ_TIMEOUT_MS, DEFAULT_READ_TIMEOUT_MS);
+        this.calendarService = new Calendar.Builder(this.transport,
+            GsonFactory.getDefaultInstance(), 
+            request -> request
+                .setConnectTimeout(connectTimeoutMs)
+                .setReadTimeout(readTimeoutMs))
+            .setApplicationName("GoMeet")
+            .build();
+      }
+      return this.calendarService;
+    }
+  }
+
+  /**
+   * Creates an HTTP transport that trusts the same certificates as
+   * GoogleNetHttpTransport.newTrustedTransport(), and keeps a pool of 
+   * connections to reuse between requests.
+   * @param maxConnections The maximum number of pooled connections.
+   * @param idleTimeoutMs How long an idle connection is kept in the pool.
+   * @return The new transport.
+   */
+  private static ApacheHttpTransport newPooledTransport(int maxConnections, int idleTimeoutMs) 
+      throws GeneralSecurityException, IOException {
+    SSLContext sslContext = SslUtils.initSslContext(SslUtils.getTlsSslContext(), 
+        GoogleUtils.getCertificateTrustStore(), SslUtils.getPkixTrustManagerFactory());
+    HttpClient httpClient = ApacheHttpTransport.newDefaultHttpClientBuilder()
+        .setSSLSocketFactory(new SSLConnectionSocketFactory(sslContext))
+        // All the requests go to the same host, so allow the whole pool for it.
+        .setMaxConnTotal(maxConnections)
+        .setMaxConnPerRoute(maxConnections)
+        .evictIdleConnections(idleTimeoutMs, TimeUnit.MILLISECONDS)
+        .build();
+    return new ApacheHttpTransport(httpClient);
+  }
+
+  /**
+   * Reads an integer setting from the init parameters of this servlet, or else
+   * from the system properties.
+   * @param name The name of the setting.
+   * @param defaultValue The value to use if the setting is not set.
+   * @return The value of the setting.
+   */
+  private int getIntParameter(String name, int defaultValue) {
+    String value = getStringParameter(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Reads a setting from the init parameters of this servlet, or else from the
+   * system properties.
+   * @param name The name of the setting.
+   * @return The value of the setting, or null if it is not set.
+   */
+  private String getStringParameter(String name) {
+    String value = getServletConfig() == null ? null : getInitParameter(name);
+    if (value == null) {
+      value = System.getProperty(name);
+    }
+    return value;
   }
 
   /** 
@@ -55,6 +286,12 @@ public class GoogleCalendarTimesServlet extends HttpServlet {
     String durationHoursStr = request.getParameter(QueryStringFieldNames.DURATION_HOURS);
     String periodStartStr = request.getParameter(QueryStringFieldNames.PERIOD_START); 
     String periodEndStr = request.getParameter(QueryStringFieldNames.PERIOD_END);
+    String timezone = request.getParameter(QueryStringFieldNames.TIMEZONE);
+    String topKStr = request.getParameter(QueryStringFieldNames.TOP_K);
+    String stepMinsStr = request.getParameter(QueryStringFieldNames.STEP_MINS);
+    String quorumStr = request.getParameter(QueryStringFieldNames.QUORUM);
+    String optionalGuestsUri = request.getParameter(QueryStringFieldNames.OPTIONAL_GUESTS);
+    String format = request.getParameter(QueryStringFieldNames.FORMAT);
 
     if (guestListUri == null || durationHoursStr == null || durationMinsStr == null || 
         periodStartStr == null || periodEndStr == null) {
@@ -64,6 +301,36 @@ public class GoogleCalendarTimesServlet extends HttpServlet {
       return;
     }
 
+    // The configuration of this request, so that concurrent requests in different
+    // timezones do not affect each other.
+    SchedulingConfig config = this.defaultConfig;
+    if (timezone != null) {
+      if (!SchedulingConfig.isValidTimezone(timezone)) {
+        ServletUtil.sendErrorResponse(response, 
+            HttpServletResponse.SC_BAD_REQUEST, 
+            ErrorMessages.BAD_REQUEST_ERROR);
+        return;
+      }
+      config = config.withTimezone(timezone);
+    }
+    if (topKStr != null || stepMinsStr != null) {
+      try {
+        int topK = topKStr == null ? MAX_TOP_K : Integer.parseInt(topKStr);
+        long stepMs = stepMinsStr == null 
+            ? SlotRanker.DEFAULT_STEP_MS 
+            : Integer.parseInt(stepMinsStr) * 60L * 1000L;
+        if (topK < 1 || topK > MAX_TOP_K || stepMs <= 0) {
+          throw new IllegalArgumentException("Invalid ranking: " + topKStr + ", " + stepMinsStr);
+        }
+        config = config.withRanking(topK, stepMs);
+      } catch (IllegalArgumentException e) {
+        ServletUtil.sendErrorResponse(response, 
+            HttpServletResponse.SC_BAD_REQUEST, 
+            ErrorMessages.BAD_REQUEST_ERROR);
+        return;
+      }
+    }
+
     // 'guestListStr' are sent by the request as an encoded URI.
     String guestListStr = ServletUtil.decodeUri(guestListUri);
     // Each element in the decoded list is deliminated by a comma.
@@ -78,7 +345,7 @@ public class GoogleCalendarTimesServlet extends HttpServlet {
     
     try {
       SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
-      formatter.setTimeZone(TimeZone.getTimeZone(TIMEZONE));
+      formatter.setTimeZone(config.getTimeZone());
       periodStart = formatter.parse(periodStartStr);
       periodEnd = formatter.parse(periodEndStr);
     } catch (ParseException e) {
@@ -88,15 +355,157 @@ public class GoogleCalendarTimesServlet extends HttpServlet {
       return;
     }
 
-    List<TimePeriod> times = autoProposeTimes(response, guestList, 
-        periodStart, periodEnd, totalDurationMs);
+    config = config.withWindow(periodStart, periodEnd, totalDurationMs);
+    if (quorumStr != null) {
+      doGetQuorum(response, guestList, quorumStr, optionalGuestsUri, config);
+      return;
+    }
+    if (NDJSON_FORMAT.equals(format)) {
+      doGetByDay(request, response, guestList, config);
+      return;
+    }
+
+    List<TimePeriod> times = autoProposeTimes(response, guestList, config);
     if (times == null) {
       return; // The error message would have been sent by autoProposeTimes.
     }
 
     // Build JSON response.
-    response.setContentType("application/json");
-    response.getWriter().println(timePeriodListToJson(times));
+    ServletUtil.writeJson(response, startTimes(times));
+  }
+
+  /**
+   * Responds with the periods where at least 'quorum' of the guests are free, each
+   * with its start, end, duration in minutes and the guests busy during it.
+   */
+  private void doGetQuorum(HttpServletResponse response, ArrayList<String> guestList,
+      String quorumStr, String optionalGuestsUri, SchedulingConfig config) throws IOException {
+    List<String> optionalGuests = new ArrayList<String>();
+    if (optionalGuestsUri != null && !optionalGuestsUri.isEmpty()) {
+      optionalGuests = Arrays.asList(ServletUtil.decodeUri(optionalGuestsUri).split(","));
+    }
+    // The calendars to read: the guests in the quorum, then the optional guests.
+    ArrayList<String> calendarIds = new ArrayList<String>(guestList);
+    calendarIds.removeAll(optionalGuests);
+    int requiredCount = new LinkedHashSet<String>(calendarIds).size();
+    calendarIds.addAll(optionalGuests);
+
+    int quorum;
+    try {
+      quorum = Integer.parseInt(quorumStr);
+    } catch (NumberFormatException e) {
+      quorum = 0;
+    }
+    if (quorum < 1 || quorum > requiredCount) {
+      ServletUtil.sendErrorResponse(response, 
+          HttpServletResponse.SC_BAD_REQUEST, 
+          ErrorMessages.BAD_REQUEST_ERROR);
+      return;
+    }
+
+    List<QuorumSweep.Slot> slots = 
+        autoProposeQuorumTimes(response, calendarIds, optionalGuests, quorum, config);
+    if (slots == null) {
+      return; // The error message would have been sent by autoProposeQuorumTimes.
+    }
+
+    TimeZone timeZone = config.getTimeZone();
+    List<Map<String, Object>> times = new ArrayList<Map<String, Object>>();
+    for (QuorumSweep.Slot slot : slots) {
+      Map<String, Object> time = new LinkedHashMap<String, Object>();
+      time.put(QuorumTimeFieldNames.START, 
+          new DateTime(new Date(slot.getStart()), timeZone).toStringRfc3339());
+      time.put(QuorumTimeFieldNames.END, 
+          new DateTime(new Date(slot.getEnd()), timeZone).toStringRfc3339());
+      time.put(QuorumTimeFieldNames.DURATION_MINS, 
+          TimeUnit.MILLISECONDS.toMinutes(slot.getDurationMs()));
+      time.put(QuorumTimeFieldNames.BUSY_GUESTS, slot.getBusyGuests());
+      times.add(time);
+    }
+    ServletUtil.writeJson(response, times);
+  }
+
+  /**
+   * Responds with the free times of each day as a line of JSON, as soon as the day is 
+   * computed, leaving out the times outside the working hours of the guests.
+   */
+  private void doGetByDay(HttpServletRequest request, HttpServletResponse response, 
+      ArrayList<String> guestList, SchedulingConfig config) throws IOException {
+    String workingHoursStr = request.getParameter(QueryStringFieldNames.WORKING_HOURS);
+    String guestTimezonesUri = request.getParameter(QueryStringFieldNames.GUEST_TIMEZONES);
+
+    WorkingHours workingHours = WorkingHours.DEFAULT;
+    Map<String, TimeZone> guestTimeZones = new HashMap<String, TimeZone>();
+    try {
+      if (workingHoursStr != null) {
+        workingHours = WorkingHours.parse(workingHoursStr);
+      }
+      if (guestTimezonesUri != null) {
+        String[] timezones = ServletUtil.decodeUri(guestTimezonesUri).split(",");
+        if (timezones.length != guestList.size()) {
+          throw new IllegalArgumentException("One timezone is needed per guest");
+        }
+        for (int i = 0; i < timezones.length; i++) {
+          if (!SchedulingConfig.isValidTimezone(timezones[i])) {
+            throw new IllegalArgumentException("Unknown timezone: " + timezones[i]);
+          }
+          guestTimeZones.put(guestList.get(i), TimeZone.getTimeZone(timezones[i]));
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      ServletUtil.sendErrorResponse(response, 
+          HttpServletResponse.SC_BAD_REQUEST, 
+          ErrorMessages.BAD_REQUEST_ERROR);
+      return;
+    }
+
+    streamTimesByDay(response, guestList, workingHours, guestTimeZones, config);
+  }
+
+  /**
+   * Streams the free times of each day of the period to the response, one line of
+   * NDJSON per day, flushing each line as soon as its day is computed. The App Engine
+   * java8 standard runtime buffers the response until it is complete, so there the
+   * days arrive together; pages request a week at a time to show the first days early.
+   * @param response The response to stream to.
+   * @param guestList The list of guests' calendar IDs.
+   * @param workingHours The working hours of the guests.
+   * @param guestTimeZones The timezone of each guest, if not the timezone of config.
+   * @param config The timezone and API key, and the period to generate times for
+   * and duration of the meeting to be scheduled.
+   */
+  public void streamTimesByDay(HttpServletResponse response, ArrayList<String> guestList, 
+      WorkingHours workingHours, Map<String, TimeZone> guestTimeZones, SchedulingConfig config) 
+      throws IOException {
+    SimpleDateFormat dayFormatter = new SimpleDateFormat("yyyy-MM-dd");
+    dayFormatter.setTimeZone(config.getTimeZone());
+    try {
+      AutoProposeTimes proposer = newProposer(guestList, config);
+      response.setContentType(NDJSON_CONTENT_TYPE);
+      response.setCharacterEncoding("UTF-8");
+      Writer writer = response.getWriter();
+      proposer.proposeTimesByDay(workingHours, guestTimeZones, (dayStart, dayEnd, times) -> {
+        Map<String, Object> day = new LinkedHashMap<String, Object>();
+        day.put(DayFieldNames.DAY, dayFormatter.format(dayStart));
+        day.put(DayFieldNames.TIMES, startTimes(times));
+        writer.write(ServletUtil.convertToJson(day));
+        writer.write('\n');
+        writer.flush();
+        response.flushBuffer();
+      });
+    } catch (GeneralSecurityException | GoogleJsonResponseException e) {
+      if (!response.isCommitted()) {
+        ServletUtil.sendErrorResponse(response, 
+            HttpServletResponse.SC_FORBIDDEN, 
+            ErrorMessages.SECURITY_ERROR);
+        return;
+      }
+      // The status was sent with the first day, so the error ends the stream instead.
+      Map<String, Object> error = new LinkedHashMap<String, Object>();
+      error.put(DayFieldNames.ERROR, ErrorMessages.SECURITY_ERROR);
+      response.getWriter().write(ServletUtil.convertToJson(error) + "\n");
+      response.getWriter().flush();
+    }
   }
 
   /**
@@ -109,51 +518,46 @@ public class GoogleCalendarTimesServlet extends HttpServlet {
    * @return The String in JSON notation of the resultant list of possible
    * meeting times. 
    */
-  private String timePeriodListToJson(List<TimePeriod> times) {
-    // Return times that are the start times of each TimePeriod in times
+  public static String timePeriodListToJson(List<TimePeriod> times) {
+    return ServletUtil.convertToJson(startTimes(times));
+  }
+
+  /**
+   * Returns the datetime strings of the START time of each TimePeriod in times.
+   * @param times The List of TimePeriods representing the free times proposed.
+   */
+  private static List<String> startTimes(List<TimePeriod> times) {
     List<String> timesStr = new ArrayList<String>();
     for (int i = 0; i < times.size(); i++) {
       String current = times.get(i).getStart().toStringRfc3339();
       timesStr.add(current);
     }
-    Gson gson = new Gson();
-    return gson.toJson(timesStr);
+    return timesStr;
   }
   
   /**
    * Instantiates the AutoProposeTimes class and calls the proposeTimes()
-   * function, returning the result from the proposeTimes() call.
+   * function, returning the result from the proposeTimes() call. If the config
+   * sets 'topK', proposeRankedTimes() is called instead.
    * NOTE: This code encapsulated in a function to make it easier to
    * mock out the calls to AutoProposeTimes in the tests for the servlet.
    * @param response The response from the servlet, to send error messages on
    * failures.
    * @param guestList The list of guests' calendar IDs
-   * @param periodStart The start of the period to generate times for.
-   * @param periodEnd The end of the period
-   * @param totalDurationMs Duration of the meeting to be scheduled, in milliseconds.
+   * @param config The timezone and API key, and the period to generate times for
+   * and duration of the meeting to be scheduled.
    * @return The List of TimePeriod as returned by a successful call to proposeTimes, 
    * or null if the call returned errors.
    * @see AutoProposeTimes class
    */
   public List<TimePeriod> autoProposeTimes(HttpServletResponse response, 
-      ArrayList<String> guestList, Date periodStart, 
-      Date periodEnd, int totalDurationMs) throws IOException {
-    
-    // Ensure that AutoProposeTime is working in the same timezone as this servlet.
-    AutoProposeTimes.setTimezone(TIMEZONE); 
-    
+      ArrayList<String> guestList, SchedulingConfig config) throws IOException {
     AutoProposeTimes proposer;
     List<TimePeriod> times;
     
     try {
-      Calendar service = new Calendar.Builder(GoogleNetHttpTransport.newTrustedTransport(),
-        GsonFactory.getDefaultInstance(), 
-        null)
-        .setApplicationName("GoMeet")
-        .build();
-      proposer = new AutoProposeTimes(service, API_KEY, guestList, 
-          periodStart, periodEnd, totalDurationMs);
-      times = proposer.proposeTimes();
+      proposer = newProposer(guestList, config);
+      times = config.getTopK() > 0 ? proposer.proposeRankedTimes() : proposer.proposeTimes();
     } catch (GeneralSecurityException | GoogleJsonResponseException e) {
       ServletUtil.sendErrorResponse(response, 
           HttpServletResponse.SC_FORBIDDEN, 
@@ -165,21 +569,45 @@ public class GoogleCalendarTimesServlet extends HttpServlet {
   }
 
   /**
-   * Sets a new API key for this servlet to access the Google
-   * Calendar API.
-   * @param newKey The new API key.
+   * Instantiates the AutoProposeTimes class for the guests, with the shared Calendar
+   * client and cache of busy periods.
+   * NOTE: This is a separate function so that the tests for the servlet can mock it out.
    */
-  public static void setApiKey(String newKey) {
-    API_KEY = newKey;
+  public AutoProposeTimes newProposer(ArrayList<String> guestList, SchedulingConfig config) 
+      throws GeneralSecurityException, IOException {
+    Calendar service = getCalendarService();
+    AutoProposeTimes proposer = new AutoProposeTimes(service, guestList, config);
+    // Query the guests' calendars together rather than one round trip per guest.
+    proposer.setBatchRequests(true);
+    proposer.setCache(FREEBUSY_CACHE);
+    return proposer;
   }
 
   /**
-   * Sets the timezone that this servlet will be using to work
-   * with PERIOD_START and PERIOD_END times.
-   * @param timezoneString The string that represents the timezone.
-   * Must be one of the timezones as returned by TimeZone.getAvailableIDs()
+   * Instantiates the AutoProposeTimes class and calls the proposeQuorumTimes()
+   * function, returning its result. Like autoProposeTimes, this is a separate 
+   * function so that the tests for the servlet can mock it out.
+   * @param response The response from the servlet, to send error messages on
+   * failures.
+   * @param guestList The calendar IDs of all the guests, including the optional ones.
+   * @param optionalGuests The guests that do not count towards the quorum.
+   * @param quorum The number of the other guests that must be free.
+   * @param config The timezone and API key, and the period to generate times for
+   * and duration of the meeting to be scheduled.
+   * @return The periods as returned by a successful call to proposeQuorumTimes, 
+   * or null if the call returned errors.
    */
-  public static void setTimezone(String timezone) {
-    TIMEZONE = timezone;
+  public List<QuorumSweep.Slot> autoProposeQuorumTimes(HttpServletResponse response, 
+      ArrayList<String> guestList, List<String> optionalGuests, int quorum, 
+      SchedulingConfig config) throws IOException {
+    try {
+      AutoProposeTimes proposer = newProposer(guestList, config);
+      return proposer.proposeQuorumTimes(quorum, optionalGuests);
+    } catch (GeneralSecurityException | GoogleJsonResponseException e) {
+      ServletUtil.sendErrorResponse(response, 
+          HttpServletResponse.SC_FORBIDDEN, 
+          ErrorMessages.SECURITY_ERROR);
+      return null;
+    }
   }
 }
@@ -0,0 +1,62 @@
+package main.java.com.google.sps.servlets;
+
+import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.ServletUtil;
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import main.java.com.google.sps.dao.LocationClusters;
+import main.java.com.google.sps.dao.LocationDao;
+import main.java.com.google.sps.data.LocationCluster;
+
+/** Handles fetching the clusters of a meeting's locations shown on the map. */
+@WebServlet("/location-cluster-data")
+public class LocationClusterServlet extends HttpServlet {
+  private LocationDao locationDao = new LocationDao();
+
+  /** 
+   * Responds with a JSON array of the clusters of a meeting's locations inside the
+   * 'bounds' parameter, in the format 'south,west,north,east' of the map's
+   * LatLngBounds.toUrlValue(), at the 'zoom' level of the map.
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String meetingEventId = ServletUtil.getMeetingEventId(request, response);
+    if (meetingEventId == null) {
+      return; // The error response was sent by getMeetingEventId.
+    }
+    String zoomStr = request.getParameter("zoom");
+    String boundsStr = request.getParameter("bounds");
+    double[] bounds = boundsStr == null ? null : ServletUtil.parseBounds(boundsStr);
+    int zoom;
+    try {
+      zoom = zoomStr == null ? -1 : Integer.parseInt(zoomStr);
+    } catch (NumberFormatException e) {
+      zoom = -1;
+    }
+    if (bounds == null || zoom < 0 || zoom > LocationClusters.MAX_ZOOM) {
+      ServletUtil.sendErrorResponse(
+          response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.INVALID_MAP_AREA_ERROR);
+      return;
+    }
+
+    List<LocationCluster> clusters;
+    try {
+      clusters = locationDao.getClusters(
+          meetingEventId, zoom, bounds[0], bounds[1], bounds[2], bounds[3]);
+    } catch (IllegalArgumentException e) {
+      // The bounds cover too many tiles at the zoom level.
+      ServletUtil.sendErrorResponse(
+          response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.TOO_MANY_RESULTS_ERROR);
+      return;
+    }
+    ServletUtil.writeJson(response, clusters);
+  }
+
+  public void setDao(LocationDao locationDao) {
+    this.locationDao = locationDao;
+  }
+}
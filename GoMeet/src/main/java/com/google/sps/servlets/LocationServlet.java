@@ -9,8 +9,8 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import main.java.com.google.sps.dao.Dao;
 import main.java.com.google.sps.dao.LocationDao;
+import main.java.com.google.sps.dao.LocationQueries;
 import main.java.com.google.sps.data.Location;
 import main.java.com.google.sps.exceptions.MaxEntitiesReachedException;
 import main.java.com.google.sps.exceptions.SimilarEntityExistsException;
@@ -26,24 +26,42 @@ import com.google.sps.data.ServletUtil;
 public class LocationServlet extends HttpServlet {
 
   private static final int INITIAL_VOTE_COUNT = 1;
-  private Dao<Location> locationDao = new LocationDao();
+  private LocationQueries locationDao = LocationDao.CACHED;
   
- /** Responds with a JSON array containing location data. */
+ /** 
+  * Responds with a JSON array containing the location data of a meeting. If the request
+  * has a 'bounds' parameter, in the format 'south,west,north,east' of the map's
+  * LatLngBounds.toUrlValue(), only the locations inside it are sent.
+  */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("application/json");
-
-    List<Location> locations = locationDao.getAll();
-    String json = ServletUtil.convertToJson(locations);
-
-    response.getWriter().println(json);
+    String meetingEventId = ServletUtil.getMeetingEventId(request, response);
+    if (meetingEventId == null) {
+      return; // The error response was sent by getMeetingEventId.
+    }
+    String boundsStr = request.getParameter("bounds");
+    if (boundsStr == null) {
+      ServletUtil.writeJson(response, locationDao.getAll(meetingEventId));
+      return;
+    }
+    double[] bounds = ServletUtil.parseBounds(boundsStr);
+    if (bounds == null) {
+      ServletUtil.sendErrorResponse(
+          response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.BAD_GET_REQUEST_ERROR);
+      return;
+    }
+    List<Location> locations =
+        locationDao.getWithin(meetingEventId, bounds[0], bounds[1], bounds[2], bounds[3]);
+    ServletUtil.writeJson(response, locations);
   }
 
-  /** Accepts a POST request containing a new location. */
+  /** Accepts a POST request containing a new location for a meeting. */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    // TODO: Send error response when there is already an entity with the same title in that meeting. 
-    // This to keep the Meeting+Title unique for each location entity.
+    String meetingEventId = ServletUtil.getMeetingEventId(request, response);
+    if (meetingEventId == null) {
+      return; // The error response was sent by getMeetingEventId.
+    }
     double lat = Double.parseDouble(request.getParameter("lat"));
     double lng = Double.parseDouble(request.getParameter("lng"));
     String note = Jsoup.clean(request.getParameter("note"), Whitelist.none());
@@ -53,9 +71,8 @@ public class LocationServlet extends HttpServlet {
     response.setContentType("application/json");
 
     try {
-      String entityKeyString = locationDao.save(location);
-      String json = ServletUtil.convertToJson(entityKeyString);
-      response.getWriter().println(json);
+      String entityKeyString = locationDao.save(meetingEventId, location);
+      ServletUtil.writeSmallJson(response, entityKeyString);
     } catch (SimilarEntityExistsException e) {
       ServletUtil.sendErrorResponse(
           response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.REPEAT_TITLE_ERROR);
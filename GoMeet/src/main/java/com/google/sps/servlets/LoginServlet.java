@@ -3,7 +3,6 @@ package com.google.sps.servlets;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
 import com.google.appengine.api.users.User;
-import com.google.gson.Gson;
 import com.google.sps.data.ErrorMessages;
 import com.google.sps.data.MeetingEventFields;
 import com.google.sps.data.ServletUtil;
@@ -29,6 +28,15 @@ public class LoginServlet extends HttpServlet {
       return;
     }
 
+    ServletUtil.writeSmallJson(response, getUserStatus(meetingEventId));
+  }
+
+  /**
+   * Returns the login status of the user, with the URL to log in or out and return to
+   * the meeting event page.
+   * @param meetingEventId the ID of the meeting event to return to.
+   */
+  public static HashMap<String, String> getUserStatus(String meetingEventId) {
     String redirectUrl = "/meeting-event.html?meetingEventId=" + meetingEventId; 
 
     UserService userService = UserServiceFactory.getUserService();
@@ -45,8 +53,6 @@ public class LoginServlet extends HttpServlet {
       userStatus.put("loggedIn", "false"); 
       userStatus.put("loginUrl", loginUrl); 
     }
-
-    Gson gson = new Gson(); 
-    response.getWriter().println(gson.toJson(userStatus));
+    return userStatus;
   }
 }
@@ -1,18 +1,19 @@
 package com.google.sps.servlets;
 
 import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.Query;
+import com.google.sps.data.EntityVersion;
 import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.InstrumentedDatastoreService;
+import com.google.sps.data.LocalEntityCache;
 import com.google.sps.data.MeetingEvent;
 import com.google.sps.data.MeetingEventFields;
 import com.google.sps.data.ServletUtil;
-import org.json.simple.JSONObject;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,6 +27,11 @@ import javax.servlet.http.HttpServletResponse;
 /** Servlet to handle the fetching and creating of meetingEvent entities */
 @WebServlet("/meeting-event")
 public class MeetingEventServlet extends HttpServlet {
+  /** 
+   * Caches the MeetingEvent entities read, as a meeting is viewed by each of its guests.
+   * MeetingEvents written here are invalidated in the cache.
+   */
+  public static final LocalEntityCache MEETING_EVENT_CACHE = new LocalEntityCache();
 
   /** Creates a new meetingEvent entity and stores it to Datastore */
   @Override
@@ -71,11 +77,14 @@ public class MeetingEventServlet extends HttpServlet {
     HashMap<String, Object> keyObj = new HashMap<String, Object>() {{
       put(MeetingEventFields.MEETING_EVENT_ID, meetingEventKey); 
     }};
-    response.setContentType("application/json");
-    response.getWriter().println(ServletUtil.convertMapToJson(keyObj));
+    ServletUtil.writeSmallJson(response, keyObj);
   }
 
-  /** Fetches a MeetingEvent entity from Datastore according to the entity ID in the query string */
+  /** 
+   * Fetches a MeetingEvent entity from Datastore according to the entity ID in the query string.
+   * The response has an ETag and Last-Modified header, and a request with If-None-Match or
+   * If-Modified-Since is answered with 304 Not Modified if the MeetingEvent has not changed.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     
@@ -97,42 +106,60 @@ public class MeetingEventServlet extends HttpServlet {
       return;
     }
 
-    // Filter by Key
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Entity result;
+    // A client whose copy is current is answered from the cached version, without
+    // reading the entity, unless the entity is already cached on this instance.
+    Entity result = MEETING_EVENT_CACHE.getIfPresent(key);
+    if (result == null && EntityVersion.isConditional(request)) {
+      EntityVersion cached = EntityVersion.getCached(key);
+      if (cached != null && cached.isNotModified(request, cached.getETag())) {
+        cached.sendNotModified(response, cached.getETag());
+        return;
+      }
+    }
 
     try {
-      result = datastore.get(key);
+      if (result == null) {
+        result = MEETING_EVENT_CACHE.get(key);
+      }
     } catch (EntityNotFoundException e) {
       // Entity by the given key is not found
       ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_NOT_FOUND, ErrorMessages.ENTITY_NOT_FOUND_ERROR);
       return;
     }
 
+    EntityVersion version = EntityVersion.of(result);
+    version.cache(key);
+    String eTag = version.getETag();
+    if (version.isNotModified(request, eTag)) {
+      version.sendNotModified(response, eTag);
+      return;
+    }
+    version.setHeaders(response, eTag);
+
+    // The fields of MeetingEvent are named as in MeetingEventFields, so it is written
+    // as the JSON directly.
+    ServletUtil.writeJson(response, toMeetingEvent(result));
+  }
+
+  /** Returns the MeetingEvent stored in a MeetingEvent entity. */
+  public static MeetingEvent toMeetingEvent(Entity result) {
     String meetingName = (String) result.getProperty(MeetingEventFields.MEETING_NAME); 
     int durationMins = ((Long) result.getProperty(MeetingEventFields.DURATION_MINS)).intValue(); 
     int durationHours = ((Long) result.getProperty(MeetingEventFields.DURATION_HOURS)).intValue(); 
     String timeFindMethod = (String) result.getProperty(MeetingEventFields.TIME_FIND_METHOD); 
-    List guestList = (ArrayList) result.getProperty(MeetingEventFields.GUEST_LIST); 
-    List meetingTimeIds = (ArrayList) result.getProperty(MeetingEventFields.MEETING_TIME_IDS); 
-    List meetingLocationIds = (ArrayList) result.getProperty(MeetingEventFields.MEETING_LOCATION_IDS); 
-
-    HashMap<String, Object> meetingEvent = new HashMap<String, Object>();
-    meetingEvent.put(MeetingEventFields.MEETING_NAME, meetingName); 
-    meetingEvent.put(MeetingEventFields.DURATION_MINS, durationMins); 
-    meetingEvent.put(MeetingEventFields.DURATION_HOURS, durationHours); 
-    meetingEvent.put(MeetingEventFields.TIME_FIND_METHOD, timeFindMethod); 
-    meetingEvent.put(MeetingEventFields.GUEST_LIST, guestList); 
-    meetingEvent.put(MeetingEventFields.MEETING_TIME_IDS, meetingTimeIds);
-    meetingEvent.put(MeetingEventFields.MEETING_LOCATION_IDS, meetingLocationIds);
-
-    String meetingEventJson = ServletUtil.convertMapToJson(meetingEvent);
-    response.getWriter().println(meetingEventJson);
+    List<String> guestList = (ArrayList) result.getProperty(MeetingEventFields.GUEST_LIST); 
+    List<String> meetingTimeIds = 
+        (ArrayList) result.getProperty(MeetingEventFields.MEETING_TIME_IDS); 
+    List<String> meetingLocationIds = 
+        (ArrayList) result.getProperty(MeetingEventFields.MEETING_LOCATION_IDS); 
+
+    return new MeetingEvent(meetingName, durationMins, durationHours, 
+        timeFindMethod, guestList, meetingTimeIds, meetingLocationIds);
   }
 
   /** Creates a MeetingEvent entity and stores it in Datastore */
   private String storeMeeting(MeetingEvent event) {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService(); 
+    DatastoreService datastore = InstrumentedDatastoreService.getDatastoreService(); 
     Entity meetingEvent = new Entity("MeetingEvent"); 
     meetingEvent.setProperty(MeetingEventFields.MEETING_NAME, event.getMeetingName()); 
     meetingEvent.setProperty(MeetingEventFields.DURATION_MINS, event.getDurationMins());
@@ -141,7 +168,12 @@ public class MeetingEventServlet extends HttpServlet {
     meetingEvent.setProperty(MeetingEventFields.GUEST_LIST, event.getGuestList());
     meetingEvent.setProperty(MeetingEventFields.MEETING_TIME_IDS, event.getMeetingTimeIds());
     meetingEvent.setProperty(MeetingEventFields.MEETING_LOCATION_IDS, event.getMeetingLocationIds());
+    EntityVersion.touch(meetingEvent);
     datastore.put(meetingEvent);
+    EntityVersion.of(meetingEvent).cacheWritten(meetingEvent.getKey());
+    // The entity is loaded again when read, as its properties as written are not all of
+    // the types Datastore returns, e.g. int rather than long.
+    MEETING_EVENT_CACHE.invalidate(meetingEvent.getKey());
     String keyStr = KeyFactory.keyToString(meetingEvent.getKey());
     return keyStr; 
   }
@@ -0,0 +1,80 @@
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.InstrumentedDatastoreService;
+import com.google.sps.data.MeetingEventFields;
+import com.google.sps.data.MeetingSnapshotFields;
+import com.google.sps.data.ServletUtil;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import main.java.com.google.sps.dao.LocationDao;
+import main.java.com.google.sps.dao.LocationQueries;
+import main.java.com.google.sps.data.Location;
+
+/** Servlet to fetch everything the meeting event page shows with a single request */
+@WebServlet("/meeting-snapshot")
+public class MeetingSnapshotServlet extends HttpServlet {
+  private LocationQueries locationDao = LocationDao.CACHED;
+
+  /**
+   * Responds with the login status of the user and, if they are logged in, the meeting
+   * event, its meeting times with their votes, its locations and its most popular
+   * locations. The meeting times are read with one batch get, in the format of 
+   * '/meeting-time' given meetingTimeIds and the user as the voter.
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String meetingEventId = ServletUtil.getMeetingEventId(request, response);
+    if (meetingEventId == null) {
+      return; // The error response was sent by getMeetingEventId.
+    }
+
+    HashMap<String, Object> snapshot = new LinkedHashMap<>();
+    HashMap<String, String> userStatus = LoginServlet.getUserStatus(meetingEventId);
+    snapshot.put(MeetingSnapshotFields.USER_STATUS, userStatus);
+    if (!"true".equals(userStatus.get("loggedIn"))) {
+      // The meeting is only shown to users who are logged in.
+      ServletUtil.writeJson(response, snapshot);
+      return;
+    }
+
+    Entity meetingEvent;
+    try {
+      meetingEvent = MeetingEventServlet.MEETING_EVENT_CACHE.get(
+          KeyFactory.stringToKey(meetingEventId));
+    } catch (EntityNotFoundException e) {
+      ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_NOT_FOUND, 
+          ErrorMessages.ENTITY_NOT_FOUND_ERROR);
+      return;
+    }
+    snapshot.put(MeetingSnapshotFields.MEETING_EVENT, 
+        MeetingEventServlet.toMeetingEvent(meetingEvent));
+
+    List<String> meetingTimeIds = 
+        (List<String>) meetingEvent.getProperty(MeetingEventFields.MEETING_TIME_IDS);
+    DatastoreService datastore = InstrumentedDatastoreService.getDatastoreService();
+    snapshot.put(MeetingSnapshotFields.MEETING_TIMES, meetingTimeIds == null 
+        ? new HashMap<String, Object>() 
+        : MeetingTimeServlet.getMeetingTimes(
+            datastore, meetingTimeIds, userStatus.get("userEmail")));
+
+    snapshot.put(MeetingSnapshotFields.LOCATIONS, locationDao.getAll(meetingEventId));
+    snapshot.put(MeetingSnapshotFields.POPULAR_LOCATIONS, locationDao.getPopular(meetingEventId));
+
+    ServletUtil.writeJson(response, snapshot);
+  }
+
+  public void setDao(LocationDao locationDao) {
+    this.locationDao = locationDao;
+  }
+}
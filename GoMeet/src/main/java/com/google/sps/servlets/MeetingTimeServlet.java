@@ -14,24 +14,33 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.sps.data.EntityVersion;
 import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.InstrumentedDatastoreService;
 import com.google.sps.data.MeetingTimeFields;
 import com.google.sps.data.ServletUtil;
+import com.google.sps.data.Voters;
 import java.io.IOException;
 import java.lang.IllegalArgumentException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -40,10 +49,33 @@ import javax.servlet.http.HttpServletResponse;
 /** Servlet to handle the fetching and creating of MeetingTime entities */
 @WebServlet("/meeting-time")
 public class MeetingTimeServlet extends HttpServlet {
-  /** Fetches a MeetingTime entity from Datastore according to the entity ID in the query string */
+  // Number of voters returned in a page, by default and at most.
+  private static final int DEFAULT_VOTERS_LIMIT = 100;
+  private static final int MAX_VOTERS_LIMIT = 1000;
+  // Number of voters returned with each MeetingTime fetched at once.
+  private static final int BATCH_VOTERS_LIMIT = 10;
+  // Maximum number of MeetingTime entities fetched at once.
+  private static final int MAX_BATCH_SIZE = 100;
+
+  /** 
+   * Fetches a MeetingTime entity from Datastore according to the entity ID in the query string.
+   * The voters are returned a page at a time: if there are more, the response includes a
+   * votersCursor to pass back to fetch the next page. If a voter is given, the response
+   * includes whether they have voted.
+   * The response has an ETag header, and a request with If-None-Match is answered with
+   * 304 Not Modified if neither the MeetingTime nor its votes have changed.
+   * If meetingTimeIds is given instead, several MeetingTime entities are fetched at once,
+   * each with a small first page of its voters.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     response.setContentType("application/json");
+    String keyStrs = request.getParameter(MeetingTimeFields.MEETING_TIME_IDS);
+    if (keyStrs != null) {
+      doBatchGet(request, response, keyStrs);
+      return;
+    }
+
     String keyStr = request.getParameter(MeetingTimeFields.MEETING_TIME_ID);
     if (keyStr == null) {
       ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.BAD_REQUEST_ERROR);
@@ -58,9 +90,32 @@ public class MeetingTimeServlet extends HttpServlet {
       ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.INVALID_KEY_ERROR);
       return;
     }
+
+    // A vote does not write the MeetingTime entity, but each vote is counted, so the
+    // response changes with the version of the entity and its count of votes. It also
+    // depends on the page of voters and the voter asked about. A vote drops the cached
+    // count once it commits, so a voter's next read is not answered with the old tally.
+    String cursorStr = request.getParameter(MeetingTimeFields.VOTERS_CURSOR);
+    String limitStr = request.getParameter(MeetingTimeFields.VOTERS_LIMIT);
+    String voter = request.getParameter(MeetingTimeFields.VOTER);
+    long shardedVotes = VoteMeetingTimeServlet.VOTE_COUNTER.getCount(keyStr);
+
+    // A client whose copy is current is answered from the cached version, without
+    // reading the entity.
+    if (EntityVersion.isConditional(request)) {
+      EntityVersion cached = EntityVersion.getCached(key);
+      if (cached != null) {
+        EntityVersion version = cached.withCount(shardedVotes);
+        String eTag = version.getETag(voter, cursorStr, limitStr);
+        if (version.isNotModified(request, eTag)) {
+          version.sendNotModified(response, eTag);
+          return;
+        }
+      }
+    }
     
     // filter by Key
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    DatastoreService datastore = InstrumentedDatastoreService.getDatastoreService();
     Entity result;
 
     try {
@@ -70,30 +125,196 @@ public class MeetingTimeServlet extends HttpServlet {
       ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_NOT_FOUND, ErrorMessages.ENTITY_NOT_FOUND_ERROR);
       return;
     }
+
+    EntityVersion entityVersion = EntityVersion.of(result);
+    entityVersion.cache(key);
+    EntityVersion version = entityVersion.withCount(shardedVotes);
+    String eTag = version.getETag(voter, cursorStr, limitStr);
+    if (version.isNotModified(request, eTag)) {
+      version.sendNotModified(response, eTag);
+      return;
+    }
+    version.setHeaders(response, eTag);
     
+    // Voters are read a page at a time. Voters stored in the entity's own list, from
+    // before voters were stored as Voter entities, are returned with the first page.
+    FetchOptions fetchOptions;
+    QueryResultList<Entity> voterPage;
+    try {
+      fetchOptions = FetchOptions.Builder.withLimit(
+          getVotersLimit(limitStr));
+      if (cursorStr != null) {
+        fetchOptions.startCursor(Cursor.fromWebSafeString(cursorStr));
+      }
+      Query voterQuery = Voters.query(key);
+      voterPage = datastore.prepare(voterQuery).asQueryResultList(fetchOptions);
+    } catch (IllegalArgumentException e) {
+      // The cursor is only checked when the query is run.
+      ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.INVALID_CURSOR_ERROR);
+      return;
+    }
+
+    // Whether someone has voted is a key lookup, so it does not need all the voters.
+    Boolean hasVoted = voter == null ? null : Voters.hasVoted(datastore, null, result, voter);
+    HashMap<String, Object> meetingTime = toMeetingTimeMap(
+        result, shardedVotes, voterPage, fetchOptions.getLimit(), cursorStr == null, hasVoted);
+
+    // return as JSON
+    ServletUtil.writeJson(response, meetingTime);
+  }
+  
+  /**
+   * Fetches several MeetingTime entities at once, given as a comma-separated list of IDs
+   * in the meetingTimeIds parameter, with one batch get. Responds with a JSON object
+   * mapping each ID to the same details as a single fetch, with a small first page of
+   * voters, or to an error (status and message) if the ID is invalid or the entity is not found.
+   */
+  private void doBatchGet(HttpServletRequest request, HttpServletResponse response, 
+      String keyStrs) throws IOException {
+    Set<String> ids = new LinkedHashSet<>();
+    for (String id : keyStrs.split(",")) {
+      if (!id.trim().isEmpty()) {
+        ids.add(id.trim());
+      }
+    }
+    if (ids.isEmpty()) {
+      ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.BAD_REQUEST_ERROR);
+      return;
+    }
+    if (ids.size() > MAX_BATCH_SIZE) {
+      ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.TOO_MANY_IDS_ERROR);
+      return;
+    }
+
+    String voter = request.getParameter(MeetingTimeFields.VOTER);
+    DatastoreService datastore = InstrumentedDatastoreService.getDatastoreService();
+    ServletUtil.writeJson(response, getMeetingTimes(datastore, ids, voter));
+  }
+
+  /**
+   * Returns the details of several MeetingTime entities, read with one batch get, in the
+   * same format as a single fetch. Each has a first page of at most BATCH_VOTERS_LIMIT
+   * voters, read with one small query per MeetingTime, and a votersCursor to fetch the
+   * rest with a single fetch if there may be more.
+   * @param datastore the datastore to read from.
+   * @param ids the key strings of the MeetingTime entities.
+   * @param voter the voter to include whether they have voted, or null.
+   * @return the map of each ID, in the order given, to the details of the MeetingTime, or
+   * to an error (status and message) if the ID is invalid or the entity is not found.
+   */
+  public static HashMap<String, Object> getMeetingTimes(DatastoreService datastore, 
+      Collection<String> ids, String voter) {
+    // The response keeps the order of the IDs requested.
+    HashMap<String, Object> meetingTimes = new LinkedHashMap<>();
+    Map<String, Key> keys = new HashMap<>();
+    for (String id : ids) {
+      try {
+        keys.put(id, KeyFactory.stringToKey(id));
+      } catch (IllegalArgumentException e) {
+        meetingTimes.put(id, errorMap(HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.INVALID_KEY_ERROR));
+      }
+    }
+
+    Map<Key, Entity> results = datastore.get(null, keys.values());
+    List<String> foundIds = new ArrayList<>();
+    for (String id : ids) {
+      if (results.containsKey(keys.get(id))) {
+        foundIds.add(id);
+      }
+    }
+    Map<String, Long> voteCounts = VoteMeetingTimeServlet.VOTE_COUNTER.getCounts(foundIds);
+    Map<Key, Boolean> hasVoted = voter == null ? 
+        new HashMap<>() : Voters.hasVoted(datastore, results.values(), voter);
+
+    for (String id : ids) {
+      if (!keys.containsKey(id)) {
+        continue; // The invalid key error is already in the response.
+      }
+      Entity result = results.get(keys.get(id));
+      if (result == null) {
+        meetingTimes.put(id, errorMap(HttpServletResponse.SC_NOT_FOUND, ErrorMessages.ENTITY_NOT_FOUND_ERROR));
+        continue;
+      }
+      QueryResultList<Entity> voterPage = datastore.prepare(Voters.query(result.getKey()))
+          .asQueryResultList(FetchOptions.Builder.withLimit(BATCH_VOTERS_LIMIT));
+      meetingTimes.put(id, toMeetingTimeMap(result, voteCounts.get(id), voterPage, 
+          BATCH_VOTERS_LIMIT, true, hasVoted.get(result.getKey())));
+    }
+    return meetingTimes;
+  }
+
+  /**
+   * Returns the details of a MeetingTime to send as JSON.
+   * @param result the MeetingTime entity.
+   * @param shardedVotes the votes counted by VOTE_COUNTER, on top of any count stored
+   * on the entity.
+   * @param voterPage the page of Voter entities to return, or null to leave out the voters.
+   * @param limit the size of a full page of voters.
+   * @param firstPage whether this is the first page of voters. Voters stored in the
+   * entity's own list, from before voters were stored as Voter entities, are returned 
+   * with the first page.
+   * @param hasVoted whether the voter asked about has voted, or null if none was.
+   */
+  private static HashMap<String, Object> toMeetingTimeMap(Entity result, long shardedVotes, 
+      QueryResultList<Entity> voterPage, int limit, boolean firstPage, Boolean hasVoted) {
     // Each of the fields will be set to null if not found in returned entity
     String datetime = (String) result.getProperty(MeetingTimeFields.DATETIME);
     Long voteCount = 
-        result.getProperty(MeetingTimeFields.VOTE_COUNT) == null ? 
-        null : (long) result.getProperty(MeetingTimeFields.VOTE_COUNT);
-    List voters = (ArrayList) result.getProperty(MeetingTimeFields.VOTERS);
+        (result.getProperty(MeetingTimeFields.VOTE_COUNT) == null ? 
+        0 : (long) result.getProperty(MeetingTimeFields.VOTE_COUNT)) + shardedVotes;
     // add all to hashmap,
     HashMap<String, Object> meetingTime = new HashMap<String, Object>() {{
       put(MeetingTimeFields.DATETIME, datetime);
       put(MeetingTimeFields.VOTE_COUNT, voteCount);
-      put(MeetingTimeFields.VOTERS, voters);
     }};
+    if (voterPage != null) {
+      List<String> voters = new ArrayList<>();
+      if (firstPage && result.getProperty(MeetingTimeFields.VOTERS) != null) {
+        voters.addAll((List<String>) result.getProperty(MeetingTimeFields.VOTERS));
+      }
+      for (Entity voter : voterPage) {
+        voters.add((String) voter.getProperty(Voters.NAME));
+      }
+      meetingTime.put(MeetingTimeFields.VOTERS, voters);
+      // There may be more voters if the page is full.
+      if (voterPage.size() >= limit) {
+        meetingTime.put(MeetingTimeFields.VOTERS_CURSOR, voterPage.getCursor().toWebSafeString());
+      }
+    }
+    if (hasVoted != null) {
+      meetingTime.put(MeetingTimeFields.HAS_VOTED, hasVoted);
+    }
+    return meetingTime;
+  }
 
-    // return as JSON
-    String meetingTimeJson = ServletUtil.convertMapToJson(meetingTime);
-    response.getWriter().println(meetingTimeJson);
+  /** Returns an error to include in a batch response, in the format of an error response. */
+  private static HashMap<String, Object> errorMap(int status, String message) {
+    HashMap<String, Object> error = new HashMap<>();
+    error.put("status", status);
+    error.put("message", message);
+    return error;
   }
-  
+
+  /**
+   * Parses the requested number of voters per page.
+   * @throws IllegalArgumentException if it is not a number between 1 and MAX_VOTERS_LIMIT.
+   */
+  private static int getVotersLimit(String limitStr) {
+    if (limitStr == null) {
+      return DEFAULT_VOTERS_LIMIT;
+    }
+    int limit = Integer.parseInt(limitStr);
+    if (limit < 1 || limit > MAX_VOTERS_LIMIT) {
+      throw new IllegalArgumentException("Page size out of range: " + limit);
+    }
+    return limit;
+  }
+
   /** Creates a new MeetingTime entity and stores it to Datastore */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     // expect the query string to be of the following format: ?datetime=DATETIME
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    DatastoreService datastore = InstrumentedDatastoreService.getDatastoreService();
     String datetime = request.getParameter(MeetingTimeFields.DATETIME);
 
     if (datetime == null) {
@@ -104,7 +325,9 @@ public class MeetingTimeServlet extends HttpServlet {
     Entity meetingTime = new Entity("MeetingTime");
     meetingTime.setProperty(MeetingTimeFields.DATETIME, datetime);
     meetingTime.setProperty(MeetingTimeFields.VOTE_COUNT, 0); // initially votes are 0
+    EntityVersion.touch(meetingTime);
     datastore.put(meetingTime);
+    EntityVersion.of(meetingTime).cacheWritten(meetingTime.getKey());
     String meetingTimeKey = KeyFactory.keyToString(meetingTime.getKey());
 
     HashMap<String, Object> keyObj = new HashMap<String, Object>() {{
@@ -112,7 +335,6 @@ public class MeetingTimeServlet extends HttpServlet {
     }};
 
     // return the key of the created entity
-    response.setContentType("application/json");
-    response.getWriter().println(ServletUtil.convertMapToJson(keyObj));
+    ServletUtil.writeSmallJson(response, keyObj);
   }
 }
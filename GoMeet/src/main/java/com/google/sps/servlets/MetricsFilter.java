@@ -0,0 +1,106 @@
+package com.google.sps.servlets;
+
+import com.google.sps.data.DatastoreRpcs;
+import com.google.sps.data.RequestMetrics;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records the status code, latency and Datastore RPCs of every request to a servlet in
+ * MetricsServlet.REQUEST_METRICS, by the path of the servlet. Requests for static files
+ * are not recorded, so that the number of routes stays small. For asynchronous servlets,
+ * e.g. VoteStreamServlet, only the time taken to start the response is recorded.
+ * A warning is logged for each request that gets more single entities than the
+ * maxSingleGets init parameter, as they could likely have been read in one batch get.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+  public static final String MAX_SINGLE_GETS_PARAMETER = "maxSingleGets";
+  public static final int DEFAULT_MAX_SINGLE_GETS = 5;
+
+  private final RequestMetrics metrics;
+  private final Set<String> routes = new HashSet<>();
+  private int maxSingleGets = DEFAULT_MAX_SINGLE_GETS;
+
+  /** Constructor, for a filter that records to MetricsServlet.REQUEST_METRICS. */
+  public MetricsFilter() {
+    this(MetricsServlet.REQUEST_METRICS);
+  }
+
+  public MetricsFilter(RequestMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Finds the paths of the servlets, from the URL patterns they are mapped to, and reads
+   * the number of single gets a request may issue before a warning is logged.
+   */
+  @Override
+  public void init(FilterConfig config) throws ServletException {
+    String maxSingleGetsParameter = config.getInitParameter(MAX_SINGLE_GETS_PARAMETER);
+    if (maxSingleGetsParameter != null) {
+      try {
+        maxSingleGets = Integer.parseInt(maxSingleGetsParameter);
+      } catch (NumberFormatException e) {
+        throw new ServletException("Invalid " + MAX_SINGLE_GETS_PARAMETER + ": "
+            + maxSingleGetsParameter, e);
+      }
+    }
+    for (ServletRegistration servlet :
+        config.getServletContext().getServletRegistrations().values()) {
+      for (String mapping : servlet.getMappings()) {
+        // Wildcard and default mappings serve many paths, e.g. the static files.
+        if (mapping.startsWith("/") && !mapping.equals("/") && !mapping.contains("*")) {
+          routes.add(mapping);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    String route = request instanceof HttpServletRequest
+        ? ((HttpServletRequest) request).getServletPath()
+        : null;
+    if (route == null || !routes.contains(route)) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    DatastoreRpcs rpcs = DatastoreRpcs.start();
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      chain.doFilter(request, response);
+      failed = false;
+    } finally {
+      long nanos = System.nanoTime() - start;
+      rpcs.stop();
+      // An exception thrown by the servlet is sent to the client as a server error.
+      int status = failed
+          ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+          : ((HttpServletResponse) response).getStatus();
+      metrics.record(route, status, nanos);
+      metrics.recordDatastore(route, rpcs);
+      if (rpcs.getSingleGetCount() > maxSingleGets) {
+        System.err.println("Request to " + route + " issued " + rpcs.getSingleGetCount()
+            + " single-key gets, which could be batched: " + rpcs);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {}
+}
@@ -0,0 +1,37 @@
+package com.google.sps.servlets;
+
+import com.google.sps.data.RequestMetrics;
+import main.java.com.google.sps.dao.LocationClusters;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Publishes the metrics of the requests to the servlets, and of the caches in front of
+ * Datastore and the Freebusy API, for Prometheus to scrape.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+  public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4";
+  // Recorded to by MetricsFilter, for every request to a servlet of this instance.
+  public static final RequestMetrics REQUEST_METRICS = new RequestMetrics();
+
+  static {
+    REQUEST_METRICS.registerCache("meeting_event", MeetingEventServlet.MEETING_EVENT_CACHE);
+    REQUEST_METRICS.registerCache("location_tile", LocationClusters.TILE_CACHE);
+    REQUEST_METRICS.registerCache("freebusy", GoogleCalendarTimesServlet.FREEBUSY_CACHE);
+  }
+
+  /** Responds with the metrics in the Prometheus text format. */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType(PROMETHEUS_CONTENT_TYPE);
+    response.setCharacterEncoding("UTF-8");
+    PrintWriter out = response.getWriter();
+    REQUEST_METRICS.writePrometheus(out);
+    out.flush();
+  }
+}
@@ -1,12 +1,17 @@
 package main.java.com.google.sps.servlets;
 
 import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
 import com.google.gson.Gson;
 import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.MeetingSnapshotFields;
 import com.google.sps.data.ServletUtil;
+import com.google.sps.servlets.VoteStreamServlet;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -21,7 +26,7 @@ import org.jsoup.safety.Whitelist;
 @WebServlet("/update-location-data")
 public class UpdateLocationServlet extends HttpServlet {
 
-  private Dao<Location> locationDao = new LocationDao();
+  private Dao<Location> locationDao = LocationDao.CACHED;
 
   /** Accepts a POST request with information about the location entity to add a vote to. */
   @Override
@@ -29,10 +34,26 @@ public class UpdateLocationServlet extends HttpServlet {
     String keyString = request.getParameter("key");
     try {
       locationDao.updateVote(keyString);
+      publishVote(keyString);
       response.setStatus(HttpServletResponse.SC_OK);
     } catch (EntityNotFoundException e) {
       ServletUtil.sendErrorResponse(
           response, HttpServletResponse.SC_BAD_REQUEST, ErrorMessages.ENTITY_NOT_FOUND_ERROR);
+    } catch (ConcurrentModificationException e) {
+      ServletUtil.sendErrorResponse(
+          response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, ErrorMessages.CONTENTION_ERROR);
+    }
+  }
+
+  /** 
+   * Shows the vote live on the meeting event pages that are open. The votes for the
+   * locations of a meeting are published to its MeetingEvent, the parent of the locations.
+   */
+  private void publishVote(String keyString) {
+    Key meetingEventKey = KeyFactory.stringToKey(keyString).getParent();
+    if (meetingEventKey != null) {
+      VoteStreamServlet.VOTE_BROADCASTER.publish(KeyFactory.keyToString(meetingEventKey), 
+          MeetingSnapshotFields.LOCATIONS, keyString, 1);
     }
   }
 
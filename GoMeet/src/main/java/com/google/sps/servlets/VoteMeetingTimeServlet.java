@@ -1,29 +1,42 @@
 package com.google.sps.servlets;
 
 import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
 import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.InstrumentedDatastoreService;
+import com.google.sps.data.MeetingSnapshotFields;
 import com.google.sps.data.MeetingTimeFields;
 import com.google.sps.data.ServletUtil;
+import com.google.sps.data.Voters;
 import java.io.IOException;
 import java.lang.IllegalArgumentException;
-import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
-import java.util.HashSet;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import main.java.com.google.sps.dao.ShardedCounter;
 
 /** Servlet to handle the fetching and creating of MeetingTime entities */
 @WebServlet("/vote-meeting-time")
 public class VoteMeetingTimeServlet extends HttpServlet {
+  // Number of times a vote is retried when the meeting time was updated concurrently.
+  private static final int MAX_RETRIES = 3;
 
-  /** Increments the voteCount of the MeetingTime identified by the provided MeetingTimeId */
+  /** Counts the votes of each meeting time, named by the key string of the meeting time. */
+  public static final ShardedCounter VOTE_COUNTER = new ShardedCounter();
+
+  /** 
+   * Adds a vote to the MeetingTime identified by the provided MeetingTimeId. 
+   * The vote count of the entity is the count of votes before they were sharded, 
+   * the votes since are in VOTE_COUNTER.
+   */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     // Expect the query string to be of the following format: ?meetingTimeId=ID&voters=VOTER
@@ -52,10 +65,9 @@ public class VoteMeetingTimeServlet extends HttpServlet {
       return;
     }
 
-    // Filter by Key
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    // The MeetingTime is read outside of the transaction, as a vote does not change it.
+    DatastoreService datastore = InstrumentedDatastoreService.getDatastoreService();
     Entity meetingTime;
-
     try {
       meetingTime = datastore.get(key);
     } catch (EntityNotFoundException e) {
@@ -68,38 +80,59 @@ public class VoteMeetingTimeServlet extends HttpServlet {
       return;
     }
 
-    HashSet<String> voters;
-    if (meetingTime.getProperty(MeetingTimeFields.VOTERS) == null) {
-      voters = new HashSet<String>();
-    } else {
-      voters = 
-          new HashSet<String>(
-            (ArrayList<String>) meetingTime.getProperty(MeetingTimeFields.VOTERS)
+    // The voter is added and the vote counted in one transaction, so that a voter
+    // voting twice at the same time is only counted once. The voter is a root entity of
+    // its own and the count is kept in a sharded counter, so the transaction writes two
+    // small entity groups that other voters rarely share, hence the cross-group
+    // transaction.
+    for (int attempt = 0; ; attempt++) {
+      Transaction txn = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        // If this voter has voted for this time before, they cannot vote again
+        if (Voters.hasVoted(datastore, txn, meetingTime, voter)) {
+          ServletUtil.sendErrorResponse(
+            response, 
+            HttpServletResponse.SC_CONFLICT, 
+            ErrorMessages.USER_HAS_VOTED_ERROR
           );
-    }
+          return;
+        }
 
-    // If this voter has voted for this time before, they cannot vote again
-    if (!voters.add(voter)) {
-      ServletUtil.sendErrorResponse(
-        response, 
-        HttpServletResponse.SC_CONFLICT, 
-        ErrorMessages.USER_HAS_VOTED_ERROR
-      );
-      return;
+        datastore.put(txn, Voters.newVoter(key, voter));
+        VOTE_COUNTER.increment(txn, keyStr, voter);
+        txn.commit();
+        VOTE_COUNTER.invalidate(keyStr);
+        break;
+      } catch (ConcurrentModificationException e) {
+        // The conflict was on the voter if they voted at the same time, and is then
+        // reported by the retry. Otherwise the shard was busy, so more are added.
+        if (!Voters.hasVoted(datastore, null, meetingTime, voter)) {
+          VOTE_COUNTER.addShards(keyStr);
+        }
+        if (attempt >= MAX_RETRIES) {
+          ServletUtil.sendErrorResponse(
+            response, 
+            HttpServletResponse.SC_SERVICE_UNAVAILABLE, 
+            ErrorMessages.CONTENTION_ERROR
+          );
+          return;
+        }
+      } finally {
+        if (txn.isActive()) {
+          txn.rollback();
+        }
+      }
     }
 
-    int currentVotes = 
-        ((Long) meetingTime.getProperty(MeetingTimeFields.VOTE_COUNT)).intValue();
-    meetingTime.setProperty(MeetingTimeFields.VOTE_COUNT, currentVotes + 1);
-    meetingTime.setProperty(MeetingTimeFields.VOTERS, voters);
-    datastore.put(meetingTime);
+    // The vote is shown live on the meeting event pages that are open.
+    VoteStreamServlet.VOTE_BROADCASTER.publish(
+        keyStr, MeetingSnapshotFields.MEETING_TIMES, keyStr, 1);
 
     // Return the OK status
     HashMap<String, Object> status = new HashMap<String, Object>() {{
       put("status", HttpServletResponse.SC_OK);
     }};
 
-    response.setContentType("application/json");
-    response.getWriter().println(ServletUtil.convertMapToJson(status));
+    ServletUtil.writeSmallJson(response, status);
   }
 }
@@ -0,0 +1,183 @@
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.LocalVoteBroadcaster;
+import com.google.sps.data.MeetingEventFields;
+import com.google.sps.data.ServletUtil;
+import com.google.sps.data.VoteBroadcaster;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet to stream the votes of a meeting to its meeting event page, as Server-Sent Events.
+ * The stream is only served where the STREAMING_PROPERTY system property is true. The
+ * App Engine java8 standard runtime buffers the whole response, so the events would only
+ * reach the browser when the stream times out; there the servlet answers with 501 Not
+ * Implemented, and the page polls for the votes instead.
+ * The votes are those recorded by this instance, so a deployment with several instances
+ * streams each page only the votes recorded on the instance serving its stream.
+ */
+@WebServlet(urlPatterns = "/vote-stream", asyncSupported = true)
+public class VoteStreamServlet extends HttpServlet {
+  /** 
+   * Publishes the votes recorded by VoteMeetingTimeServlet and UpdateLocationServlet to
+   * the streams of this instance.
+   */
+  public static final LocalVoteBroadcaster VOTE_BROADCASTER = new LocalVoteBroadcaster();
+
+  /** The system property that enables the stream, on a deployment that streams responses. */
+  public static final String STREAMING_PROPERTY = "gomeet.voteStream.enabled";
+
+  /** The name of the events that carry votes. */
+  public static final String VOTES_EVENT = "votes";
+
+  // How long a stream is kept open. The browser then reconnects, and the page fetches
+  // the votes it may have missed in between.
+  private static final long STREAM_TIMEOUT_MS = 55 * 1000;
+  // How long the browser waits before reconnecting.
+  private static final long RETRY_MS = 1000;
+
+  private boolean streaming = Boolean.getBoolean(STREAMING_PROPERTY);
+
+  /**
+   * Opens a stream of the votes for the meeting times and locations of the meeting event
+   * in the query string. Each event is named VOTES_EVENT, and its data is the JSON of the
+   * votes gained since the last event, in the format:
+   * {meetingTimes: {meetingTimeId: votes}, locations: {locationKey: votes}}
+   * Votes recorded within a short window are sent as one event.
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!streaming) {
+      ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_NOT_IMPLEMENTED, 
+          ErrorMessages.STREAMING_UNAVAILABLE_ERROR);
+      return;
+    }
+
+    String meetingEventId = ServletUtil.getMeetingEventId(request, response);
+    if (meetingEventId == null) {
+      return; // The error response was sent by getMeetingEventId.
+    }
+
+    if (!UserServiceFactory.getUserService().isUserLoggedIn()) {
+      // The votes are only shown to users who are logged in.
+      ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, 
+          ErrorMessages.LOGIN_REQUIRED_ERROR);
+      return;
+    }
+
+    Entity meetingEvent;
+    try {
+      meetingEvent = MeetingEventServlet.MEETING_EVENT_CACHE.get(
+          KeyFactory.stringToKey(meetingEventId));
+    } catch (EntityNotFoundException e) {
+      ServletUtil.sendErrorResponse(response, HttpServletResponse.SC_NOT_FOUND, 
+          ErrorMessages.ENTITY_NOT_FOUND_ERROR);
+      return;
+    }
+
+    // The votes for the locations are published to the meeting event, and the votes
+    // for each meeting time to the meeting time.
+    List<String> topics = new ArrayList<>();
+    topics.add(meetingEventId);
+    List<String> meetingTimeIds = 
+        (List<String>) meetingEvent.getProperty(MeetingEventFields.MEETING_TIME_IDS);
+    if (meetingTimeIds != null) {
+      topics.addAll(meetingTimeIds);
+    }
+
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    AsyncContext async = request.startAsync();
+    async.setTimeout(STREAM_TIMEOUT_MS);
+    VoteStream stream = new VoteStream(async, response.getWriter());
+    stream.write("retry: " + RETRY_MS + "\n\n");
+    stream.setSubscription(VOTE_BROADCASTER.subscribe(topics, stream));
+    async.addListener(stream);
+  }
+
+  /** Sets whether the stream is served, overriding STREAMING_PROPERTY. */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  /** An open stream, writing the votes it receives as events until it is closed. */
+  private static class VoteStream implements VoteBroadcaster.Listener, AsyncListener {
+    private final AsyncContext async;
+    private final PrintWriter writer;
+    private VoteBroadcaster.Subscription subscription;
+    private boolean closed = false;
+
+    VoteStream(AsyncContext async, PrintWriter writer) {
+      this.async = async;
+      this.writer = writer;
+    }
+
+    @Override
+    public void onVotes(String topic, Map<String, Map<String, Long>> deltas) {
+      write("event: " + VOTES_EVENT + "\ndata: " + ServletUtil.convertToJson(deltas) + "\n\n");
+    }
+
+    /** Writes to the stream, and closes it if the client has gone. */
+    synchronized void write(String message) {
+      if (closed) {
+        return;
+      }
+      writer.write(message);
+      writer.flush();
+      if (writer.checkError()) {
+        close();
+        async.complete();
+      }
+    }
+
+    /** Sets the subscription to cancel once the stream is closed. */
+    synchronized void setSubscription(VoteBroadcaster.Subscription subscription) {
+      this.subscription = subscription;
+      if (closed) {
+        subscription.cancel();
+      }
+    }
+
+    private synchronized void close() {
+      closed = true;
+      if (subscription != null) {
+        subscription.cancel();
+      }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      close();
+      async.complete();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+  }
+}
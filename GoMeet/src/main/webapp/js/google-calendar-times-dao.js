@@ -5,6 +5,7 @@ class GoogleCalendarTimesDAO {
    */
 
   static endpoint = 'gcal-find-times';
+  static daysPerRequest = 7; // The days fetched by each request of findTimesByDay
 
   /**
    * Fetched the automatically generated meeting times from the servlet
@@ -13,10 +14,121 @@ class GoogleCalendarTimesDAO {
    * format 'yyyy-MM-ddTHH:mm'
    * @param {String} periodEnd The end of the period, in the 
    * format 'yyyy-MM-ddTHH:mm'
+   * @param {Number} topK Optional. The number of meeting times to return, ranked
+   * best first, rather than the start of each free period.
    * @returns The list of the possible meeting times in JSON format, as 
    * returned by the servlet at the 'gcal-find-times' endpoint.
    */
-  static async findTimes(periodStart, periodEnd) {
+  static async findTimes(periodStart, periodEnd, topK) {
+    GoogleCalendarTimesDAO.checkPeriod(periodStart, periodEnd);
+
+    if (topK !== undefined && (!Number.isInteger(topK) || topK < 1)) {
+      throw new Error(INVALID_PARAM_VALUE);
+    }
+
+    // encode the data to be sent in the query string
+    let fieldValues = GoogleCalendarTimesDAO.fieldValues(periodStart, periodEnd);
+    if (topK !== undefined) {
+      fieldValues['top-k'] = topK;
+    }
+    let urlString = DAOUtils.url(GoogleCalendarTimesDAO.endpoint, fieldValues); 
+
+    let response = await fetch(urlString).then((response) => response.json());
+    return response;
+  }
+
+  /**
+   * Fetches the automatically generated meeting times one day at a time, calling
+   * onDay with each day in order, so that the first days can be shown while the
+   * later ones are still being computed. Times outside working hours are left out.
+   * The period is fetched a week at a time, with the next week requested while
+   * the current one is read. The servlet streams the days of each request, but
+   * the App Engine standard runtime buffers its response, so a week's days may
+   * only arrive together once the whole week is computed.
+   * @param {String} periodStart The start of the period, in the 
+   * format 'yyyy-MM-ddTHH:mm'
+   * @param {String} periodEnd The end of the period, in the 
+   * format 'yyyy-MM-ddTHH:mm'
+   * @param {Function} onDay called with each day, in day order, in the format:
+   * {day: 'yyyy-MM-dd', times: [the start of each free period]}
+   * @param {String} workingHours Optional. The working hours of the guests, in the
+   * format 'HH:mm-HH:mm'.
+   */
+  static async findTimesByDay(periodStart, periodEnd, onDay, workingHours) {
+    GoogleCalendarTimesDAO.checkPeriod(periodStart, periodEnd);
+
+    let ranges = GoogleCalendarTimesDAO.splitPeriod(
+        periodStart, periodEnd, GoogleCalendarTimesDAO.daysPerRequest);
+    let fetchRange = (range) => {
+      let fieldValues = GoogleCalendarTimesDAO.fieldValues(range.start, range.end);
+      fieldValues['format'] = 'ndjson';
+      if (workingHours !== undefined) {
+        fieldValues['working-hours'] = workingHours;
+      }
+      return fetch(DAOUtils.url(GoogleCalendarTimesDAO.endpoint, fieldValues));
+    };
+    let next = fetchRange(ranges[0]);
+    for (let i = 0; i < ranges.length; i++) {
+      let response = await next;
+      if (i + 1 < ranges.length) {
+        next = fetchRange(ranges[i + 1]);
+      }
+      await GoogleCalendarTimesDAO.readDays(response, onDay);
+    }
+  }
+
+  /** Calls onDay with the JSON of each line of a response, as the lines arrive. */
+  static async readDays(response, onDay) {
+    // Each line is the JSON of a day, and a line may arrive split across chunks.
+    let reader = response.body.getReader();
+    let decoder = new TextDecoder();
+    let buffered = '';
+    while (true) {
+      let {done, value} = await reader.read();
+      buffered += done ? decoder.decode() : decoder.decode(value, {stream: true});
+      let lines = buffered.split('\n');
+      buffered = done ? '' : lines.pop();
+      for (const line of lines) {
+        if (line.trim() !== '') {
+          onDay(JSON.parse(line));
+        }
+      }
+      if (done) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Splits a period into ranges of at most the given number of days, each but the
+   * first starting at midnight, so that each day falls in one range.
+   * @param {String} periodStart The start, in the format 'yyyy-MM-ddTHH:mm'
+   * @param {String} periodEnd The end, in the format 'yyyy-MM-ddTHH:mm'
+   * @param {Number} days The most days in a range.
+   * @returns An array of the ranges, in the format: {start: startStr, end: endStr}
+   */
+  static splitPeriod(periodStart, periodEnd, days) {
+    let ranges = [];
+    let start = periodStart;
+    while (true) {
+      // The dates are counted in UTC, so that they are not shifted by daylight saving.
+      let [year, month, day] = start.substring(0, 10).split('-').map(Number);
+      let boundary = new Date(Date.UTC(year, month - 1, day + days))
+          .toISOString().substring(0, 10) + 'T00:00';
+      // The strings are in the same format, so they compare in date order.
+      if (boundary >= periodEnd) {
+        ranges.push({start: start, end: periodEnd});
+        return ranges;
+      }
+      ranges.push({start: start, end: boundary});
+      start = boundary;
+    }
+  }
+
+  /**
+   * Throws an error if the period is missing, or not in the format 'yyyy-MM-ddTHH:mm'.
+   */
+  static checkPeriod(periodStart, periodEnd) {
     if (periodStart === null || periodStart === undefined ||
         periodEnd === null || periodEnd === undefined) {
       throw new Error(INSUFFICIENT_REQUEST_PARAM);
@@ -40,28 +152,20 @@ class GoogleCalendarTimesDAO {
         !(endDate instanceof Date) || isNaN(endDate)) {
       throw new Error(INVALID_PARAM_VALUE);
     }
+  }
 
+  /** Returns the fields of the query string that every request sends. */
+  static fieldValues(periodStart, periodEnd) {
     // Fetch the relevant data from sessionStorage
     // TODO: Refactor the getter functions that retrieve from sessionStorage
     // to a separate class, since they are not strongly cohesive with 
     // the MeetingEventDAO functions that talk to the servlet.
-    let guestList = MeetingEventDAO.getGuestList();
-    let durationHours = MeetingEventDAO.getDurationHours();
-    let durationMins = MeetingEventDAO.getDurationMins();
-
-    // encode the data to be sent in the query string
-    let urlString = DAOUtils.url(
-      GoogleCalendarTimesDAO.endpoint, 
-      {
-        'guest-list': guestList,
-        'duration-hours': durationHours, 
-        'duration-mins': durationMins,
-        'period-start': periodStart, 
-        'period-end': periodEnd
-      }
-    ); 
-
-    let response = await fetch(urlString).then((response) => response.json());
-    return response;
+    return {
+      'guest-list': MeetingEventDAO.getGuestList(),
+      'duration-hours': MeetingEventDAO.getDurationHours(), 
+      'duration-mins': MeetingEventDAO.getDurationMins(),
+      'period-start': periodStart, 
+      'period-end': periodEnd
+    };
   }
 }
@@ -1,9 +1,17 @@
 google.charts.load('current', {'packages':['corechart']});
 
+// The locations shown in the chart, kept to redraw it with the votes streamed to them.
+let chartLocations = null;
+
 /** Fetches location data and uses it to create a chart. */
 async function drawChart() {
   const dao = MeetingLocationDaoFactory.getLocationDao('permanent');
-  let locations = await dao.fetchLocations();
+  chartLocations = await dao.fetchLocations();
+  renderChart(chartLocations);
+}
+
+/** Draws a chart of the votes of the locations. */
+function renderChart(locations) {
   let data = new google.visualization.DataTable();
   data.addColumn('string', 'Location');
   data.addColumn('number', 'Count')
@@ -19,3 +27,33 @@ async function drawChart() {
   const chart = new google.visualization.BarChart(document.getElementById('map'));
   chart.draw(data, options);
 }
+
+/**
+ * Adds the votes received from the VoteStream to the locations in the chart,
+ * and redraws it.
+ * @param {Object} deltas The number of votes each location gained, in the
+ * format: {keyString: votes}
+ */
+function updateChartVotes(deltas) {
+  if (chartLocations === null) {
+    return; // The chart is not drawn.
+  }
+  chartLocations.forEach((location) => {
+    if (location.keyString in deltas) {
+      location.voteCount += deltas[location.keyString];
+    }
+  });
+  renderChart(chartLocations);
+}
+
+/**
+ * Redraws the chart with the vote counts of the locations given.
+ * @param {Array[Object]} locations The locations, as returned by fetchLocations.
+ */
+function setChartVoteCounts(locations) {
+  if (chartLocations === null) {
+    return; // The chart is not drawn.
+  }
+  chartLocations = locations;
+  renderChart(chartLocations);
+}
@@ -1,12 +1,34 @@
 const INITIAL_VOTE_COUNT = 1;
+// The containers showing the vote count of each location, by its key string, so that
+// the votes streamed to the locations can be shown.
+const locationVoteContainers = new Map();
+// The markers of the stored locations, by key string, so that they can be hidden
+// while they are in a cluster.
+const locationMarkers = new Map();
+// The markers of the clusters shown at the current zoom level.
+let clusterMarkers = [];
+// The highest zoom level at which close locations are clustered.
+const MAX_CLUSTER_ZOOM = 16;
 
 /** Initialises the map. */
 function initMap() {
+  // The map replaces the chart, if it was drawn.
+  chartLocations = null;
+
   // Create the map object
   let map = createMap();
   
-  // Add the data from the database to the map
-  fetchLocations(map);
+  // Add the data from the database to the map. Stored locations are fetched for
+  // the part of the map shown, once the map knows its bounds and again each time
+  // it is moved, and clustered for its zoom level.
+  if (document.querySelector('#map').dataset.mem === 'permanent') {
+    map.addListener('idle', async () => {
+      await fetchLocations(map);
+      await showClusters(map);
+    });
+  } else {
+    fetchLocations(map);
+  }
 }
 
 /** Creates a map that allows users to add markers. */
@@ -58,8 +80,7 @@ function createLocationForDisplay(map, lat, lng, title, voteCount, note, keyStri
  */
 function buildInfoWindowInput(lat, lng, editLocation, map) {
   // Get Dao.
-  const storageType = document.querySelector('#map').dataset.mem;
-  const dao = MeetingLocationDaoFactory.getLocationDao(storageType);
+  const dao = getMapLocationDao();
 
   const titleTextbox = document.createElement('textarea');
   titleTextbox.setAttribute('id', 'titleTextbox');
@@ -91,35 +112,110 @@ function buildInfoWindowInput(lat, lng, editLocation, map) {
   return containerDiv;
 }
 
-/** Fetches the location data. */
+/**
+ * Returns the location Dao for the storage type of the map. Locations stored
+ * permanently belong to the meeting event displayed on the page.
+ */
+function getMapLocationDao() {
+  const storageType = document.querySelector('#map').dataset.mem;
+  const meetingEventId = storageType === 'permanent' ? getMeetingEventId() : null;
+  return MeetingLocationDaoFactory.getLocationDao(storageType, meetingEventId);
+}
+
+/** 
+ * Fetches the location data in the part of the map shown, or all of it if the
+ * map does not know its bounds yet.
+ */
 async function fetchLocations(map) {
   // Get Dao.
-  const storageType = document.querySelector('#map').dataset.mem;
-  const dao = MeetingLocationDaoFactory.getLocationDao(storageType);
+  const dao = getMapLocationDao();
 
   try {
-    let json = await dao.fetchLocations();
+    const bounds = map !== undefined && map.getBounds !== undefined ?
+        map.getBounds() : undefined;
+    let json = await dao.fetchLocations(
+        bounds !== undefined ? bounds.toUrlValue() : undefined);
     
     // If we reach here, that means that the locations were successfully
-    // fetched and we can put them on the map.
+    // fetched and we can put them on the map. Locations already on the map
+    // from an earlier viewport are not added again.
     json.forEach((location) => {
-      createLocationForDisplay(map, location.lat, location.lng,
+      if (location.keyString && locationVoteContainers.has(location.keyString)) {
+        return;
+      }
+      const marker = createLocationForDisplay(map, location.lat, location.lng,
           location.title, location.voteCount, location.note, location.keyString);
+      if (location.keyString) {
+        locationMarkers.set(location.keyString, marker);
+      }
     });
   } catch (error) {
     handleError(error);
   }
 }
 
+/**
+ * Shows the locations close together at the zoom level of the map as one marker
+ * per cluster, labelled with the number of locations in it. The locations in a
+ * cluster of their own keep their own marker.
+ */
+async function showClusters(map) {
+  // Get Dao.
+  const dao = getMapLocationDao();
+
+  try {
+    const zoom = map.getZoom();
+    const clusters = zoom > MAX_CLUSTER_ZOOM ? [] :
+        await dao.fetchClusters(map.getBounds().toUrlValue(), zoom);
+
+    clusterMarkers.forEach((marker) => marker.setMap(null));
+    clusterMarkers = [];
+    const unclusteredKeyStrings = new Set();
+    clusters.forEach((cluster) => {
+      if (cluster.count === 1) {
+        unclusteredKeyStrings.add(cluster.keyString);
+      } else {
+        clusterMarkers.push(createClusterMarker(map, cluster));
+      }
+    });
+    locationMarkers.forEach((marker, keyString) => {
+      const shown = zoom > MAX_CLUSTER_ZOOM || unclusteredKeyStrings.has(keyString);
+      marker.setMap(shown ? map : null);
+    });
+  } catch (error) {
+    handleError(error);
+  }
+}
+
+/** 
+ * Creates a marker for a cluster, titled with its most voted location. Clicking
+ * it zooms in, so that the cluster splits into the locations in it.
+ */
+function createClusterMarker(map, cluster) {
+  const marker = new google.maps.Marker({
+    position: {lat: cluster.lat, lng: cluster.lng},
+    map: map,
+    label: String(cluster.count),
+    title: cluster.title,
+  });
+  marker.addListener('click', () => {
+    map.setCenter(marker.getPosition());
+    map.setZoom(map.getZoom() + 2);
+  });
+  return marker;
+}
+
 /** Builds a HTML element to display the location's data and a vote button. */
 function buildInfoWindowVote(title, voteCount, note, keyString) {
    // Get Dao.
-  const storageType = document.querySelector('#map').dataset.mem;
-  const dao = MeetingLocationDaoFactory.getLocationDao(storageType);
+  const dao = getMapLocationDao();
 
   const titleContainer = createSpanContainer(title, 'displayTitle');
   const noteContainer = createSpanContainer(note, 'displayNote');
   const voteContainer = createSpanContainer(voteCount, 'displayVoteCount');
+  if (keyString !== undefined) {
+    locationVoteContainers.set(keyString, voteContainer);
+  }
 
   const button = document.createElement('button');
   button.setAttribute('id', 'voteButton');
@@ -127,8 +223,11 @@ function buildInfoWindowVote(title, voteCount, note, keyString) {
   button.onclick = async () => {
     try {
       await dao.updateLocation(keyString);
-      const currVote = voteContainer.innerText;
-      voteContainer.innerText = parseInt(currVote) + 1;
+      // The vote count is updated by the VoteStream, if it is open.
+      if (!VoteStream.isOpen()) {
+        const currVote = voteContainer.innerText;
+        voteContainer.innerText = parseInt(currVote) + 1;
+      }
     } catch (error) {
       handleError(error);
     }
@@ -142,6 +241,39 @@ function buildInfoWindowVote(title, voteCount, note, keyString) {
   return containerDiv;
 }
 
+/**
+ * Adds the votes received from the VoteStream to the locations displayed.
+ * @param {Object} deltas The number of votes each location gained, in the
+ * format: {keyString: votes}
+ */
+function applyLocationVotes(deltas) {
+  for (const [keyString, votes] of Object.entries(deltas)) {
+    const voteContainer = locationVoteContainers.get(keyString);
+    if (voteContainer !== undefined) {
+      voteContainer.innerText = parseInt(voteContainer.innerText) + votes;
+    }
+  }
+  updateChartVotes(deltas);
+}
+
+/**
+ * Shows the vote counts of the locations, e.g. when the votes streamed 
+ * since they were fetched may have been missed.
+ * @param {Array[Object]} locations The locations, as returned by fetchLocations.
+ */
+function setLocationVoteCounts(locations) {
+  if (locations === undefined) {
+    return;
+  }
+  locations.forEach((location) => {
+    const voteContainer = locationVoteContainers.get(location.keyString);
+    if (voteContainer !== undefined) {
+      voteContainer.innerText = location.voteCount;
+    }
+  });
+  setChartVoteCounts(locations);
+}
+
 /** Creates a list element that represents a location. */
 function createPopularLocationElement(location) {
   const liElement = document.createElement('li');
@@ -160,8 +292,7 @@ function createPopularLocationElement(location) {
 /** Fetches the popular location data and adds it to the DOM. */
 async function displayPopularLocations() {
    // Get Dao.
-  const storageType = document.querySelector('#map').dataset.mem;
-  const dao = MeetingLocationDaoFactory.getLocationDao(storageType);
+  const dao = getMapLocationDao();
 
   const popularLocationElement = 
       document.getElementById('popular-locations-container');
@@ -1,17 +1,26 @@
+// How often the votes are polled for when they are not streamed, in milliseconds.
+let POLL_INTERVAL_MS = 5000;
+// The timer polling for votes, if any.
+let votePollTimer = null;
+
 /**
  * Toggles meeting event display depending on login status of user.
  */
 async function toggleMeetingDisplay() {
   let meetingEventId = getMeetingEventId();
-  let loginStatus = await LoginStatus.doGet(meetingEventId); 
+  // The login status and the meeting event data are fetched with a single request.
+  let snapshot = await MeetingSnapshotDAO.fetchSnapshot(meetingEventId);
+  if (snapshot.userStatus === undefined) {
+    // The meeting event could not be fetched.
+    throw new Error(generateErrorMessage(snapshot) + " - MeetingEventId: " + meetingEventId);
+  }
+  let loginStatus = snapshot.userStatus; 
   let prompt; 
   let style; 
   if (loginStatus.loggedIn === 'true') {
     prompt = '<a href=' + loginStatus.logoutUrl + '>Logout</a>';
-    // Check if the meeting event ID is valid (i.e. there exists a MeetingEvent entity 
-    // in Datastore with that key)
-    let meetingEventEntity = MeetingEventDAO.fetchMeetingEvent(meetingEventId); 
-    if (meetingEventEntity['status'] === undefined) { // No error response was sent 
+    let meetingEventEntity = snapshot.meetingEvent; 
+    if (meetingEventEntity !== undefined) {
       style = 'block';
       let meetingName = meetingEventEntity['meetingName'];
       let durationMins = meetingEventEntity['durationMins'];
@@ -21,7 +30,8 @@ async function toggleMeetingDisplay() {
       let meetingTimeIds = meetingEventEntity['meetingTimeIds']; 
       let meetingLocationIds = meetingEventEntity['meetingLocationIds'];
       // TO DO: Call neccessary functions to display meeting event data
-      displayMeetingTimeForm(); 
+      displayMeetingTimeForm(snapshot); 
+      subscribeToVotes(meetingEventId);
     }
   } else {
     style = 'none'; 
@@ -35,6 +45,57 @@ async function toggleMeetingDisplay() {
   document.getElementById('login-or-logout-prompt').innerHTML = prompt;
 }
 
+/**
+ * Opens the VoteStream of the meeting event, to show the votes of 
+ * other guests as they are recorded. If the stream reconnects, the votes
+ * it missed are fetched with the snapshot of the meeting. If the stream is
+ * not served, the votes are polled for instead.
+ * @param {String} meetingEventId The ID of the meeting event displayed.
+ */
+function subscribeToVotes(meetingEventId) {
+  return VoteStream.open(meetingEventId, (deltas) => {
+    if (deltas.meetingTimes !== undefined) {
+      applyMeetingTimeVotes(deltas.meetingTimes);
+    }
+    if (deltas.locations !== undefined) {
+      applyLocationVotes(deltas.locations);
+    }
+  }, async () => {
+    let snapshot = await MeetingSnapshotDAO.fetchSnapshot(meetingEventId);
+    if (snapshot.meetingEvent !== undefined) {
+      displayMeetingTimeForm(snapshot);
+      setLocationVoteCounts(snapshot.locations);
+    }
+  }, () => pollVotes(meetingEventId));
+}
+
+/**
+ * Polls for the votes of the meeting event every POLL_INTERVAL_MS, for when
+ * they are not streamed. Each poll is a single request for the snapshot of the 
+ * meeting, which has the votes of both its meeting times and its locations.
+ * @param {String} meetingEventId The ID of the meeting event displayed.
+ */
+function pollVotes(meetingEventId) {
+  if (votePollTimer !== null) {
+    return;
+  }
+  votePollTimer = setInterval(() => refreshVotes(meetingEventId), POLL_INTERVAL_MS);
+}
+
+/**
+ * Fetches the snapshot of the meeting event, and shows the votes of its 
+ * meeting times and locations that have changed.
+ * @param {String} meetingEventId The ID of the meeting event displayed.
+ */
+async function refreshVotes(meetingEventId) {
+  let snapshot = await MeetingSnapshotDAO.fetchSnapshot(meetingEventId);
+  if (snapshot.meetingEvent === undefined) {
+    return; // The meeting event could not be fetched, or the user logged out.
+  }
+  setMeetingTimeVotes(snapshot.meetingTimes);
+  setLocationVoteCounts(snapshot.locations);
+}
+
 /**
  * Generates an error message string of the format:
  * "ERROR: errorResponse.status errorResponse.message".
@@ -51,15 +51,21 @@ class MeetingEventDAO {
     return ids; 
   }
 
-  static async getMeetingLocationIds() {
+  /**
+   * Saves the locations in session storage as locations of the meeting event.
+   * @param {String} meetingEventId the ID of the new meeting event.
+   * @returns the IDs of the saved locations.
+   */
+  static async saveMeetingLocations(meetingEventId) {
     let dao;
     // Get locations from session storage.
     dao = MeetingLocationDaoFactory.getLocationDao('temporary');
     const locations = dao.fetchLocations();
 
-    // Send locations to server.
+    // Send locations to server. The meeting event must already exist, since 
+    // locations are stored under it.
     let ids = [];
-    dao = MeetingLocationDaoFactory.getLocationDao('permanent');
+    dao = MeetingLocationDaoFactory.getLocationDao('permanent', meetingEventId);
     for (let i = 0; i < locations.length; i++) {
       const currLocation = locations[i];
       let id =
@@ -78,16 +84,20 @@ class MeetingEventDAO {
     let guestList = this.getGuestList(); 
     let meetingTimes = this.getMeetingTimes(); 
     let meetingTimeIds = await this.getMeetingTimeIds(meetingTimes); 
-    let meetingLocationIds = await this.getMeetingLocationIds();
 
-    // Encode the data to be sent in the query string
+    // Encode the data to be sent in the query string. The locations are saved
+    // once the meeting event exists, as children of it.
     let urlString = DAOUtils.url(MeetingEventDAO.endpoint, {'meetingName': meetingName, 
     'durationMins': durationMins, 'durationHours': durationHours, 
     'timeFindMethod': timeFindMethod, 'guestList': guestList, 
-    'meetingTimeIds': meetingTimeIds, 'meetingLocationIds': meetingLocationIds}); 
+    'meetingTimeIds': meetingTimeIds, 'meetingLocationIds': []}); 
 
     let responseInit = {method: 'POST'}
     let response = await fetch(urlString, responseInit).then((response) => response.json());
+    let meetingEventId = response['meetingEventId'];
+    if (meetingEventId !== null && meetingEventId !== undefined) {
+      await this.saveMeetingLocations(meetingEventId);
+    }
     return response;
   }
 
@@ -3,10 +3,13 @@ class MeetingLocationDaoFactory {
   /** 
    * Returns a meetingLocationDAO object based on whether the map stores to a temporary
    * or permanent location.
+   * @param {String} storageType 'permanent' or 'temporary'.
+   * @param {String} meetingEventId the ID of the meeting the locations belong to.
+   * Only used for permanent storage.
    */
-  static getLocationDao(storageType) {
+  static getLocationDao(storageType, meetingEventId) {
     if (storageType === 'permanent') {
-      return new PermMeetingLocationDao();
+      return new PermMeetingLocationDao(meetingEventId);
     } else {
       return new TempMeetingLocationDao();
     }
@@ -96,19 +99,30 @@ class TempMeetingLocationDao {
 /** Data access object for the /location-data servlet. */
 class PermMeetingLocationDao {
 
-  /** Constructs a Data Access object for permanent storage. */
-  constructor() {
+  /** 
+   * Constructs a Data Access object for permanent storage.
+   * @param {String} meetingEventId the ID of the meeting the locations belong to.
+   */
+  constructor(meetingEventId) {
+    this.meetingEventId = meetingEventId;
     this.storingEndPoint = '/location-data';
     this.votingEndPoint = '/update-location-data';
     this.popularEndPoint = '/popular-location-data';
+    this.clusterEndPoint = '/location-cluster-data';
   };
 
   /**
-   * Fetches the location data from the servlet.
+   * Fetches the location data of the meeting from the servlet.
    * Returns a JSON array of the location data.
+   * @param {String} bounds Optional. Only the locations inside these bounds are
+   * fetched, in the format of LatLngBounds.toUrlValue().
    */
-  async fetchLocations() {
-    let response = await fetch(this.storingEndPoint);
+  async fetchLocations(bounds) {
+    let url = this.meetingUrl(this.storingEndPoint);
+    if (bounds !== undefined) {
+      url += '&' + new URLSearchParams({bounds: bounds}).toString();
+    }
+    let response = await fetch(url);
     if (response.status >= 200 && response.status <= 299) {
       let locations = await response.json();
       return locations;
@@ -118,12 +132,12 @@ class PermMeetingLocationDao {
   }
 
   /**
-   * Fetches the popular location data from the servlet.
+   * Fetches the popular location data of the meeting from the servlet.
    * @return a JSON array of the popular location data.
    * @throws an error if the response status is not between 200 and 299.
    */
   async fetchPopularLocations() {
-    let response = await fetch(this.popularEndPoint);
+    let response = await fetch(this.meetingUrl(this.popularEndPoint));
     if (response.status >= 200 && response.status <= 299) {
       let locations = await response.json();
       return locations;
@@ -132,6 +146,26 @@ class PermMeetingLocationDao {
     }    
   }
 
+  /**
+   * Fetches the clusters of the meeting's locations shown on the map.
+   * @param {String} bounds the bounds of the map, in the format of
+   * LatLngBounds.toUrlValue().
+   * @param {Number} zoom the zoom level of the map.
+   * @return a JSON array of the clusters.
+   * @throws an error if the response status is not between 200 and 299.
+   */
+  async fetchClusters(bounds, zoom) {
+    const params = new URLSearchParams({bounds: bounds, zoom: zoom});
+    let response = await fetch(
+        this.meetingUrl(this.clusterEndPoint) + '&' + params.toString());
+    if (response.status >= 200 && response.status <= 299) {
+      let clusters = await response.json();
+      return clusters;
+    } else {
+      throw new Error(response.statusText);
+    }
+  }
+
   /** 
    * Sends a new location to the servlet.
    * @return {String} Key String from the servlet.
@@ -143,6 +177,7 @@ class PermMeetingLocationDao {
       throw new Error(BLANK_FIELDS_ALERT);
     }
     const params = new URLSearchParams();
+    params.append('meetingEventId', this.meetingEventId);
     params.append('title', title);
     params.append('lat', lat);
     params.append('lng', lng);
@@ -168,4 +203,14 @@ class PermMeetingLocationDao {
       throw new Error(ENTITY_NOT_FOUND);
     }
   }
+
+  /** 
+   * Returns the URL of the endpoint, with the meeting's ID in the query string.
+   * @param {String} endpoint the endpoint of the servlet.
+   */
+  meetingUrl(endpoint) {
+    const params = new URLSearchParams();
+    params.append('meetingEventId', this.meetingEventId);
+    return endpoint + '?' + params.toString();
+  }
 }
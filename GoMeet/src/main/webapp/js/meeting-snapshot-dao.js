@@ -0,0 +1,29 @@
+class MeetingSnapshotDAO {
+  /** Data Access Object for the snapshot of everything shown on a meeting event page */
+
+  static endpoint = '/meeting-snapshot'; // URL endpoint of the associated servlet
+
+  /**
+   * Fetches the data of a meeting event page with a single request.
+   * @param {String} meetingEventId the ID of the MeetingEvent.
+   * @returns a JSON object with the 'userStatus' of the user, as returned by 
+   * LoginStatus.doGet. If the user is logged in, it also has the 'meetingEvent',
+   * its 'meetingTimes' as returned by MeetingTimeDAO.fetchMeetingTimes with the
+   * user as the voter, with the first page of their voters, and its 'locations' and 'popularLocations'. 
+   * If the meeting event could not be fetched, the error response is returned.
+   */
+  static async fetchSnapshot(meetingEventId) {
+    if (meetingEventId === null || meetingEventId === undefined) {
+      throw new Error(INSUFFICIENT_REQUEST_PARAM);
+    }
+
+    if (typeof meetingEventId !== 'string') {
+      throw new Error(INVALID_PARAM_TYPE);
+    }
+
+    let urlString = 
+        DAOUtils.url(MeetingSnapshotDAO.endpoint, {'meetingEventId': meetingEventId});
+    let results = await fetch(urlString).then((results) => results.json());
+    return results;
+  }
+}
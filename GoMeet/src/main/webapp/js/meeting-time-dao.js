@@ -9,10 +9,13 @@ class MeetingTimeDAO {
    * @param {String} meetingTimeId the MeetingTimeID of the MeetingTime 
    * entity to be fetched from Datastore. Equivalent to the 
    * Datastore-generated Key of the entity.
+   * @param {String} voter optional, a voter to check the vote of. If given,
+   * the result includes 'hasVoted', whether they have voted for the time.
    * @returns a JSON object with the details of the fetched 
-   * MeetingTime entity.
+   * MeetingTime entity. Its 'voters' are the first page of voters; if
+   * there are more, it includes a 'votersCursor' for the next page.
    */
-  static async fetchMeetingTime(meetingTimeId) {
+  static async fetchMeetingTime(meetingTimeId, voter) {
     if (meetingTimeId === null || meetingTimeId === undefined) {
       throw new Error(INSUFFICIENT_REQUEST_PARAM);
     }
@@ -21,7 +24,46 @@ class MeetingTimeDAO {
       throw new Error(INVALID_PARAM_TYPE);
     }
 
-    let urlString = DAOUtils.url(MeetingTimeDAO.endpoint, {'meetingTimeId': meetingTimeId});
+    let params = {'meetingTimeId': meetingTimeId};
+    if (typeof voter === 'string') {
+      params['voter'] = voter;
+    }
+    let urlString = DAOUtils.url(MeetingTimeDAO.endpoint, params);
+    let results = await fetch(urlString).then((results) => results.json());
+    return results;
+  }
+
+  /**
+   * Fetches the meeting time data of several MeetingTimes with a single request.
+   * @param {Array[String]} meetingTimeIds the MeetingTimeIDs of the MeetingTime
+   * entities to be fetched from Datastore.
+   * @param {String} voter optional, a voter to check the votes of. If given,
+   * each result includes 'hasVoted', whether they have voted for the time.
+   * @returns a JSON object mapping each MeetingTimeID to the details of the
+   * MeetingTime, as returned by fetchMeetingTime but with only a small first page
+   * of 'voters', or to an error response if it could not be fetched. The rest of the
+   * voters of a MeetingTime with a 'votersCursor' are fetched with fetchMeetingTime.
+   */
+  static async fetchMeetingTimes(meetingTimeIds, voter) {
+    if (meetingTimeIds === null || meetingTimeIds === undefined) {
+      throw new Error(INSUFFICIENT_REQUEST_PARAM);
+    }
+
+    if (!(meetingTimeIds instanceof Array) || 
+        !meetingTimeIds.every((id) => typeof id === 'string')) {
+      throw new Error(INVALID_PARAM_TYPE);
+    }
+
+    if (meetingTimeIds.length === 0) {
+      return {};
+    }
+
+    // IDs are entity keys, which never contain commas.
+    let params = {'meetingTimeIds': meetingTimeIds.join(',')};
+    if (typeof voter === 'string') {
+      params['voter'] = voter;
+    }
+    let urlString = DAOUtils.url(MeetingTimeDAO.endpoint, params);
     let results = await fetch(urlString).then((results) => results.json());
     return results;
   }
@@ -1,29 +1,102 @@
 let MAX_VOTES = 3; // Users can vote up to MAX_VOTES times.
+// The meeting times shown in the voting form, kept to apply the votes streamed to them.
+let displayedMeetingTimes = null;
 
 /**
  * Function called on page load of meeting-event.html
- * to fetch all relevant MeetingTime data from servlets 
- * and generate voting form for the MeetingTimes.
+ * to generate the voting form for the MeetingTimes of the meeting, 
+ * from its snapshot.
+ * @param {Object} snapshot optional, the snapshot of the meeting event 
+ * as returned by MeetingSnapshotDAO.fetchSnapshot. If not given, it is fetched.
  */
-async function displayMeetingTimeForm() {
+async function displayMeetingTimeForm(snapshot) {
   let meetingEventId = getMeetingEventId();
-  let meetingEvent = await MeetingEventDAO.fetchMeetingEvent(meetingEventId);
-  let meetingTimeIds = meetingEvent['meetingTimeIds']; 
+  if (snapshot === undefined) {
+    snapshot = await MeetingSnapshotDAO.fetchSnapshot(meetingEventId);
+  }
+  let meetingEvent = snapshot.meetingEvent;
 
-  if (('status' in meetingEvent && parseInt(meetingEvent.status) !== 200) 
-      || meetingTimeIds === null) {
+  if (('status' in snapshot && parseInt(snapshot.status) !== 200) 
+      || meetingEvent === undefined || meetingEvent.meetingTimeIds === null) {
     // Execution cannot continue unless meetingTimeIds can be retrieved. 
     // Must terminate script with an Error. 
-    throw new Error(generateErrorMessage(meetingEvent) + " - MeetingEventId: " + meetingEventId);
+    throw new Error(generateErrorMessage(snapshot) + " - MeetingEventId: " + meetingEventId);
   }; 
   
+  let currentUser = snapshot.userStatus.loggedIn === 'true' ? 
+      snapshot.userStatus.userEmail : null;
+  displayedMeetingTimes = {
+    meetingTimeIds: meetingEvent.meetingTimeIds,
+    times: snapshot.meetingTimes,
+    currentUser: currentUser,
+  };
+  renderMeetingTimes();
+}
+
+/**
+ * Re-renders the voting form with the meeting times displayed, 
+ * e.g. after their votes have changed.
+ */
+function renderMeetingTimes() {
   // Prepare for re-render: reset the 'meeting-times-table' table 
   // to JUST the table headers.
   let table = document.getElementById('meeting-times-table');
   for (let i = table.rows.length - 1; i > 0; i--) {
     table.deleteRow(i);
   }
-  await fetchAndProcess(meetingTimeIds);
+  processMeetingTimes(displayedMeetingTimes.meetingTimeIds, 
+      displayedMeetingTimes.times, displayedMeetingTimes.currentUser);
+}
+
+/**
+ * Adds the votes received from the VoteStream to the meeting times displayed,
+ * and re-renders the voting form.
+ * @param {Object} deltas The number of votes each meeting time gained, in the
+ * format: {meetingTimeId: votes}
+ */
+function applyMeetingTimeVotes(deltas) {
+  if (displayedMeetingTimes === null) {
+    return; // The voting form is not displayed.
+  }
+  for (const [id, votes] of Object.entries(deltas)) {
+    let time = displayedMeetingTimes.times[id];
+    if (time !== undefined && time.voteCount !== undefined) {
+      time.voteCount += votes;
+    }
+  }
+  renderMeetingTimes();
+}
+
+/**
+ * Shows the vote counts and voters of the meeting times fetched, e.g. with a
+ * snapshot polled for when the votes are not streamed, and re-renders the 
+ * voting form if any have changed.
+ * @param {Object} times The MeetingTime data of the meeting snapshot, in the
+ * format of processMeetingTimes.
+ */
+function setMeetingTimeVotes(times) {
+  let displayed = displayedMeetingTimes;
+  if (displayed === null || times === undefined) {
+    return; // The voting form is not displayed.
+  }
+  let changed = false;
+  for (const id of displayed.meetingTimeIds) {
+    let time = displayed.times[id];
+    let fetched = times[id];
+    if (time === undefined || 'status' in time || fetched === undefined || 
+        'status' in fetched) {
+      continue;
+    }
+    if (time.voteCount !== fetched.voteCount || 
+        String(time.voters) !== String(fetched.voters)) {
+      time.voteCount = fetched.voteCount;
+      time.voters = fetched.voters;
+      changed = true;
+    }
+  }
+  if (changed) {
+    renderMeetingTimes();
+  }
 }
 
 /**
@@ -41,16 +114,17 @@ async function getLoggedInUser() {
 }
 
 /**
- * Fetches the data from the MeetingTime entities represented 
- * by the meetingTimeIds, and pre-processes the data.
+ * Pre-processes the data of the MeetingTime entities represented 
+ * by the meetingTimeIds, and generates the voting form with it.
  * @param {Array[String]} meetingTimeIds The array of meetingTimeIds 
  * that are the meeting times associated with this Meeting
- * @returns The array of timeData retrieved via GET request from the 
- * '/meeting-time' endpoint, in the format: 
- * [{meetingTimeId: id, datetime: datetimeStr, voteCount: count, voters: [voters]}]
+ * @param {Object} times The MeetingTime data of the meeting snapshot, 
+ * mapping each meetingTimeId to its data, or to an error response, in the format:
+ * {meetingTimeId: {datetime: datetimeStr, voteCount: count, voters: [voters]}}
+ * The voters are only the first page of them, and 'votersCursor' is set if there are more.
+ * @param {String} currentUser The user that is logged in, or null.
  */
-async function fetchAndProcess(meetingTimeIds) {
-  let currentUser = await getLoggedInUser();
+function processMeetingTimes(meetingTimeIds, times, currentUser) {
   if (currentUser === null) {
     return null; // Do not generate the voting form if the user is not logged in.
   }
@@ -62,16 +136,19 @@ async function fetchAndProcess(meetingTimeIds) {
   let timeData = [];
   let votedTimes = new Set(); // Times that the user has voted for, so cannot vote them again.
   for (let i = 0; i < meetingTimeIds.length; i++) {
-    let time = await MeetingTimeDAO.fetchMeetingTime(meetingTimeIds[i]);
-    if ('status' in time && parseInt(time.status) !== 200) {
+    let time = times[meetingTimeIds[i]];
+    if (time === undefined || ('status' in time && parseInt(time.status) !== 200)) {
       // NOTE: Error responses from the DAO are internal errors that the user cannot deal with, 
       // so don't alert them, but also don't crash the program or stop execution either.
       // Hence not throwing an error (which stops execution), but logging it.
-      console.error(generateErrorMessage(time) + " - MeetingTimeId: " + meetingTimeIds[i]);
+      let error = time === undefined ? times : time;
+      console.error(generateErrorMessage(error) + " - MeetingTimeId: " + meetingTimeIds[i]);
     } else {
       time.id = meetingTimeIds[i]; // Store the meetingId with the time to identify them later.
-      // Add time Id to the votedTimes if logged in user has voted for it.
-      if (time.voters !== null && time.voters.includes(currentUser)) {
+      // Add time Id to the votedTimes if logged in user has voted for it. The voters
+      // may only be the first page of them, so the server's answer is used if given.
+      if (time.hasVoted === true || 
+          (time.voters instanceof Array && time.voters.includes(currentUser))) {
         votedTimes.add(time.id);
       }
       timeData.push(time);
@@ -165,6 +242,12 @@ async function voteTime(id, currentUser) {
     // so don't alert them, but also don't crash the program or stop execution either.
     // Hence not throwing an error (which stops execution), but logging it.
     console.error(generateErrorMessage(response) + " - MeetingTimeId: " + id);
+  } else if (VoteStream.isOpen() && displayedMeetingTimes !== null &&
+      displayedMeetingTimes.times[id] !== undefined) {
+    // The vote count is updated by the VoteStream, so only the user's vote is recorded.
+    displayedMeetingTimes.times[id].hasVoted = true;
+    renderMeetingTimes();
+    return;
   }
   // Re-render the form to update the votes.
   await displayMeetingTimeForm();
@@ -0,0 +1,84 @@
+class VoteStream {
+  /**
+   * The stream of the votes of a meeting, as Server-Sent Events from the servlet
+   * at the vote-stream endpoint. Pages subscribe to it instead of fetching
+   * all the meeting times and locations again to show new votes.
+   */
+
+  static endpoint = '/vote-stream'; // URL endpoint of the associated servlet
+  static votesEvent = 'votes'; // The name of the events that carry votes
+  static source = null; // The EventSource of the open stream, if any
+
+  /**
+   * Opens the stream of the votes of a meeting event, closing any stream
+   * opened before.
+   * @param {String} meetingEventId the ID of the MeetingEvent.
+   * @param {Function} onVotes called with the votes gained since the last event,
+   * in the format: {meetingTimes: {meetingTimeId: votes}, locations: {keyString: votes}}
+   * @param {Function} onReconnect called when the stream reconnects, as any votes
+   * recorded while it was disconnected were not received.
+   * @param {Function} onUnavailable called if the stream cannot be opened, e.g. 
+   * because the deployment buffers responses and does not serve it, or the browser
+   * does not support Server-Sent Events. The votes must then be polled for.
+   * @returns the EventSource of the stream, or null if the browser does not
+   * support Server-Sent Events.
+   */
+  static open(meetingEventId, onVotes, onReconnect, onUnavailable) {
+    if (meetingEventId === null || meetingEventId === undefined) {
+      throw new Error(INSUFFICIENT_REQUEST_PARAM);
+    }
+
+    if (typeof meetingEventId !== 'string') {
+      throw new Error(INVALID_PARAM_TYPE);
+    }
+
+    VoteStream.close();
+    if (typeof EventSource === 'undefined') {
+      if (onUnavailable !== undefined) {
+        onUnavailable();
+      }
+      return null;
+    }
+
+    let urlString = DAOUtils.url(VoteStream.endpoint, {'meetingEventId': meetingEventId});
+    let source = new EventSource(urlString);
+    let opened = false;
+    source.addEventListener(VoteStream.votesEvent, (event) => {
+      onVotes(JSON.parse(event.data));
+    });
+    source.addEventListener('open', () => {
+      if (opened && onReconnect !== undefined) {
+        onReconnect();
+      }
+      opened = true;
+    });
+    // The browser gives up, rather than reconnecting, if the stream is refused.
+    source.addEventListener('error', () => {
+      if (source.readyState === EventSource.CLOSED && VoteStream.source === source) {
+        VoteStream.source = null;
+        if (onUnavailable !== undefined) {
+          onUnavailable();
+        }
+      }
+    });
+    VoteStream.source = source;
+    return source;
+  }
+
+  /** Closes the open stream, if any. */
+  static close() {
+    if (VoteStream.source !== null) {
+      VoteStream.source.close();
+      VoteStream.source = null;
+    }
+  }
+
+  /**
+   * Returns whether a stream is open, so that votes are received from it
+   * rather than having to be fetched.
+   */
+  static isOpen() {
+    return VoteStream.source !== null &&
+        VoteStream.source.readyState === EventSource.OPEN;
+  }
+}
@@ -33,6 +33,23 @@ describe('GoogleCalendarTimesDAO.findTimes', function() {
     expect(window.fetch).toHaveBeenCalledWith(GoogleCalendarTimesDAO.endpoint + QUERY_STRING);
   });
 
+  it('asks the servlet for the best topK times if topK is provided', async function() {
+    await GoogleCalendarTimesDAO.findTimes(PERIOD_START, PERIOD_END, 10);
+    expect(window.fetch).toHaveBeenCalledWith(
+        GoogleCalendarTimesDAO.endpoint + QUERY_STRING + '&top-k=10');
+  });
+
+  it('throws an exception if the topK param is not a positive integer', async function() {
+    let errorMessage;
+    try {
+      await GoogleCalendarTimesDAO.findTimes(PERIOD_START, PERIOD_END, 0);
+    } catch (error) {
+      errorMessage = error.message;
+    }
+    expect(errorMessage).toEqual(INVALID_PARAM_VALUE);
+    expect(window.fetch).not.toHaveBeenCalled();
+  });
+
   it('throws an exception if the periodStart param is not provided', async function() {
     let periodStart = null;
     await verifyErrorThrown(periodStart, PERIOD_END, INSUFFICIENT_REQUEST_PARAM);
@@ -64,6 +81,69 @@ describe('GoogleCalendarTimesDAO.findTimes', function() {
   });
 });
 
+// TESTS FOR GoogleCalendarTimesDAO.findTimesByDay
+describe('GoogleCalendarTimesDAO.findTimesByDay', function() {
+  const PERIOD_START = '2021-02-12T15:30'
+  const PERIOD_END = '2021-02-13T15:30';
+  const DAYS = [
+    {day: '2021-02-12', times: ['2021-02-12T16:00:00.000Z']},
+    {day: '2021-02-13', times: []},
+  ];
+
+  beforeEach(function() {
+    spyOn(MeetingEventDAO, 'getGuestList').and.returnValue(['anna@test.com']);
+    spyOn(MeetingEventDAO, 'getDurationHours').and.returnValue('1');
+    spyOn(MeetingEventDAO, 'getDurationMins').and.returnValue('0');
+    // The second line arrives split across two chunks.
+    let lines = DAYS.map((day) => JSON.stringify(day) + '\n').join('');
+    let splitAt = lines.indexOf('\n') + 5;
+    let encoder = new TextEncoder();
+    let chunks = [lines.substring(0, splitAt), lines.substring(splitAt)];
+    spyOn(window, 'fetch').and.callFake(async function() {
+      return {
+        body: {
+          getReader: () => ({
+            read: async () => chunks.length > 0
+                ? {done: false, value: encoder.encode(chunks.shift())}
+                : {done: true, value: undefined},
+          }),
+        },
+      };
+    });
+  });
+
+  it('calls onDay with each day streamed by the servlet, in order', async function() {
+    let days = [];
+    await GoogleCalendarTimesDAO.findTimesByDay(PERIOD_START, PERIOD_END,
+        (day) => days.push(day), '08:00-16:00');
+    expect(days).toEqual(DAYS);
+    let url = window.fetch.calls.mostRecent().args[0];
+    expect(url).toContain('format=ndjson');
+    expect(url).toContain('working-hours=08%3A00-16%3A00');
+  });
+
+  it('fetches a long period a week at a time, starting each week at midnight', async function() {
+    await GoogleCalendarTimesDAO.findTimesByDay('2021-02-12T15:30', '2021-02-22T12:00', () => {});
+    let urls = window.fetch.calls.allArgs().map((args) => args[0]);
+    expect(urls.length).toBe(2);
+    expect(urls[0]).toContain('period-start=' + encodeURIComponent('2021-02-12T15:30') +
+        '&period-end=' + encodeURIComponent('2021-02-19T00:00'));
+    expect(urls[1]).toContain('period-start=' + encodeURIComponent('2021-02-19T00:00') +
+        '&period-end=' + encodeURIComponent('2021-02-22T12:00'));
+  });
+
+  it('throws an exception if the periodStart param is not provided', async function() {
+    let errorMessage;
+    try {
+      await GoogleCalendarTimesDAO.findTimesByDay(null, PERIOD_END, () => {});
+    } catch (error) {
+      errorMessage = error.message;
+    }
+    expect(errorMessage).toEqual(INSUFFICIENT_REQUEST_PARAM);
+    expect(window.fetch).not.toHaveBeenCalled();
+  });
+});
+
 /**
  * Verify that an error is thrown, and fetch is not called provided 
  * the arguments to GoogleCalendarTimesDAO.
@@ -36,3 +36,29 @@ describe('Draw Chart', function() {
     expect(passedDataTable).toBe(mockedDataTable);
   });
 });
+
+describe('Update Chart Votes', function() {
+  afterEach(function() {
+    chartLocations = null;
+  });
+
+  it ('Should add the streamed votes to the chart and redraw it', function() {
+    chartLocations = [{title : 'Liyue', voteCount : 10, keyString : 'abc'},
+        {title : 'Mondstadt', voteCount : 4, keyString : 'def'}];
+    spyOn(window, 'renderChart');
+
+    updateChartVotes({'abc' : 2});
+
+    expect(chartLocations[0].voteCount).toBe(12);
+    expect(chartLocations[1].voteCount).toBe(4);
+    expect(window.renderChart).toHaveBeenCalledWith(chartLocations);
+  });
+
+  it ('Should not draw the chart if it was not drawn before', function() {
+    spyOn(window, 'renderChart');
+
+    updateChartVotes({'abc' : 2});
+
+    expect(window.renderChart).not.toHaveBeenCalled();
+  });
+});
@@ -148,6 +148,33 @@ describe ('Fetch Locations', function() {
     expect(noteText).toBe(NOTE);
   }); 
 
+  it ('Should fetch the locations in the bounds of the map once', async function() {
+    const KEY_STRING = 'shownLocationKey';
+    const locations =
+        [{title: TITLE, lat: LAT, lng: LNG, note: NOTE, keyString: KEY_STRING}];
+
+    const mockedLocationDao = new PermMeetingLocationDao();
+    spyOn(mockedLocationDao, 'fetchLocations').and.returnValue(locations);
+    spyOn(MeetingLocationDaoFactory, 'getLocationDao').and.returnValue(
+        mockedLocationDao);
+    const fakeMarker = jasmine.createSpyObj('Marker', ['addListener']);
+    spyOn(google.maps, 'Marker').and.returnValue(fakeMarker);
+    spyOn(google.maps, 'InfoWindow');
+    const fakeBounds = jasmine.createSpyObj('LatLngBounds', ['toUrlValue']);
+    fakeBounds.toUrlValue.and.returnValue('9,14,11,16');
+    const fakeMap = jasmine.createSpyObj('Map', ['getBounds']);
+    fakeMap.getBounds.and.returnValue(fakeBounds);
+
+    // The map is moved, but the location is still shown.
+    await fetchLocations(fakeMap);
+    await fetchLocations(fakeMap);
+
+    expect(mockedLocationDao.fetchLocations).toHaveBeenCalledWith('9,14,11,16');
+    expect(google.maps.Marker).toHaveBeenCalledTimes(1);
+    locationVoteContainers.delete(KEY_STRING);
+    locationMarkers.delete(KEY_STRING);
+  });
+
   it ('Should call handle error if Dao throws an error', async function() {
     // Spy on Dao.  
     const mockedLocationDao = new PermMeetingLocationDao();
@@ -163,6 +190,67 @@ describe ('Fetch Locations', function() {
   });
 });
 
+/** Tests for showClusters. */
+describe ('Show Clusters', function() {
+  const CLUSTERED_KEY = 'clusteredLocationKey';
+  const UNCLUSTERED_KEY = 'unclusteredLocationKey';
+  let fakeMap;
+  let clusteredMarker;
+  let unclusteredMarker;
+
+  beforeEach(function() {
+    const fakeBounds = jasmine.createSpyObj('LatLngBounds', ['toUrlValue']);
+    fakeBounds.toUrlValue.and.returnValue('-34,151,-33.5,151.5');
+    fakeMap = jasmine.createSpyObj('Map', ['getBounds', 'getZoom']);
+    fakeMap.getBounds.and.returnValue(fakeBounds);
+    clusteredMarker = jasmine.createSpyObj('Marker', ['setMap']);
+    unclusteredMarker = jasmine.createSpyObj('Marker', ['setMap']);
+    locationMarkers.set(CLUSTERED_KEY, clusteredMarker);
+    locationMarkers.set(UNCLUSTERED_KEY, unclusteredMarker);
+  });
+
+  afterEach(function() {
+    locationMarkers.clear();
+  });
+
+  it ('Should show a marker per cluster instead of its locations', async function() {
+    fakeMap.getZoom.and.returnValue(10);
+    const mockedLocationDao = new PermMeetingLocationDao();
+    spyOn(mockedLocationDao, 'fetchClusters').and.returnValue([
+      {lat: -33.9, lng: 151.2, count: 2, title: 'Opera House', keyString: CLUSTERED_KEY},
+      {lat: -33.8, lng: 151.3, count: 1, title: 'Beach', keyString: UNCLUSTERED_KEY},
+    ]);
+    spyOn(MeetingLocationDaoFactory, 'getLocationDao').and.returnValue(
+        mockedLocationDao);
+    const fakeMarker = jasmine.createSpyObj('Marker', ['addListener', 'setMap']);
+    spyOn(google.maps, 'Marker').and.returnValue(fakeMarker);
+
+    await showClusters(fakeMap);
+
+    expect(mockedLocationDao.fetchClusters).toHaveBeenCalledWith(
+        '-34,151,-33.5,151.5', 10);
+    expect(google.maps.Marker).toHaveBeenCalledTimes(1);
+    expect(google.maps.Marker).toHaveBeenCalledWith({position: {lat: -33.9, lng: 151.2},
+        map: fakeMap, label: '2', title: 'Opera House'});
+    expect(clusteredMarker.setMap).toHaveBeenCalledWith(null);
+    expect(unclusteredMarker.setMap).toHaveBeenCalledWith(fakeMap);
+  });
+
+  it ('Should show every location above the highest cluster zoom', async function() {
+    fakeMap.getZoom.and.returnValue(MAX_CLUSTER_ZOOM + 1);
+    const mockedLocationDao = new PermMeetingLocationDao();
+    spyOn(mockedLocationDao, 'fetchClusters');
+    spyOn(MeetingLocationDaoFactory, 'getLocationDao').and.returnValue(
+        mockedLocationDao);
+
+    await showClusters(fakeMap);
+
+    expect(mockedLocationDao.fetchClusters).not.toHaveBeenCalled();
+    expect(clusteredMarker.setMap).toHaveBeenCalledWith(fakeMap);
+    expect(unclusteredMarker.setMap).toHaveBeenCalledWith(fakeMap);
+  });
+});
+
 /** Test for building info window for voting. */
 describe ('Build Info Window Vote', function() {
   const TITLE_A = 'Taco Place';
@@ -232,6 +320,35 @@ describe ('Build Info Window Vote', function() {
   });
 });
 
+/** Tests for showing the votes streamed to the locations. */
+describe ('Apply Location Votes', function() {
+  it ('Should add the streamed votes to the vote count displayed', function() {
+    spyOn(window, 'updateChartVotes');
+    const infoWindowContent = buildInfoWindowVote('Taco Place', 2, 'Tacos!', 'abc');
+
+    applyLocationVotes({'abc': 3, 'unknown': 1});
+
+    const voteCount = infoWindowContent.querySelector('#displayVoteCount').innerText;
+    expect(parseInt(voteCount)).toBe(5);
+    expect(window.updateChartVotes).toHaveBeenCalledWith({'abc': 3, 'unknown': 1});
+  });
+
+  it ('Should not increment the voteCount itself if the votes are streamed',
+      async function() {
+    const mockedLocationDao = new PermMeetingLocationDao();
+    spyOn(mockedLocationDao, 'updateLocation');
+    spyOn(MeetingLocationDaoFactory, 'getLocationDao').and.returnValue(
+        mockedLocationDao);
+    spyOn(VoteStream, 'isOpen').and.returnValue(true);
+    const infoWindowContent = buildInfoWindowVote('Taco Place', 2, 'Tacos!', 'abc');
+
+    await infoWindowContent.querySelector('#voteButton').onclick();
+
+    const voteCount = infoWindowContent.querySelector('#displayVoteCount').innerText;
+    expect(parseInt(voteCount)).toBe(2);
+  });
+});
+
 /** Tests for displaying popular locations. */
 describe ('Display Popular Location', function() {
   const LOCATIONS =
@@ -1,14 +1,26 @@
 describe ('toggleMeetingDisplay', function() {
   const LOGGED_IN_RESPONSE = {
-    loggedIn: 'true',
-    logoutUrl: '/_ah/logout?continue\u003d%2Fmeeting-event.html',
+    userStatus: {
+      loggedIn: 'true',
+      logoutUrl: '/_ah/logout?continue\u003d%2Fmeeting-event.html',
+    },
+    meetingEvent: {meetingName: 'Lunch', meetingTimeIds: []},
+    meetingTimes: {},
   };
 
   const LOGGED_OUT_RESPONSE = {
-    loggedIn: 'false',
-    loginUrl: '/_ah/login?continue\u003d%2Fmeeting-event.html',
+    userStatus: {
+      loggedIn: 'false',
+      loginUrl: '/_ah/login?continue\u003d%2Fmeeting-event.html',
+    },
   };
 
+  beforeEach(function() {
+    spyOn(window, 'getMeetingEventId').and.returnValue('abc123');
+    spyOn(window, 'displayMeetingTimeForm');
+    spyOn(VoteStream, 'open');
+  });
+
   afterAll(function() {
     // Hide all the divs so that it doesn't interfere with the test GUI
     document.getElementById('meeting-title').style.display = 'none';
@@ -19,7 +31,7 @@ describe ('toggleMeetingDisplay', function() {
   })
 
   it ('Should show all the meeting details if the user is logged in', async function() {
-    spyOn(LoginStatus, 'doGet').and.returnValue(new Promise((resolve, reject) => {
+    spyOn(MeetingSnapshotDAO, 'fetchSnapshot').and.returnValue(new Promise((resolve, reject) => {
       resolve(LOGGED_IN_RESPONSE);
     }));
 
@@ -34,10 +46,17 @@ describe ('toggleMeetingDisplay', function() {
     expect(meetingTimes.style.display).toBe('block'); 
     expect(meetingLocations.style.display).toBe('block'); 
     expect(votesTable.style.display).toBe('block');
+    // The meeting times are displayed from the same snapshot, without fetching again.
+    expect(MeetingSnapshotDAO.fetchSnapshot).toHaveBeenCalledTimes(1);
+    expect(window.displayMeetingTimeForm).toHaveBeenCalledWith(LOGGED_IN_RESPONSE);
+    // The votes of other guests are then streamed to the page.
+    // If they are not streamed, the votes are polled for instead.
+    expect(VoteStream.open).toHaveBeenCalledWith('abc123', jasmine.any(Function), 
+        jasmine.any(Function), jasmine.any(Function));
   });
 
   it ('Should hide all the meeting details if the user is not logged in', async function() {
-    spyOn(LoginStatus, 'doGet').and.returnValue(new Promise((resolve, reject) => {
+    spyOn(MeetingSnapshotDAO, 'fetchSnapshot').and.returnValue(new Promise((resolve, reject) => {
       resolve(LOGGED_OUT_RESPONSE);
     }));
 
@@ -52,6 +71,43 @@ describe ('toggleMeetingDisplay', function() {
     expect(meetingTimes.style.display).toBe('none'); 
     expect(meetingLocations.style.display).toBe('none'); 
     expect(votesTable.style.display).toBe('none');
+    expect(window.displayMeetingTimeForm).not.toHaveBeenCalled();
+  });
+});
+
+// TESTS FOR refreshVotes
+describe('refreshVotes', function() {
+  const SNAPSHOT = {
+    userStatus: {loggedIn: 'true'},
+    meetingEvent: {meetingTimeIds: []},
+    meetingTimes: {'def456': {datetime: '2021-01-28T17:20', voteCount: 2, voters: []}},
+    locations: [{keyString: 'ghi789', voteCount: 3}],
+  };
+
+  beforeEach(function() {
+    spyOn(window, 'setMeetingTimeVotes');
+    spyOn(window, 'setLocationVoteCounts');
+  });
+
+  it('shows the votes of the meeting times and locations from one snapshot', async function() {
+    spyOn(MeetingSnapshotDAO, 'fetchSnapshot').and.returnValue(Promise.resolve(SNAPSHOT));
+
+    await refreshVotes('abc123');
+
+    expect(MeetingSnapshotDAO.fetchSnapshot).toHaveBeenCalledTimes(1);
+    expect(MeetingSnapshotDAO.fetchSnapshot).toHaveBeenCalledWith('abc123');
+    expect(window.setMeetingTimeVotes).toHaveBeenCalledWith(SNAPSHOT.meetingTimes);
+    expect(window.setLocationVoteCounts).toHaveBeenCalledWith(SNAPSHOT.locations);
+  });
+
+  it('shows no votes if the meeting event could not be fetched', async function() {
+    spyOn(MeetingSnapshotDAO, 'fetchSnapshot').and.returnValue(
+        Promise.resolve({status: 404, message: 'Entity not found'}));
+
+    await refreshVotes('abc123');
+
+    expect(window.setMeetingTimeVotes).not.toHaveBeenCalled();
+    expect(window.setLocationVoteCounts).not.toHaveBeenCalled();
   });
 });
 
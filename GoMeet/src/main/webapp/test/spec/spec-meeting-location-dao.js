@@ -3,8 +3,9 @@
 /** Tests for MeetingLocationDaoFactory. */
 describe('getLocationDao', function() {
   it ('Should return Dao for permanent storage', function() {
-    const dao = MeetingLocationDaoFactory.getLocationDao('permanent');
+    const dao = MeetingLocationDaoFactory.getLocationDao('permanent', 'meeting1234');
     expect(dao instanceof PermMeetingLocationDao).toBe(true);
+    expect(dao.meetingEventId).toEqual('meeting1234');
   });
 
   it ('Should return Dao for temporary storage', function() {
@@ -15,6 +16,7 @@ describe('getLocationDao', function() {
 
 /** Tests for fetchLocations(). */
 describe ('Fetch Locations', function() {
+  const MEETING_EVENT_ID = 'meeting1234';
   let LOCATIONS = [{title: 'Sushi Place', lat: 22.0, lng: 32.0,
       note: 'I like Sushi!'}];
 
@@ -31,9 +33,56 @@ describe ('Fetch Locations', function() {
     promiseHelper.resolve(response);
     spyOn(window, 'fetch').and.returnValue(fetchPromise);
 
-    let responseJson = await new PermMeetingLocationDao().fetchLocations();
+    let responseJson = await new PermMeetingLocationDao(MEETING_EVENT_ID).fetchLocations();
 
     expect(responseJson).toEqual(LOCATIONS);
+    // Only the locations of the meeting are requested.
+    expect(window.fetch).toHaveBeenCalledWith(
+        '/location-data?meetingEventId=' + MEETING_EVENT_ID);
+  });
+
+  it ('Should only request the locations inside the bounds', async function() {
+    spyOn(window, 'fetch').and.returnValue(
+        Promise.resolve(new Response(JSON.stringify(LOCATIONS))));
+
+    await new PermMeetingLocationDao(MEETING_EVENT_ID).fetchLocations(
+        '-34,151,-33.5,151.5');
+
+    expect(window.fetch).toHaveBeenCalledWith(
+        '/location-data?meetingEventId=' + MEETING_EVENT_ID +
+        '&bounds=-34%2C151%2C-33.5%2C151.5');
+  });
+});
+
+/** Tests for fetchClusters(). */
+describe('Fetch Clusters', function() {
+  const MEETING_EVENT_ID = 'meeting1234';
+  const CLUSTERS = [{lat: -33.9, lng: 151.2, count: 3, title: 'Opera House',
+      keyString: 'locationKey'}];
+
+  it ('Should request the clusters in the bounds at the zoom level', async function() {
+    spyOn(window, 'fetch').and.returnValue(
+        Promise.resolve(new Response(JSON.stringify(CLUSTERS))));
+
+    const clusters = await new PermMeetingLocationDao(MEETING_EVENT_ID)
+        .fetchClusters('-34,151,-33.5,151.5', 10);
+
+    expect(clusters).toEqual(CLUSTERS);
+    expect(window.fetch).toHaveBeenCalledWith(
+        '/location-cluster-data?meetingEventId=' + MEETING_EVENT_ID +
+        '&bounds=-34%2C151%2C-33.5%2C151.5&zoom=10');
+  });
+
+  it ('Should throw an error if the response status is not between 200 and 299',
+      async function() {
+    spyOn(window, 'fetch').and.returnValue({status: 400, statusText: 'Bad Request'});
+
+    try {
+      await new PermMeetingLocationDao(MEETING_EVENT_ID).fetchClusters('0,0,1,1', 10);
+      fail();
+    } catch (error) {
+      expect(error.message).toBe('Bad Request');
+    }
   });
 });
 
@@ -64,6 +113,7 @@ describe('New Location', function() {
   const LNG_A = 15.0; 
   const NOTE_A = 'I like Tacos';
   const KEY_STRING = '1234';
+  const MEETING_EVENT_ID = 'meeting1234';
   const BAD_REQUEST_RESPONSE =
       {status : 400, message : 'Invalid Location'};
 
@@ -81,10 +131,11 @@ describe('New Location', function() {
 
     spyOn(window, 'fetch').and.returnValue(fetchPromise);
 
-    let receivedResponse = await new PermMeetingLocationDao().newLocation(
+    let receivedResponse = await new PermMeetingLocationDao(MEETING_EVENT_ID).newLocation(
         TITLE_A, LAT_A, LNG_A, NOTE_A);
 
     let expectedParams = new URLSearchParams();
+    expectedParams.append('meetingEventId', MEETING_EVENT_ID);
     expectedParams.append('title', TITLE_A);
     expectedParams.append('lat', LAT_A);
     expectedParams.append('lng', LNG_A);
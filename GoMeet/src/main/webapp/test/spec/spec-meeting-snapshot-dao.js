@@ -0,0 +1,44 @@
+describe('MeetingSnapshotDAO - fetchSnapshot', function () {
+  const MEETING_EVENT_ID = 'abc123def456';
+  const QUERY_STRING = '?meetingEventId=' + encodeURIComponent(MEETING_EVENT_ID);
+  const SNAPSHOT_DATA = {
+    userStatus: {loggedIn: 'true', userEmail: 'anna@test.com'},
+    meetingEvent: {meetingName: 'Lunch', meetingTimeIds: ['abc123']},
+    meetingTimes: {'abc123': {datetime: '2021-01-26T10:30', voteCount: 1, voters: []}},
+    locations: [],
+    popularLocations: [],
+  };
+
+  beforeEach(function () {
+    spyOn(window, 'fetch').and.callFake(async function (url) {
+      return new Response(JSON.stringify(SNAPSHOT_DATA), null);
+    });
+  });
+
+  it('fetches the whole snapshot with a single request', async function () {
+    let result = await MeetingSnapshotDAO.fetchSnapshot(MEETING_EVENT_ID);
+    expect(result).toEqual(SNAPSHOT_DATA);
+    expect(window.fetch).toHaveBeenCalledTimes(1);
+    expect(window.fetch).toHaveBeenCalledWith(MeetingSnapshotDAO.endpoint + QUERY_STRING);
+  });
+
+  it('throws an exception if the meetingEventId param is not provided', async function () {
+    let errorMessage;
+    try {
+      await MeetingSnapshotDAO.fetchSnapshot();
+    } catch (error) {
+      errorMessage = error.message;
+    }
+    expect(errorMessage).toEqual(INSUFFICIENT_REQUEST_PARAM);
+  });
+
+  it('handles invalid argument types by throwing an error', async function () {
+    let errorMessage;
+    try {
+      await MeetingSnapshotDAO.fetchSnapshot(123); // meetingEventId should be a string
+    } catch (error) {
+      errorMessage = error.message;
+    }
+    expect(errorMessage).toEqual(INVALID_PARAM_TYPE);
+  });
+});
@@ -47,6 +47,13 @@ describe('MeetingTimeDAO - fetchMeetingTime', function () {
     );
   });
 
+  it('asks whether the voter has voted if a voter is provided', async function () {
+    await MeetingTimeDAO.fetchMeetingTime(MEETING_TIME_ID, 'John Smith');
+    expect(window.fetch).toHaveBeenCalledWith(
+      MeetingTimeDAO.endpoint + QUERY_STRING + '&voter=John+Smith'
+    );
+  });
+
   it('returns the error response sent by the server on failure', async function () {
     // failures include non-existent or invalid MeetingTimeIds
     let result = await MeetingTimeDAO.fetchMeetingTime(INVALID_ID);
@@ -137,3 +144,42 @@ describe('MeetingTimeDAO - newMeetingTime', function () {
     expect(errorMessage).toEqual(INVALID_PARAM_TYPE);
   });
 });
+
+// Tests for fetchMeetingTimes
+describe('MeetingTimeDAO - fetchMeetingTimes', function () {
+  const MEETING_TIME_IDS = ['abc123', 'def456'];
+  const QUERY_STRING = '?meetingTimeIds=' + encodeURIComponent(MEETING_TIME_IDS.join(','));
+  const MEETING_TIMES_DATA = {
+    'abc123': {datetime: '2021-01-26T10:30', voteCount: 2},
+    'def456': {status: 404, message: 'Entity not found'},
+  };
+
+  beforeEach(function () {
+    spyOn(window, 'fetch').and.callFake(async function (url) {
+      return new Response(JSON.stringify(MEETING_TIMES_DATA), null);
+    });
+  });
+
+  it('fetches all the meeting times with a single request', async function () {
+    let result = await MeetingTimeDAO.fetchMeetingTimes(MEETING_TIME_IDS);
+    expect(result).toEqual(MEETING_TIMES_DATA);
+    expect(window.fetch).toHaveBeenCalledTimes(1);
+    expect(window.fetch).toHaveBeenCalledWith(MeetingTimeDAO.endpoint + QUERY_STRING);
+  });
+
+  it('does not send a request if there are no meeting times', async function () {
+    let result = await MeetingTimeDAO.fetchMeetingTimes([]);
+    expect(result).toEqual({});
+    expect(window.fetch).not.toHaveBeenCalled();
+  });
+
+  it('handles invalid argument types by throwing an error', async function () {
+    let errorMessage;
+    try {
+      await MeetingTimeDAO.fetchMeetingTimes([123]); // meetingTimeIds should be strings
+    } catch (error) {
+      errorMessage = error.message;
+    }
+    expect(errorMessage).toEqual(INVALID_PARAM_TYPE);
+  });
+});
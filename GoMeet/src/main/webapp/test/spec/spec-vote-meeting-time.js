@@ -47,29 +47,21 @@ describe('getLoggedInUser', function() {
   });
 });
 
-// TESTS FOR fetchAndProcess(meetingTimeIds)
-describe('fetchAndProcess(meetingTimeIds)', function() {
+// TESTS FOR processMeetingTimes(meetingTimeIds, times, currentUser)
+describe('processMeetingTimes(meetingTimeIds, times, currentUser)', function() {
+  let times;
+
   beforeEach(function() {
-    getCurrentUserSpy = spyOn(window, 'getLoggedInUser');
-    getCurrentUserSpy.and.returnValue(CURRENT_USER);
     spyOn(window, 'generateVoteTimeForm');
-    spyOn(MeetingTimeDAO, 'fetchMeetingTime').and.callFake(async function(id) {
-      if (id === MEETING_TIME_IDS[0]) {
-        return MEETING_TIME_DATA[0];
-      } else if (id === MEETING_TIME_IDS[1]) {
-        return MEETING_TIME_DATA[1];
-      } else if (id === MEETING_TIME_IDS[2]){
-        return MEETING_TIME_DATA[2]
-      } else {
-        return ERROR_RESPONSE; 
-      }
-    });
+    times = {};
+    for (let i = 0; i < MEETING_TIME_IDS.length; i++) {
+      times[MEETING_TIME_IDS[i]] = MEETING_TIME_DATA[i];
+    }
+    times['non-existent-key'] = ERROR_RESPONSE;
   });
 
   it('does nothing and returns null if the user is not logged in', async function() {
-    getCurrentUserSpy.and.returnValue(null);
-    expect(await fetchAndProcess(MEETING_TIME_IDS)).toBe(null);
-    expect(MeetingTimeDAO.fetchMeetingTime).not.toHaveBeenCalled();
+    expect(processMeetingTimes(MEETING_TIME_IDS, times, null)).toBe(null);
     expect(window.generateVoteTimeForm).not.toHaveBeenCalled();
   });
 
@@ -77,7 +69,7 @@ describe('fetchAndProcess(meetingTimeIds)', function() {
     let meetingTimeIds = 123; 
     let errorMessage;
     try {
-      await fetchAndProcess(meetingTimeIds);
+      processMeetingTimes(meetingTimeIds, times, CURRENT_USER);
     } catch (error) {
       errorMessage = error.message;
     }
@@ -85,12 +77,12 @@ describe('fetchAndProcess(meetingTimeIds)', function() {
     expect(window.generateVoteTimeForm).not.toHaveBeenCalled();
   });
 
-  it('logs any error responses received from the DAO without alerting the user', async function() {
-    // Errors from the DAO are internal errors that the user cannot deal with, 
+  it('logs any error responses in the snapshot without alerting the user', async function() {
+    // Errors from the servlet are internal errors that the user cannot deal with, 
     // so don't alert them, but also don't crash the program either.
     let nonExistentMeetingIds = ['non-existent-key'];
     spyOn(console, 'error');
-    await fetchAndProcess(nonExistentMeetingIds);
+    processMeetingTimes(nonExistentMeetingIds, times, CURRENT_USER);
     expect(console.error).toHaveBeenCalledWith(
       'ERROR ' +
       ERROR_RESPONSE.status +
@@ -103,15 +95,46 @@ describe('fetchAndProcess(meetingTimeIds)', function() {
   });
 
   it('calls generateVoteTime form with a list of objects containing the MeetingTime data \
-      retrieved by MeetingTimeDAO, and the set of times the currentUser has voted for', async function() {
+      of the snapshot, and the set of times the currentUser has voted for', async function() {
     // The set of times voted for make it easier to determine: 
     // - which times the user cannot vote for again (can't vote for same time twice)
     // - whether the user has voting rights (each user has MAX_VOTES number of votes total)
-    await fetchAndProcess(MEETING_TIME_IDS);
+    processMeetingTimes(MEETING_TIME_IDS, times, CURRENT_USER);
     expect(window.generateVoteTimeForm).toHaveBeenCalledWith(MEETING_TIME_DATA, CURRENT_USER, VOTED_TIMES);
   });
 });
 
+// TESTS FOR displayMeetingTimeForm(snapshot)
+describe('displayMeetingTimeForm(snapshot)', function() {
+  const SNAPSHOT = {
+    userStatus: {loggedIn: 'true', userEmail: CURRENT_USER},
+    meetingEvent: {meetingTimeIds: MEETING_TIME_IDS},
+    meetingTimes: {},
+  };
+
+  beforeEach(function() {
+    spyOn(window, 'getMeetingEventId').and.returnValue('abc123');
+    spyOn(window, 'processMeetingTimes');
+  });
+
+  it('displays the meeting times of the snapshot given, without fetching it', async function() {
+    spyOn(MeetingSnapshotDAO, 'fetchSnapshot');
+    await displayMeetingTimeForm(SNAPSHOT);
+    expect(MeetingSnapshotDAO.fetchSnapshot).not.toHaveBeenCalled();
+    expect(window.processMeetingTimes)
+        .toHaveBeenCalledWith(MEETING_TIME_IDS, SNAPSHOT.meetingTimes, CURRENT_USER);
+  });
+
+  it('fetches the snapshot with a single request if none is given', async function() {
+    spyOn(MeetingSnapshotDAO, 'fetchSnapshot').and.returnValue(Promise.resolve(SNAPSHOT));
+    await displayMeetingTimeForm();
+    expect(MeetingSnapshotDAO.fetchSnapshot).toHaveBeenCalledTimes(1);
+    expect(MeetingSnapshotDAO.fetchSnapshot).toHaveBeenCalledWith('abc123');
+    expect(window.processMeetingTimes)
+        .toHaveBeenCalledWith(MEETING_TIME_IDS, SNAPSHOT.meetingTimes, CURRENT_USER);
+  });
+});
+
 /**
  * Verifies that the cells of each row of the meeting time voting table 
  * contains expected data (in order: datetime, voteCount, 
@@ -279,6 +302,80 @@ describe('sortTimeByVotes', function() {
   });
 });
 
+// TESTS FOR applyMeetingTimeVotes
+describe('applyMeetingTimeVotes', function() {
+  beforeEach(function() {
+    spyOn(window, 'processMeetingTimes');
+  });
+
+  afterEach(function() {
+    displayedMeetingTimes = null;
+  });
+
+  it('adds the votes streamed to the meeting times displayed, and re-renders them', function() {
+    displayedMeetingTimes = {
+      meetingTimeIds: MEETING_TIME_IDS,
+      times: {
+        [MEETING_TIME_IDS[0]]: {datetime: '2021-01-28T17:20', voteCount: 1, voters: []},
+        [MEETING_TIME_IDS[1]]: {datetime: '2021-01-27T11:20', voteCount: 3, voters: []},
+      },
+      currentUser: CURRENT_USER,
+    };
+
+    applyMeetingTimeVotes({[MEETING_TIME_IDS[0]]: 2, 'unknown': 1});
+
+    expect(displayedMeetingTimes.times[MEETING_TIME_IDS[0]].voteCount).toBe(3);
+    expect(displayedMeetingTimes.times[MEETING_TIME_IDS[1]].voteCount).toBe(3);
+    expect(window.processMeetingTimes).toHaveBeenCalledWith(
+        MEETING_TIME_IDS, displayedMeetingTimes.times, CURRENT_USER);
+  });
+
+  it('does nothing if the voting form is not displayed', function() {
+    applyMeetingTimeVotes({[MEETING_TIME_IDS[0]]: 2});
+    expect(window.processMeetingTimes).not.toHaveBeenCalled();
+  });
+});
+
+// TESTS FOR setMeetingTimeVotes
+describe('setMeetingTimeVotes', function() {
+  beforeEach(function() {
+    spyOn(window, 'processMeetingTimes');
+    displayedMeetingTimes = {
+      meetingTimeIds: MEETING_TIME_IDS,
+      times: {
+        [MEETING_TIME_IDS[0]]: {datetime: '2021-01-28T17:20', voteCount: 1, voters: []},
+        [MEETING_TIME_IDS[1]]: {datetime: '2021-01-27T11:20', voteCount: 3, voters: []},
+      },
+      currentUser: CURRENT_USER,
+    };
+  });
+
+  afterEach(function() {
+    displayedMeetingTimes = null;
+  });
+
+  it('updates the votes of the meeting times that changed, and re-renders them', function() {
+    setMeetingTimeVotes({
+      [MEETING_TIME_IDS[0]]: {datetime: '2021-01-28T17:20', voteCount: 2, voters: [CURRENT_USER]},
+      [MEETING_TIME_IDS[1]]: {datetime: '2021-01-27T11:20', voteCount: 3, voters: []},
+    });
+
+    expect(displayedMeetingTimes.times[MEETING_TIME_IDS[0]].voteCount).toBe(2);
+    expect(displayedMeetingTimes.times[MEETING_TIME_IDS[0]].voters).toEqual([CURRENT_USER]);
+    expect(window.processMeetingTimes).toHaveBeenCalledTimes(1);
+  });
+
+  it('does not re-render if no votes changed', function() {
+    setMeetingTimeVotes({
+      [MEETING_TIME_IDS[0]]: {datetime: '2021-01-28T17:20', voteCount: 1, voters: []},
+      [MEETING_TIME_IDS[1]]: {status: 404, message: 'Entity not found'},
+    });
+
+    expect(displayedMeetingTimes.times[MEETING_TIME_IDS[1]].voteCount).toBe(3);
+    expect(window.processMeetingTimes).not.toHaveBeenCalled();
+  });
+});
+
 // TESTS FOR voteTime
 describe('voteTime', function() {
   const SUCCESS_RESPONSE = {status: 200};
@@ -303,6 +400,25 @@ describe('voteTime', function() {
     expect(window.displayMeetingTimeForm).toHaveBeenCalled();
   });
 
+  it('re-renders without fetching if the votes are streamed', async function() {
+    voteMeetingTimeSpy.and.returnValue(SUCCESS_RESPONSE);
+    spyOn(VoteStream, 'isOpen').and.returnValue(true);
+    spyOn(window, 'renderMeetingTimes');
+    window.displayMeetingTimeForm.calls.reset();
+    displayedMeetingTimes = {
+      meetingTimeIds: [MEETING_TIME_IDS[0]],
+      times: {[MEETING_TIME_IDS[0]]: {datetime: '2021-01-28T17:20', voteCount: 1, voters: []}},
+      currentUser: CURRENT_USER,
+    };
+
+    await voteTime(MEETING_TIME_IDS[0], CURRENT_USER);
+
+    expect(window.displayMeetingTimeForm).not.toHaveBeenCalled();
+    expect(window.renderMeetingTimes).toHaveBeenCalled();
+    expect(displayedMeetingTimes.times[MEETING_TIME_IDS[0]].hasVoted).toBe(true);
+    displayedMeetingTimes = null;
+  });
+
   it('logs any error responses received from the DAO without alerting the user', async function() {
     voteMeetingTimeSpy.and.returnValue(ERROR_RESPONSE);
     // Errors from the DAO are internal errors that the user cannot deal with, 
@@ -0,0 +1,82 @@
+describe('VoteStream - open', function () {
+  const MEETING_EVENT_ID = 'abc123def456';
+  const QUERY_STRING = '?meetingEventId=' + encodeURIComponent(MEETING_EVENT_ID);
+  const DELTAS = {meetingTimes: {'abc123': 2}, locations: {'def456': 1}};
+
+  /** Stands in for the EventSource of the browser, to dispatch events to it. */
+  class FakeEventSource {
+    static OPEN = 1;
+    static CLOSED = 2;
+    constructor(url) {
+      this.url = url;
+      this.readyState = FakeEventSource.OPEN;
+      this.listeners = {};
+      this.close = jasmine.createSpy('close');
+    }
+    addEventListener(type, listener) {
+      this.listeners[type] = listener;
+    }
+    dispatch(type, event) {
+      this.listeners[type](event);
+    }
+  }
+
+  beforeEach(function () {
+    spyOn(window, 'EventSource').and.callFake((url) => new FakeEventSource(url));
+    window.EventSource.OPEN = FakeEventSource.OPEN;
+    window.EventSource.CLOSED = FakeEventSource.CLOSED;
+  });
+
+  afterEach(function () {
+    VoteStream.source = null;
+  });
+
+  it('opens the stream of the meeting event', function () {
+    let source = VoteStream.open(MEETING_EVENT_ID, () => {});
+    expect(window.EventSource).toHaveBeenCalledWith(VoteStream.endpoint + QUERY_STRING);
+    expect(VoteStream.isOpen()).toBe(true);
+    expect(VoteStream.source).toBe(source);
+  });
+
+  it('passes the votes of each event to onVotes', function () {
+    let onVotes = jasmine.createSpy('onVotes');
+    let source = VoteStream.open(MEETING_EVENT_ID, onVotes);
+    source.dispatch(VoteStream.votesEvent, {data: JSON.stringify(DELTAS)});
+    expect(onVotes).toHaveBeenCalledWith(DELTAS);
+  });
+
+  it('calls onReconnect when the stream opens again, but not the first time', function () {
+    let onReconnect = jasmine.createSpy('onReconnect');
+    let source = VoteStream.open(MEETING_EVENT_ID, () => {}, onReconnect);
+    source.dispatch('open', {});
+    expect(onReconnect).not.toHaveBeenCalled();
+    source.dispatch('open', {});
+    expect(onReconnect).toHaveBeenCalledTimes(1);
+  });
+
+  it('calls onUnavailable if the stream is refused, but not while it reconnects', function () {
+    let onUnavailable = jasmine.createSpy('onUnavailable');
+    let source = VoteStream.open(MEETING_EVENT_ID, () => {}, () => {}, onUnavailable);
+    source.dispatch('error', {});
+    expect(onUnavailable).not.toHaveBeenCalled();
+
+    source.readyState = FakeEventSource.CLOSED;
+    source.dispatch('error', {});
+    expect(onUnavailable).toHaveBeenCalledTimes(1);
+    expect(VoteStream.source).toBe(null);
+  });
+
+  it('closes the stream opened before', function () {
+    let first = VoteStream.open(MEETING_EVENT_ID, () => {});
+    VoteStream.open(MEETING_EVENT_ID, () => {});
+    expect(first.close).toHaveBeenCalled();
+  });
+
+  it('throws an exception if the meetingEventId param is not provided', function () {
+    expect(() => VoteStream.open(undefined, () => {})).toThrowError(INSUFFICIENT_REQUEST_PARAM);
+  });
+
+  it('handles invalid argument types by throwing an error', function () {
+    expect(() => VoteStream.open(123, () => {})).toThrowError(INVALID_PARAM_TYPE);
+  });
+});
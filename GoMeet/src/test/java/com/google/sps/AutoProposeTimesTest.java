@@ -11,11 +11,17 @@ import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.util.DateTime;
 import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.model.Error;
+import com.google.api.services.calendar.model.FreeBusyCalendar;
 import com.google.api.services.calendar.model.FreeBusyRequest;
 import com.google.api.services.calendar.model.FreeBusyRequestItem;
 import com.google.api.services.calendar.model.TimePeriod;
 import com.google.gson.Gson;
 import com.google.sps.data.AutoProposeTimes;
+import com.google.sps.data.QuorumSweep;
+import com.google.sps.data.SchedulingConfig;
+import com.google.sps.data.FreeBusyCache;
+import com.google.sps.data.WorkingHours;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.text.DateFormat;
@@ -23,9 +29,12 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 import org.junit.After;
 import org.junit.Before;
@@ -65,6 +74,8 @@ public class AutoProposeTimesTest {
   private final String TIME_10PM = "2021-02-10 22:00:00"; 
   private final String TIME_8AM_NEXTDAY = "2021-02-11 08:00:00";
   private final String TIME_10AM_NEXTDAY = "2021-02-11 10:00:00";
+  private final String TIME_11AM_NEXTDAY = "2021-02-11 11:00:00";
+  private final String TIME_12PM_NEXTDAY = "2021-02-11 12:00:00";
 
   private Date startTime;
   private Date endTime;
@@ -80,9 +91,8 @@ public class AutoProposeTimesTest {
     // Initialise the Dates here to recognise the ParseException.
     startTime = FORMATTER.parse(START_TIME_STR);
     endTime = FORMATTER.parse(END_TIME_STR);
-    AutoProposeTimes.setTimezone(TIMEZONE);
-    proposer = 
-        new AutoProposeTimes(serviceSpy, FAKE_API_KEY, CAL_ID, startTime, endTime, DURATION_MS);
+    proposer = new AutoProposeTimes(serviceSpy, CAL_ID, new SchedulingConfig(TIMEZONE, FAKE_API_KEY)
+        .withWindow(startTime, endTime, DURATION_MS));
     proposerSpy = spy(proposer);
   }
 
@@ -257,6 +267,251 @@ public class AutoProposeTimesTest {
     assertTrue(result.equals(expectedReturn));
   }
 
+  // A busy period nested in an overlapping one does not open a free period early
+  @Test
+  public void staggeredBusyPeriods() throws Exception {
+    List<TimePeriod> busyTimesPerson1 = Arrays.asList(
+      timePeriodFromDatestring(TIME_10AM, TIME_12PM),
+      timePeriodFromDatestring(TIME_1PM, TIME_2PM)
+    );
+    List<TimePeriod> busyTimesPerson2 = Arrays.asList(
+      timePeriodFromDatestring(TIME_1230PM, TIME_4PM)
+    );
+    doReturn(busyTimesPerson1).when(proposerSpy)
+        .freebusyRequest(eq(CAL_ID.get(0)));
+    doReturn(busyTimesPerson2).when(proposerSpy)
+        .freebusyRequest(eq(CAL_ID.get(1)));
+
+    List<TimePeriod> expectedReturn = Arrays.asList(
+      timePeriodFromDatestring(TIME_12PM, TIME_1230PM),
+      timePeriodFromDatestring(TIME_4PM, TIME_10AM_NEXTDAY)
+    );
+
+    List<TimePeriod> result = proposerSpy.proposeTimes();
+
+    assertEquals(expectedReturn, result);
+  }
+
+  // Batched requests propose the same times as requesting one calendar at a time.
+  @Test
+  public void batchedRequestsMatchSequential() throws Exception {
+    List<TimePeriod> busyTimesPerson1 = Arrays.asList(
+      timePeriodFromDatestring(TIME_4PM, TIME_6PM),
+      timePeriodFromDatestring(TIME_8AM_NEXTDAY, TIME_10AM_NEXTDAY)
+    );
+    List<TimePeriod> busyTimesPerson2 = Arrays.asList(
+      timePeriodFromDatestring(TIME_12PM, TIME_2PM),
+      timePeriodFromDatestring(TIME_8PM, TIME_10PM)
+    );
+    doReturn(busyTimesPerson1).when(proposerSpy)
+        .freebusyRequest(eq(CAL_ID.get(0)));
+    doReturn(busyTimesPerson2).when(proposerSpy)
+        .freebusyRequest(eq(CAL_ID.get(1)));
+    List<TimePeriod> expectedReturn = proposerSpy.proposeTimes();
+
+    Map<String, FreeBusyCalendar> calendars = new HashMap<String, FreeBusyCalendar>();
+    calendars.put(CAL_ID.get(0), new FreeBusyCalendar().setBusy(busyTimesPerson1));
+    calendars.put(CAL_ID.get(1), new FreeBusyCalendar().setBusy(busyTimesPerson2));
+    doReturn(calendars).when(proposerSpy).batchFreebusyRequest(CAL_ID);
+
+    proposerSpy.setBatchRequests(true);
+    List<TimePeriod> result = proposerSpy.proposeTimes();
+
+    // All the calendars should be queried together, in one request.
+    verify(proposerSpy, times(1)).batchFreebusyRequest(anyList());
+    assertEquals(expectedReturn, result);
+  }
+
+  // Guest lists longer than the API limit are split into several concurrent requests.
+  @Test
+  public void batchedRequestsAreChunked() throws Exception {
+    int numGuests = 2 * AutoProposeTimes.MAX_ITEMS_PER_REQUEST + 20;
+    ArrayList<String> guests = new ArrayList<String>();
+    for (int i = 0; i < numGuests; i++) {
+      guests.add("person" + i + "@test.com");
+    }
+    TimePeriod busy = timePeriodFromDatestring(TIME_12PM, TIME_2PM);
+    AutoProposeTimes batchProposer = 
+        spy(new AutoProposeTimes(serviceSpy, FAKE_API_KEY, guests, startTime, endTime, DURATION_MS));
+    doAnswer(invocation -> {
+      List<String> calIds = invocation.getArgument(0);
+      Map<String, FreeBusyCalendar> calendars = new HashMap<String, FreeBusyCalendar>();
+      for (String calId : calIds) {
+        calendars.put(calId, new FreeBusyCalendar().setBusy(Arrays.asList(busy)));
+      }
+      return calendars;
+    }).when(batchProposer).batchFreebusyRequest(anyList());
+
+    batchProposer.setBatchRequests(true);
+    List<TimePeriod> result = batchProposer.proposeTimes();
+
+    verify(batchProposer, times(2)).batchFreebusyRequest(
+        argThat(calIds -> calIds.size() == AutoProposeTimes.MAX_ITEMS_PER_REQUEST));
+    verify(batchProposer, times(1)).batchFreebusyRequest(argThat(calIds -> calIds.size() == 20));
+    List<TimePeriod> expectedReturn = Arrays.asList(
+      timePeriodFromDatestring(TIME_10AM, TIME_12PM),
+      timePeriodFromDatestring(TIME_2PM, TIME_10AM_NEXTDAY)
+    );
+    assertEquals(expectedReturn, result);
+  }
+
+  // A calendar that cannot be read is left out, rather than failing the proposal.
+  @Test
+  public void calendarErrorsAreSkipped() throws Exception {
+    List<TimePeriod> busyTimesPerson1 = Arrays.asList(
+      timePeriodFromDatestring(TIME_12PM, TIME_2PM)
+    );
+    Map<String, FreeBusyCalendar> calendars = new HashMap<String, FreeBusyCalendar>();
+    calendars.put(CAL_ID.get(0), new FreeBusyCalendar().setBusy(busyTimesPerson1));
+    calendars.put(CAL_ID.get(1), new FreeBusyCalendar()
+        .setErrors(Arrays.asList(new Error().setDomain("global").setReason("notFound"))));
+    doReturn(calendars).when(proposerSpy).batchFreebusyRequest(CAL_ID);
+
+    proposerSpy.setBatchRequests(true);
+    List<TimePeriod> result = proposerSpy.proposeTimes();
+
+    List<TimePeriod> expectedReturn = Arrays.asList(
+      timePeriodFromDatestring(TIME_10AM, TIME_12PM),
+      timePeriodFromDatestring(TIME_2PM, TIME_10AM_NEXTDAY)
+    );
+    assertEquals(expectedReturn, result);
+    assertEquals(Arrays.asList("notFound"), proposerSpy.getCalendarErrors().get(CAL_ID.get(1)));
+    assertEquals(1, proposerSpy.getCalendarErrors().size());
+  }
+
+  /** Tests for proposeQuorumTimes */
+
+  // Periods where one of the two required guests is busy are proposed with a quorum of 1,
+  // and the optional guest is reported when busy but does not break the quorum.
+  @Test
+  public void quorumOfGuestsFree() throws Exception {
+    String optionalGuest = "person3@test.com";
+    ArrayList<String> calIds = new ArrayList<String>(CAL_ID);
+    calIds.add(optionalGuest);
+    AutoProposeTimes quorumProposer = spy(new AutoProposeTimes(serviceSpy, calIds,
+        new SchedulingConfig(TIMEZONE, FAKE_API_KEY).withWindow(startTime, endTime, DURATION_MS)));
+    doReturn(Arrays.asList(timePeriodFromDatestring(TIME_12PM, TIME_2PM)))
+        .when(quorumProposer).freebusyRequest(eq(CAL_ID.get(0)));
+    doReturn(Arrays.asList(timePeriodFromDatestring(TIME_1PM, TIME_4PM)))
+        .when(quorumProposer).freebusyRequest(eq(CAL_ID.get(1)));
+    doReturn(Arrays.asList(timePeriodFromDatestring(TIME_6PM, TIME_8PM)))
+        .when(quorumProposer).freebusyRequest(eq(optionalGuest));
+
+    List<QuorumSweep.Slot> result =
+        quorumProposer.proposeQuorumTimes(1, Arrays.asList(optionalGuest));
+
+    // Both required guests are busy from 1PM to 2PM only.
+    assertEquals(2, result.size());
+    assertEquals(startTime.getTime(), result.get(0).getStart());
+    assertEquals(FORMATTER.parse(TIME_1PM).getTime(), result.get(0).getEnd());
+    assertEquals(Arrays.asList(CAL_ID.get(0)), result.get(0).getBusyGuests());
+    assertEquals(FORMATTER.parse(TIME_2PM).getTime(), result.get(1).getStart());
+    assertEquals(endTime.getTime(), result.get(1).getEnd());
+    assertEquals(Arrays.asList(CAL_ID.get(1), optionalGuest), result.get(1).getBusyGuests());
+  }
+
+  /** Tests for proposeTimesByDay */
+
+  // Each day is fetched on its own, and only the working hours shared by the guests,
+  // each in their own timezone, are proposed.
+  @Test
+  public void proposesTimesByDay() throws Exception {
+    SimpleDateFormat utcFormatter = new SimpleDateFormat(DATE_FORMAT);
+    utcFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+    AutoProposeTimes dayProposer = spy(new AutoProposeTimes(serviceSpy, CAL_ID,
+        new SchedulingConfig("UTC", FAKE_API_KEY).withWindow(
+            utcFormatter.parse("2021-02-10 10:00:00"), utcFormatter.parse("2021-02-11 10:00:00"),
+            DURATION_MS)));
+    DateTime busyStart = new DateTime(utcFormatter.parse("2021-02-10 10:30:00"));
+    DateTime busyEnd = new DateTime(utcFormatter.parse("2021-02-10 11:00:00"));
+    doReturn(Arrays.asList(new TimePeriod().setStart(busyStart).setEnd(busyEnd)))
+        .when(dayProposer)
+        .freebusyRequest(eq(CAL_ID.get(0)), any(DateTime.class), any(DateTime.class));
+    doReturn(Collections.emptyList()).when(dayProposer)
+        .freebusyRequest(eq(CAL_ID.get(1)), any(DateTime.class), any(DateTime.class));
+    // 9AM to 5PM in Asia/Kolkata is 3:30AM to 11:30AM in UTC.
+    Map<String, TimeZone> guestTimeZones = new HashMap<String, TimeZone>();
+    guestTimeZones.put(CAL_ID.get(1), TimeZone.getTimeZone("Asia/Kolkata"));
+
+    List<Date> days = new ArrayList<Date>();
+    List<List<Long>> starts = new ArrayList<List<Long>>();
+    dayProposer.proposeTimesByDay(WorkingHours.DEFAULT, guestTimeZones,
+        (dayStart, dayEnd, times) -> {
+          days.add(dayStart);
+          List<Long> dayStarts = new ArrayList<Long>();
+          for (TimePeriod time : times) {
+            dayStarts.add(time.getStart().getValue());
+          }
+          starts.add(dayStarts);
+        });
+
+    assertEquals(Arrays.asList(utcFormatter.parse("2021-02-10 10:00:00"),
+        utcFormatter.parse("2021-02-11 00:00:00")), days);
+    assertEquals(Arrays.asList(
+        Arrays.asList(utcFormatter.parse("2021-02-10 10:00:00").getTime(),
+            utcFormatter.parse("2021-02-10 11:00:00").getTime()),
+        Arrays.asList(utcFormatter.parse("2021-02-11 09:00:00").getTime())), starts);
+    // Each guest's calendar is fetched once per day.
+    verify(dayProposer, times(4))
+        .freebusyRequest(anyString(), any(DateTime.class), any(DateTime.class));
+  }
+
+  // A listener that fails stops the proposal.
+  @Test(expected = IOException.class)
+  public void proposeTimesByDayStopsOnListenerError() throws Exception {
+    doReturn(Collections.emptyList()).when(proposerSpy)
+        .freebusyRequest(anyString(), any(DateTime.class), any(DateTime.class));
+
+    proposerSpy.proposeTimesByDay(WorkingHours.DEFAULT, Collections.emptyMap(),
+        (dayStart, dayEnd, times) -> {
+          throw new IOException("The client has gone away");
+        });
+  }
+
+  // A later proposal over a longer period only fetches the part that is not cached.
+  @Test
+  public void cachedPeriodsAreNotFetchedAgain() throws Exception {
+    FreeBusyCache cache = new FreeBusyCache();
+    List<TimePeriod> busyTimesPerson1 = Arrays.asList(
+      timePeriodFromDatestring(TIME_12PM, TIME_2PM)
+    );
+    List<TimePeriod> busyTimesPerson2 = Arrays.asList(
+      timePeriodFromDatestring(TIME_8PM, TIME_10PM)
+    );
+    doReturn(busyTimesPerson1).when(proposerSpy)
+        .freebusyRequest(eq(CAL_ID.get(0)));
+    doReturn(busyTimesPerson2).when(proposerSpy)
+        .freebusyRequest(eq(CAL_ID.get(1)));
+    proposerSpy.setCache(cache);
+    proposerSpy.proposeTimes();
+
+    // Extend the period by two hours, in which the second guest is busy for an hour.
+    Date laterEndTime = FORMATTER.parse(TIME_12PM_NEXTDAY);
+    AutoProposeTimes laterProposer = spy(new AutoProposeTimes(
+        serviceSpy, FAKE_API_KEY, CAL_ID, startTime, laterEndTime, DURATION_MS));
+    doReturn(Collections.emptyList()).when(laterProposer)
+        .freebusyRequest(eq(CAL_ID.get(0)), any(DateTime.class), any(DateTime.class));
+    doReturn(Arrays.asList(timePeriodFromDatestring(TIME_10AM_NEXTDAY, TIME_11AM_NEXTDAY)))
+        .when(laterProposer)
+        .freebusyRequest(eq(CAL_ID.get(1)), any(DateTime.class), any(DateTime.class));
+    laterProposer.setCache(cache);
+    List<TimePeriod> result = laterProposer.proposeTimes();
+
+    // Only the two extra hours are requested, for each guest.
+    verify(laterProposer, never()).freebusyRequest(anyString());
+    verify(laterProposer, times(2)).freebusyRequest(anyString(), 
+        argThat(timeMin -> timeMin.getValue() == endTime.getTime()), 
+        argThat(timeMax -> timeMax.getValue() == laterEndTime.getTime()));
+    List<TimePeriod> expectedReturn = Arrays.asList(
+      timePeriodFromDatestring(TIME_10AM, TIME_12PM),
+      timePeriodFromDatestring(TIME_2PM, TIME_8PM),
+      timePeriodFromDatestring(TIME_10PM, TIME_10AM_NEXTDAY),
+      timePeriodFromDatestring(TIME_11AM_NEXTDAY, TIME_12PM_NEXTDAY)
+    );
+    assertEquals(expectedReturn, result);
+    assertEquals(2, cache.getHitCount() + cache.getPartialHitCount());
+  }
+
   // Throws GoogleJsonResponseException on API errors (e.g. invalid key).
   @Test(expected = GoogleJsonResponseException.class)
   public void throwsErrorOnAPIFailure() throws Exception {
@@ -0,0 +1,130 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import com.google.sps.data.BulkEmailSender;
+import com.google.sps.data.LocalTransport;
+import com.google.sps.servlets.EmailServlet;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for BulkEmailSender class */
+@RunWith(JUnit4.class)
+public class BulkEmailSenderTest {
+  private final String MEETING_EVENT_ID = "qwerty12345";
+  private final BulkEmailSender.MessageBuilder INVITATION =
+      (session, guest) -> EmailServlet.buildInvitation(session, guest, MEETING_EVENT_ID);
+
+  // The workers are request threads, which need the environment of a request.
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    LocalTransport.reset();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  // Every recipient is sent a message, with one connection per worker.
+  @Test
+  public void sendsOverOneConnectionPerWorker() throws IOException {
+    List<String> guests = guests(20);
+    BulkEmailSender sender = new BulkEmailSender(LocalTransport.newSession(0, 0), 4);
+
+    Map<String, Boolean> status = sender.send(guests, INVITATION);
+
+    assertEquals(guests, new ArrayList<String>(status.keySet()));
+    assertFalse(status.containsValue(false));
+    assertEquals(4, LocalTransport.getConnectionCount());
+    assertEquals(20, LocalTransport.getRecipients().size());
+    assertTrue(LocalTransport.getRecipients().containsAll(guests));
+  }
+
+  // A rejected or invalid recipient does not stop the others from being sent to.
+  @Test
+  public void failedRecipients() throws IOException {
+    List<String> guests = Arrays.asList("a@gmail.com", "b@" + LocalTransport.FAILING_DOMAIN, 
+        "not an address@", "c@gmail.com");
+    BulkEmailSender sender = new BulkEmailSender(LocalTransport.newSession(0, 0), 1);
+
+    Map<String, Boolean> status = sender.send(guests, INVITATION);
+
+    assertTrue(status.get("a@gmail.com"));
+    assertFalse(status.get("b@" + LocalTransport.FAILING_DOMAIN));
+    assertFalse(status.get("not an address@"));
+    assertTrue(status.get("c@gmail.com"));
+    assertEquals(1, LocalTransport.getConnectionCount());
+  }
+
+  // Fewer recipients than workers only opens as many connections as needed.
+  @Test
+  public void fewRecipients() throws IOException {
+    BulkEmailSender sender = new BulkEmailSender(LocalTransport.newSession(0, 0), 4);
+
+    Map<String, Boolean> status = sender.send(guests(2), INVITATION);
+
+    assertEquals(2, status.size());
+    assertEquals(2, LocalTransport.getConnectionCount());
+    assertTrue(sender.send(new ArrayList<String>(), INVITATION).isEmpty());
+  }
+
+  // Workers send in parallel, so slow sends overlap.
+  @Test
+  public void sendsInParallel() throws IOException {
+    BulkEmailSender sender = new BulkEmailSender(LocalTransport.newSession(0, 20), 4);
+
+    long start = System.currentTimeMillis();
+    sender.send(guests(16), INVITATION);
+    long elapsed = System.currentTimeMillis() - start;
+
+    // Sending one at a time would take at least 16 * 20ms.
+    assertTrue("Took " + elapsed + "ms", elapsed < 16 * 20);
+    assertEquals(16, LocalTransport.getRecipients().size());
+  }
+
+  // The workers can call App Engine APIs, and are stopped once the send returns.
+  @Test
+  public void workersAreRequestThreads() throws Exception {
+    Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    BulkEmailSender sender = new BulkEmailSender(LocalTransport.newSession(0, 0), 4);
+
+    Map<String, Boolean> status = sender.send(guests(8), (session, guest) -> {
+      assertTrue(ApiProxy.getCurrentEnvironment() != null);
+      workers.add(Thread.currentThread());
+      return INVITATION.build(session, guest);
+    });
+
+    assertFalse(status.containsValue(false));
+    assertEquals(4, workers.size());
+    for (Thread worker : workers) {
+      worker.join(1000);
+      assertFalse(worker.isAlive());
+    }
+  }
+
+  private static List<String> guests(int count) {
+    List<String> guests = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      guests.add("guest" + i + "@gmail.com");
+    }
+    return guests;
+  }
+}
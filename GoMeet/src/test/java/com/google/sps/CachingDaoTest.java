@@ -0,0 +1,195 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import main.java.com.google.sps.dao.CachingLocationDao;
+import main.java.com.google.sps.dao.LocationDao;
+import main.java.com.google.sps.dao.LocationQueries;
+import main.java.com.google.sps.data.Location;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for CachingDao.java, through CachingLocationDao.java */
+@RunWith(JUnit4.class)
+public class CachingDaoTest {
+  private final long TTL_MS = 1000;
+  private final int MAX_ENTRIES = 3;
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private AtomicLong now;
+  private LocationQueries dao;
+  private CachingLocationDao cachingDao;
+  private String meetingId;
+  private String keyStringA;
+  private String keyStringB;
+  private Location locationA;
+  private Location locationB;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    now = new AtomicLong(0);
+    dao = mock(LocationQueries.class);
+    cachingDao = new CachingLocationDao(dao, LocationDao.KEYS, MAX_ENTRIES, TTL_MS, now::get);
+    Key meetingKey = KeyFactory.createKey("MeetingEvent", 1);
+    meetingId = KeyFactory.keyToString(meetingKey);
+    keyStringA = KeyFactory.keyToString(KeyFactory.createKey(meetingKey, "Location", 1));
+    keyStringB = KeyFactory.keyToString(KeyFactory.createKey(meetingKey, "Location", 2));
+    locationA = new Location("Cake Shop", 10.0, 15.0, "I like Cakes!", 1, keyStringA);
+    locationB = new Location("Fruit Shop", 22.0, 60.0, "Cabbages", 1, keyStringB);
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  /** Tests that a location is read once, then served from the cache until it expires. */
+  @Test
+  public void getReadThrough() {
+    when(dao.get(keyStringA)).thenReturn(Optional.of(locationA));
+
+    assertEquals(locationA, cachingDao.get(keyStringA).get());
+    assertEquals(locationA, cachingDao.get(keyStringA).get());
+    verify(dao, times(1)).get(keyStringA);
+
+    now.addAndGet(TTL_MS);
+    cachingDao.get(keyStringA);
+    verify(dao, times(2)).get(keyStringA);
+  }
+
+  /** Tests that the locations of a meeting are read once, and returned as a copy. */
+  @Test
+  public void getAllReadThrough() {
+    when(dao.getAll(meetingId)).thenReturn(Arrays.asList(locationA));
+
+    cachingDao.getAll(meetingId).clear();
+    List<Location> locations = cachingDao.getAll(meetingId);
+
+    assertEquals(Arrays.asList(locationA), locations);
+    verify(dao, times(1)).getAll(meetingId);
+  }
+
+  /** Tests that a saved location is added to the cached list of its meeting. */
+  @Test
+  public void saveWritesThrough() throws Exception {
+    when(dao.getAll(meetingId)).thenReturn(Arrays.asList(locationA));
+    when(dao.getPopular(meetingId)).thenReturn(Arrays.asList(locationA));
+    cachingDao.getAll(meetingId);
+    cachingDao.getPopular(meetingId);
+    Location newLocation = new Location("Fruit Shop", 22.0, 60.0, "Cabbages", 1);
+    when(dao.save(meetingId, newLocation)).thenReturn(keyStringB);
+
+    assertEquals(keyStringB, cachingDao.save(meetingId, newLocation));
+
+    List<Location> locations = cachingDao.getAll(meetingId);
+    assertEquals(2, locations.size());
+    assertEquals(keyStringB, locations.get(1).getKeyString());
+    assertEquals(keyStringB, cachingDao.get(keyStringB).get().getKeyString());
+    verify(dao, times(1)).getAll(meetingId);
+    verify(dao, never()).get(keyStringB);
+    // The popular locations are read again, as the new location may be one of them.
+    cachingDao.getPopular(meetingId);
+    verify(dao, times(2)).getPopular(meetingId);
+  }
+
+  /** Tests that a vote replaces the location in the cache with its new vote count. */
+  @Test
+  public void updateVoteWritesThrough() throws Exception {
+    when(dao.getAll(meetingId)).thenReturn(Arrays.asList(locationA, locationB));
+    cachingDao.getAll(meetingId);
+    Location votedB = new Location("Fruit Shop", 22.0, 60.0, "Cabbages", 2, keyStringB);
+    when(dao.get(keyStringB)).thenReturn(Optional.of(votedB));
+
+    cachingDao.updateVote(keyStringB);
+
+    verify(dao).updateVote(keyStringB);
+    List<Location> locations = cachingDao.getAll(meetingId);
+    assertEquals(2, locations.get(1).getVoteCount());
+    assertEquals(1, locations.get(0).getVoteCount());
+    assertEquals(2, cachingDao.get(keyStringB).get().getVoteCount());
+    verify(dao, times(1)).getAll(meetingId);
+    verify(dao, times(1)).get(keyStringB);
+  }
+
+  /** Tests that a failed vote leaves nothing cached for its meeting. */
+  @Test
+  public void updateVoteFailureInvalidates() throws Exception {
+    when(dao.getAll(meetingId)).thenReturn(Arrays.asList(locationA));
+    cachingDao.getAll(meetingId);
+    doThrow(new EntityNotFoundException(KeyFactory.stringToKey(keyStringA)))
+        .when(dao).updateVote(keyStringA);
+
+    try {
+      cachingDao.updateVote(keyStringA);
+      fail();
+    } catch (EntityNotFoundException e) {
+      cachingDao.getAll(meetingId);
+      verify(dao, times(2)).getAll(meetingId);
+    }
+  }
+
+  /** Tests that a deleted location is removed from the cache. */
+  @Test
+  public void deleteInvalidates() {
+    when(dao.getAll(meetingId)).thenReturn(Arrays.asList(locationA, locationB));
+    when(dao.get(keyStringA)).thenReturn(Optional.of(locationA));
+    cachingDao.getAll(meetingId);
+    cachingDao.get(keyStringA);
+    when(dao.get(keyStringA)).thenReturn(Optional.empty());
+
+    cachingDao.delete(keyStringA);
+
+    verify(dao).delete(keyStringA);
+    assertEquals(Arrays.asList(locationB), cachingDao.getAll(meetingId));
+    assertFalse(cachingDao.get(keyStringA).isPresent());
+    verify(dao, times(1)).getAll(meetingId);
+  }
+
+  /** Tests that the least recently used read is evicted once the cache is full. */
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    when(dao.get(anyString())).thenReturn(Optional.of(locationA));
+    when(dao.getAll(meetingId)).thenReturn(new ArrayList<>());
+
+    cachingDao.get(keyStringA);
+    cachingDao.get(keyStringB);
+    cachingDao.getAll(meetingId);
+    cachingDao.get(keyStringA);
+    cachingDao.getPopular(meetingId);
+
+    assertEquals(MAX_ENTRIES, cachingDao.size());
+    cachingDao.get(keyStringA);
+    verify(dao, times(1)).get(keyStringA);
+    cachingDao.get(keyStringB);
+    verify(dao, times(2)).get(keyStringB);
+  }
+
+  /** Tests that the reads of areas and distances are not cached. */
+  @Test
+  public void getWithinNotCached() {
+    cachingDao.getWithin(meetingId, -10, -10, 10, 10);
+    cachingDao.getWithin(meetingId, -10, -10, 10, 10);
+
+    verify(dao, times(2)).getWithin(meetingId, -10, -10, 10, 10);
+    assertTrue(cachingDao.size() == 0);
+  }
+}
@@ -1,22 +1,30 @@
 package com.google.sps;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.*;
 
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonObject;
+import com.google.sps.data.BulkEmailSender;
 import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.LocalTransport;
 import com.google.sps.data.ServletUtil;
 import com.google.sps.servlets.EmailServlet;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.HashMap;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.runner.RunWith;
@@ -37,6 +45,7 @@ public class EmailServletTest {
   private final String GUEST_LIST_URI = "guest1%40gmail.com%2Cguest2%40gmail.com%2Cguest3%40gmail.com"; 
 
   // Mocks
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
   private HttpServletRequest mockedRequest;
   private HttpServletResponse mockedResponse;
   private EmailServlet mockedServlet;
@@ -45,6 +54,7 @@ public class EmailServletTest {
 
   @Before
   public void setUp() throws IOException {
+    helper.setUp();
     mockedRequest = mock(HttpServletRequest.class);      
     mockedResponse = mock(HttpServletResponse.class);
     stringWriter = new StringWriter();
@@ -54,6 +64,11 @@ public class EmailServletTest {
     when(mockedRequest.getParameter("guestList")).thenReturn(GUEST_LIST_URI);  
   }
 
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
   @Test
   public void testSuccessfulDoPost() throws IOException {
     try (MockedStatic<EmailServlet> mockedServlet = Mockito.mockStatic(EmailServlet.class)) {
@@ -103,4 +118,31 @@ public class EmailServletTest {
     ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST, 
         ErrorMessages.BAD_EMAIL_REQUEST_ERROR, mockedResponse, stringWriter, writer);
   }
+
+  @Test
+  public void testBulkDoPost() throws IOException {
+    // Large guest lists are sent in bulk, over one connection per worker.
+    List<String> guests = new ArrayList<String>();
+    for (int i = 0; i < 12; i++) {
+      guests.add("guest" + i + "@gmail.com");
+    }
+    guests.add("guest@" + LocalTransport.FAILING_DOMAIN);
+    when(mockedRequest.getParameter("guestList"))
+        .thenReturn(URLEncoder.encode(String.join(",", guests), "UTF-8"));
+    LocalTransport.reset();
+    EmailServlet servlet = new EmailServlet();
+    servlet.setBulkSender(new BulkEmailSender(LocalTransport.newSession(0, 0), 3));
+
+    servlet.doPost(mockedRequest, mockedResponse);
+
+    writer.flush();
+    JsonObject resultsJsonObj = new JsonParser().parse(stringWriter.toString()).getAsJsonObject();
+    assertEquals(guests.size(), resultsJsonObj.size());
+    for (int i = 0; i < 12; i++) {
+      assertTrue(resultsJsonObj.get(guests.get(i)).getAsBoolean());
+    }
+    assertFalse(resultsJsonObj.get(guests.get(12)).getAsBoolean());
+    assertEquals(3, LocalTransport.getConnectionCount());
+    assertEquals(12, LocalTransport.getRecipients().size());
+  }
 }
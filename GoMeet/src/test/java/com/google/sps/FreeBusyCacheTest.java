@@ -0,0 +1,98 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.sps.data.FreeBusyCache;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for FreeBusyCache class */
+@RunWith(JUnit4.class)
+public class FreeBusyCacheTest {
+  private final String CAL_ID = "person1@test.com";
+  private final long TTL_MS = 1000;
+  private final int MAX_CALENDARS = 2;
+
+  private AtomicLong now;
+  private FreeBusyCache cache;
+
+  @Before
+  public void setup() {
+    now = new AtomicLong(0);
+    cache = new FreeBusyCache(MAX_CALENDARS, TTL_MS, now::get);
+  }
+
+  // A period that was never fetched is missing entirely.
+  @Test
+  public void miss() {
+    FreeBusyCache.Lookup lookup = cache.lookup(CAL_ID, 0, 100);
+
+    assertEquals(0, lookup.getBusy().length);
+    assertEquals(1, lookup.getMissingRanges().size());
+    assertArrayEquals(new long[] {0, 100}, lookup.getMissingRanges().get(0));
+    assertEquals(1, cache.getMissCount());
+  }
+
+  // A period inside a fetched range is served from the cache, clipped to the period.
+  @Test
+  public void hit() {
+    cache.put(CAL_ID, 0, 100, new long[] {10, 20, 50, 60, 90, 95});
+
+    FreeBusyCache.Lookup lookup = cache.lookup(CAL_ID, 40, 80);
+
+    assertArrayEquals(new long[] {50, 60}, lookup.getBusy());
+    assertTrue(lookup.getMissingRanges().isEmpty());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  // Only the parts of the period outside the fetched ranges are missing.
+  @Test
+  public void partialHit() {
+    cache.put(CAL_ID, 20, 40, new long[] {25, 30});
+    cache.put(CAL_ID, 60, 80, new long[] {70, 75});
+
+    FreeBusyCache.Lookup lookup = cache.lookup(CAL_ID, 0, 100);
+    List<long[]> missing = lookup.getMissingRanges();
+
+    assertArrayEquals(new long[] {25, 30, 70, 75}, lookup.getBusy());
+    assertEquals(3, missing.size());
+    assertArrayEquals(new long[] {0, 20}, missing.get(0));
+    assertArrayEquals(new long[] {40, 60}, missing.get(1));
+    assertArrayEquals(new long[] {80, 100}, missing.get(2));
+    assertEquals(1, cache.getPartialHitCount());
+  }
+
+  // Fetched ranges are no longer served once they are older than the TTL.
+  @Test
+  public void expiresAfterTtl() {
+    cache.put(CAL_ID, 0, 100, new long[] {10, 20});
+
+    now.set(TTL_MS - 1);
+    assertTrue(cache.lookup(CAL_ID, 0, 100).getMissingRanges().isEmpty());
+    now.set(TTL_MS);
+    FreeBusyCache.Lookup lookup = cache.lookup(CAL_ID, 0, 100);
+
+    assertEquals(0, lookup.getBusy().length);
+    assertArrayEquals(new long[] {0, 100}, lookup.getMissingRanges().get(0));
+  }
+
+  // The least recently used calendar is evicted when the cache is full.
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    cache.put("person1@test.com", 0, 100, new long[0]);
+    cache.put("person2@test.com", 0, 100, new long[0]);
+    cache.lookup("person1@test.com", 0, 100);
+    cache.put("person3@test.com", 0, 100, new long[0]);
+
+    assertEquals(MAX_CALENDARS, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertTrue(cache.lookup("person1@test.com", 0, 100).getMissingRanges().isEmpty());
+    assertEquals(1, cache.lookup("person2@test.com", 0, 100).getMissingRanges().size());
+  }
+}
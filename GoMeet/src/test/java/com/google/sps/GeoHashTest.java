@@ -0,0 +1,115 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import main.java.com.google.sps.data.GeoHash;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for GeoHash class */
+@RunWith(JUnit4.class)
+public class GeoHashTest {
+  // Acceptable difference between distances, in meters.
+  private static final double DELTA = 1;
+
+  @Test
+  public void encode() {
+    assertEquals("u4pruydq", GeoHash.encode(57.64911, 10.40744, 8));
+    assertEquals("s", GeoHash.encode(0, 0, 1));
+  }
+
+  // Coordinates out of range, like those of some stored locations, are still encoded.
+  @Test
+  public void encodeOutOfRange() {
+    assertEquals(GeoHash.encode(90, 60, 8), GeoHash.encode(250, 60, 8));
+    assertEquals(GeoHash.encode(10, -170, 8), GeoHash.encode(10, 190, 8));
+  }
+
+  @Test
+  public void prefixes() {
+    List<String> prefixes = GeoHash.prefixes(57.64911, 10.40744);
+
+    assertEquals(Arrays.asList("u", "u4", "u4p", "u4pr", "u4pru", "u4pruy", "u4pruyd",
+        "u4pruydq"), prefixes);
+  }
+
+  // The cover is the longest geohashes with at most MAX_CELLS cells.
+  @Test
+  public void cover() {
+    List<String> cells = GeoHash.cover(-33.9, 151.1, -33.8, 151.3);
+
+    assertTrue(cells.size() <= GeoHash.MAX_CELLS);
+    assertTrue(cells.contains(GeoHash.encode(-33.8688, 151.2093, cells.get(0).length())));
+    assertEquals(5, cells.get(0).length());
+    assertEquals(Arrays.asList(GeoHash.encode(10, 15, 8)), GeoHash.cover(10, 15, 10, 15));
+  }
+
+  @Test
+  public void coverTooLarge() {
+    assertNull(GeoHash.cover(-90, -180, 90, 180));
+  }
+
+  // Bounds crossing the antimeridian are covered on both sides of it.
+  @Test
+  public void coverAntimeridian() {
+    List<String> cells = GeoHash.cover(-10, 170, 10, -170);
+
+    assertTrue(cells.contains(GeoHash.encode(0, 175, cells.get(0).length())));
+    assertTrue(cells.contains(GeoHash.encode(0, -175, cells.get(0).length())));
+    assertFalse(cells.contains(GeoHash.encode(0, 0, cells.get(0).length())));
+  }
+
+  // Every point in a box is in one of the cells covering it.
+  @Test
+  public void coverContainsEveryPoint() {
+    Random random = new Random(42);
+    for (int round = 0; round < 200; round++) {
+      double south = random.nextDouble() * 170 - 85;
+      double north = Math.min(90, south + random.nextDouble() * random.nextDouble() * 5);
+      double west = random.nextDouble() * 360 - 180;
+      double east = west + random.nextDouble() * random.nextDouble() * 5;
+      east = east > 180 ? east - 360 : east;
+      List<String> cells = GeoHash.cover(south, west, north, east);
+
+      for (int point = 0; point < 20; point++) {
+        double lat = south + random.nextDouble() * (north - south);
+        double lng = west + random.nextDouble() * (west <= east ? east - west : east + 360 - west);
+        lng = lng > 180 ? lng - 360 : lng;
+        assertTrue(GeoHash.contains(south, west, north, east, lat, lng));
+        assertTrue(cells.contains(GeoHash.encode(lat, lng, cells.get(0).length())));
+      }
+    }
+  }
+
+  @Test
+  public void distanceMeters() {
+    // Sydney to Melbourne.
+    assertEquals(713_500, GeoHash.distanceMeters(-33.8688, 151.2093, -37.8136, 144.9631), 1_000);
+    assertEquals(0, GeoHash.distanceMeters(10, 15, 10, 15), DELTA);
+    // Across the antimeridian.
+    assertEquals(GeoHash.distanceMeters(0, 0, 0, 2),
+        GeoHash.distanceMeters(0, 179, 0, -179), DELTA);
+  }
+
+  @Test
+  public void boundingBox() {
+    double[] box = GeoHash.boundingBox(0, 0, GeoHash.EARTH_RADIUS_METERS * Math.PI / 180);
+
+    assertArrayEquals(new double[] {-1, -1, 1, 1}, box, 1e-9);
+    // A circle around a pole spans every longitude.
+    assertArrayEquals(new double[] {88, -180, 90, 180}, GeoHash.boundingBox(89, 10,
+        GeoHash.EARTH_RADIUS_METERS * Math.PI / 180), 1e-9);
+    // A circle across the antimeridian has west greater than east.
+    box = GeoHash.boundingBox(0, 179.5, GeoHash.EARTH_RADIUS_METERS * Math.PI / 180);
+    assertEquals(178.5, box[1], 1e-9);
+    assertEquals(-179.5, box[3], 1e-9);
+  }
+}
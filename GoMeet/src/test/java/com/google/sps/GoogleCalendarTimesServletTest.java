@@ -2,16 +2,25 @@ package test.java.com.google.sps;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.*;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
 import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.Calendar;
 import com.google.api.services.calendar.model.TimePeriod;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonParser;
+import com.google.sps.data.AutoProposeTimes;
 import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.QuorumSweep;
+import com.google.sps.data.SchedulingConfig;
+import com.google.sps.data.WorkingHours;
 import com.google.sps.servlets.GoogleCalendarTimesServlet;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -22,8 +31,16 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletConfig;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -57,6 +74,7 @@ public final class GoogleCalendarTimesServletTest {
 
   private Date periodStart; 
   private Date periodEnd;
+  private SchedulingConfig config;
   
   // Mocks
   private HttpServletRequest mockedRequest;       
@@ -99,8 +117,8 @@ public final class GoogleCalendarTimesServletTest {
     periodEnd = formatter.parse(PERIOD_END_STR);
 
     // Initialise a new spy every test to ensure atomicity
-    GoogleCalendarTimesServlet.setTimezone(TIMEZONE);
-    servletSpy = spy(new GoogleCalendarTimesServlet());
+    config = new SchedulingConfig(TIMEZONE, "").withWindow(periodStart, periodEnd, DURATION_MS);
+    servletSpy = spy(new GoogleCalendarTimesServlet(new SchedulingConfig(TIMEZONE, "")));
   }
   
   // Tests for doGet
@@ -112,13 +130,13 @@ public final class GoogleCalendarTimesServletTest {
     );
 
     doReturn(freeTimes).when(servletSpy)
-        .autoProposeTimes(mockedResponse, GUEST_LIST, periodStart, periodEnd, DURATION_MS);
+        .autoProposeTimes(mockedResponse, GUEST_LIST, config);
 
     servletSpy.doGet(mockedRequest, mockedResponse);
 
     // Check that the autoProposeTimes function was actually called.
     verify(servletSpy)
-        .autoProposeTimes(mockedResponse, GUEST_LIST, periodStart, periodEnd, DURATION_MS);
+        .autoProposeTimes(mockedResponse, GUEST_LIST, config);
 
     // Check that the response is the expected.
     List<String> expectedReturn = Arrays.asList(
@@ -218,7 +236,7 @@ public final class GoogleCalendarTimesServletTest {
 
   @Test
   public void testSecurityErrorFromAPI() throws IOException {
-    GoogleCalendarTimesServlet.setApiKey("invalid_key");
+    servletSpy = spy(new GoogleCalendarTimesServlet(new SchedulingConfig(TIMEZONE, "invalid_key")));
 
     // There will be a security exception, since API key is invalid.
     servletSpy.doGet(mockedRequest, mockedResponse);
@@ -228,7 +246,255 @@ public final class GoogleCalendarTimesServletTest {
     
     // Check that autoProposeTimes returned null.
     assertNull(servletSpy.autoProposeTimes(mockedResponse, GUEST_LIST, 
-        periodStart, periodEnd, DURATION_MS));
+        config.withApiKey("invalid_key")));
+  }
+
+  @Test
+  public void testDoGetInRequestTimezone() throws IOException, ParseException {
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.TIMEZONE))
+        .thenReturn("UTC");
+    SimpleDateFormat formatter = new SimpleDateFormat(DATE_FORMAT);
+    formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+    SchedulingConfig utcConfig = new SchedulingConfig("UTC", "").withWindow(
+        formatter.parse(PERIOD_START_STR), formatter.parse(PERIOD_END_STR), DURATION_MS);
+    doReturn(new ArrayList<TimePeriod>()).when(servletSpy)
+        .autoProposeTimes(mockedResponse, GUEST_LIST, utcConfig);
+
+    servletSpy.doGet(mockedRequest, mockedResponse);
+
+    // The period is read in the timezone of the request, not the default one.
+    verify(servletSpy).autoProposeTimes(mockedResponse, GUEST_LIST, utcConfig);
+  }
+
+  @Test
+  public void testDoGetInvalidTimezone() throws IOException {
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.TIMEZONE))
+        .thenReturn("Mars/Olympus_Mons");
+
+    servletSpy.doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST, 
+        ErrorMessages.BAD_REQUEST_ERROR, mockedResponse, stringWriter, writer);
+  }
+
+  @Test
+  public void testDoGetTopK() throws IOException {
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.TOP_K))
+        .thenReturn("10");
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.STEP_MINS))
+        .thenReturn("30");
+    SchedulingConfig rankedConfig = config.withRanking(10, 30 * 60 * 1000);
+    doReturn(new ArrayList<TimePeriod>()).when(servletSpy)
+        .autoProposeTimes(mockedResponse, GUEST_LIST, rankedConfig);
+
+    servletSpy.doGet(mockedRequest, mockedResponse);
+
+    verify(servletSpy).autoProposeTimes(mockedResponse, GUEST_LIST, rankedConfig);
+  }
+
+  @Test
+  public void testDoGetInvalidTopK() throws IOException {
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.TOP_K))
+        .thenReturn(String.valueOf(GoogleCalendarTimesServlet.MAX_TOP_K + 1));
+
+    servletSpy.doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST,
+        ErrorMessages.BAD_REQUEST_ERROR, mockedResponse, stringWriter, writer);
+  }
+
+  @Test
+  public void testDoGetQuorum() throws IOException {
+    String optionalGuest = "guest3@email.com";
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.QUORUM))
+        .thenReturn("1");
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.OPTIONAL_GUESTS))
+        .thenReturn(optionalGuest);
+    ArrayList<String> calendarIds = new ArrayList<String>(GUEST_LIST);
+    calendarIds.add(optionalGuest);
+    List<QuorumSweep.Slot> slots = Arrays.asList(new QuorumSweep.Slot(periodStart.getTime(),
+        periodEnd.getTime(), Arrays.asList(GUEST_LIST.get(1), optionalGuest)));
+    doReturn(slots).when(servletSpy).autoProposeQuorumTimes(mockedResponse, calendarIds,
+        Arrays.asList(optionalGuest), 1, config);
+
+    servletSpy.doGet(mockedRequest, mockedResponse);
+
+    writer.flush();
+    String expected = "[{\"start\":\""
+        + new DateTime(periodStart, TimeZone.getTimeZone(TIMEZONE)).toStringRfc3339()
+        + "\",\"end\":\""
+        + new DateTime(periodEnd, TimeZone.getTimeZone(TIMEZONE)).toStringRfc3339()
+        + "\",\"durationMins\":480,\"busyGuests\":[\"guest2@email.com\",\"guest3@email.com\"]}]";
+    assertEquals(expected, stringWriter.toString().trim());
+  }
+
+  @Test
+  public void testDoGetQuorumLargerThanGuestList() throws IOException {
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.QUORUM))
+        .thenReturn(String.valueOf(GUEST_LIST.size() + 1));
+
+    servletSpy.doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST,
+        ErrorMessages.BAD_REQUEST_ERROR, mockedResponse, stringWriter, writer);
+  }
+
+  @Test
+  public void testDoGetByDay() throws Exception {
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.FORMAT))
+        .thenReturn(GoogleCalendarTimesServlet.NDJSON_FORMAT);
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.GUEST_TIMEZONES))
+        .thenReturn("UTC,Asia/Tokyo");
+    // Streams one day, then the next, as the proposer completes them.
+    AutoProposeTimes proposer = mock(AutoProposeTimes.class);
+    doAnswer(invocation -> {
+      AutoProposeTimes.DayListener listener = invocation.getArgument(2);
+      listener.onDay(periodStart, periodEnd, 
+          Arrays.asList(timePeriodFromDatestring(TIME_10AM, TIME_12PM)));
+      listener.onDay(periodEnd, periodEnd, new ArrayList<TimePeriod>());
+      return null;
+    }).when(proposer).proposeTimesByDay(any(), any(), any());
+    doReturn(proposer).when(servletSpy).newProposer(GUEST_LIST, config);
+
+    servletSpy.doGet(mockedRequest, mockedResponse);
+
+    verify(mockedResponse).setContentType(GoogleCalendarTimesServlet.NDJSON_CONTENT_TYPE);
+    verify(mockedResponse, times(2)).flushBuffer();
+    Map<String, TimeZone> guestTimeZones = new HashMap<String, TimeZone>();
+    guestTimeZones.put(GUEST_LIST.get(0), TimeZone.getTimeZone("UTC"));
+    guestTimeZones.put(GUEST_LIST.get(1), TimeZone.getTimeZone("Asia/Tokyo"));
+    verify(proposer).proposeTimesByDay(eq(WorkingHours.DEFAULT), eq(guestTimeZones), any());
+    assertEquals("{\"day\":\"2021-02-11\",\"times\":[\"2021-02-11T10:00:00.000Z\"]}\n"
+        + "{\"day\":\"2021-02-11\",\"times\":[]}\n", stringWriter.toString());
+  }
+
+  @Test
+  public void testDoGetByDayInvalidWorkingHours() throws IOException {
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.FORMAT))
+        .thenReturn(GoogleCalendarTimesServlet.NDJSON_FORMAT);
+    when(mockedRequest.getParameter(
+      GoogleCalendarTimesServlet.QueryStringFieldNames.WORKING_HOURS))
+        .thenReturn("17:00-09:00");
+
+    servletSpy.doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST,
+        ErrorMessages.BAD_REQUEST_ERROR, mockedResponse, stringWriter, writer);
+  }
+
+  // Concurrent requests in different timezones are each answered in their own timezone.
+  @Test
+  public void testConcurrentRequestsInDifferentTimezones() throws Exception {
+    final int THREADS = 8;
+    final int REQUESTS = 400;
+    List<String> timezones = Arrays.asList("AET", "UTC", "America/New_York", "Asia/Kolkata");
+    // Proposes a single time at the start of the period, in the timezone of the request.
+    GoogleCalendarTimesServlet servlet = 
+        new GoogleCalendarTimesServlet(new SchedulingConfig(TIMEZONE, "")) {
+          @Override
+          public List<TimePeriod> autoProposeTimes(HttpServletResponse response, 
+              ArrayList<String> guestList, SchedulingConfig config) {
+            DateTime start = new DateTime(config.getPeriodStart(), config.getTimeZone());
+            return Arrays.asList(new TimePeriod().setStart(start).setEnd(start));
+          }
+        };
+
+    List<HttpServletRequest> requests = new ArrayList<HttpServletRequest>();
+    List<HttpServletResponse> responses = new ArrayList<HttpServletResponse>();
+    List<StringWriter> outputs = new ArrayList<StringWriter>();
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < REQUESTS; i++) {
+      String timezone = timezones.get(i % timezones.size());
+      HttpServletRequest request = mock(HttpServletRequest.class);
+      when(request.getParameter(GoogleCalendarTimesServlet.QueryStringFieldNames.GUEST_LIST))
+          .thenReturn(GUEST_LIST_STR);
+      when(request.getParameter(GoogleCalendarTimesServlet.QueryStringFieldNames.DURATION_MINS))
+          .thenReturn(DURATION_MINS);
+      when(request.getParameter(GoogleCalendarTimesServlet.QueryStringFieldNames.DURATION_HOURS))
+          .thenReturn(DURATION_HOURS);
+      when(request.getParameter(GoogleCalendarTimesServlet.QueryStringFieldNames.PERIOD_START))
+          .thenReturn(PERIOD_START_STR);
+      when(request.getParameter(GoogleCalendarTimesServlet.QueryStringFieldNames.PERIOD_END))
+          .thenReturn(PERIOD_END_STR);
+      when(request.getParameter(GoogleCalendarTimesServlet.QueryStringFieldNames.TIMEZONE))
+          .thenReturn(timezone);
+      StringWriter output = new StringWriter();
+      HttpServletResponse response = mock(HttpServletResponse.class);
+      when(response.getWriter()).thenReturn(new PrintWriter(output));
+      requests.add(request);
+      responses.add(response);
+      outputs.add(output);
+
+      SimpleDateFormat formatter = new SimpleDateFormat(DATE_FORMAT);
+      formatter.setTimeZone(TimeZone.getTimeZone(timezone));
+      expected.add(new DateTime(formatter.parse(PERIOD_START_STR), 
+          TimeZone.getTimeZone(timezone)).toStringRfc3339());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    try {
+      for (int i = 0; i < REQUESTS; i++) {
+        HttpServletRequest request = requests.get(i);
+        HttpServletResponse response = responses.get(i);
+        futures.add(executor.submit(() -> {
+          start.await();
+          servlet.doGet(request, response);
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int i = 0; i < REQUESTS; i++) {
+      JsonArray times = new JsonParser().parse(outputs.get(i).toString()).getAsJsonArray();
+      assertEquals(1, times.size());
+      assertEquals(expected.get(i), times.get(0).getAsString());
+    }
+  }
+
+  // Tests for the shared Calendar client
+  @Test
+  public void testCalendarServiceIsReused() throws Exception {
+    ServletConfig config = mock(ServletConfig.class);
+    when(config.getInitParameter(
+      GoogleCalendarTimesServlet.InitParameterNames.CONNECT_TIMEOUT_MS)).thenReturn("1234");
+    when(config.getInitParameter(
+      GoogleCalendarTimesServlet.InitParameterNames.READ_TIMEOUT_MS)).thenReturn("5678");
+    GoogleCalendarTimesServlet servlet = new GoogleCalendarTimesServlet();
+    servlet.init(config);
+
+    Calendar service = servlet.getCalendarService();
+    // The same client is used by every request.
+    assertSame(service, servlet.getCalendarService());
+
+    // Requests made by the client use the configured timeouts.
+    HttpRequest request = service.getRequestFactory()
+        .buildGetRequest(new GenericUrl("https://www.googleapis.com/calendar/v3"));
+    assertEquals(1234, request.getConnectTimeout());
+    assertEquals(5678, request.getReadTimeout());
+
+    // A new client is created once the old one has been shut down.
+    servlet.destroy();
+    assertNotSame(service, servlet.getCalendarService());
+    servlet.destroy();
   }
 
    /**
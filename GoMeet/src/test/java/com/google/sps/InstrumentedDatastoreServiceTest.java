@@ -0,0 +1,153 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.data.DatastoreRpcs;
+import com.google.sps.data.DatastoreRpcs.Operation;
+import com.google.sps.data.InstrumentedDatastoreService;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for InstrumentedDatastoreService.java and DatastoreRpcs.java */
+@RunWith(JUnit4.class)
+public class InstrumentedDatastoreServiceTest {
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+  private DatastoreService ds;
+  private Key meetingKey;
+  private DatastoreRpcs rpcs;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    ds = InstrumentedDatastoreService.getDatastoreService();
+    meetingKey = KeyFactory.createKey("MeetingEvent", 1);
+  }
+
+  @After
+  public void tearDown() {
+    if (rpcs != null) {
+      rpcs.stop();
+    }
+    helper.tearDown();
+  }
+
+  private Entity addLocation(String title) {
+    Entity location = new Entity("Location", meetingKey);
+    location.setProperty("title", title);
+    DatastoreServiceFactory.getDatastoreService().put(location);
+    return location;
+  }
+
+  /** Tests that gets are counted, with the entities read and their size. */
+  @Test
+  public void recordsGets() throws Exception {
+    Key keyA = addLocation("Cake Shop").getKey();
+    Key keyB = addLocation("Fruit Shop").getKey();
+    Key missingKey = KeyFactory.createKey("Location", 12345);
+
+    rpcs = DatastoreRpcs.start();
+    ds.get(keyA);
+    ds.get(Arrays.asList(keyA, keyB, missingKey));
+    try {
+      ds.get(missingKey);
+      fail();
+    } catch (EntityNotFoundException e) {
+      // Failed gets are counted too.
+    }
+
+    DatastoreRpcs.Totals gets = rpcs.getTotals(Operation.GET);
+    assertEquals(3, gets.getRpcCount());
+    assertEquals(4, gets.getEntityCount());
+    assertTrue(gets.getBytes() > 0);
+    assertTrue(gets.getNanos() > 0);
+    assertEquals(2, rpcs.getSingleGetCount());
+  }
+
+  /** Tests that puts, deletes and transactions are counted. */
+  @Test
+  public void recordsWrites() {
+    rpcs = DatastoreRpcs.start();
+    Transaction txn = ds.beginTransaction();
+    Entity location = new Entity("Location", meetingKey);
+    ds.put(txn, location);
+    txn.commit();
+    ds.put(Arrays.asList(new Entity("Location", meetingKey), new Entity("Location", meetingKey)));
+    ds.delete(location.getKey());
+
+    assertEquals(1, rpcs.getRpcCount(Operation.BEGIN_TRANSACTION));
+    assertEquals(2, rpcs.getRpcCount(Operation.PUT));
+    assertEquals(3, rpcs.getTotals(Operation.PUT).getEntityCount());
+    assertEquals(1, rpcs.getRpcCount(Operation.DELETE));
+    assertEquals(4, rpcs.getRpcCount());
+  }
+
+  /** Tests that queries are counted, with the entities read from lists and iterables. */
+  @Test
+  public void recordsQueries() {
+    addLocation("Cake Shop");
+    addLocation("Fruit Shop");
+
+    rpcs = DatastoreRpcs.start();
+    ds.prepare(new Query("Location")).asList(FetchOptions.Builder.withDefaults());
+    for (Entity location : ds.prepare(new Query("Location")).asIterable()) {
+      assertEquals(meetingKey, location.getParent());
+    }
+    ds.prepare(new Query("Location")).countEntities(FetchOptions.Builder.withDefaults());
+
+    assertEquals(3, rpcs.getRpcCount(Operation.QUERY));
+    assertEquals(4, rpcs.getTotals(Operation.QUERY).getEntityCount());
+  }
+
+  /** Tests that nothing is recorded when no recording was started, or after it stopped. */
+  @Test
+  public void recordsOnlyWhileStarted() throws Exception {
+    Key key = addLocation("Cake Shop").getKey();
+    assertNull(DatastoreRpcs.current());
+    ds.get(key);
+
+    rpcs = DatastoreRpcs.start();
+    ds.get(key);
+    rpcs.stop();
+    ds.get(key);
+
+    assertNull(DatastoreRpcs.current());
+    assertEquals(1, rpcs.getRpcCount());
+  }
+
+  /** Tests that a budget fails a test when more RPCs were issued than it allows. */
+  @Test
+  public void expectAtMost() throws Exception {
+    Key key = addLocation("Cake Shop").getKey();
+    rpcs = DatastoreRpcs.start();
+    ds.get(key);
+    ds.get(key);
+
+    rpcs.expectAtMost(2);
+    rpcs.expectAtMost(Operation.PUT, 0);
+    try {
+      rpcs.expectAtMost(Operation.GET, 1);
+      fail();
+    } catch (AssertionError e) {
+      assertTrue(e.getMessage().contains("singleGets=2"));
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.sps.data.IntervalSweep;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for IntervalSweep class */
+@RunWith(JUnit4.class)
+public class IntervalSweepTest {
+  private final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+  // No busy intervals leaves the whole window free.
+  @Test
+  public void noIntervals() {
+    IntervalSweep sweep = new IntervalSweep();
+
+    assertArrayEquals(new long[] {0, 100}, sweep.freeSlots(0, 100, 10));
+  }
+
+  // Overlapping, nested and touching intervals are merged.
+  @Test
+  public void mergesIntervals() {
+    IntervalSweep sweep = new IntervalSweep(1);
+    sweep.add(10, 20);
+    sweep.add(15, 30); // Overlaps the first.
+    sweep.add(40, 80);
+    sweep.add(45, 50); // Nested in the previous one.
+    sweep.add(80, 85); // Touches the previous one.
+
+    assertArrayEquals(new long[] {0, 10, 30, 40, 85, 100}, sweep.freeSlots(0, 100, 1));
+  }
+
+  // An interval nested in an earlier one does not end the busy block early.
+  @Test
+  public void laterIntervalInsideLongerOne() {
+    IntervalSweep sweep = new IntervalSweep();
+    sweep.add(10, 60);
+    sweep.add(20, 30);
+    sweep.add(40, 50);
+
+    assertArrayEquals(new long[] {0, 10, 60, 100}, sweep.freeSlots(0, 100, 1));
+  }
+
+  // Slots shorter than the minimum duration are left out.
+  @Test
+  public void minimumDuration() {
+    IntervalSweep sweep = new IntervalSweep();
+    sweep.add(5, 20);
+    sweep.add(25, 90);
+
+    assertArrayEquals(new long[] {90, 100}, sweep.freeSlots(0, 100, 10));
+  }
+
+  // Intervals are clamped to the window.
+  @Test
+  public void intervalsOutsideWindow() {
+    IntervalSweep sweep = new IntervalSweep();
+    sweep.add(-50, 10);
+    sweep.add(90, 150);
+    sweep.add(200, 300);
+
+    assertArrayEquals(new long[] {10, 90}, sweep.freeSlots(0, 100, 1));
+  }
+
+  // Intervals far apart are ordered correctly (no overflow when comparing them).
+  @Test
+  public void multiWeekWindow() {
+    IntervalSweep sweep = new IntervalSweep();
+    sweep.add(30 * DAY_MS, 31 * DAY_MS);
+    sweep.add(DAY_MS, 2 * DAY_MS);
+
+    assertArrayEquals(new long[] {0, DAY_MS, 2 * DAY_MS, 30 * DAY_MS, 31 * DAY_MS, 60 * DAY_MS},
+        sweep.freeSlots(0, 60 * DAY_MS, 1));
+  }
+
+  // The sweep agrees with marking every busy unit of time on random inputs.
+  @Test
+  public void matchesBruteForce() {
+    Random random = new Random(42);
+    int windowLength = 1000;
+    for (int round = 0; round < 200; round++) {
+      IntervalSweep sweep = new IntervalSweep();
+      boolean[] busy = new boolean[windowLength];
+      int count = random.nextInt(30);
+      for (int k = 0; k < count; k++) {
+        int start = random.nextInt(windowLength + 100) - 50;
+        int end = start + random.nextInt(100);
+        sweep.add(start, end);
+        for (int t = Math.max(start, 0); t < Math.min(end, windowLength); t++) {
+          busy[t] = true;
+        }
+      }
+      int minDuration = 1 + random.nextInt(20);
+
+      assertArrayEquals(bruteForceFreeSlots(busy, minDuration),
+          sweep.freeSlots(0, windowLength, minDuration));
+    }
+  }
+
+  // A large number of intervals is handled in a single pass.
+  @Test
+  public void manyIntervals() {
+    int count = 100000;
+    Random random = new Random(7);
+    IntervalSweep sweep = new IntervalSweep();
+    long windowEnd = 28 * DAY_MS;
+    for (int k = 0; k < count; k++) {
+      long start = (long) (random.nextDouble() * windowEnd);
+      sweep.add(start, start + 60 * 1000);
+    }
+
+    long[] slots = sweep.freeSlots(0, windowEnd, 0);
+
+    assertEquals(count, sweep.size());
+    assertEquals(0, slots.length % 2);
+    for (int i = 2; i < slots.length; i += 2) {
+      // Slots are in order, separated by busy time.
+      assertEquals(true, slots[i] > slots[i - 1]);
+    }
+  }
+
+  private static long[] bruteForceFreeSlots(boolean[] busy, int minDuration) {
+    long[] slots = new long[busy.length + 2];
+    int size = 0;
+    int t = 0;
+    while (t < busy.length) {
+      if (busy[t]) {
+        t++;
+        continue;
+      }
+      int start = t;
+      while (t < busy.length && !busy[t]) {
+        t++;
+      }
+      if (t - start >= minDuration) {
+        slots[size++] = start;
+        slots[size++] = t;
+      }
+    }
+    return Arrays.copyOf(slots, size);
+  }
+}
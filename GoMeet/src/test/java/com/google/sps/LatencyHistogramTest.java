@@ -0,0 +1,99 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.sps.data.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for LatencyHistogram class */
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+  private static final long MICROS = 1000;
+
+  @Test
+  public void countAndSum() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1500 * MICROS);
+    histogram.record(20 * MICROS);
+    histogram.record(999); // Less than a microsecond.
+
+    assertEquals(3, histogram.getCount());
+    assertEquals(1520, histogram.getSumMicros());
+  }
+
+  // Counts up to one less than a power of two are exact, and include the bound.
+  @Test
+  public void countAtMost() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1023 * MICROS);
+    histogram.record(1024 * MICROS);
+    histogram.record(5000 * MICROS);
+
+    assertEquals(0, histogram.getCountAtMost(511));
+    assertEquals(1, histogram.getCountAtMost(1023));
+    assertEquals(2, histogram.getCountAtMost(1024));
+    assertEquals(2, histogram.getCountAtMost(2047));
+    assertEquals(3, histogram.getCountAtMost(1L << 40));
+  }
+
+  // Every latency is reported within 1/SUB_BUCKETS of its value.
+  @Test
+  public void percentilesWithinBucketWidth() {
+    Random random = new Random(42);
+    LatencyHistogram histogram = new LatencyHistogram();
+    List<Long> latencies = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      long micros = 1 + (long) Math.exp(random.nextDouble() * 16);
+      latencies.add(micros);
+      histogram.record(micros * MICROS);
+    }
+    latencies.sort(null);
+
+    for (int percentile : new int[] {1, 50, 90, 99, 100}) {
+      long expected = latencies.get(percentile * latencies.size() / 100 - 1);
+      long actual = histogram.getValueAtPercentile(percentile);
+      assertTrue(percentile + ": " + actual + " vs " + expected, actual >= expected);
+      assertTrue(percentile + ": " + actual + " vs " + expected,
+          actual <= expected + expected / LatencyHistogram.SUB_BUCKETS);
+    }
+  }
+
+  @Test
+  public void outOfRange() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    assertEquals(LatencyHistogram.MAX_MICROS, histogram.getValueAtPercentile(100));
+    assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+  }
+
+  // Latencies recorded at the same time from many threads are all counted.
+  @Test
+  public void concurrentRecording() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          histogram.record(100 * MICROS);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(80000, histogram.getCount());
+    assertEquals(80000 * 100, histogram.getSumMicros());
+  }
+}
@@ -0,0 +1,173 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.data.LocalEntityCache;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for LocalEntityCache class */
+@RunWith(JUnit4.class)
+public class LocalEntityCacheTest {
+  private final long TTL_MS = 1000;
+  private final long NOT_FOUND_TTL_MS = 100;
+  private final int MAX_ENTITIES = 2;
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private AtomicLong now;
+  private AtomicInteger loads;
+  private Map<Key, Entity> stored;
+  private LocalEntityCache cache;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    now = new AtomicLong(0);
+    loads = new AtomicInteger();
+    stored = new HashMap<>();
+    cache = new LocalEntityCache(MAX_ENTITIES, TTL_MS, NOT_FOUND_TTL_MS, now::get, key -> {
+      loads.incrementAndGet();
+      if (!stored.containsKey(key)) {
+        throw new EntityNotFoundException(key);
+      }
+      return stored.get(key).clone();
+    });
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  // An entity is loaded once, then served from the cache.
+  @Test
+  public void readThrough() throws EntityNotFoundException {
+    Entity entity = store("MeetingEvent", 1, "Lunch");
+
+    assertEquals("Lunch", cache.get(entity.getKey()).getProperty("name"));
+    assertEquals("Lunch", cache.get(entity.getKey()).getProperty("name"));
+
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0.5, cache.getHitRatio(), 1e-9);
+  }
+
+  // Changing an entity returned by the cache does not change the cached entity.
+  @Test
+  public void returnsCopies() throws EntityNotFoundException {
+    Entity entity = store("MeetingEvent", 1, "Lunch");
+
+    cache.get(entity.getKey()).setProperty("name", "Dinner");
+
+    assertEquals("Lunch", cache.get(entity.getKey()).getProperty("name"));
+  }
+
+  // An entity is loaded again once it expires.
+  @Test
+  public void expires() throws EntityNotFoundException {
+    Entity entity = store("MeetingEvent", 1, "Lunch");
+    cache.get(entity.getKey());
+
+    now.set(TTL_MS);
+    cache.get(entity.getKey());
+
+    assertEquals(2, loads.get());
+  }
+
+  // The least recently used entity is evicted when the cache is full.
+  @Test
+  public void evictsLeastRecentlyUsed() throws EntityNotFoundException {
+    Key first = store("MeetingEvent", 1, "first").getKey();
+    Key second = store("MeetingEvent", 2, "second").getKey();
+    Key third = store("MeetingEvent", 3, "third").getKey();
+    cache.get(first);
+    cache.get(second);
+    cache.get(first);
+
+    cache.get(third);
+
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(2, cache.size());
+    assertNull(cache.getIfPresent(second));
+    assertEquals("first", cache.getIfPresent(first).getProperty("name"));
+  }
+
+  // A key that was not found is remembered for its own, shorter, TTL.
+  @Test
+  public void cachesNotFound() {
+    Key key = KeyFactory.createKey("MeetingEvent", 1);
+    expectNotFound(key);
+    expectNotFound(key);
+    assertEquals(1, loads.get());
+
+    now.set(NOT_FOUND_TTL_MS);
+    expectNotFound(key);
+    assertEquals(2, loads.get());
+  }
+
+  // A written entity replaces the cached copy, and an invalidated one is loaded again.
+  @Test
+  public void putAndInvalidate() throws EntityNotFoundException {
+    Key key = KeyFactory.createKey("MeetingEvent", 1);
+    expectNotFound(key);
+
+    Entity entity = store("MeetingEvent", 1, "Lunch");
+    cache.put(entity);
+    assertEquals("Lunch", cache.get(key).getProperty("name"));
+    assertEquals(1, loads.get());
+
+    cache.invalidate(key);
+    assertNull(cache.getIfPresent(key));
+    cache.get(key);
+    assertEquals(2, loads.get());
+  }
+
+  // An entity loaded while the cache is written is returned, but not cached, as the
+  // write may have made it out of date.
+  @Test
+  public void loadRacingWriteNotCached() throws EntityNotFoundException {
+    Entity entity = store("MeetingEvent", 1, "Lunch");
+    LocalEntityCache[] racing = new LocalEntityCache[1];
+    racing[0] = new LocalEntityCache(MAX_ENTITIES, TTL_MS, NOT_FOUND_TTL_MS, now::get, key -> {
+      Entity loaded = stored.get(key).clone();
+      racing[0].invalidate(key);
+      return loaded;
+    });
+
+    assertEquals("Lunch", racing[0].get(entity.getKey()).getProperty("name"));
+    assertNull(racing[0].getIfPresent(entity.getKey()));
+  }
+
+  private Entity store(String kind, long id, String name) {
+    Entity entity = new Entity(KeyFactory.createKey(kind, id));
+    entity.setProperty("name", name);
+    stored.put(entity.getKey(), entity);
+    return entity;
+  }
+
+  private void expectNotFound(Key key) {
+    try {
+      cache.get(key);
+      fail("Expected EntityNotFoundException");
+    } catch (EntityNotFoundException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+import com.google.sps.data.LocalVoteBroadcaster;
+import com.google.sps.data.VoteBroadcaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/** Tests for LocalVoteBroadcaster class */
+@RunWith(JUnit4.class)
+public class LocalVoteBroadcasterTest {
+  private final long COALESCE_MS = 250;
+  private final String MEETING = "meeting";
+  private final String OTHER_MEETING = "other-meeting";
+
+  private ScheduledExecutorService scheduler;
+  private LocalVoteBroadcaster broadcaster;
+  private List<Map<String, Map<String, Long>>> received;
+  private VoteBroadcaster.Listener listener;
+
+  @Before
+  public void setUp() {
+    scheduler = mock(ScheduledExecutorService.class);
+    broadcaster = new LocalVoteBroadcaster(COALESCE_MS, scheduler);
+    received = new ArrayList<>();
+    listener = (topic, deltas) -> received.add(deltas);
+  }
+
+  // The votes published within the window are delivered as one message.
+  @Test
+  public void coalescesVotes() {
+    broadcaster.subscribe(Arrays.asList(MEETING), listener);
+
+    broadcaster.publish(MEETING, "locations", "a", 1);
+    broadcaster.publish(MEETING, "locations", "a", 1);
+    broadcaster.publish(MEETING, "locations", "b", 1);
+    broadcaster.publish(MEETING, "meetingTimes", "c", 1);
+    runScheduled(1);
+
+    assertEquals(1, received.size());
+    Map<String, Map<String, Long>> expected = new HashMap<>();
+    expected.put("locations", new HashMap<>());
+    expected.get("locations").put("a", 2L);
+    expected.get("locations").put("b", 1L);
+    expected.put("meetingTimes", new HashMap<>());
+    expected.get("meetingTimes").put("c", 1L);
+    assertEquals(expected, received.get(0));
+    assertEquals(1, broadcaster.getMessageCount());
+  }
+
+  // A vote published after a message was delivered starts a new window.
+  @Test
+  public void newWindowAfterDelivery() {
+    broadcaster.subscribe(Arrays.asList(MEETING), listener);
+
+    broadcaster.publish(MEETING, "locations", "a", 1);
+    runScheduled(1);
+    broadcaster.publish(MEETING, "locations", "a", 1);
+    runScheduled(2);
+
+    assertEquals(2, received.size());
+  }
+
+  // Votes are only delivered to the subscribers of their topic, and are dropped if the
+  // topic has none.
+  @Test
+  public void deliversToSubscribersOfTopic() {
+    List<Map<String, Map<String, Long>>> other = new ArrayList<>();
+    broadcaster.subscribe(Arrays.asList(MEETING), listener);
+    broadcaster.subscribe(Arrays.asList(OTHER_MEETING), (topic, deltas) -> other.add(deltas));
+
+    broadcaster.publish(MEETING, "locations", "a", 1);
+    broadcaster.publish("unsubscribed", "locations", "b", 1);
+    broadcaster.flush();
+
+    assertEquals(1, received.size());
+    assertEquals(0, other.size());
+    assertEquals(2, broadcaster.getPublishCount());
+  }
+
+  // A cancelled subscription receives no more votes, and its topics are dropped.
+  @Test
+  public void cancel() {
+    VoteBroadcaster.Subscription subscription = 
+        broadcaster.subscribe(Arrays.asList(MEETING, OTHER_MEETING), listener);
+    assertEquals(2, broadcaster.getTopicCount());
+
+    broadcaster.publish(MEETING, "locations", "a", 1);
+    subscription.cancel();
+    broadcaster.flush();
+
+    assertEquals(0, received.size());
+    assertEquals(0, broadcaster.getTopicCount());
+  }
+
+  // A subscriber that fails does not stop the others from receiving the votes.
+  @Test
+  public void failingSubscriber() {
+    broadcaster.subscribe(Arrays.asList(MEETING), (topic, deltas) -> {
+      throw new IllegalStateException();
+    });
+    broadcaster.subscribe(Arrays.asList(MEETING), listener);
+
+    broadcaster.publish(MEETING, "locations", "a", 1);
+    broadcaster.flush();
+
+    assertEquals(1, received.size());
+  }
+
+  // Without a window, each vote is delivered as it is published.
+  @Test
+  public void noWindow() {
+    broadcaster = new LocalVoteBroadcaster(0, scheduler);
+    broadcaster.subscribe(Arrays.asList(MEETING), listener);
+
+    broadcaster.publish(MEETING, "locations", "a", 1);
+    broadcaster.publish(MEETING, "locations", "a", 1);
+
+    assertEquals(2, received.size());
+    verifyZeroInteractions(scheduler);
+  }
+
+  /** Runs the scheduled deliveries, checking that 'count' have been scheduled so far. */
+  private void runScheduled(int count) {
+    ArgumentCaptor<Runnable> scheduled = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler, times(count))
+        .schedule(scheduled.capture(), eq(COALESCE_MS), eq(TimeUnit.MILLISECONDS));
+    scheduled.getAllValues().get(count - 1).run();
+  }
+}
@@ -0,0 +1,121 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.sps.data.ErrorMessages;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import main.java.com.google.sps.dao.LocationDao;
+import main.java.com.google.sps.data.LocationCluster;
+import main.java.com.google.sps.servlets.LocationClusterServlet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for LocationClusterServlet.java */
+@RunWith(JUnit4.class)
+public class LocationClusterServletTest {
+  private final LocationCluster CLUSTER =
+      new LocationCluster(-33.9, 151.2, 3, "Opera House", "locationKey");
+
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private LocationDao mockedLocationDao;
+  private StringWriter stringWriter = new StringWriter();
+  private PrintWriter writer = new PrintWriter(stringWriter);
+  private Gson gson = new Gson();
+  private LocationClusterServlet servlet;
+  private String meetingId;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  @Before
+  public void setUp() throws IOException {
+    helper.setUp();
+    request = mock(HttpServletRequest.class);
+    response = mock(HttpServletResponse.class);
+    mockedLocationDao = mock(LocationDao.class);
+    when(response.getWriter()).thenReturn(writer);
+    servlet = new LocationClusterServlet();
+    servlet.setDao(mockedLocationDao);
+    meetingId = KeyFactory.keyToString(KeyFactory.createKey("MeetingEvent", 1));
+    when(request.getParameter("meetingEventId")).thenReturn(meetingId);
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  /** Tests if the clusters in the bounds at the zoom level are sent. */
+  @Test
+  public void doGetTest() throws IOException {
+    when(request.getParameter("zoom")).thenReturn("10");
+    when(request.getParameter("bounds")).thenReturn("-34,151,-33.5,151.5");
+    when(mockedLocationDao.getClusters(meetingId, 10, -34, 151, -33.5, 151.5))
+        .thenReturn(Arrays.asList(CLUSTER));
+
+    servlet.doGet(request, response);
+
+    stringWriter.flush();
+    Type clusterListType = new TypeToken<List<LocationCluster>>(){}.getType();
+    List<LocationCluster> clusters = gson.fromJson(stringWriter.toString(), clusterListType);
+    assertEquals(1, clusters.size());
+    assertEquals(CLUSTER.toString(), clusters.get(0).toString());
+    assertEquals(CLUSTER.getKeyString(), clusters.get(0).getKeyString());
+  }
+
+  /** Tests if a bad request response is sent when the zoom level has no clusters. */
+  @Test
+  public void doGetInvalidZoomTest() throws IOException {
+    when(request.getParameter("zoom")).thenReturn("17");
+    when(request.getParameter("bounds")).thenReturn("-34,151,-33.5,151.5");
+
+    servlet.doGet(request, response);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST,
+        ErrorMessages.INVALID_MAP_AREA_ERROR, response, stringWriter, writer);
+    verify(mockedLocationDao, never())
+        .getClusters(anyString(), anyInt(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+  }
+
+  /** Tests if a bad request response is sent when there are no bounds. */
+  @Test
+  public void doGetNoBoundsTest() throws IOException {
+    when(request.getParameter("zoom")).thenReturn("10");
+
+    servlet.doGet(request, response);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST,
+        ErrorMessages.INVALID_MAP_AREA_ERROR, response, stringWriter, writer);
+  }
+
+  /** Tests if a bad request response is sent when the bounds cover too many tiles. */
+  @Test
+  public void doGetTooManyTilesTest() throws IOException {
+    when(request.getParameter("zoom")).thenReturn("16");
+    when(request.getParameter("bounds")).thenReturn("-80,-170,80,170");
+    when(mockedLocationDao.getClusters(meetingId, 16, -80, -170, 80, 170))
+        .thenThrow(new IllegalArgumentException());
+
+    servlet.doGet(request, response);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST,
+        ErrorMessages.TOO_MANY_RESULTS_ERROR, response, stringWriter, writer);
+  }
+}
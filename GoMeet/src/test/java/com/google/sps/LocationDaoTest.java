@@ -2,6 +2,7 @@ package test.java.com.google.sps;
 
 import static com.google.appengine.api.datastore.FetchOptions.Builder.withLimit;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
@@ -17,6 +18,7 @@ import com.google.appengine.api.datastore.Query;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.gson.Gson;
+import com.google.sps.data.DatastoreRpcs;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -29,7 +31,10 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import main.java.com.google.sps.servlets.LocationServlet;
+import main.java.com.google.sps.data.GeoHash;
 import main.java.com.google.sps.data.Location;
+import main.java.com.google.sps.data.LocationCluster;
+import main.java.com.google.sps.dao.LocationClusters;
 import main.java.com.google.sps.dao.LocationDao;
 import main.java.com.google.sps.exceptions.MaxEntitiesReachedException;
 import main.java.com.google.sps.exceptions.SimilarEntityExistsException;
@@ -51,19 +56,32 @@ public class LocationDaoTest {
   private final Location LOCATION_E = new Location("Smoothie Shop", 400.0, 60.0, "", 1);
   private final Location LOCATION_F =
       new Location("Super Soup", 350.0, 60.0, "Where is my super sourp?", 1);
+  private final Location SYDNEY_OPERA_HOUSE =
+      new Location("Opera House", -33.8568, 151.2153, "", 1);
+  private final Location BONDI_BEACH = new Location("Bondi Beach", -33.8915, 151.2767, "", 1);
+  private final Location SYDNEY_AIRPORT = new Location("Airport", -33.9399, 151.1753, "", 1);
   private final Location REPEAT_TITLE_LOCATION =
       new Location("Fruit Shop", 25.0, 60.0, "I like oranges.", 1);
 
+  // Votes are written in cross-group transactions, which need the high replication datastore.
   private final LocalServiceTestHelper helper =
-      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+      new LocalServiceTestHelper(
+          new LocalDatastoreServiceTestConfig().setDefaultHighRepJobPolicyUnappliedJobPercentage(0));
   private DatastoreService ds;
   private LocationDao locationDao;
+  private Key meetingKey;
+  private Key otherMeetingKey;
+  private String meetingId;
 
   @Before
   public void setUp() {
     helper.setUp();
+    meetingKey = KeyFactory.createKey("MeetingEvent", 1);
+    otherMeetingKey = KeyFactory.createKey("MeetingEvent", 2);
+    meetingId = KeyFactory.keyToString(meetingKey);
     ds = DatastoreServiceFactory.getDatastoreService();
     locationDao = new LocationDao();
+    LocationClusters.TILE_CACHE.clear();
   }
 
   @After
@@ -72,11 +90,19 @@ public class LocationDaoTest {
   }
 
   /** 
-   * Adds a location to the database.
+   * Adds a location of the meeting to the database.
    * Returns the key string of the newly added entity.
    */
   private String addLocationToDatabase(Location location) {
-    Entity entity = new Entity("Location");  
+    return addLocationToDatabase(meetingKey, location);
+  }
+
+  /** 
+   * Adds a location of the given meeting to the database.
+   * Returns the key string of the newly added entity.
+   */
+  private String addLocationToDatabase(Key meetingKey, Location location) {
+    Entity entity = new Entity("Location", meetingKey);  
     entity.setProperty("title", location.getTitle());
     entity.setProperty("lat", location.getLat());
     entity.setProperty("lng", location.getLng());
@@ -98,7 +124,7 @@ public class LocationDaoTest {
         new Location(LOCATION_A.getTitle(), LOCATION_A.getLat(), LOCATION_A.getLng(),
         LOCATION_A.getNote(), LOCATION_A.getVoteCount(), key1);
     
-    List<Location> result = locationDao.getAll(); 
+    List<Location> result = locationDao.getAll(meetingId); 
 
     assertEquals(updatedLocationA, result.get(0));
   }
@@ -113,19 +139,53 @@ public class LocationDaoTest {
     String key1 = addLocationToDatabase(LOCATION_A);
     String key2 = addLocationToDatabase(LOCATION_B);
 
-    List<Location> result = locationDao.getAll(); 
+    List<Location> result = locationDao.getAll(meetingId); 
     
     assertTrue(result.contains(LOCATION_A));
     assertTrue(result.contains(LOCATION_B));
   }
 
+  /** Tests if getAll() only returns the locations of the given meeting. */
+  @Test
+  public void getAllTestOtherMeeting() {
+    addLocationToDatabase(LOCATION_A);
+    addLocationToDatabase(otherMeetingKey, LOCATION_B);
+
+    List<Location> result = locationDao.getAll(meetingId); 
+
+    assertEquals(1, result.size());
+    assertTrue(result.contains(LOCATION_A));
+  }
+
+  /** Tests that get() returns a location with its key string and vote count. */
+  @Test
+  public void getTest() throws Exception {
+    String keyString = locationDao.save(meetingId, LOCATION_A);
+    locationDao.updateVote(keyString);
+
+    Optional<Location> location = locationDao.get(keyString);
+
+    assertTrue(location.isPresent());
+    assertEquals(LOCATION_A, location.get());
+    assertEquals(keyString, location.get().getKeyString());
+    assertEquals(2, location.get().getVoteCount());
+  }
+
+  /** Tests that get() returns nothing for a missing location, or a key of another kind. */
+  @Test
+  public void getNoEntityTest() throws Exception {
+    assertFalse(locationDao.get(
+        KeyFactory.keyToString(KeyFactory.createKey(meetingKey, "Location", 12345))).isPresent());
+    assertFalse(locationDao.get(meetingId).isPresent());
+  }
+
   /** Tests if a location is saved to datastore with the correct properties. */
   @Test
   public void saveTest() {
     String keyString = "";
 
     try {
-      keyString = locationDao.save(LOCATION_A);
+      keyString = locationDao.save(meetingId, LOCATION_A);
     } catch (Exception e) {
       fail();
     }
@@ -146,13 +206,55 @@ public class LocationDaoTest {
    
     // Check if the key was returned
     assertEquals(KeyFactory.keyToString(result.getKey()), keyString);
+
+    // Check the location was stored as a child of its meeting
+    assertEquals(meetingKey, result.getParent());
+  }
+
+  /** Tests if a location can have the same title as a location of another meeting. */
+  @Test
+  public void saveSameTitleOtherMeetingTest() throws Exception {
+    addLocationToDatabase(otherMeetingKey, LOCATION_B);
+
+    locationDao.save(meetingId, REPEAT_TITLE_LOCATION);
+
+    assertEquals(1, locationDao.getAll(meetingId).size());
+  }
+
+  /** Tests if the maximum number of locations is counted per meeting. */
+  @Test
+  public void saveMaxLocationsOtherMeetingTest() throws Exception {
+    addLocationToDatabase(otherMeetingKey, LOCATION_A);
+    addLocationToDatabase(otherMeetingKey, LOCATION_B);
+    addLocationToDatabase(otherMeetingKey, LOCATION_C);
+    addLocationToDatabase(otherMeetingKey, LOCATION_D);
+    addLocationToDatabase(otherMeetingKey, LOCATION_E);
+
+    locationDao.save(meetingId, LOCATION_F);
+
+    assertEquals(1, locationDao.getAll(meetingId).size());
+  }
+
+  /** Tests that saving a location issues a bounded number of Datastore RPCs. */
+  @Test
+  public void saveRpcBudgetTest() throws Exception {
+    addLocationToDatabase(LOCATION_B);
+
+    DatastoreRpcs rpcs = DatastoreRpcs.start();
+    locationDao.save(meetingId, LOCATION_A);
+    rpcs.stop();
+
+    // The title and the number of locations are checked, the location and the leaders
+    // are written, and the changed map tiles are read and written.
+    rpcs.expectAtMost(12);
+    rpcs.expectAtMost(DatastoreRpcs.Operation.QUERY, 4);
   }
 
   /** Tests if EntityExistException is thrown when an invalid title is given. */
   @Test(expected = SimilarEntityExistsException.class)
   public void saveInvalidTitleTest() throws Exception {
     addLocationToDatabase(LOCATION_B);
-    locationDao.save(REPEAT_TITLE_LOCATION);
+    locationDao.save(meetingId, REPEAT_TITLE_LOCATION);
   }
 
    /** 
@@ -168,13 +270,13 @@ public class LocationDaoTest {
     addLocationToDatabase(LOCATION_D);
     addLocationToDatabase(LOCATION_E);
 
-    locationDao.save(LOCATION_F);
+    locationDao.save(meetingId, LOCATION_F);
   }
   
   /** Tests that update() adds one to the entity's voteCount. */
   @Test
   public void updateTest() {
-    Entity location = new Entity("Location");
+    Entity location = new Entity("Location", meetingKey);
     location.setProperty("title", LOCATION_A.getTitle());
     location.setProperty("lat", LOCATION_A.getLat());
     location.setProperty("lng", LOCATION_A.getLng());
@@ -186,13 +288,69 @@ public class LocationDaoTest {
 
     try {
       locationDao.updateVote(keyString);
-      Entity retrievedLocation = ds.get(location.getKey());
-      assertEquals(2, ((Long) retrievedLocation.getProperty("voteCount")).intValue());
+      // The vote is counted on top of the stored count.
+      List<Location> retrievedLocations = locationDao.getAll(meetingId);
+      assertEquals(2, retrievedLocations.get(0).getVoteCount());
     } catch (EntityNotFoundException e) {
       fail();
     }
   }
 
+  /** Tests that a vote issues a bounded number of Datastore RPCs, with no single gets. */
+  @Test
+  public void updateVoteRpcBudgetTest() throws Exception {
+    String keyString = locationDao.save(meetingId, LOCATION_A);
+    locationDao.save(meetingId, LOCATION_B);
+
+    DatastoreRpcs rpcs = DatastoreRpcs.start();
+    locationDao.updateVote(keyString);
+    rpcs.stop();
+
+    // The location, the counter's config and shard are read and the shard written, the
+    // new count is read from the shards, and the leaders are read and written. The tiles
+    // are compared as cached, and not read or written as the location is already top.
+    rpcs.expectAtMost(10);
+    rpcs.expectAtMost(DatastoreRpcs.Operation.BEGIN_TRANSACTION, 2);
+    rpcs.expectAtMost(DatastoreRpcs.Operation.QUERY, 0);
+  }
+
+  /** Tests that a vote that does not reach the most votes does not write the leaders. */
+  @Test
+  public void updateVoteBelowLeadersTest() throws Exception {
+    String keyStringA = locationDao.save(meetingId, LOCATION_A);
+    String keyStringB = locationDao.save(meetingId, LOCATION_B);
+    locationDao.updateVote(keyStringA);
+    locationDao.updateVote(keyStringA);
+
+    DatastoreRpcs rpcs = DatastoreRpcs.start();
+    locationDao.updateVote(keyStringB);
+    rpcs.stop();
+
+    // Only the counter's shard is written, and neither the leaders nor the tiles are
+    // read in a transaction.
+    rpcs.expectAtMost(DatastoreRpcs.Operation.PUT, 1);
+    rpcs.expectAtMost(DatastoreRpcs.Operation.BEGIN_TRANSACTION, 1);
+    List<Location> popular = locationDao.getPopular(meetingId);
+    assertEquals(1, popular.size());
+    assertEquals(LOCATION_A, popular.get(0));
+    assertEquals(3, popular.get(0).getVoteCount());
+    assertEquals(2, locationDao.get(keyStringB).get().getVoteCount());
+  }
+
+  /** Tests that the locations of a meeting are read with one query. */
+  @Test
+  public void getAllRpcBudgetTest() throws Exception {
+    addLocationToDatabase(LOCATION_A);
+    addLocationToDatabase(LOCATION_B);
+
+    DatastoreRpcs rpcs = DatastoreRpcs.start();
+    locationDao.getAll(meetingId);
+    rpcs.stop();
+
+    rpcs.expectAtMost(3);
+    rpcs.expectAtMost(DatastoreRpcs.Operation.QUERY, 1);
+  }
+
   /** Tests if an exception is thrown if the entity does not exist. */
   @Test(expected = EntityNotFoundException.class)
   public void updateTestNoEntity() throws Exception {
@@ -201,4 +359,349 @@ public class LocationDaoTest {
     String keyString = KeyFactory.keyToString(key);
     locationDao.updateVote(keyString);
   }
+
+  /** Tests that getPopular() returns the location with the most votes. */
+  @Test
+  public void getPopularSingle() throws Exception {
+    locationDao.save(meetingId, LOCATION_A);
+    String keyString = locationDao.save(meetingId, LOCATION_B);
+    locationDao.updateVote(keyString);
+
+    List<Location> popular = locationDao.getPopular(meetingId);
+    assertEquals(1, popular.size());
+    assertEquals(LOCATION_B, popular.get(0));
+    assertEquals(2, popular.get(0).getVoteCount());
+  }
+
+  /** Tests that getPopular() returns all the locations tied for the most votes. */
+  @Test
+  public void getPopularTie() throws Exception {
+    String keyStringA = locationDao.save(meetingId, LOCATION_A);
+    locationDao.save(meetingId, LOCATION_B);
+    String keyStringC = locationDao.save(meetingId, LOCATION_C);
+    locationDao.updateVote(keyStringC);
+    // A location of another meeting is not one of the meeting's popular locations.
+    String otherKeyString = locationDao.save(KeyFactory.keyToString(otherMeetingKey), LOCATION_D);
+    locationDao.updateVote(otherKeyString);
+    locationDao.updateVote(otherKeyString);
+
+    // LOCATION_A catches up with LOCATION_C.
+    locationDao.updateVote(keyStringA);
+
+    List<Location> popular = locationDao.getPopular(meetingId);
+    assertEquals(2, popular.size());
+    assertTrue(popular.contains(LOCATION_A));
+    assertTrue(popular.contains(LOCATION_C));
+  }
+
+  /** Tests that getPopular() returns an empty list for a meeting without locations. */
+  @Test
+  public void getPopularEmpty() {
+    assertTrue(locationDao.getPopular(meetingId).isEmpty());
+  }
+
+  /** Tests that the popular locations are computed for locations saved before they were kept. */
+  @Test
+  public void getPopularWithoutRecord() throws Exception {
+    addLocationToDatabase(LOCATION_A);
+    String keyString = addLocationToDatabase(LOCATION_B);
+    locationDao.updateVote(keyString);
+
+    List<Location> popular = locationDao.getPopular(meetingId);
+    assertEquals(1, popular.size());
+    assertEquals(LOCATION_B, popular.get(0));
+    assertEquals(2, popular.get(0).getVoteCount());
+  }
+
+  /** Tests that rebuildPopular() recomputes the popular locations from the locations. */
+  @Test
+  public void rebuildPopular() throws Exception {
+    String keyString = locationDao.save(meetingId, LOCATION_A);
+    locationDao.save(meetingId, LOCATION_B);
+    // Change the stored vote count without going through the DAO.
+    Entity entity = ds.get(KeyFactory.stringToKey(keyString));
+    entity.setProperty("voteCount", 5);
+    ds.put(entity);
+    assertEquals(2, locationDao.getPopular(meetingId).size());
+
+    locationDao.rebuildPopular(meetingId);
+
+    List<Location> popular = locationDao.getPopular(meetingId);
+    assertEquals(1, popular.size());
+    assertEquals(LOCATION_A, popular.get(0));
+    assertEquals(5, popular.get(0).getVoteCount());
+  }
+  /** Tests that save() stores every prefix of the location's geohash. */
+  @Test
+  public void saveGeohashesTest() throws Exception {
+    locationDao.save(meetingId, LOCATION_A);
+
+    Entity result = ds.prepare(new Query("Location")).asSingleEntity();
+    assertEquals(GeoHash.prefixes(LOCATION_A.getLat(), LOCATION_A.getLng()),
+        result.getProperty("geohashes"));
+  }
+
+  /** Tests that getWithin() only returns the meeting's locations inside the box. */
+  @Test
+  public void getWithinTest() throws Exception {
+    String keyString = locationDao.save(meetingId, SYDNEY_OPERA_HOUSE);
+    locationDao.save(meetingId, SYDNEY_AIRPORT);
+    locationDao.save(meetingId, LOCATION_A);
+    locationDao.save(KeyFactory.keyToString(otherMeetingKey), BONDI_BEACH);
+    locationDao.updateVote(keyString);
+
+    List<Location> result = locationDao.getWithin(meetingId, -33.9, 151.15, -33.8, 151.3);
+
+    assertEquals(1, result.size());
+    assertEquals(SYDNEY_OPERA_HOUSE, result.get(0));
+    assertEquals(2, result.get(0).getVoteCount());
+  }
+
+  /** Tests that getWithin() reads every location when the box is too large to index. */
+  @Test
+  public void getWithinWorldTest() throws Exception {
+    locationDao.save(meetingId, SYDNEY_OPERA_HOUSE);
+    addLocationToDatabase(LOCATION_A);
+
+    assertEquals(2, locationDao.getWithin(meetingId, -90, -180, 90, 180).size());
+  }
+
+  /** Tests that getWithin() finds locations on both sides of the antimeridian. */
+  @Test
+  public void getWithinAntimeridianTest() throws Exception {
+    Location fiji = new Location("Fiji", -17.7, 178.0, "", 1);
+    Location samoa = new Location("Samoa", -13.8, -172.1, "", 1);
+    locationDao.save(meetingId, fiji);
+    locationDao.save(meetingId, samoa);
+    locationDao.save(meetingId, LOCATION_A);
+
+    List<Location> result = locationDao.getWithin(meetingId, -20, 175, -10, -170);
+
+    assertEquals(2, result.size());
+    assertTrue(result.contains(fiji));
+    assertTrue(result.contains(samoa));
+  }
+
+  /** Tests that getNear() only returns the locations within the distance. */
+  @Test
+  public void getNearTest() throws Exception {
+    locationDao.save(meetingId, SYDNEY_OPERA_HOUSE);
+    locationDao.save(meetingId, BONDI_BEACH);
+    locationDao.save(meetingId, SYDNEY_AIRPORT);
+
+    // Bondi Beach is about 7km from the Opera House, and the airport about 10km.
+    List<Location> result = locationDao.getNear(meetingId, -33.8568, 151.2153, 8_000);
+
+    assertEquals(2, result.size());
+    assertTrue(result.contains(SYDNEY_OPERA_HOUSE));
+    assertTrue(result.contains(BONDI_BEACH));
+  }
+
+  /** Tests that the locations close together at a zoom level are one cluster. */
+  @Test
+  public void getClustersTest() throws Exception {
+    locationDao.save(meetingId, SYDNEY_OPERA_HOUSE);
+    locationDao.save(meetingId, BONDI_BEACH);
+    String keyString = locationDao.save(meetingId, SYDNEY_AIRPORT);
+    locationDao.save(meetingId, LOCATION_A);
+    locationDao.updateVote(keyString);
+
+    List<LocationCluster> clusters = locationDao.getClusters(meetingId, 2, -40, 140, -30, 160);
+
+    assertEquals(1, clusters.size());
+    LocationCluster cluster = clusters.get(0);
+    assertEquals(3, cluster.getCount());
+    assertEquals((-33.8568 - 33.8915 - 33.9399) / 3, cluster.getLat(), 1e-9);
+    assertEquals((151.2153 + 151.2767 + 151.1753) / 3, cluster.getLng(), 1e-9);
+    assertEquals(SYDNEY_AIRPORT.getTitle(), cluster.getTitle());
+    assertEquals(keyString, cluster.getKeyString());
+  }
+
+  /** Tests that the clusters are split at higher zoom levels, and only read in the bounds. */
+  @Test
+  public void getClustersZoomedInTest() throws Exception {
+    locationDao.save(meetingId, SYDNEY_OPERA_HOUSE);
+    locationDao.save(meetingId, BONDI_BEACH);
+    locationDao.save(meetingId, SYDNEY_AIRPORT);
+
+    assertEquals(3, locationDao.getClusters(meetingId, 13, -34, 151.1, -33.8, 151.3).size());
+    List<LocationCluster> clusters =
+        locationDao.getClusters(meetingId, 16, -33.86, 151.21, -33.85, 151.22);
+    assertEquals(1, clusters.size());
+    assertEquals(SYDNEY_OPERA_HOUSE.getTitle(), clusters.get(0).getTitle());
+    assertEquals(1, clusters.get(0).getCount());
+  }
+
+  /** Tests that a vote changes the most voted location of a cluster once it leads. */
+  @Test
+  public void getClustersAfterVotesTest() throws Exception {
+    locationDao.save(meetingId, SYDNEY_OPERA_HOUSE);
+    String keyString = locationDao.save(meetingId, BONDI_BEACH);
+    assertEquals(SYDNEY_OPERA_HOUSE.getTitle(),
+        locationDao.getClusters(meetingId, 0, -90, -180, 90, 180).get(0).getTitle());
+
+    locationDao.updateVote(keyString);
+
+    assertEquals(BONDI_BEACH.getTitle(),
+        locationDao.getClusters(meetingId, 0, -90, -180, 90, 180).get(0).getTitle());
+  }
+
+  /** Tests that a vote is compared against the stored tiles when they are not cached. */
+  @Test
+  public void getClustersAfterVotesUncachedTest() throws Exception {
+    locationDao.save(meetingId, SYDNEY_OPERA_HOUSE);
+    String keyString = locationDao.save(meetingId, BONDI_BEACH);
+    LocationClusters.TILE_CACHE.clear();
+
+    locationDao.updateVote(keyString);
+    LocationClusters.TILE_CACHE.clear();
+
+    assertEquals(BONDI_BEACH.getTitle(),
+        locationDao.getClusters(meetingId, 0, -90, -180, 90, 180).get(0).getTitle());
+  }
+
+  /** Tests that the clusters are built for locations saved before they were kept. */
+  @Test
+  public void getClustersWithoutTilesTest() throws Exception {
+    addLocationToDatabase(SYDNEY_OPERA_HOUSE);
+    addLocationToDatabase(BONDI_BEACH);
+
+    assertEquals(2, locationDao.getClusters(meetingId, 0, -90, -180, 90, 180).get(0).getCount());
+
+    // Locations saved afterwards are added to the built clusters.
+    locationDao.save(meetingId, SYDNEY_AIRPORT);
+    assertEquals(3, locationDao.getClusters(meetingId, 0, -90, -180, 90, 180).get(0).getCount());
+  }
+
+  /** Tests that a location saved to a meeting without tiles adds its other locations. */
+  @Test
+  public void saveWithoutTilesTest() throws Exception {
+    addLocationToDatabase(SYDNEY_OPERA_HOUSE);
+
+    locationDao.save(meetingId, BONDI_BEACH);
+
+    assertEquals(2, locationDao.getClusters(meetingId, 0, -90, -180, 90, 180).get(0).getCount());
+  }
+
+  /** Tests that a meeting without locations has no clusters. */
+  @Test
+  public void getClustersEmptyTest() {
+    assertTrue(locationDao.getClusters(meetingId, 0, -90, -180, 90, 180).isEmpty());
+  }
+
+  /** Tests that bounds covering too many tiles are rejected. */
+  @Test(expected = IllegalArgumentException.class)
+  public void getClustersTooManyTilesTest() {
+    locationDao.getClusters(meetingId, 16, -80, -170, 80, 170);
+  }
+
+  /** Tests that delete() removes the location, and does nothing when it is gone. */
+  @Test
+  public void deleteTest() throws Exception {
+    String keyString = locationDao.save(meetingId, LOCATION_A);
+    locationDao.save(meetingId, LOCATION_B);
+
+    locationDao.delete(keyString);
+    locationDao.delete(keyString);
+
+    List<Location> locations = locationDao.getAll(meetingId);
+    assertEquals(1, locations.size());
+    assertTrue(locations.contains(LOCATION_B));
+    assertFalse(locationDao.get(keyString).isPresent());
+  }
+
+  /** Tests that delete() does not delete entities other than locations. */
+  @Test
+  public void deleteOtherKindTest() throws Exception {
+    ds.put(new Entity(meetingKey));
+
+    locationDao.delete(meetingId);
+
+    ds.get(meetingKey);
+  }
+
+  /** Tests that the leaders are chosen again when the only leader is deleted. */
+  @Test
+  public void deletePopularTest() throws Exception {
+    String keyStringA = locationDao.save(meetingId, LOCATION_A);
+    locationDao.save(meetingId, LOCATION_B);
+    locationDao.save(meetingId, LOCATION_C);
+    locationDao.updateVote(keyStringA);
+
+    locationDao.delete(keyStringA);
+
+    List<Location> popular = locationDao.getPopular(meetingId);
+    assertEquals(2, popular.size());
+    assertTrue(popular.contains(LOCATION_B));
+    assertTrue(popular.contains(LOCATION_C));
+  }
+
+  /** Tests that deleting a location that is not a leader keeps the leaders. */
+  @Test
+  public void deleteNotPopularTest() throws Exception {
+    String keyStringA = locationDao.save(meetingId, LOCATION_A);
+    String keyStringB = locationDao.save(meetingId, LOCATION_B);
+    locationDao.updateVote(keyStringA);
+
+    locationDao.delete(keyStringB);
+
+    List<Location> popular = locationDao.getPopular(meetingId);
+    assertEquals(1, popular.size());
+    assertEquals(LOCATION_A, popular.get(0));
+    assertEquals(2, popular.get(0).getVoteCount());
+  }
+
+  /**
+   * Tests that a deleted location leaves its clusters, which are named after the most
+   * voted location left, and that tiles left without locations are removed.
+   */
+  @Test
+  public void deleteClustersTest() throws Exception {
+    locationDao.save(meetingId, SYDNEY_OPERA_HOUSE);
+    String bondiKeyString = locationDao.save(meetingId, BONDI_BEACH);
+    String airportKeyString = locationDao.save(meetingId, SYDNEY_AIRPORT);
+    locationDao.updateVote(bondiKeyString);
+    locationDao.updateVote(airportKeyString);
+    locationDao.updateVote(airportKeyString);
+    assertEquals(SYDNEY_AIRPORT.getTitle(),
+        locationDao.getClusters(meetingId, 2, -40, 140, -30, 160).get(0).getTitle());
+    assertEquals(1, locationDao.getClusters(meetingId, 16, -33.95, 151.17, -33.93, 151.18).size());
+    assertEquals(3, countTiles(16));
+
+    locationDao.delete(airportKeyString);
+
+    List<LocationCluster> clusters = locationDao.getClusters(meetingId, 2, -40, 140, -30, 160);
+    assertEquals(1, clusters.size());
+    assertEquals(2, clusters.get(0).getCount());
+    assertEquals((-33.8568 - 33.8915) / 2, clusters.get(0).getLat(), 1e-9);
+    assertEquals((151.2153 + 151.2767) / 2, clusters.get(0).getLng(), 1e-9);
+    assertEquals(BONDI_BEACH.getTitle(), clusters.get(0).getTitle());
+    assertTrue(
+        locationDao.getClusters(meetingId, 16, -33.95, 151.17, -33.93, 151.18).isEmpty());
+    assertEquals(2, countTiles(16));
+  }
+
+  /** Returns the number of LocationTile entities of the meeting at a zoom level. */
+  private int countTiles(int zoom) {
+    int count = 0;
+    for (Entity tile : ds.prepare(new Query("LocationTile").setAncestor(meetingKey))
+        .asIterable()) {
+      if (tile.getKey().getName().startsWith(zoom + "/")) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Tests that deleting the last location leaves a meeting without clusters. */
+  @Test
+  public void deleteLastLocationClustersTest() throws Exception {
+    String keyString = locationDao.save(meetingId, SYDNEY_OPERA_HOUSE);
+    assertEquals(1, locationDao.getClusters(meetingId, 0, -90, -180, 90, 180).size());
+
+    locationDao.delete(keyString);
+
+    assertTrue(locationDao.getClusters(meetingId, 0, -90, -180, 90, 180).isEmpty());
+    assertTrue(locationDao.getPopular(meetingId).isEmpty());
+  }
 }
@@ -61,6 +61,7 @@ public class LocationServletTest {
   private StringWriter stringWriter = new StringWriter();
   private PrintWriter writer = new PrintWriter(stringWriter);
   private LocationServlet servlet;
+  private String meetingId;
 
   private final LocalServiceTestHelper helper =
       new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
@@ -76,6 +77,8 @@ public class LocationServletTest {
     when(response.getWriter()).thenReturn(writer);
     servlet = new LocationServlet();
     servlet.setDao(mockedLocationDao);
+    meetingId = KeyFactory.keyToString(KeyFactory.createKey("MeetingEvent", 1));
+    when(request.getParameter("meetingEventId")).thenReturn(meetingId);
   }
 
   @After
@@ -99,7 +102,7 @@ public class LocationServletTest {
     String keyString = KeyFactory.keyToString(KeyFactory.createKey("Location", 123));
 
     try {
-      when(mockedLocationDao.save((Location)notNull())).thenReturn(keyString);
+      when(mockedLocationDao.save(eq(meetingId), (Location)notNull())).thenReturn(keyString);
     } catch (Exception e) {
       fail();
     }
@@ -110,7 +113,7 @@ public class LocationServletTest {
     ArgumentCaptor<Location> captor = ArgumentCaptor.forClass(Location.class);
 
     try {
-      verify(mockedLocationDao, times(1)).save(captor.capture());
+      verify(mockedLocationDao, times(1)).save(eq(meetingId), captor.capture());
       Location actual = captor.getValue();
       assertEquals(LOCATION_A, actual);
     } catch (Exception e) {
@@ -136,7 +139,7 @@ public class LocationServletTest {
 
     // Set up mock Dao
     try {
-      doThrow(new MaxEntitiesReachedException()).when(mockedLocationDao).save((Location)notNull());
+      doThrow(new MaxEntitiesReachedException()).when(mockedLocationDao).save(eq(meetingId), (Location)notNull());
     } catch (Exception e) {
       fail();
     }
@@ -169,7 +172,7 @@ public class LocationServletTest {
 
     // Set up mock Dao
     try {
-      doThrow(new SimilarEntityExistsException()).when(mockedLocationDao).save((Location)notNull());
+      doThrow(new SimilarEntityExistsException()).when(mockedLocationDao).save(eq(meetingId), (Location)notNull());
     } catch (Exception e) {
       fail();
     }
@@ -197,7 +200,7 @@ public class LocationServletTest {
   public void doGetTest() throws IOException {
     // Set up DAO mock
     List<Location> listToReturn = new ArrayList<>(Arrays.asList(LOCATION_A));
-    when(mockedLocationDao.getAll()).thenReturn(listToReturn);
+    when(mockedLocationDao.getAll(meetingId)).thenReturn(listToReturn);
 
     servlet.doGet(request, response);
 
@@ -216,4 +219,58 @@ public class LocationServletTest {
     assertEquals(LOCATION_A.getLng(), (double) printedLocation.getLng(), DELTA);
     assertEquals(LOCATION_A.getNote(), printedLocation.getNote());
   }
+
+  /** Tests if a bad request response is sent when no meeting ID is given. */
+  @Test
+  public void doGetNoMeetingIdTest() throws IOException {
+    when(request.getParameter("meetingEventId")).thenReturn(null);
+
+    servlet.doGet(request, response);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST, 
+        ErrorMessages.BAD_GET_REQUEST_ERROR, response, stringWriter, writer);
+    verify(mockedLocationDao, never()).getAll(anyString());
+  }
+
+  /** Tests if a bad request response is sent when the meeting ID is not a meeting's key. */
+  @Test
+  public void doPostInvalidMeetingIdTest() throws Exception {
+    when(request.getParameter("meetingEventId"))
+        .thenReturn(KeyFactory.keyToString(KeyFactory.createKey("Location", 123)));
+
+    servlet.doPost(request, response);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST, 
+        ErrorMessages.INVALID_KEY_ERROR, response, stringWriter, writer);
+    verify(mockedLocationDao, never()).save(anyString(), any());
+  }
+  /** Tests if only the locations in the bounds are sent when the request has bounds. */
+  @Test
+  public void doGetBoundsTest() throws IOException {
+    when(request.getParameter("bounds")).thenReturn("14,149.5,16,-179.5");
+    when(mockedLocationDao.getWithin(meetingId, 14, 149.5, 16, -179.5))
+        .thenReturn(new ArrayList<>(Arrays.asList(LOCATION_A)));
+
+    servlet.doGet(request, response);
+
+    stringWriter.flush();
+    Type locationListType = new TypeToken<ArrayList<Location>>(){}.getType();
+    ArrayList<Location> locationList = gson.fromJson(stringWriter.toString(), locationListType);
+    assertEquals(1, locationList.size());
+    assertEquals(LOCATION_A.getTitle(), locationList.get(0).getTitle());
+    verify(mockedLocationDao, never()).getAll(anyString());
+  }
+
+  /** Tests if a bad request response is sent when the bounds are invalid. */
+  @Test
+  public void doGetInvalidBoundsTest() throws IOException {
+    when(request.getParameter("bounds")).thenReturn("16,149.5,14,150.5");
+
+    servlet.doGet(request, response);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST, 
+        ErrorMessages.BAD_GET_REQUEST_ERROR, response, stringWriter, writer);
+    verify(mockedLocationDao, never())
+        .getWithin(anyString(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+  }
 }
@@ -16,6 +16,8 @@ import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.PreparedQuery.TooManyResultsException;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonParser;
+import com.google.sps.data.DatastoreRpcs;
 import com.google.sps.data.ErrorMessages;
 import com.google.sps.servlets.MeetingEventServlet;
 import com.google.sps.data.MeetingEventFields;
@@ -37,6 +39,7 @@ import org.junit.Before;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.junit.runners.JUnit4;
 import org.junit.Test;
 import test.java.com.google.sps.ServletTestUtil; 
@@ -75,6 +78,7 @@ public final class MeetingEventServletTest {
   @Before
   public void setUp() throws IOException {
     helper.setUp();
+    MeetingEventServlet.MEETING_EVENT_CACHE.clear();
     mockedRequest = mock(HttpServletRequest.class);      
     mockedResponse = mock(HttpServletResponse.class);
     stringWriter = new StringWriter();
@@ -92,7 +96,11 @@ public final class MeetingEventServletTest {
   // Tests for doPost
   @Test
   public void testSuccessfulNewDoPost() throws IOException {
+    DatastoreRpcs rpcs = DatastoreRpcs.start();
     new MeetingEventServlet().doPost(mockedRequest, mockedResponse);
+    rpcs.stop();
+    // The meeting is written in one put
+    rpcs.expectAtMost(1);
     List<Entity> results = getAllEntities();
 
     // Assert that exactly one entity was added 
@@ -213,11 +221,16 @@ public final class MeetingEventServletTest {
     // Fetch the entity
     when(mockedRequest.getParameter(MeetingEventFields.MEETING_EVENT_ID))
         .thenReturn(fakeMeetingEventKey); 
+    DatastoreRpcs rpcs = DatastoreRpcs.start();
     new MeetingEventServlet().doGet(mockedRequest, mockedResponse);
+    rpcs.stop();
+    // The meeting is read in one get
+    rpcs.expectAtMost(1);
 
     // Expect the JSON to be returned
     writer.flush();
-    assertTrue(stringWriter.toString().contains(fakeMeetingEventJson)); 
+    assertEquals(new JsonParser().parse(fakeMeetingEventJson), 
+        new JsonParser().parse(stringWriter.toString())); 
   }
 
   @Test 
@@ -261,6 +274,47 @@ public final class MeetingEventServletTest {
     helper.tearDown();
   }
 
+  // A request for an unchanged MeetingEvent is answered with 304, from the cached version
+  @Test
+  public void testDoGetNotModified() throws IOException {
+    new MeetingEventServlet().doPost(mockedRequest, mockedResponse);
+    Key key = getAllEntities().get(0).getKey();
+    when(mockedRequest.getParameter(MeetingEventFields.MEETING_EVENT_ID))
+        .thenReturn(KeyFactory.keyToString(key)); 
+    new MeetingEventServlet().doGet(mockedRequest, mockedResponse);
+    ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+    verify(mockedResponse).setHeader(eq("ETag"), eTag.capture());
+    verify(mockedResponse).setDateHeader(eq("Last-Modified"), anyLong());
+
+    // The entity is not read to answer a request whose copy is current
+    DatastoreServiceFactory.getDatastoreService().delete(key);
+    writer.flush();
+    stringWriter.getBuffer().setLength(0);
+    when(mockedRequest.getHeader("If-None-Match")).thenReturn(eTag.getValue());
+    new MeetingEventServlet().doGet(mockedRequest, mockedResponse);
+
+    writer.flush();
+    verify(mockedResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertEquals("", stringWriter.toString());
+  }
+
+  // A request with an out of date ETag is answered with the MeetingEvent
+  @Test
+  public void testDoGetModified() throws IOException {
+    new MeetingEventServlet().doPost(mockedRequest, mockedResponse);
+    when(mockedRequest.getParameter(MeetingEventFields.MEETING_EVENT_ID))
+        .thenReturn(KeyFactory.keyToString(getAllEntities().get(0).getKey())); 
+    when(mockedRequest.getHeader("If-None-Match")).thenReturn("\"0\"");
+    writer.flush();
+    stringWriter.getBuffer().setLength(0);
+    new MeetingEventServlet().doGet(mockedRequest, mockedResponse);
+
+    writer.flush();
+    verify(mockedResponse, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(mockedResponse).setHeader("ETag", "\"1\"");
+    assertTrue(stringWriter.toString().contains(MEETING_NAME));
+  }
+
   private List<Entity> getAllEntities() {
     // Check that everything has been stored as expected
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
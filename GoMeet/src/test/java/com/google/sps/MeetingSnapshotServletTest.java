@@ -0,0 +1,168 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.MeetingEventFields;
+import com.google.sps.data.MeetingSnapshotFields;
+import com.google.sps.data.MeetingTimeFields;
+import com.google.sps.data.Voters;
+import com.google.sps.servlets.MeetingEventServlet;
+import com.google.sps.servlets.MeetingSnapshotServlet;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import main.java.com.google.sps.dao.LocationDao;
+import main.java.com.google.sps.data.Location;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for MeetingSnapshotServlet */
+@RunWith(JUnit4.class)
+public class MeetingSnapshotServletTest {
+  private final String USER_EMAIL = "test@gmail.com";
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(
+          new LocalDatastoreServiceTestConfig().setDefaultHighRepJobPolicyUnappliedJobPercentage(0),
+          new LocalUserServiceTestConfig());
+  private HttpServletRequest mockedRequest;
+  private HttpServletResponse mockedResponse;
+  private StringWriter stringWriter;
+  private PrintWriter writer;
+  private DatastoreService datastore;
+
+  @Before
+  public void setUp() throws IOException {
+    helper.setUp();
+    helper.setEnvEmail(USER_EMAIL);
+    helper.setEnvAuthDomain("gmail.com");
+    helper.setEnvIsLoggedIn(true);
+    MeetingEventServlet.MEETING_EVENT_CACHE.clear();
+    LocationDao.CACHED.clear();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+    mockedRequest = mock(HttpServletRequest.class);
+    mockedResponse = mock(HttpServletResponse.class);
+    stringWriter = new StringWriter();
+    writer = new PrintWriter(stringWriter);
+    when(mockedResponse.getWriter()).thenReturn(writer);
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  // The whole meeting is returned in one response.
+  @Test
+  public void returnsSnapshot() throws Exception {
+    Entity votedTime = new Entity("MeetingTime");
+    votedTime.setProperty(MeetingTimeFields.DATETIME, "2021-01-20T16:30");
+    votedTime.setProperty(MeetingTimeFields.VOTE_COUNT, 2);
+    Entity otherTime = new Entity("MeetingTime");
+    otherTime.setProperty(MeetingTimeFields.DATETIME, "2021-01-21T10:00");
+    otherTime.setProperty(MeetingTimeFields.VOTE_COUNT, 0);
+    datastore.put(Arrays.asList(votedTime, otherTime));
+    datastore.put(Voters.newVoter(votedTime.getKey(), USER_EMAIL));
+    String votedId = KeyFactory.keyToString(votedTime.getKey());
+    String otherId = KeyFactory.keyToString(otherTime.getKey());
+    String meetingEventId = putMeetingEvent(votedId, otherId);
+    new LocationDao().save(meetingEventId, new Location("Sydney", -33.87, 151.21, "Harbour", 1));
+
+    new MeetingSnapshotServlet().doGet(mockedRequest, mockedResponse);
+    JsonObject snapshot = readResponse();
+
+    JsonObject userStatus = snapshot.getAsJsonObject(MeetingSnapshotFields.USER_STATUS);
+    assertEquals("true", userStatus.get("loggedIn").getAsString());
+    assertEquals(USER_EMAIL, userStatus.get("userEmail").getAsString());
+    JsonObject meetingEvent = snapshot.getAsJsonObject(MeetingSnapshotFields.MEETING_EVENT);
+    assertEquals("Lunch", meetingEvent.get(MeetingEventFields.MEETING_NAME).getAsString());
+    JsonObject meetingTimes = snapshot.getAsJsonObject(MeetingSnapshotFields.MEETING_TIMES);
+    assertEquals(2, meetingTimes.size());
+    assertEquals(2, meetingTimes.getAsJsonObject(votedId)
+        .get(MeetingTimeFields.VOTE_COUNT).getAsInt());
+    assertTrue(meetingTimes.getAsJsonObject(votedId)
+        .get(MeetingTimeFields.HAS_VOTED).getAsBoolean());
+    assertFalse(meetingTimes.getAsJsonObject(otherId)
+        .get(MeetingTimeFields.HAS_VOTED).getAsBoolean());
+    JsonArray locations = snapshot.getAsJsonArray(MeetingSnapshotFields.LOCATIONS);
+    assertEquals(1, locations.size());
+    assertEquals("Sydney", locations.get(0).getAsJsonObject().get("title").getAsString());
+    JsonArray popular = snapshot.getAsJsonArray(MeetingSnapshotFields.POPULAR_LOCATIONS);
+    assertEquals(1, popular.size());
+  }
+
+  // Only the login status is returned to a user who is not logged in.
+  @Test
+  public void loggedOut() throws IOException {
+    helper.setEnvIsLoggedIn(false);
+    putMeetingEvent();
+
+    new MeetingSnapshotServlet().doGet(mockedRequest, mockedResponse);
+    JsonObject snapshot = readResponse();
+
+    assertEquals(1, snapshot.size());
+    assertEquals("false", snapshot.getAsJsonObject(MeetingSnapshotFields.USER_STATUS)
+        .get("loggedIn").getAsString());
+  }
+
+  @Test
+  public void meetingEventNotFound() throws IOException {
+    String meetingEventId = putMeetingEvent();
+    datastore.delete(KeyFactory.stringToKey(meetingEventId));
+
+    new MeetingSnapshotServlet().doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_NOT_FOUND,
+        ErrorMessages.ENTITY_NOT_FOUND_ERROR, mockedResponse, stringWriter, writer);
+  }
+
+  @Test
+  public void invalidMeetingEventId() throws IOException {
+    when(mockedRequest.getParameter(MeetingEventFields.MEETING_EVENT_ID)).thenReturn("invalid");
+
+    new MeetingSnapshotServlet().doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST,
+        ErrorMessages.INVALID_KEY_ERROR, mockedResponse, stringWriter, writer);
+  }
+
+  /** Stores a MeetingEvent with the meeting times, and makes it the one requested. */
+  private String putMeetingEvent(String... meetingTimeIds) {
+    Entity meetingEvent = new Entity("MeetingEvent");
+    meetingEvent.setProperty(MeetingEventFields.MEETING_NAME, "Lunch");
+    meetingEvent.setProperty(MeetingEventFields.DURATION_MINS, 30);
+    meetingEvent.setProperty(MeetingEventFields.DURATION_HOURS, 1);
+    meetingEvent.setProperty(MeetingEventFields.TIME_FIND_METHOD, "manual");
+    meetingEvent.setProperty(MeetingEventFields.GUEST_LIST, Arrays.asList(USER_EMAIL));
+    meetingEvent.setProperty(MeetingEventFields.MEETING_TIME_IDS, Arrays.asList(meetingTimeIds));
+    datastore.put(meetingEvent);
+    String meetingEventId = KeyFactory.keyToString(meetingEvent.getKey());
+    when(mockedRequest.getParameter(MeetingEventFields.MEETING_EVENT_ID))
+        .thenReturn(meetingEventId);
+    return meetingEventId;
+  }
+
+  private JsonObject readResponse() {
+    writer.flush();
+    return new JsonParser().parse(stringWriter.toString()).getAsJsonObject();
+  }
+}
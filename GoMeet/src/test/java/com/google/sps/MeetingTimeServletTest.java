@@ -1,6 +1,7 @@
 package test.java.com.google.sps;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.*;
@@ -16,10 +17,16 @@ import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.PreparedQuery.TooManyResultsException;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.data.DatastoreRpcs;
 import com.google.sps.data.ErrorMessages;
 import com.google.sps.servlets.MeetingTimeServlet;
+import com.google.sps.servlets.VoteMeetingTimeServlet;
 import com.google.sps.data.MeetingTimeFields;
 import com.google.sps.data.ServletUtil;
+import com.google.sps.data.Voters;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -37,6 +44,7 @@ import org.junit.Before;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.junit.runners.JUnit4;
 import org.junit.Test;
 
@@ -179,11 +187,234 @@ public final class MeetingTimeServletTest {
         ErrorMessages.ENTITY_NOT_FOUND_ERROR, mockedResponse, stringWriter, writer);
   }
 
+  // Voters are returned a page at a time, with a cursor for the next page
+  @Test
+  public void testDoGetPagesVoters() throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity fakeMeetingTime = new Entity("MeetingTime");
+    fakeMeetingTime.setProperty(MeetingTimeFields.DATETIME, DATETIME_VAL);
+    fakeMeetingTime.setProperty(MeetingTimeFields.VOTE_COUNT, VOTE_COUNT_VAL);
+    fakeMeetingTime.setProperty(MeetingTimeFields.VOTERS, VOTERS_VAL);
+    datastore.put(fakeMeetingTime);
+    List<String> newVoters = Arrays.asList("Alice", "Mark Person", "Zed");
+    for (String voter : newVoters) {
+      datastore.put(Voters.newVoter(fakeMeetingTime.getKey(), voter));
+    }
+    String fakeMeetingTimeKey = KeyFactory.keyToString(fakeMeetingTime.getKey());
+
+    // The first page has the voters stored on the entity, and a page of Voter entities
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_ID))
+        .thenReturn(fakeMeetingTimeKey); 
+    when(mockedRequest.getParameter(MeetingTimeFields.VOTERS_LIMIT)).thenReturn("2"); 
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    JsonObject firstPage = readResponse();
+    List<String> voters = getVoters(firstPage);
+    assertEquals(4, voters.size());
+    assertTrue(voters.containsAll(VOTERS_VAL));
+    assertTrue(firstPage.has(MeetingTimeFields.VOTERS_CURSOR));
+
+    // The second page has the remaining Voter entity, and no cursor
+    when(mockedRequest.getParameter(MeetingTimeFields.VOTERS_CURSOR))
+        .thenReturn(firstPage.get(MeetingTimeFields.VOTERS_CURSOR).getAsString());
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    JsonObject secondPage = readResponse();
+    voters.addAll(getVoters(secondPage));
+    assertEquals(5, voters.size());
+    assertTrue(voters.containsAll(newVoters));
+    assertFalse(secondPage.has(MeetingTimeFields.VOTERS_CURSOR));
+  }
+
+  // Whether a voter has voted is reported if the voter is given
+  @Test
+  public void testDoGetHasVoted() throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity fakeMeetingTime = new Entity("MeetingTime");
+    fakeMeetingTime.setProperty(MeetingTimeFields.DATETIME, DATETIME_VAL);
+    datastore.put(fakeMeetingTime);
+    datastore.put(Voters.newVoter(fakeMeetingTime.getKey(), "Mark Person"));
+
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_ID))
+        .thenReturn(KeyFactory.keyToString(fakeMeetingTime.getKey())); 
+    when(mockedRequest.getParameter(MeetingTimeFields.VOTER)).thenReturn("Mark Person"); 
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    assertTrue(readResponse().get(MeetingTimeFields.HAS_VOTED).getAsBoolean());
+
+    when(mockedRequest.getParameter(MeetingTimeFields.VOTER)).thenReturn("John Smith"); 
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    assertFalse(readResponse().get(MeetingTimeFields.HAS_VOTED).getAsBoolean());
+  }
+
+  @Test
+  public void testDoGetInvalidCursor() throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity fakeMeetingTime = new Entity("MeetingTime");
+    datastore.put(fakeMeetingTime);
+
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_ID))
+        .thenReturn(KeyFactory.keyToString(fakeMeetingTime.getKey())); 
+    when(mockedRequest.getParameter(MeetingTimeFields.VOTERS_CURSOR)).thenReturn("not a cursor"); 
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST, 
+        ErrorMessages.INVALID_CURSOR_ERROR, mockedResponse, stringWriter, writer);
+  }
+
+  // Several meeting times are fetched at once, with errors reported per ID
+  @Test
+  public void testBatchDoGet() throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity firstTime = new Entity("MeetingTime");
+    firstTime.setProperty(MeetingTimeFields.DATETIME, DATETIME_VAL);
+    firstTime.setProperty(MeetingTimeFields.VOTE_COUNT, VOTE_COUNT_VAL);
+    firstTime.setProperty(MeetingTimeFields.VOTERS, VOTERS_VAL);
+    Entity secondTime = new Entity("MeetingTime");
+    secondTime.setProperty(MeetingTimeFields.DATETIME, "2021-01-21T10:00:00");
+    secondTime.setProperty(MeetingTimeFields.VOTE_COUNT, 0);
+    Entity deletedTime = new Entity("MeetingTime");
+    datastore.put(Arrays.asList(firstTime, secondTime, deletedTime));
+    datastore.put(Voters.newVoter(secondTime.getKey(), "John Smith"));
+    datastore.delete(deletedTime.getKey());
+    String firstId = KeyFactory.keyToString(firstTime.getKey());
+    String secondId = KeyFactory.keyToString(secondTime.getKey());
+    String deletedId = KeyFactory.keyToString(deletedTime.getKey());
+
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_IDS))
+        .thenReturn(String.join(",", firstId, secondId, deletedId, MEETING_TIME_ID_VAL)); 
+    when(mockedRequest.getParameter(MeetingTimeFields.VOTER)).thenReturn("John Smith"); 
+    DatastoreRpcs rpcs = DatastoreRpcs.start();
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    rpcs.stop();
+    JsonObject results = readResponse();
+
+    // The times, their vote counts and the voter's votes are each read in one batch, and
+    // a first page of voters is queried per time found
+    rpcs.expectAtMost(DatastoreRpcs.Operation.QUERY, 2);
+    rpcs.expectAtMost(DatastoreRpcs.Operation.GET, 4);
+    assertEquals(4, results.size());
+    JsonObject first = results.getAsJsonObject(firstId);
+    assertEquals(DATETIME_VAL, first.get(MeetingTimeFields.DATETIME).getAsString());
+    assertEquals(VOTE_COUNT_VAL, first.get(MeetingTimeFields.VOTE_COUNT).getAsInt());
+    assertEquals(VOTERS_VAL.size(), first.getAsJsonArray(MeetingTimeFields.VOTERS).size());
+    assertTrue(first.get(MeetingTimeFields.HAS_VOTED).getAsBoolean());
+    JsonObject second = results.getAsJsonObject(secondId);
+    assertEquals("John Smith", 
+        second.getAsJsonArray(MeetingTimeFields.VOTERS).get(0).getAsString());
+    assertFalse(second.has(MeetingTimeFields.VOTERS_CURSOR));
+    assertTrue(second.get(MeetingTimeFields.HAS_VOTED).getAsBoolean());
+    assertEquals(HttpServletResponse.SC_NOT_FOUND, 
+        results.getAsJsonObject(deletedId).get("status").getAsInt());
+    assertEquals(HttpServletResponse.SC_BAD_REQUEST, 
+        results.getAsJsonObject(MEETING_TIME_ID_VAL).get("status").getAsInt());
+  }
+
+  // Only a first page of voters is returned with each time fetched at once
+  @Test
+  public void testBatchDoGetVotersPage() throws IOException {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity meetingTime = new Entity("MeetingTime");
+    meetingTime.setProperty(MeetingTimeFields.DATETIME, DATETIME_VAL);
+    datastore.put(meetingTime);
+    for (int i = 0; i < 11; i++) {
+      datastore.put(Voters.newVoter(meetingTime.getKey(), "Voter " + i));
+    }
+    String id = KeyFactory.keyToString(meetingTime.getKey());
+
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_IDS)).thenReturn(id); 
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    JsonObject result = readResponse().getAsJsonObject(id);
+
+    assertEquals(10, result.getAsJsonArray(MeetingTimeFields.VOTERS).size());
+    assertTrue(result.has(MeetingTimeFields.VOTERS_CURSOR));
+  }
+
+  @Test
+  public void testBatchDoGetNoIds() throws IOException {
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_IDS)).thenReturn(","); 
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST, 
+        ErrorMessages.BAD_REQUEST_ERROR, mockedResponse, stringWriter, writer);
+  }
+
   @After
   public void tearDown() {
     helper.tearDown();
   }
 
+  /** Parses the response written so far, and clears it for the next request. */
+  // A MeetingTime is answered with 304 until it is voted for
+  @Test
+  public void testDoGetNotModifiedUntilVote() throws IOException {
+    when(mockedRequest.getParameter(MeetingTimeFields.DATETIME)).thenReturn(DATETIME_VAL); 
+    new MeetingTimeServlet().doPost(mockedRequest, mockedResponse);
+    String meetingTimeId = readResponse().get(MeetingTimeFields.MEETING_TIME_ID).getAsString();
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_ID)).thenReturn(meetingTimeId); 
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    readResponse();
+    ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+    verify(mockedResponse).setHeader(eq("ETag"), eTag.capture());
+
+    when(mockedRequest.getHeader("If-None-Match")).thenReturn(eTag.getValue());
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    writer.flush();
+    assertEquals("", stringWriter.toString());
+    verify(mockedResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+    // A vote does not write the MeetingTime, but is counted
+    Key key = KeyFactory.stringToKey(meetingTimeId);
+    DatastoreServiceFactory.getDatastoreService().put(Voters.newVoter(key, "John Smith"));
+    VoteMeetingTimeServlet.VOTE_COUNTER.increment(meetingTimeId, "John Smith");
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    JsonObject meetingTime = readResponse();
+
+    verify(mockedResponse, times(1)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertEquals(1, meetingTime.get(MeetingTimeFields.VOTE_COUNT).getAsInt());
+    assertEquals(Arrays.asList("John Smith"), getVoters(meetingTime));
+  }
+
+  // A voter's next read after voting is answered in full, not from the tally cached before
+  @Test
+  public void testDoGetModifiedAfterVotePost() throws IOException {
+    when(mockedRequest.getParameter(MeetingTimeFields.DATETIME)).thenReturn(DATETIME_VAL); 
+    new MeetingTimeServlet().doPost(mockedRequest, mockedResponse);
+    String meetingTimeId = readResponse().get(MeetingTimeFields.MEETING_TIME_ID).getAsString();
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_ID)).thenReturn(meetingTimeId); 
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    readResponse();
+    ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+    verify(mockedResponse).setHeader(eq("ETag"), eTag.capture());
+
+    HttpServletRequest voteRequest = mock(HttpServletRequest.class);
+    HttpServletResponse voteResponse = mock(HttpServletResponse.class);
+    when(voteResponse.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+    when(voteRequest.getParameter(MeetingTimeFields.MEETING_TIME_ID)).thenReturn(meetingTimeId);
+    when(voteRequest.getParameter(MeetingTimeFields.VOTERS)).thenReturn("John Smith");
+    new VoteMeetingTimeServlet().doPost(voteRequest, voteResponse);
+
+    when(mockedRequest.getHeader("If-None-Match")).thenReturn(eTag.getValue());
+    new MeetingTimeServlet().doGet(mockedRequest, mockedResponse);
+    JsonObject meetingTime = readResponse();
+
+    verify(mockedResponse, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertEquals(1, meetingTime.get(MeetingTimeFields.VOTE_COUNT).getAsInt());
+    assertEquals(Arrays.asList("John Smith"), getVoters(meetingTime));
+  }
+
+  private JsonObject readResponse() {
+    writer.flush();
+    JsonObject json = new JsonParser().parse(stringWriter.toString()).getAsJsonObject();
+    stringWriter.getBuffer().setLength(0);
+    return json;
+  }
+
+  private List<String> getVoters(JsonObject meetingTime) {
+    List<String> voters = new ArrayList<>();
+    for (JsonElement voter : meetingTime.getAsJsonArray(MeetingTimeFields.VOTERS)) {
+      voters.add(voter.getAsString());
+    }
+    return voters;
+  }
+
   private List<Entity> getAllEntities() {
     // Check that everything has been stored as expected
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
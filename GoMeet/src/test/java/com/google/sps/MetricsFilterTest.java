@@ -0,0 +1,234 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.data.DatastoreRpcs;
+import com.google.sps.data.FreeBusyCache;
+import com.google.sps.data.LocalEntityCache;
+import com.google.sps.data.RequestMetrics;
+import com.google.sps.servlets.MetricsFilter;
+import com.google.sps.servlets.MetricsServlet;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for MetricsFilter.java and MetricsServlet.java */
+@RunWith(JUnit4.class)
+public class MetricsFilterTest {
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+  private RequestMetrics metrics;
+  private MetricsFilter filter;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private FilterChain chain;
+
+  @Before
+  public void setUp() throws Exception {
+    helper.setUp();
+    ServletRegistration locationServlet = mock(ServletRegistration.class);
+    when(locationServlet.getMappings()).thenReturn(Arrays.asList("/location-data"));
+    ServletRegistration defaultServlet = mock(ServletRegistration.class);
+    when(defaultServlet.getMappings()).thenReturn(Arrays.asList("/", "*.jsp"));
+    Map<String, ServletRegistration> servlets = new HashMap<>();
+    servlets.put("location", locationServlet);
+    servlets.put("default", defaultServlet);
+    ServletContext context = mock(ServletContext.class);
+    doReturn(servlets).when(context).getServletRegistrations();
+    FilterConfig config = mock(FilterConfig.class);
+    when(config.getServletContext()).thenReturn(context);
+
+    metrics = new RequestMetrics();
+    filter = new MetricsFilter(metrics);
+    filter.init(config);
+    request = mock(HttpServletRequest.class);
+    response = mock(HttpServletResponse.class);
+    chain = mock(FilterChain.class);
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  /** Tests that a request to a servlet is counted by its status code and timed. */
+  @Test
+  public void recordsServletRequests() throws Exception {
+    when(request.getServletPath()).thenReturn("/location-data");
+    when(response.getStatus()).thenReturn(200, 400);
+
+    filter.doFilter(request, response, chain);
+    filter.doFilter(request, response, chain);
+
+    verify(chain, times(2)).doFilter(request, response);
+    assertEquals(1, metrics.getCount("/location-data", 200));
+    assertEquals(1, metrics.getCount("/location-data", 400));
+    assertEquals(2, metrics.getLatency("/location-data").getCount());
+  }
+
+  /** Tests that requests for static files are not recorded. */
+  @Test
+  public void ignoresStaticFiles() throws Exception {
+    when(request.getServletPath()).thenReturn("/js/interactive-map.js");
+
+    filter.doFilter(request, response, chain);
+
+    verify(chain).doFilter(request, response);
+    assertNull(metrics.getLatency("/js/interactive-map.js"));
+  }
+
+  /** Tests that a servlet throwing an exception is counted as a server error. */
+  @Test
+  public void recordsExceptionsAsServerErrors() throws Exception {
+    when(request.getServletPath()).thenReturn("/location-data");
+    doThrow(new ServletException("Failed")).when(chain).doFilter(request, response);
+
+    try {
+      filter.doFilter(request, response, chain);
+      fail();
+    } catch (ServletException e) {
+      assertEquals(1, metrics.getCount("/location-data", 500));
+    }
+  }
+
+  /** Tests that the Datastore RPCs issued by a request are recorded for its route. */
+  @Test
+  public void recordsDatastoreRpcs() throws Exception {
+    when(request.getServletPath()).thenReturn("/location-data");
+    doAnswer(invocation -> {
+      DatastoreRpcs.current().record(DatastoreRpcs.Operation.QUERY, 2, 100, 1000);
+      for (int i = 0; i <= MetricsFilter.DEFAULT_MAX_SINGLE_GETS; i++) {
+        DatastoreRpcs.current().recordSingleGet(50, 1000);
+      }
+      return null;
+    }).when(chain).doFilter(request, response);
+
+    filter.doFilter(request, response, chain);
+
+    assertEquals(1, metrics.getDatastoreRpcCount("/location-data",
+        DatastoreRpcs.Operation.QUERY));
+    assertEquals(MetricsFilter.DEFAULT_MAX_SINGLE_GETS + 1,
+        metrics.getDatastoreRpcCount("/location-data", DatastoreRpcs.Operation.GET));
+    assertNull(DatastoreRpcs.current());
+  }
+
+  /** Tests that the metrics are published in the Prometheus text format. */
+  @Test
+  public void publishesPrometheusMetrics() throws Exception {
+    MetricsServlet.REQUEST_METRICS.clear();
+    MetricsServlet.REQUEST_METRICS.record("/location-data", 200, 300_000);
+    MetricsServlet.REQUEST_METRICS.record("/location-data", 200, 3_000_000);
+    MetricsServlet.REQUEST_METRICS.record("/location-data", 404, 100_000);
+    DatastoreRpcs rpcs = new DatastoreRpcs();
+    rpcs.record(DatastoreRpcs.Operation.QUERY, 3, 1024, 2_000_000);
+    MetricsServlet.REQUEST_METRICS.recordDatastore("/location-data", rpcs);
+    StringWriter stringWriter = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(stringWriter));
+
+    new MetricsServlet().doGet(request, response);
+
+    verify(response).setContentType(MetricsServlet.PROMETHEUS_CONTENT_TYPE);
+    String output = stringWriter.toString();
+    assertTrue(output.contains("# TYPE gomeet_http_requests_total counter\n"));
+    assertTrue(output.contains(
+        "gomeet_http_requests_total{route=\"/location-data\",status=\"200\"} 2\n"));
+    assertTrue(output.contains(
+        "gomeet_http_requests_total{route=\"/location-data\",status=\"404\"} 1\n"));
+    assertTrue(output.contains("# TYPE gomeet_http_request_duration_seconds histogram\n"));
+    assertTrue(output.contains(
+        "gomeet_http_request_duration_seconds_bucket{route=\"/location-data\",le=\"0.000127\"} 1\n"));
+    assertTrue(output.contains(
+        "gomeet_http_request_duration_seconds_bucket{route=\"/location-data\",le=\"0.000511\"} 2\n"));
+    assertTrue(output.contains(
+        "gomeet_http_request_duration_seconds_bucket{route=\"/location-data\",le=\"+Inf\"} 3\n"));
+    assertTrue(output.contains(
+        "gomeet_http_request_duration_seconds_sum{route=\"/location-data\"} 0.0034\n"));
+    assertTrue(output.contains(
+        "gomeet_http_request_duration_seconds_count{route=\"/location-data\"} 3\n"));
+    assertTrue(output.contains(
+        "gomeet_datastore_rpcs_total{route=\"/location-data\",operation=\"query\"} 1\n"));
+    assertTrue(output.contains(
+        "gomeet_datastore_entities_total{route=\"/location-data\",operation=\"query\"} 3\n"));
+    assertTrue(output.contains(
+        "gomeet_datastore_bytes_total{route=\"/location-data\",operation=\"query\"} 1024\n"));
+    assertTrue(output.contains(
+        "gomeet_datastore_rpc_seconds_total{route=\"/location-data\",operation=\"query\"} 0.002\n"));
+    assertFalse(output.contains("operation=\"get\""));
+    // The caches in front of Datastore are published with the requests.
+    assertTrue(output.contains("gomeet_cache_entries{cache=\"meeting_event\"} "));
+    assertTrue(output.contains("gomeet_cache_entries{cache=\"location_tile\"} "));
+    assertTrue(output.contains("gomeet_cache_entries{cache=\"freebusy\"} "));
+    MetricsServlet.REQUEST_METRICS.clear();
+  }
+
+  /** Tests that the statistics of the caches registered are published. */
+  @Test
+  public void publishesCacheMetrics() throws Exception {
+    LocalEntityCache cache = new LocalEntityCache(2, 1000, 0, () -> 0, key -> new Entity(key));
+    metrics.registerCache("meeting_event", cache);
+    for (long id : new long[] {1, 2, 3, 3}) {
+      cache.get(KeyFactory.createKey("MeetingEvent", id));
+    }
+    StringWriter stringWriter = new StringWriter();
+
+    metrics.writePrometheus(new PrintWriter(stringWriter));
+
+    String output = stringWriter.toString();
+    assertTrue(output.contains("# TYPE gomeet_cache_reads_total counter\n"));
+    assertTrue(output.contains(
+        "gomeet_cache_reads_total{cache=\"meeting_event\",result=\"hit\"} 1\n"));
+    assertTrue(output.contains(
+        "gomeet_cache_reads_total{cache=\"meeting_event\",result=\"miss\"} 3\n"));
+    assertFalse(output.contains("result=\"partial\""));
+    assertTrue(output.contains("# TYPE gomeet_cache_hit_ratio gauge\n"));
+    assertTrue(output.contains("gomeet_cache_hit_ratio{cache=\"meeting_event\"} 0.25\n"));
+    assertTrue(output.contains("gomeet_cache_entries{cache=\"meeting_event\"} 2\n"));
+    assertTrue(output.contains("gomeet_cache_evictions_total{cache=\"meeting_event\"} 1\n"));
+    assertTrue(output.contains("gomeet_cache_loads_total{cache=\"meeting_event\"} 3\n"));
+    assertTrue(output.contains("gomeet_cache_load_seconds_total{cache=\"meeting_event\"} "));
+  }
+
+  /** Tests that the partial hits of the Freebusy cache are published, without loads. */
+  @Test
+  public void publishesFreeBusyCacheMetrics() throws Exception {
+    FreeBusyCache cache = new FreeBusyCache(10, 1000, () -> 0);
+    metrics.registerCache("freebusy", cache);
+    cache.put("person@test.com", 0, 100, new long[0]);
+    cache.lookup("person@test.com", 0, 100);
+    cache.lookup("person@test.com", 50, 150);
+    cache.lookup("other@test.com", 0, 100);
+    StringWriter stringWriter = new StringWriter();
+
+    metrics.writePrometheus(new PrintWriter(stringWriter));
+
+    String output = stringWriter.toString();
+    assertTrue(output.contains("gomeet_cache_reads_total{cache=\"freebusy\",result=\"hit\"} 1\n"));
+    assertTrue(output.contains(
+        "gomeet_cache_reads_total{cache=\"freebusy\",result=\"partial\"} 1\n"));
+    assertTrue(output.contains(
+        "gomeet_cache_reads_total{cache=\"freebusy\",result=\"miss\"} 1\n"));
+    assertTrue(output.contains("gomeet_cache_entries{cache=\"freebusy\"} 1\n"));
+    assertFalse(output.contains("gomeet_cache_loads_total{cache=\"freebusy\"}"));
+  }
+}
@@ -5,6 +5,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import main.java.com.google.sps.servlets.PopularLocationServlet;
@@ -46,15 +49,27 @@ public class PopularLocationServletTest {
   private PrintWriter writer = new PrintWriter(stringWriter);
   private Gson gson = new Gson();
   private PopularLocationServlet servlet;
+  private String meetingId;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
 
   @Before
   public void setUp() throws IOException {
+    helper.setUp();
     request = mock(HttpServletRequest.class);       
     response = mock(HttpServletResponse.class);  
     mockedLocationDao = mock(LocationDao.class);
     when(response.getWriter()).thenReturn(writer);
     servlet = new PopularLocationServlet();
     servlet.setDao(mockedLocationDao);
+    meetingId = KeyFactory.keyToString(KeyFactory.createKey("MeetingEvent", 1));
+    when(request.getParameter("meetingEventId")).thenReturn(meetingId);
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
   }
 
   /** 
@@ -64,8 +79,8 @@ public class PopularLocationServletTest {
   @Test 
   public void doGetTestSingle() throws IOException {
     // Set up DAO mock
-    List<Location> listToReturn = new ArrayList<>(Arrays.asList(LOCATION_A, LOCATION_B));
-    when(mockedLocationDao.getAll()).thenReturn(listToReturn);
+    List<Location> listToReturn = new ArrayList<>(Arrays.asList(LOCATION_B));
+    when(mockedLocationDao.getPopular(meetingId)).thenReturn(listToReturn);
 
     PopularLocationServlet servlet = new PopularLocationServlet();
     servlet.setDao(mockedLocationDao);
@@ -88,9 +103,8 @@ public class PopularLocationServletTest {
   @Test
   public void doGetTestMultiple() throws IOException {
     // Set up DAO mock
-    List<Location> listToReturn =
-        new ArrayList<>(Arrays.asList(LOCATION_A, LOCATION_B, LOCATION_C));
-    when(mockedLocationDao.getAll()).thenReturn(listToReturn);
+    List<Location> listToReturn = new ArrayList<>(Arrays.asList(LOCATION_B, LOCATION_C));
+    when(mockedLocationDao.getPopular(meetingId)).thenReturn(listToReturn);
 
     PopularLocationServlet servlet = new PopularLocationServlet();
     servlet.setDao(mockedLocationDao);
@@ -111,7 +125,7 @@ public class PopularLocationServletTest {
   @Test
   public void doGetEmptyDatabase() throws IOException {
     List<Location> emptyList = new ArrayList<>();
-    when(mockedLocationDao.getAll()).thenReturn(emptyList);
+    when(mockedLocationDao.getPopular(meetingId)).thenReturn(emptyList);
 
     servlet.doGet(request, response); 
 
@@ -131,7 +145,7 @@ public class PopularLocationServletTest {
   public void doGetSameVoteCount() throws IOException {
     // Set up DAO mock
     List<Location> listToReturn = new ArrayList<>(Arrays.asList(LOCATION_B, LOCATION_C));
-    when(mockedLocationDao.getAll()).thenReturn(listToReturn);
+    when(mockedLocationDao.getPopular(meetingId)).thenReturn(listToReturn);
 
     servlet.doGet(request, response); 
 
@@ -0,0 +1,165 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.sps.data.QuorumSweep;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for QuorumSweep class */
+@RunWith(JUnit4.class)
+public class QuorumSweepTest {
+  private final List<String> GUESTS = Arrays.asList("a@test.com", "b@test.com", "c@test.com");
+
+  // With a quorum of every guest, the slots are the gaps in the union of busy intervals.
+  @Test
+  public void everyGuestFree() {
+    QuorumSweep sweep = new QuorumSweep(GUESTS, Collections.emptyList());
+    sweep.add(0, 10, 20);
+    sweep.add(1, 15, 30);
+    sweep.add(2, 50, 60);
+
+    List<QuorumSweep.Slot> slots = sweep.slots(0, 100, 3, 1);
+
+    assertEquals("[Slot{0-10, busy=[]}, Slot{30-50, busy=[]}, Slot{60-100, busy=[]}]",
+        slots.toString());
+  }
+
+  // Slots are maximal, and report every guest busy at some point during them.
+  @Test
+  public void quorumOfGuestsFree() {
+    QuorumSweep sweep = new QuorumSweep(GUESTS, Collections.emptyList());
+    sweep.add(0, 10, 20);
+    sweep.add(1, 15, 30);
+    sweep.add(2, 50, 60);
+
+    List<QuorumSweep.Slot> slots = sweep.slots(0, 100, 2, 1);
+
+    assertEquals("[Slot{0-15, busy=[a@test.com]}, Slot{20-100, busy=[b@test.com, c@test.com]}]",
+        slots.toString());
+    assertEquals(80, slots.get(1).getDurationMs());
+  }
+
+  // Overlapping intervals of one guest count that guest once.
+  @Test
+  public void overlappingIntervalsOfOneGuest() {
+    QuorumSweep sweep = new QuorumSweep(GUESTS, Collections.emptyList());
+    sweep.add(0, 10, 30);
+    sweep.add(0, 20, 40);
+    sweep.add(0, 40, 50); // Touches the previous one.
+
+    assertEquals("[Slot{0-100, busy=[a@test.com]}]", sweep.slots(0, 100, 2, 1).toString());
+  }
+
+  // Optional guests are reported when busy, but do not count towards the quorum.
+  @Test
+  public void optionalGuests() {
+    QuorumSweep sweep = new QuorumSweep(GUESTS, Arrays.asList("c@test.com"));
+    sweep.add(0, 10, 20);
+    sweep.add(2, 0, 100);
+
+    assertEquals(2, sweep.getRequiredCount());
+    assertEquals("[Slot{0-10, busy=[c@test.com]}, Slot{20-100, busy=[c@test.com]}]",
+        sweep.slots(0, 100, 2, 1).toString());
+  }
+
+  // A guest becoming free as another becomes busy does not split the slot, and guests
+  // busy only from the end of a slot are not reported in it.
+  @Test
+  public void edgesAtTheSameInstant() {
+    QuorumSweep sweep = new QuorumSweep(GUESTS, Collections.emptyList());
+    sweep.add(0, 10, 20);
+    sweep.add(1, 20, 30);
+    sweep.add(2, 30, 40);
+    sweep.add(0, 40, 50);
+    sweep.add(1, 40, 50);
+
+    assertEquals("[Slot{0-40, busy=[a@test.com, b@test.com, c@test.com]}, Slot{50-100, busy=[]}]",
+        sweep.slots(0, 100, 2, 1).toString());
+  }
+
+  // Intervals are clamped to the window, and short slots are left out.
+  @Test
+  public void windowAndMinimumDuration() {
+    QuorumSweep sweep = new QuorumSweep(GUESTS, Collections.emptyList());
+    sweep.add(0, -50, 10);
+    sweep.add(1, -50, 10);
+    sweep.add(0, 15, 20);
+    sweep.add(1, 15, 20);
+    sweep.add(0, 90, 150);
+    sweep.add(1, 95, 150);
+
+    assertEquals("[Slot{20-95, busy=[a@test.com]}]", sweep.slots(0, 100, 2, 10).toString());
+    assertEquals(Collections.emptyList(), sweep.slots(0, 100, 4, 1));
+  }
+
+  // The sweep agrees with counting the busy guests at every unit of time on random inputs.
+  @Test
+  public void matchesBruteForce() {
+    Random random = new Random(42);
+    int windowLength = 500;
+    for (int round = 0; round < 200; round++) {
+      int guestCount = 1 + random.nextInt(6);
+      List<String> guests = new ArrayList<String>();
+      for (int g = 0; g < guestCount; g++) {
+        guests.add("guest" + g);
+      }
+      QuorumSweep sweep = new QuorumSweep(guests, Collections.emptyList());
+      int[] busyCount = new int[windowLength];
+      boolean[][] busy = new boolean[guestCount][windowLength];
+      for (int g = 0; g < guestCount; g++) {
+        int count = random.nextInt(6);
+        for (int k = 0; k < count; k++) {
+          int start = random.nextInt(windowLength + 40) - 20;
+          int end = start + random.nextInt(80);
+          sweep.add(g, start, end);
+          for (int t = Math.max(start, 0); t < Math.min(end, windowLength); t++) {
+            busy[g][t] = true;
+          }
+        }
+      }
+      for (int g = 0; g < guestCount; g++) {
+        for (int t = 0; t < windowLength; t++) {
+          busyCount[t] += busy[g][t] ? 1 : 0;
+        }
+      }
+      int quorum = 1 + random.nextInt(guestCount);
+
+      assertEquals(bruteForceSlots(guests, busy, busyCount, quorum).toString(),
+          sweep.slots(0, windowLength, quorum, 1).toString());
+    }
+  }
+
+  private static List<QuorumSweep.Slot> bruteForceSlots(List<String> guests, boolean[][] busy,
+      int[] busyCount, int quorum) {
+    List<QuorumSweep.Slot> slots = new ArrayList<QuorumSweep.Slot>();
+    int t = 0;
+    while (t < busyCount.length) {
+      if (guests.size() - busyCount[t] < quorum) {
+        t++;
+        continue;
+      }
+      int start = t;
+      while (t < busyCount.length && guests.size() - busyCount[t] >= quorum) {
+        t++;
+      }
+      List<String> busyGuests = new ArrayList<String>();
+      for (int g = 0; g < guests.size(); g++) {
+        for (int u = start; u < t; u++) {
+          if (busy[g][u]) {
+            busyGuests.add(guests.get(g));
+            break;
+          }
+        }
+      }
+      slots.add(new QuorumSweep.Slot(start, t, busyGuests));
+    }
+    return slots;
+  }
+}
@@ -0,0 +1,112 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.google.sps.data.MeetingEvent;
+import com.google.sps.data.ServletUtil;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
+import main.java.com.google.sps.data.Location;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for the JSON writing of the ServletUtil class */
+@RunWith(JUnit4.class)
+public class ServletUtilTest {
+  private HttpServletResponse mockedResponse;
+  private StringWriter stringWriter;
+  private PrintWriter writer;
+
+  @Before
+  public void setUp() throws IOException {
+    mockedResponse = mock(HttpServletResponse.class);
+    stringWriter = new StringWriter();
+    writer = new PrintWriter(stringWriter);
+    when(mockedResponse.getWriter()).thenReturn(writer);
+  }
+
+  // Objects are written as Gson would write them.
+  @Test
+  public void writesObjectsAsGson() throws IOException {
+    List<Location> locations = Arrays.asList(
+        new Location("Sydney", -33.87, 151.21, "Harbour", 2),
+        new Location("Perth", -31.95, 115.86, "<b>West</b>", 1));
+    MeetingEvent meetingEvent = new MeetingEvent("Meeting", 30, 1, "manual", 
+        Arrays.asList("a@gmail.com"), Arrays.asList("time"), Arrays.asList("location"));
+
+    for (Object value : Arrays.asList(locations, meetingEvent, "key", Arrays.asList("a", "b"))) {
+      stringWriter.getBuffer().setLength(0);
+      ServletUtil.writeJson(mockedResponse, value);
+
+      writer.flush();
+      assertEquals(new JsonParser().parse(new Gson().toJson(value)), 
+          new JsonParser().parse(stringWriter.toString()));
+    }
+    verify(mockedResponse, atLeastOnce()).setContentType("application/json");
+  }
+
+  // Maps are written with their null values.
+  @Test
+  public void writesMapsWithNulls() throws IOException {
+    HashMap<String, Object> map = new HashMap<String, Object>() {{
+      put("count", 3);
+      put("voters", Arrays.asList("John Smith"));
+      put("cursor", null);
+    }};
+
+    ServletUtil.writeJson(mockedResponse, map);
+
+    writer.flush();
+    assertEquals(ServletUtil.convertMapToJson(map), stringWriter.toString().trim());
+    assertEquals(new JsonParser().parse("{\"count\":3,\"voters\":[\"John Smith\"],\"cursor\":null}"),
+        new JsonParser().parse(stringWriter.toString()));
+  }
+
+  // Small responses are sent with their content length.
+  @Test
+  public void writeSmallJsonSetsContentLength() throws IOException {
+    HashMap<String, Object> status = new HashMap<String, Object>() {{
+      put("message", "café");
+    }};
+
+    ServletUtil.writeSmallJson(mockedResponse, status);
+
+    writer.flush();
+    String json = stringWriter.toString();
+    assertEquals(new JsonParser().parse("{\"message\":\"café\"}"), new JsonParser().parse(json));
+    verify(mockedResponse).setContentLength(json.getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  // Maps that were written are read back, nested maps included.
+  @Test
+  public void readsMapsWritten() throws IOException {
+    HashMap<String, Object> map = new HashMap<String, Object>() {{
+      put("message", "café");
+      put("status", new HashMap<String, Object>() {{
+        put("code", "OK");
+      }});
+      put("cursor", null);
+    }};
+    String json = ServletUtil.convertMapToJson(map);
+
+    Map<String, Object> read = ServletUtil.MAP_ADAPTER.fromJson(json);
+
+    assertEquals("café", read.get("message"));
+    assertEquals("OK", ((Map<?, ?>) read.get("status")).get("code"));
+    assertEquals(null, read.get("cursor"));
+    assertEquals(new JsonParser().parse(ServletUtil.convertMapToJson(map)),
+        new JsonParser().parse(ServletUtil.convertMapToJson(new HashMap<>(read))));
+  }
+}
@@ -0,0 +1,168 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.data.DatastoreRpcs;
+import java.util.Arrays;
+import java.util.Map;
+import main.java.com.google.sps.dao.ShardedCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for the ShardedCounter class */
+@RunWith(JUnit4.class)
+public class ShardedCounterTest {
+  private final String COUNTER_A = "counterA";
+  private final String COUNTER_B = "counterB";
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(
+          new LocalDatastoreServiceTestConfig(), new LocalMemcacheServiceTestConfig());
+  private DatastoreService ds;
+  private ShardedCounter counter;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    ds = DatastoreServiceFactory.getDatastoreService();
+    counter = new ShardedCounter();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  // A counter that was never incremented is zero.
+  @Test
+  public void newCounterIsZero() {
+    assertEquals(0, counter.getCount(COUNTER_A));
+  }
+
+  // The increments are summed over the shards.
+  @Test
+  public void sumsIncrements() {
+    for (int i = 0; i < 10; i++) {
+      counter.increment(COUNTER_A, null);
+    }
+    counter.increment(COUNTER_B, "voter");
+
+    assertEquals(10, counter.getCount(COUNTER_A));
+    assertEquals(1, counter.getCount(COUNTER_B));
+  }
+
+  // The same hint always goes to the same shard.
+  @Test
+  public void hintPicksShard() {
+    for (int i = 0; i < 5; i++) {
+      counter.increment(COUNTER_A, "voter");
+    }
+
+    assertEquals(1, countShards());
+    assertEquals(5, counter.getCount(COUNTER_A));
+  }
+
+  // Several counters are read together.
+  @Test
+  public void getCounts() {
+    counter.increment(COUNTER_A, null);
+    counter.increment(COUNTER_A, null);
+    counter.increment(COUNTER_B, null);
+
+    Map<String, Long> counts = counter.getCounts(Arrays.asList(COUNTER_A, COUNTER_B, "other"));
+
+    assertEquals(2L, (long) counts.get(COUNTER_A));
+    assertEquals(1L, (long) counts.get(COUNTER_B));
+    assertEquals(0L, (long) counts.get("other"));
+  }
+
+  // An increment drops the cached total, so the next read sums the shards again.
+  @Test
+  public void incrementDropsCachedTotal() {
+    counter.increment(COUNTER_A, null);
+    assertEquals(1, counter.getCount(COUNTER_A));
+
+    counter.increment(COUNTER_A, null);
+    assertEquals(2, counter.getCount(COUNTER_A));
+
+    MemcacheServiceFactory.getMemcacheService().clearAll();
+    assertEquals(2, counter.getCount(COUNTER_A));
+  }
+
+  // A read between an increment and its commit does not cache the old total.
+  @Test
+  public void readBeforeCommitNotCached() {
+    assertEquals(0, counter.getCount(COUNTER_A));
+    Transaction txn = ds.beginTransaction(TransactionOptions.Builder.withXG(true));
+    counter.increment(txn, COUNTER_A, null);
+
+    assertEquals(0, counter.getCount(COUNTER_A));
+    txn.commit();
+    counter.invalidate(COUNTER_A);
+
+    // A read that summed the shards before the commit, and caches after it, is rejected.
+    MemcacheServiceFactory.getMemcacheService().put("counter:" + COUNTER_A, 0L, null,
+        MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+    assertEquals(1, counter.getCount(COUNTER_A));
+  }
+
+  // Adding shards keeps the existing count, and stops at the maximum.
+  @Test
+  public void addShards() throws EntityNotFoundException {
+    for (int i = 0; i < 4; i++) {
+      counter.increment(COUNTER_A, "voter" + i);
+    }
+
+    for (int i = 0; i < 10; i++) {
+      counter.addShards(COUNTER_A);
+    }
+    for (int i = 0; i < 4; i++) {
+      counter.increment(COUNTER_A, "voter" + i);
+    }
+    MemcacheServiceFactory.getMemcacheService().clearAll();
+
+    Entity config = ds.get(KeyFactory.createKey("CounterConfig", COUNTER_A));
+    assertEquals(128L, config.getProperty("shards"));
+    assertEquals(8, counter.getCount(COUNTER_A));
+  }
+
+  // The number of shards is only read by the first increment, and again once it grows.
+  @Test
+  public void incrementCachesShardCount() {
+    counter.increment(COUNTER_A, null);
+
+    DatastoreRpcs rpcs = DatastoreRpcs.start();
+    counter.increment(COUNTER_A, null);
+    rpcs.stop();
+    // Only the shard is read.
+    rpcs.expectAtMost(DatastoreRpcs.Operation.GET, 1);
+
+    counter.addShards(COUNTER_A);
+    for (int i = 0; i < 40; i++) {
+      counter.increment(COUNTER_A, "voter" + i);
+    }
+    assertTrue(countShards() > 4);
+    assertEquals(42, counter.getCount(COUNTER_A));
+  }
+
+  private int countShards() {
+    return ds.prepare(new Query("CounterShard")).countEntities(FetchOptions.Builder.withDefaults());
+  }
+}
@@ -0,0 +1,124 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.sps.data.IntervalSweep;
+import com.google.sps.data.SlotRanker;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TimeZone;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for SlotRanker class */
+@RunWith(JUnit4.class)
+public class SlotRankerTest {
+  private final long MINUTE_MS = 60 * 1000L;
+  private final long HOUR_MS = 60 * MINUTE_MS;
+  private final long DAY_MS = 24 * HOUR_MS;
+  private final long STEP_MS = 15 * MINUTE_MS;
+  private final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+  // Without any busy blocks, the earliest start in the preferred hours is the best.
+  @Test
+  public void prefersWorkingHours() {
+    SlotRanker ranker = new SlotRanker(UTC, STEP_MS);
+    long[] free = {0, DAY_MS};
+
+    long[] starts = ranker.topK(free, 0, DAY_MS, HOUR_MS, 3);
+
+    assertArrayEquals(new long[] {9 * HOUR_MS, 9 * HOUR_MS + STEP_MS, 9 * HOUR_MS + 2 * STEP_MS},
+        starts);
+  }
+
+  // Starts that leave a buffer to the busy blocks around them score higher.
+  @Test
+  public void prefersBufferFromBusyBlocks() {
+    SlotRanker ranker = new SlotRanker(UTC, STEP_MS);
+    // Busy until 10am and from 1pm.
+    long[] free = {10 * HOUR_MS, 13 * HOUR_MS};
+
+    long[] starts = ranker.topK(free, 0, DAY_MS, HOUR_MS, 1);
+
+    assertArrayEquals(new long[] {10 * HOUR_MS + 30 * MINUTE_MS}, starts);
+  }
+
+  // Starts after the slot's own start are aligned to the step on the local clock.
+  @Test
+  public void alignsStartsToTheStep() {
+    SlotRanker ranker = new SlotRanker(TimeZone.getTimeZone("Asia/Kolkata"), STEP_MS, 0,
+        24 * 60, 0);
+    long slotStart = 7 * MINUTE_MS;
+    long[] free = {slotStart, slotStart + 2 * HOUR_MS};
+
+    long[] starts = ranker.topK(free, slotStart, slotStart + 2 * HOUR_MS, HOUR_MS, 100);
+
+    // Asia/Kolkata is 5:30 ahead of UTC, so quarter hours there are quarter hours in UTC.
+    assertEquals(slotStart, starts[0]);
+    assertEquals(5, starts.length); // 0:07, 0:15, 0:30, 0:45 and 1:00 fit.
+    for (int i = 1; i < starts.length; i++) {
+      assertEquals(0, starts[i] % STEP_MS);
+      assertTrue(starts[i] > starts[i - 1]);
+    }
+  }
+
+  // Starts with the same score are returned earliest first.
+  @Test
+  public void tiesAreEarliestFirst() {
+    SlotRanker ranker = new SlotRanker(UTC, HOUR_MS, 0, 24 * 60, 0);
+    long[] free = {0, 4 * HOUR_MS};
+
+    // The window is empty, so every start scores the same.
+    long[] starts = ranker.topK(free, 0, 0, HOUR_MS, 2);
+
+    assertArrayEquals(new long[] {0, HOUR_MS}, starts);
+  }
+
+  // No starts are returned if none are asked for or none fit.
+  @Test
+  public void emptyResults() {
+    SlotRanker ranker = new SlotRanker(UTC, STEP_MS);
+
+    assertEquals(0, ranker.topK(new long[] {0, DAY_MS}, 0, DAY_MS, HOUR_MS, 0).length);
+    assertEquals(0, ranker.topK(new long[] {0, HOUR_MS}, 0, DAY_MS, 2 * HOUR_MS, 5).length);
+    assertEquals(0, ranker.topK(new long[0], 0, DAY_MS, HOUR_MS, 5).length);
+  }
+
+  // The top K agree with scoring every candidate and sorting them, on a month-long window.
+  @Test
+  public void matchesSortingAllCandidates() {
+    Random random = new Random(42);
+    long windowEnd = 31 * DAY_MS;
+    IntervalSweep sweep = new IntervalSweep();
+    for (int i = 0; i < 200; i++) {
+      long start = (long) (random.nextDouble() * windowEnd);
+      sweep.add(start, start + (1 + random.nextInt(8)) * STEP_MS);
+    }
+    long[] free = sweep.freeSlots(0, windowEnd, HOUR_MS);
+    SlotRanker ranker = new SlotRanker(UTC, STEP_MS);
+
+    long[] starts = ranker.topK(free, 0, windowEnd, HOUR_MS, 10);
+
+    // A month of quarter hours is about 3000 candidates, which can be sorted here.
+    long[][] all = new long[31 * 24 * 4 + free.length][];
+    int count = 0;
+    for (int i = 0; i < free.length; i += 2) {
+      for (long start = free[i]; start + HOUR_MS <= free[i + 1];
+          start = (start / STEP_MS + 1) * STEP_MS) {
+        double score = ranker.score(start, HOUR_MS, free[i], free[i + 1], 0, windowEnd);
+        all[count++] = new long[] {Double.doubleToLongBits(score), start};
+      }
+    }
+    Arrays.sort(all, 0, count, (a, b) -> {
+      int byScore = Double.compare(Double.longBitsToDouble(b[0]), Double.longBitsToDouble(a[0]));
+      return byScore != 0 ? byScore : Long.compare(a[1], b[1]);
+    });
+    assertEquals(10, starts.length);
+    for (int i = 0; i < starts.length; i++) {
+      assertEquals(all[i][1], starts[i]);
+    }
+  }
+}
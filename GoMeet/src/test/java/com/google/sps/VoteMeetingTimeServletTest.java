@@ -4,21 +4,26 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static com.google.appengine.api.datastore.FetchOptions.Builder.withDefaults;
 import static org.mockito.Mockito.*;
 
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.Transaction;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import com.google.sps.data.ErrorMessages;
 import com.google.sps.servlets.VoteMeetingTimeServlet;
 import com.google.sps.data.MeetingTimeFields;
 import com.google.sps.data.ServletUtil;
+import com.google.sps.data.Voters;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -57,8 +62,11 @@ public final class VoteMeetingTimeServletTest {
   private DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
   
   // Mocks
+  // Votes are written in cross-group transactions, which need the high replication datastore.
   private final LocalServiceTestHelper helper =
-      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+      new LocalServiceTestHelper(
+          new LocalDatastoreServiceTestConfig().setDefaultHighRepJobPolicyUnappliedJobPercentage(0),
+          new LocalMemcacheServiceTestConfig());
   private HttpServletRequest mockedRequest;       
   private HttpServletResponse mockedResponse;
   private StringWriter stringWriter;
@@ -94,15 +102,16 @@ public final class VoteMeetingTimeServletTest {
     // Check that the entity was updated as expected.
     Entity meetingTime = getHardcodedEntity();
 
-    // Voters should now include NEW_VOTER, and the original voters
+    // NEW_VOTER should now be stored as a Voter entity, and the original voters kept
     HashSet<String> voters = 
         new HashSet<String>((ArrayList<String>) meetingTime.getProperty(MeetingTimeFields.VOTERS));
-    assertTrue(voters.contains(NEW_VOTER));
+    assertTrue(voterEntityExists(NEW_VOTER));
     assertTrue(voters.containsAll(VOTERS_VAL));
 
-    // Vote count should be incremented by 1
+    // Vote count should be incremented by 1, by counting the vote in the vote counter
     int voteCount = ((Long) meetingTime.getProperty(MeetingTimeFields.VOTE_COUNT)).intValue();
-    assertTrue(voteCount == VOTE_COUNT_VAL + 1);
+    assertTrue(voteCount == VOTE_COUNT_VAL);
+    assertEquals(1, VoteMeetingTimeServlet.VOTE_COUNTER.getCount(MEETING_TIME_ID_VAL));
 
     // HttpServletResponse.SC_OK status code should be returned
     HashMap<String, Object> status = new HashMap<String, Object>() {{
@@ -196,14 +205,13 @@ public final class VoteMeetingTimeServletTest {
     Entity updatedTime = getHardcodedEntity();
 
     // Voters should now JUST include NEW_VOTER, and NOT the original voters
-    HashSet<String> voters = 
-        new HashSet<String>((ArrayList<String>) updatedTime.getProperty(MeetingTimeFields.VOTERS));
-    assertTrue(voters.contains(NEW_VOTER));
-    assertFalse(voters.containsAll(VOTERS_VAL));
+    assertTrue(voterEntityExists(NEW_VOTER));
+    assertEquals(1, countVoterEntities());
+    assertFalse(voterEntityExists(EXISTING_VOTER));
 
     // Vote count should be 1
     int voteCount = ((Long) updatedTime.getProperty(MeetingTimeFields.VOTE_COUNT)).intValue();
-    assertTrue(voteCount == 1);
+    assertTrue(voteCount + VoteMeetingTimeServlet.VOTE_COUNTER.getCount(MEETING_TIME_ID_VAL) == 1);
 
     // HttpServletResponse.SC_OK status code should be returned
     HashMap<String, Object> status = new HashMap<String, Object>() {{
@@ -214,6 +222,48 @@ public final class VoteMeetingTimeServletTest {
     assertTrue(stringWriter.toString().contains(ServletUtil.convertMapToJson(status)));
   }
 
+  // A voter stored as a Voter entity cannot vote again
+  @Test
+  public void testVoterEntityPreventsSecondVote() throws IOException {
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_ID))
+        .thenReturn(MEETING_TIME_ID_VAL); 
+    when(mockedRequest.getParameter(MeetingTimeFields.VOTERS))
+        .thenReturn(NEW_VOTER);
+    new VoteMeetingTimeServlet().doPost(mockedRequest, mockedResponse);
+
+    writer.flush();
+    stringWriter.getBuffer().setLength(0); // Only check the response to the second vote
+    new VoteMeetingTimeServlet().doPost(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_CONFLICT, 
+        ErrorMessages.USER_HAS_VOTED_ERROR, 
+        mockedResponse, stringWriter, writer);
+    assertEquals(1, countVoterEntities());
+    assertEquals(1, VoteMeetingTimeServlet.VOTE_COUNTER.getCount(MEETING_TIME_ID_VAL));
+  }
+
+  // A vote does not write the MeetingTime's entity group, so it does not conflict with
+  // other votes, or other writes, to the MeetingTime.
+  @Test
+  public void testVoteOutsideMeetingTimeGroup() throws Exception {
+    when(mockedRequest.getParameter(MeetingTimeFields.MEETING_TIME_ID))
+        .thenReturn(MEETING_TIME_ID_VAL); 
+    when(mockedRequest.getParameter(MeetingTimeFields.VOTERS))
+        .thenReturn(NEW_VOTER);
+    Key key = KeyFactory.stringToKey(MEETING_TIME_ID_VAL);
+    Transaction txn = datastore.beginTransaction();
+    Entity meetingTime = datastore.get(txn, key);
+
+    new VoteMeetingTimeServlet().doPost(mockedRequest, mockedResponse);
+
+    // The transaction that read the MeetingTime before the vote still commits.
+    datastore.put(txn, meetingTime);
+    txn.commit();
+    assertEquals(null, Voters.voterKey(key, NEW_VOTER).getParent());
+    assertTrue(voterEntityExists(NEW_VOTER));
+    assertEquals(1, VoteMeetingTimeServlet.VOTE_COUNTER.getCount(MEETING_TIME_ID_VAL));
+  }
+
   @After
   public void tearDown() {
     helper.tearDown();
@@ -230,6 +280,20 @@ public final class VoteMeetingTimeServletTest {
     return result;
   }
 
+  /** Returns true if there is a Voter entity for the voter of the hardcoded entity. */
+  private boolean voterEntityExists(String voter) {
+    try {
+      datastore.get(Voters.voterKey(KeyFactory.stringToKey(MEETING_TIME_ID_VAL), voter));
+      return true;
+    } catch (EntityNotFoundException e) {
+      return false;
+    }
+  }
+
+  private int countVoterEntities() {
+    return datastore.prepare(new Query(Voters.KIND)).countEntities(withDefaults());
+  }
+
   /**
    * Check that the hardcoded MeetingTime Entity in Local Datastore
    * has the same values as what it was originally hardcoded with.
@@ -240,12 +304,13 @@ public final class VoteMeetingTimeServletTest {
     // Voters should just include the original voters
     HashSet<String> voters = 
         new HashSet<String>((ArrayList<String>) meetingTime.getProperty(MeetingTimeFields.VOTERS));
-    if (voters.contains(NEW_VOTER) || !voters.containsAll(VOTERS_VAL)) {
+    if (countVoterEntities() != 0 || !voters.containsAll(VOTERS_VAL)) {
       return false;
     }
     // Vote count should be same as original value
     int voteCount = ((Long) meetingTime.getProperty(MeetingTimeFields.VOTE_COUNT)).intValue();
-    if (voteCount != VOTE_COUNT_VAL) {
+    if (voteCount != VOTE_COUNT_VAL
+        || VoteMeetingTimeServlet.VOTE_COUNTER.getCount(MEETING_TIME_ID_VAL) != 0) {
       return false;
     }
     return true;
@@ -0,0 +1,188 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.data.ErrorMessages;
+import com.google.sps.data.MeetingEventFields;
+import com.google.sps.data.MeetingSnapshotFields;
+import com.google.sps.data.MeetingTimeFields;
+import com.google.sps.servlets.MeetingEventServlet;
+import com.google.sps.servlets.VoteMeetingTimeServlet;
+import com.google.sps.servlets.VoteStreamServlet;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/** Tests for VoteStreamServlet */
+@RunWith(JUnit4.class)
+public class VoteStreamServletTest {
+  // Votes are written in cross-group transactions, which need the high replication datastore.
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(
+          new LocalDatastoreServiceTestConfig().setDefaultHighRepJobPolicyUnappliedJobPercentage(0),
+          new LocalUserServiceTestConfig());
+  private HttpServletRequest mockedRequest;
+  private HttpServletResponse mockedResponse;
+  private AsyncContext mockedAsync;
+  private StringWriter stringWriter;
+  private PrintWriter writer;
+  private DatastoreService datastore;
+  private String meetingTimeId;
+  private VoteStreamServlet servlet;
+
+  @Before
+  public void setUp() throws IOException {
+    helper.setUp();
+    helper.setEnvEmail("test@gmail.com");
+    helper.setEnvAuthDomain("gmail.com");
+    helper.setEnvIsLoggedIn(true);
+    MeetingEventServlet.MEETING_EVENT_CACHE.clear();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+    servlet = new VoteStreamServlet();
+    servlet.setStreaming(true);
+    mockedRequest = mock(HttpServletRequest.class);
+    mockedResponse = mock(HttpServletResponse.class);
+    mockedAsync = mock(AsyncContext.class);
+    stringWriter = new StringWriter();
+    writer = new PrintWriter(stringWriter);
+    when(mockedResponse.getWriter()).thenReturn(writer);
+    when(mockedRequest.startAsync()).thenReturn(mockedAsync);
+
+    Entity meetingTime = new Entity("MeetingTime");
+    meetingTime.setProperty(MeetingTimeFields.DATETIME, "2021-01-20T16:30");
+    meetingTime.setProperty(MeetingTimeFields.VOTE_COUNT, 0);
+    datastore.put(meetingTime);
+    meetingTimeId = KeyFactory.keyToString(meetingTime.getKey());
+    Entity meetingEvent = new Entity("MeetingEvent");
+    meetingEvent.setProperty(MeetingEventFields.MEETING_TIME_IDS, Arrays.asList(meetingTimeId));
+    datastore.put(meetingEvent);
+    when(mockedRequest.getParameter(MeetingEventFields.MEETING_EVENT_ID))
+        .thenReturn(KeyFactory.keyToString(meetingEvent.getKey()));
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  // The votes recorded for the meeting are written to its stream.
+  @Test
+  public void streamsVotes() throws Exception {
+    servlet.doGet(mockedRequest, mockedResponse);
+    verify(mockedResponse).setContentType("text/event-stream");
+
+    vote("voter1@gmail.com");
+    vote("voter2@gmail.com");
+    VoteStreamServlet.VOTE_BROADCASTER.flush();
+
+    // However the votes were split between events, the meeting time gained two votes.
+    List<JsonObject> events = readEvents();
+    assertTrue(events.size() >= 1);
+    long votes = 0;
+    for (JsonObject event : events) {
+      votes += event.getAsJsonObject(MeetingSnapshotFields.MEETING_TIMES)
+          .get(meetingTimeId).getAsLong();
+    }
+    assertEquals(2, votes);
+
+    closeStream();
+  }
+
+  // A closed stream is unsubscribed from the votes.
+  @Test
+  public void unsubscribesOnClose() throws Exception {
+    int topics = VoteStreamServlet.VOTE_BROADCASTER.getTopicCount();
+    servlet.doGet(mockedRequest, mockedResponse);
+    assertEquals(topics + 2, VoteStreamServlet.VOTE_BROADCASTER.getTopicCount());
+
+    closeStream();
+
+    assertEquals(topics, VoteStreamServlet.VOTE_BROADCASTER.getTopicCount());
+    verify(mockedAsync).complete();
+  }
+
+  @Test
+  public void loggedOut() throws IOException {
+    helper.setEnvIsLoggedIn(false);
+
+    servlet.doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_UNAUTHORIZED,
+        ErrorMessages.LOGIN_REQUIRED_ERROR, mockedResponse, stringWriter, writer);
+    verify(mockedRequest, never()).startAsync();
+  }
+
+  // Where responses are buffered, the page is told to poll for the votes instead.
+  @Test
+  public void streamingDisabled() throws IOException {
+    new VoteStreamServlet().doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_NOT_IMPLEMENTED,
+        ErrorMessages.STREAMING_UNAVAILABLE_ERROR, mockedResponse, stringWriter, writer);
+    verify(mockedRequest, never()).startAsync();
+  }
+
+  @Test
+  public void invalidMeetingEventId() throws IOException {
+    when(mockedRequest.getParameter(MeetingEventFields.MEETING_EVENT_ID)).thenReturn("invalid");
+
+    servlet.doGet(mockedRequest, mockedResponse);
+
+    ServletTestUtil.expectBadRequest(HttpServletResponse.SC_BAD_REQUEST,
+        ErrorMessages.INVALID_KEY_ERROR, mockedResponse, stringWriter, writer);
+  }
+
+  private void vote(String voter) throws IOException {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(request.getParameter(MeetingTimeFields.MEETING_TIME_ID)).thenReturn(meetingTimeId);
+    when(request.getParameter(MeetingTimeFields.VOTERS)).thenReturn(voter);
+    when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+    new VoteMeetingTimeServlet().doPost(request, response);
+  }
+
+  /** Times the stream out, as the container would. */
+  private void closeStream() throws IOException {
+    ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+    verify(mockedAsync).addListener(listener.capture());
+    listener.getValue().onTimeout(new AsyncEvent(mockedAsync));
+  }
+
+  /** Returns the data of the vote events written to the stream. */
+  private List<JsonObject> readEvents() {
+    writer.flush();
+    List<JsonObject> events = new ArrayList<>();
+    for (String event : stringWriter.toString().split("\n\n")) {
+      if (event.startsWith("event: " + VoteStreamServlet.VOTES_EVENT + "\n")) {
+        String data = event.substring(event.indexOf("data: ") + "data: ".length());
+        events.add(new JsonParser().parse(data).getAsJsonObject());
+      }
+    }
+    return events;
+  }
+}
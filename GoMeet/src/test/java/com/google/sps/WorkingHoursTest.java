@@ -0,0 +1,80 @@
+package test.java.com.google.sps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.sps.data.IntervalSweep;
+import com.google.sps.data.WorkingHours;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for WorkingHours class */
+@RunWith(JUnit4.class)
+public class WorkingHoursTest {
+  private final long HOUR_MS = 60 * 60 * 1000L;
+  private final long DAY_MS = 24 * HOUR_MS;
+  private final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+  @Test
+  public void parse() {
+    WorkingHours hours = WorkingHours.parse("08:30-17:45");
+
+    assertEquals(8 * 60 + 30, hours.getStartMins());
+    assertEquals(17 * 60 + 45, hours.getEndMins());
+    assertEquals("08:30-17:45", hours.toString());
+    assertEquals(new WorkingHours(9 * 60, 24 * 60), WorkingHours.parse("09:00-24:00"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseInvalidFormat() {
+    WorkingHours.parse("9-5");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseEndBeforeStart() {
+    WorkingHours.parse("17:00-09:00");
+  }
+
+  // Only the working hours of each day are left free.
+  @Test
+  public void nonWorkingPeriods() {
+    IntervalSweep sweep = new IntervalSweep();
+
+    WorkingHours.DEFAULT.addNonWorkingPeriods(sweep, UTC, 0, 2 * DAY_MS);
+
+    assertArrayEquals(new long[] {9 * HOUR_MS, 17 * HOUR_MS, DAY_MS + 9 * HOUR_MS,
+        DAY_MS + 17 * HOUR_MS}, sweep.freeSlots(0, 2 * DAY_MS, 1));
+  }
+
+  // The working hours are in the timezone of the guest, not of the period.
+  @Test
+  public void guestTimeZone() {
+    IntervalSweep sweep = new IntervalSweep();
+
+    // Asia/Tokyo is 9 hours ahead of UTC, so 9am there is midnight UTC.
+    WorkingHours.DEFAULT.addNonWorkingPeriods(sweep, TimeZone.getTimeZone("Asia/Tokyo"),
+        12 * HOUR_MS, DAY_MS + 12 * HOUR_MS);
+
+    assertArrayEquals(new long[] {DAY_MS, DAY_MS + 8 * HOUR_MS},
+        sweep.freeSlots(12 * HOUR_MS, DAY_MS + 12 * HOUR_MS, 1));
+  }
+
+  // On the day daylight saving time starts, the working hours are still 9am to 5pm.
+  @Test
+  public void daylightSavingTime() throws Exception {
+    TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+    SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    formatter.setTimeZone(newYork);
+    long dayStart = formatter.parse("2021-03-14 00:00").getTime();
+    long dayEnd = formatter.parse("2021-03-15 00:00").getTime();
+    IntervalSweep sweep = new IntervalSweep();
+
+    WorkingHours.DEFAULT.addNonWorkingPeriods(sweep, newYork, dayStart, dayEnd);
+
+    assertArrayEquals(new long[] {formatter.parse("2021-03-14 09:00").getTime(),
+        formatter.parse("2021-03-14 17:00").getTime()}, sweep.freeSlots(dayStart, dayEnd, 1));
+  }
+}